@@ -0,0 +1,64 @@
+package bewte.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import foal.map.IntDoubleHashMap;
+import foal.map.IntObjectHashMap;
+import mathalgo.AssignmentAlgorithm;
+import mathalgo.AssignmentAlgorithms;
+
+/**
+ * The weighted assignment solvers on random bipartite graphs. Like the BE matching graphs, the 
+ * weights are mostly a few distinct values (transform weight products) with some arbitrary ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AssignmentBenchmark {
+
+	/** Number of vertices on each side */
+	@Param({"10", "40", "200"})
+	public int partSize;
+
+	/** Probability of an edge between any two vertices */
+	@Param({"0.05", "0.3"})
+	public double density;
+
+	@Param({AssignmentAlgorithms.MIN_COST_FLOW, AssignmentAlgorithms.SPARSE_SHORTEST_PATH})
+	public String algorithm;
+
+	private IntObjectHashMap<IntDoubleHashMap> mCostMatrix;
+	private AssignmentAlgorithm mAssignmentAlgorithm;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(partSize);
+		mCostMatrix = new IntObjectHashMap<IntDoubleHashMap>();
+		for(int i = 0; i < partSize; i++) {
+			IntDoubleHashMap links = new IntDoubleHashMap();
+			for(int j = 0; j < partSize; j++) {
+				if(random.nextDouble() < density) {
+					links.put(j, random.nextBoolean() ? (1 + random.nextInt(3))*0.5 : random.nextDouble()*3);
+				}
+			}
+			mCostMatrix.put(i, links);
+		}
+		mAssignmentAlgorithm = AssignmentAlgorithms.forName(algorithm);
+	}
+
+	@Benchmark
+	public int[][] assignment() {
+		return mAssignmentAlgorithm.assignment(partSize, partSize, mCostMatrix);
+	}
+
+}
@@ -0,0 +1,107 @@
+package bewte.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import foal.map.IntIntHashMap;
+import mathalgo.AssignmentAlgorithm;
+import mathalgo.AssignmentAlgorithms;
+
+import bewte.BE;
+import bewte.BEMatcher;
+import bewte.scoring.TallyFunction;
+
+/**
+ * Building the matching graph between a peer and a reference (updateEdge) and solving it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BEMatcherBenchmark {
+
+	public final static int NUM_TRANSFORMS = 20;
+
+	/** Number of BEs in the peer and in the reference */
+	@Param({"50", "200", "1000"})
+	public int numBEs;
+
+	/** Number of (peer BE, reference BE, transform mask) edges per peer BE */
+	@Param({"4"})
+	public int edgesPerBE;
+
+	@Param({AssignmentAlgorithms.MIN_COST_FLOW, AssignmentAlgorithms.SPARSE_SHORTEST_PATH})
+	public String algorithm;
+
+	private double[] mStrengths;
+	private List<BE> mPeerBEs;
+	private List<BE> mReferenceBEs;
+	private IntIntHashMap mFrequencies;
+	private BE[] mEdgePeerBEs;
+	private BE[] mEdgeReferenceBEs;
+	private long[] mEdgeMasks;
+	private IntIntHashMap mBitIndexToWeightIndex;
+	private double[] mTransformWeights;
+	private TallyFunction mTallyFunction;
+	private AssignmentAlgorithm mAssignmentAlgorithm;
+	private BEMatcher mMatcher;
+
+	@Setup
+	public void setup() throws Exception {
+		SyntheticBEs generator = new SyntheticBEs(numBEs);
+		mStrengths = new double[]{1.0};
+		mPeerBEs = generator.createBEs(numBEs);
+		mReferenceBEs = generator.createBEs(numBEs);
+		mFrequencies = new IntIntHashMap();
+		for(BE be : mReferenceBEs) {
+			mFrequencies.put(be.getEquivalentId(), 1 + generator.nextInt(4));
+		}
+		final int numEdges = numBEs * edgesPerBE;
+		mEdgePeerBEs = new BE[numEdges];
+		mEdgeReferenceBEs = new BE[numEdges];
+		mEdgeMasks = new long[numEdges];
+		for(int e = 0; e < numEdges; e++) {
+			mEdgePeerBEs[e] = mPeerBEs.get(e / edgesPerBE);
+			mEdgeReferenceBEs[e] = mReferenceBEs.get(generator.nextInt(numBEs));
+			// a quarter of the edges are exact matches
+			mEdgeMasks[e] = generator.nextInt(4) == 0 ? 0L : generator.createMask(NUM_TRANSFORMS);
+		}
+		mBitIndexToWeightIndex = new IntIntHashMap();
+		mTransformWeights = new double[NUM_TRANSFORMS];
+		for(int i = 0; i < NUM_TRANSFORMS; i++) {
+			mBitIndexToWeightIndex.put(i, i);
+			mTransformWeights[i] = 0.5 + 0.5*generator.nextInt(100)/100.0;
+		}
+		mTallyFunction = new TallyFunction.RootTallyFunction();
+		mAssignmentAlgorithm = AssignmentAlgorithms.forName(algorithm);
+		mMatcher = buildMatcher();
+	}
+
+	private BEMatcher buildMatcher() {
+		BEMatcher matcher = new BEMatcher(mStrengths, mPeerBEs, mReferenceBEs, mFrequencies);
+		final int numEdges = mEdgeMasks.length;
+		for(int e = 0; e < numEdges; e++) {
+			matcher.updateEdge(mEdgePeerBEs[e], mEdgeReferenceBEs[e], mEdgeMasks[e]);
+		}
+		return matcher;
+	}
+
+	@Benchmark
+	public BEMatcher updateEdges() {
+		return buildMatcher();
+	}
+
+	@Benchmark
+	public Object[] solve() {
+		return mMatcher.solve(mBitIndexToWeightIndex, mTransformWeights, mTallyFunction, mAssignmentAlgorithm);
+	}
+
+}
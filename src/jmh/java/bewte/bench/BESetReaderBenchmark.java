@@ -0,0 +1,75 @@
+package bewte.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import foal.list.LongArrayList;
+
+import bewte.BE;
+import bewte.BE.BEPart;
+import bewte.BEDictionary;
+import bewte.io.BESetReader;
+
+/**
+ * Reading a BEX file (a peer's BEs and their transformed versions) in the text and binary formats
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BESetReaderBenchmark {
+
+	public final static int NUM_TRANSFORMS = 20;
+
+	@Param({"100", "1000", "10000"})
+	public int numBEs;
+
+	@Param({"4"})
+	public int transformedPerBE;
+
+	@Param({"text", "binary"})
+	public String format;
+
+	private File mFile;
+	private Map<String, Integer> mTransformNameToBitIndex;
+
+	@Setup
+	public void setup() throws IOException {
+		SyntheticBEs generator = new SyntheticBEs(numBEs);
+		List<String> transformNames = SyntheticBEs.createTransformNames(NUM_TRANSFORMS);
+		mTransformNameToBitIndex = new HashMap<String, Integer>();
+		for(int i = 0; i < NUM_TRANSFORMS; i++) {
+			mTransformNameToBitIndex.put(transformNames.get(i), i);
+		}
+		mFile = File.createTempFile("bench", ".bex");
+		generator.writeBEXFile(mFile, generator.createBEs(numBEs), transformNames, transformedPerBE, format.equals("binary"));
+	}
+
+	@TearDown
+	public void tearDown() {
+		mFile.delete();
+	}
+
+	@Benchmark
+	public List<BE> getBeList() throws IOException {
+		List<BE> bes = new ArrayList<BE>();
+		List<Map<BE, LongArrayList>> beToTransforms = new ArrayList<Map<BE, LongArrayList>>();
+		BESetReader.getBeList(bes, mFile, null, null, mTransformNameToBitIndex, beToTransforms, new HashMap<String, BEPart>(), new BEDictionary(), false);
+		return bes;
+	}
+
+}
@@ -0,0 +1,97 @@
+package bewte.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import tratz.jwni.WordNet;
+
+import bewte.BE;
+import bewte.BEXpander;
+import bewte.names.T2VStyleNameExtractor;
+
+/**
+ * Expanding one topic (three references and a number of peers) with the bundled English transforms.
+ * The data the transforms need is read from the classpath, the transform list and WordNet from disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BEXpanderBenchmark {
+
+	public final static int NUM_REFERENCES = 3;
+
+	@Param({"4", "16"})
+	public int numPeers;
+
+	/** Number of BEs per summary */
+	@Param({"50", "200"})
+	public int numBEs;
+
+	@Param({"src/main/resources/conf/transformations/EN_transformsList.txt"})
+	public String transformList;
+
+	@Param({"src/main/resources/data/wordnet3_0"})
+	public String wordNetDir;
+
+	private File mBEDir;
+	private File mOutputDir;
+	private BEXpander.TransformPipelines mPipelines;
+
+	@Setup
+	public void setup() throws Exception {
+		new WordNet(new File(wordNetDir));
+		mPipelines = new BEXpander.TransformPipelines(new File(transformList), 1);
+		SyntheticBEs generator = new SyntheticBEs(numPeers*numBEs);
+		mBEDir = createTempDir("bes");
+		mOutputDir = createTempDir("bexs");
+		for(int r = 0; r < NUM_REFERENCES; r++) {
+			SyntheticBEs.writeBEFile(new File(mBEDir, "T00-doc.reference" + r), generator.createBEs(numBEs));
+		}
+		for(int p = 0; p < numPeers; p++) {
+			List<BE> bes = generator.createBEs(numBEs);
+			SyntheticBEs.writeBEFile(new File(mBEDir, "T00-doc.sys" + p), bes);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		delete(mBEDir);
+		delete(mOutputDir);
+	}
+
+	@Benchmark
+	public File expand() throws Exception {
+		BEXpander.expand(mBEDir, mOutputDir, 0, -1, ".*reference.*", new T2VStyleNameExtractor(), false, mPipelines, null);
+		return mOutputDir;
+	}
+
+	static File createTempDir(String prefix) throws IOException {
+		File dir = File.createTempFile(prefix, "");
+		dir.delete();
+		dir.mkdirs();
+		return dir;
+	}
+
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,91 @@
+package bewte.bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import tratz.jwni.WordNet;
+import tratz.parse.NLParser;
+import tratz.parse.types.Parse;
+import tratz.parse.types.Sentence;
+import tratz.parse.types.Token;
+import tratz.pos.PosTagger;
+
+/**
+ * POS tagging and parsing a sentence with the bundled models (which must be fetched from git LFS first)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ParserBenchmark {
+
+	private final static String[][] SENTENCES = {
+		{"The", "storm", "hit", "the", "coast", "."},
+		{"Officials", "said", "the", "hurricane", "destroyed", "more", "than", "200", "homes", "in", "Florida", "on", "Tuesday", "."},
+		{"The", "United", "Nations", "announced", "that", "it", "would", "send", "workers", "to", "help", "the", "people",
+			"whose", "houses", "were", "damaged", "by", "the", "flooding", ",", "according", "to", "a", "report", "released", "yesterday", "."},
+		{"Police", "arrested", "three", "men", "who", "had", "attacked", "a", "worker", "at", "the", "company", "'s",
+			"plant", "near", "New", "York", "last", "week", ",", "but", "the", "court", "later", "released", "two", "of",
+			"them", "after", "the", "president", "of", "the", "union", "said", "they", "were", "not", "involved", "."}
+	};
+
+	/** Index into SENTENCES; the sentences have 6, 14, 28 and 40 tokens */
+	@Param({"0", "1", "2", "3"})
+	public int sentence;
+
+	@Param({"src/main/resources/models/posTaggingModel.gz"})
+	public String posModel;
+
+	@Param({"src/main/resources/models/parseModel.gz"})
+	public String parseModel;
+
+	@Param({"src/main/resources/data/wordnet3_0"})
+	public String wordNetDir;
+
+	private PosTagger mPosTagger;
+	private NLParser mParser;
+	private String[] mPos;
+
+	@Setup
+	public void setup() throws Exception {
+		new WordNet(new File(wordNetDir));
+		mPosTagger = new PosTagger(new File(posModel));
+		mParser = new NLParser(parseModel);
+		List<Token> tokens = PosTagger.makeMeSomeTokens(SENTENCES[sentence]);
+		mPosTagger.posTag(tokens);
+		mPos = new String[tokens.size()];
+		for(int i = 0; i < mPos.length; i++) {
+			mPos[i] = tokens.get(i).getPos();
+		}
+	}
+
+	@Benchmark
+	public List<Token> posTag() {
+		List<Token> tokens = PosTagger.makeMeSomeTokens(SENTENCES[sentence]);
+		mPosTagger.posTag(tokens);
+		return tokens;
+	}
+
+	@Benchmark
+	public Parse parseSentence() {
+		// the parser modifies the tokens so each invocation gets new ones
+		List<Token> tokens = PosTagger.makeMeSomeTokens(SENTENCES[sentence]);
+		final int numTokens = tokens.size();
+		for(int i = 0; i < numTokens; i++) {
+			tokens.get(i).setPos(mPos[i]);
+		}
+		return mParser.parseSentence(new Sentence(tokens));
+	}
+
+}
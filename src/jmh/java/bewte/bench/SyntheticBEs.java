@@ -0,0 +1,141 @@
+package bewte.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import bewte.BE;
+import bewte.BEConstants;
+import bewte.BEDictionary;
+import bewte.BE.BEPart;
+import bewte.io.BinaryBEXWriter;
+
+/**
+ * Generates BEs and BE/BEX files for the benchmarks. The words are ordinary English words
+ * (with inflected forms) so that the transforms have something to do.
+ */
+public class SyntheticBEs {
+
+	private final static String[] NOUNS = {"company", "companies", "president", "storm", "storms", "people",
+		"government", "city", "cities", "official", "officials", "report", "attack", "worker", "workers",
+		"plan", "market", "child", "children", "country", "election", "economy", "hurricane", "police", "court"};
+	private final static String[] NAMES = {"United Nations", "U.N.", "John Smith", "Smith", "Washington",
+		"European Union", "EU", "New York", "Red Cross", "Microsoft"};
+	private final static String[] VERBS = {"said", "says", "attacked", "announced", "killed", "rose", "built",
+		"reported", "planned", "elected", "destroyed", "hit", "approved", "arrested", "grew"};
+
+	// rule 1 is a single noun, rule 11 a noun and its verb
+	public final static int SINGLE_PART_RULE = 1;
+	public final static int TWO_PART_RULE = 11;
+
+	private final Random mRandom;
+	// the BEs of a generator share a dictionary, like those of an evaluation
+	private final BEDictionary mDictionary = new BEDictionary();
+
+	public SyntheticBEs(long seed) {
+		mRandom = new Random(seed);
+	}
+
+	public BE createBE() {
+		List<BEPart> parts = new ArrayList<BEPart>(2);
+		parts.add(createNounPart());
+		if(mRandom.nextBoolean()) {
+			parts.add(new BEPart(VERBS[mRandom.nextInt(VERBS.length)], "VBD"));
+			return new BE(parts, TWO_PART_RULE, 1, mDictionary);
+		}
+		return new BE(parts, SINGLE_PART_RULE, 1, mDictionary);
+	}
+
+	private BEPart createNounPart() {
+		if(mRandom.nextInt(4) == 0) {
+			return new BEPart(NAMES[mRandom.nextInt(NAMES.length)], "NNP");
+		}
+		String noun = NOUNS[mRandom.nextInt(NOUNS.length)];
+		return new BEPart(noun, noun.endsWith("s") ? "NNS" : "NN");
+	}
+
+	public List<BE> createBEs(int numBEs) {
+		List<BE> bes = new ArrayList<BE>(numBEs);
+		for(int i = 0; i < numBEs; i++) {
+			bes.add(createBE());
+		}
+		return bes;
+	}
+
+	/**
+	 * Returns a random non-empty transform mask over numTransforms bits (at most two bits set)
+	 */
+	public long createMask(int numTransforms) {
+		long mask = 1L << mRandom.nextInt(numTransforms);
+		if(mRandom.nextBoolean()) {
+			mask |= 1L << mRandom.nextInt(numTransforms);
+		}
+		return mask;
+	}
+
+	public int nextInt(int n) {
+		return mRandom.nextInt(n);
+	}
+
+	/**
+	 * Writes the BEs in the format produced by BasicElementExtractor (and read by BEXpander)
+	 */
+	public static void writeBEFile(File file, List<BE> bes) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		for(BE be : bes) {
+			// BE.toString() ends with a separator
+			String parts = be.toString();
+			writer.println(be.getRule() + BEConstants.BE_SEPARATOR_STRING + parts.substring(0, parts.length()-1));
+		}
+		writer.close();
+	}
+
+	/**
+	 * Writes a BEX file holding each BE followed by transformedPerBE transformed versions,
+	 * in the text format or the binary format
+	 */
+	public void writeBEXFile(File file, List<BE> bes, List<String> transformNames, int transformedPerBE, boolean binary) throws IOException {
+		final int numTransforms = transformNames.size();
+		if(binary) {
+			BinaryBEXWriter writer = new BinaryBEXWriter(file, transformNames);
+			for(BE be : bes) {
+				writer.addBE(be);
+				for(int t = 0; t < transformedPerBE; t++) {
+					long mask = createMask(numTransforms);
+					writer.addTransformedBE(createBE(), BitSet.valueOf(new long[]{mask}));
+				}
+			}
+			writer.close();
+		}
+		else {
+			PrintWriter writer = new PrintWriter(new FileWriter(file));
+			for(BE be : bes) {
+				writer.println("r" + be.getRule() + BEConstants.BE_SEPARATOR_STRING + be.toString());
+				for(int t = 0; t < transformedPerBE; t++) {
+					long mask = createMask(numTransforms);
+					StringBuilder names = new StringBuilder();
+					for(long bits = mask; bits != 0; bits &= bits-1) {
+						names.append(transformNames.get(Long.numberOfTrailingZeros(bits))).append(':');
+					}
+					BE transformed = createBE();
+					writer.println("\tr" + transformed.getRule() + BEConstants.BE_SEPARATOR_STRING + transformed.toString() + "\t" + names);
+				}
+			}
+			writer.close();
+		}
+	}
+
+	public static List<String> createTransformNames(int numTransforms) {
+		List<String> names = new ArrayList<String>(numTransforms);
+		for(int i = 0; i < numTransforms; i++) {
+			names.add("t" + i);
+		}
+		return names;
+	}
+
+}
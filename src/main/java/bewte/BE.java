@@ -14,22 +14,40 @@ public class BE {
 	public static class BEPart {
 		public final String text;
 		public final String type;
+		/** The lower cased text and type class. Parts with the same key are interchangeable when matching. */
+		public final String equivalentKey;
 		public BEPart(String text, String type) {
 			this.text = text;
 			this.type = type;
+			this.equivalentKey = toEquivString(text, type);
 		}
 	}
 	
+	private final static int NO_ID = -1;
+	
 	private List<BEPart> mParts;
 	private int mRule;
-	private int mEquivalentId;
 	private int mCoeffIndex;
+	// the dictionary the id comes from (null if the BE has no id)
+	private final BEDictionary mDictionary;
+	private final int mEquivalentId;
 	
+	/**
+	 * Creates a BE without an id (as the extraction and transformation steps do); it is compared by its parts
+	 */
 	public BE(List<BEPart> parts, int rule, int coeffIndex) {
+		this(parts, rule, coeffIndex, null);
+	}
+	
+	/**
+	 * Creates a BE with an id from the dictionary of the evaluation, so that it can be matched by id 
+	 */
+	public BE(List<BEPart> parts, int rule, int coeffIndex, BEDictionary dictionary) {
 		mParts = parts;
 		mRule = rule;
-		mEquivalentId = toEquivString().hashCode();
 		mCoeffIndex = coeffIndex;
+		mDictionary = dictionary;
+		mEquivalentId = dictionary == null ? NO_ID : dictionary.getId(parts);
 	}
 	
 	public int getRule() {
@@ -44,24 +62,29 @@ public class BE {
 		return mParts;
 	}
 
-	private String toEquivString() {
-		StringBuilder buf = new StringBuilder();
+	private static String toEquivString(String text, String partType) {
+		int type = 1;
+		if(TreebankConstants.VERB_LABELS.contains(partType)) {
+			type = 2;
+		}
+		else if(TreebankConstants.ADJ_LABELS.contains(partType)){
+			type = 3;
+		}
+		else if(TreebankConstants.ADV_LABELS.contains(partType)) {
+			type = 4;
+		}
+		return (text + BEConstants.BE_SEPARATOR_CHAR + type).toLowerCase();
+	}
+	
+	/**
+	 * The equivalence key of a BE without an id is the sequence of part keys
+	 */
+	private String toEquivKey() {
+		StringBuilder key = new StringBuilder();
 		for(BEPart part : mParts) {
-			buf.append(part.text).append(BEConstants.BE_SEPARATOR_CHAR);
-			int type = 1;
-			if(TreebankConstants.VERB_LABELS.contains(part.type)) {
-				type = 2;
-			}
-			else if(TreebankConstants.ADJ_LABELS.contains(part.type)){
-				type = 3;
-			}
-			else if(TreebankConstants.ADV_LABELS.contains(part.type)) {
-				type = 4;
-			
-			}
-			buf.append(type).append(BEConstants.BE_SEPARATOR_CHAR);			
+			key.append(part.equivalentKey).append('\u0000');
 		}
-		return buf.toString().toLowerCase();
+		return key.toString();
 	}
 	
 	/**
@@ -87,19 +110,35 @@ public class BE {
 		return buf.toString();
 	}
 	
+	/**
+	 * Returns the id of the BE in the dictionary it was created with
+	 */
 	public int getEquivalentId() {
+		if(mDictionary == null) {
+			throw new IllegalStateException("BE was created without a dictionary: " + this);
+		}
 		return mEquivalentId;
 	}
 	
+	public BEDictionary getDictionary() {
+		return mDictionary;
+	}
+	
 	@Override
 	public int hashCode() {
-		return mEquivalentId;
+		return mDictionary == null ? toEquivKey().hashCode() : mEquivalentId;
 	}
 	
+	/**
+	 * BEs are equal if their parts are equivalent; BEs of different dictionaries are never equal
+	 */
 	@Override
 	public boolean equals(Object obj) {
 		BE be2 = (BE)obj;
-		return mEquivalentId == be2.mEquivalentId;
+		if(mDictionary != be2.mDictionary) {
+			return false;
+		}
+		return mDictionary == null ? toEquivKey().equals(be2.toEquivKey()) : mEquivalentId == be2.mEquivalentId;
 	}
 	
 }
\ No newline at end of file
@@ -4,4 +4,6 @@ public class BEConstants {
 	
 	public final static char BE_SEPARATOR_CHAR = '\30';
 	public final static String BE_SEPARATOR_STRING = Character.toString(BE_SEPARATOR_CHAR);
+	/** Sets of transforms are encoded in long bit masks */
+	public final static int MAX_TRANSFORMS = 64;
 }
\ No newline at end of file
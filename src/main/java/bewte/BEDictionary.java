@@ -0,0 +1,68 @@
+package bewte;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense, collision-free int ids to BE parts and BEs
+ *
+ * Used to intern BEs so that BEs can be compared by id instead of by String hash code
+ * (which could silently merge two distinct BEs). Each evaluation creates its own dictionary and passes
+ * it to the readers that create its BEs; ids are only comparable between BEs of the same dictionary,
+ * and the dictionary is garbage once the evaluation is done with its BEs. Lookups of existing
+ * entries do not lock.
+ */
+public class BEDictionary {
+
+	// BE part equivalence strings (lower cased text and type class)
+	private final Table mParts = new Table();
+	// BE equivalence keys (sequence of part ids)
+	private final Table mBEs = new Table();
+
+	private static class Table {
+
+		private final ConcurrentHashMap<String, Integer> mStringToId = new ConcurrentHashMap<String, Integer>();
+		private int mSize;
+
+		public int intern(String s) {
+			Integer id = mStringToId.get(s);
+			if(id == null) {
+				synchronized(this) {
+					id = mStringToId.get(s);
+					if(id == null) {
+						id = mSize++;
+						mStringToId.put(s, id);
+					}
+				}
+			}
+			return id;
+		}
+
+		public synchronized int size() {
+			return mSize;
+		}
+	}
+
+	/**
+	 * Returns the id of the BE made of the parts. BEs whose parts are equivalent share an id.
+	 */
+	public int getId(List<BE.BEPart> parts) {
+		// the key is the sequence of part ids, two chars per part
+		final int numParts = parts.size();
+		char[] key = new char[numParts*2];
+		for(int i = 0; i < numParts; i++) {
+			int partId = mParts.intern(parts.get(i).equivalentKey);
+			key[2*i] = (char)(partId >>> 16);
+			key[2*i+1] = (char)partId;
+		}
+		return mBEs.intern(new String(key));
+	}
+
+	/**
+	 * Returns the number of distinct BEs
+	 */
+	public int size() {
+		return mBEs.size();
+	}
+
+}
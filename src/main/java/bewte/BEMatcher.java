@@ -1,18 +1,18 @@
 package bewte;
 
 import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 import foal.list.IntArrayList;
 import foal.map.IntDoubleHashMap;
 import foal.map.IntIntHashMap;
 import foal.map.IntObjectHashMap;
+import foal.map.LongIntHashMap;
 
 import bewte.scoring.TallyFunction;
 
-import mathalgo.WeightedAssignmentSolver;
+import mathalgo.AssignmentAlgorithm;
 
 /**
  * Used for performing the BE matching between two sets of BEs. 
@@ -20,6 +20,8 @@ import mathalgo.WeightedAssignmentSolver;
  */
 public class BEMatcher {
 	
+	private final static AssignmentAlgorithm DEFAULT_ASSIGNMENT_ALGORITHM = new AssignmentAlgorithm.MinCostFlow();
+	
 	private List<BE> mBEList1;
 	private IntObjectHashMap<IntArrayList> mPart1ToIndex;
 	private int[] mPart1StrengthIndices;
@@ -28,16 +30,32 @@ public class BEMatcher {
 	private IntObjectHashMap<IntArrayList> mPart2ToIndex;
 	private int[] mPart2StrengthIndices;
 	
-	/** Contains edges between BEs from the two lists and a mapping of the transforms (encoded in the BitSet) used 
-	 *  originally used to map the BEs to each other
+	/** Contains edges between BEs from the two lists and the sets of transforms (encoded as bit masks) 
+	 *  originally used to map the BEs to each other. 
+	 *  Each edge (a pair of list indices) has a chain of masks: mEdgeFirstMask points into the mask arrays and 
+	 *  mMaskNext links the rest of the chain (-1 terminates it).
 	 */
-	private IntObjectHashMap<IntObjectHashMap<List<BitSet>>> mEdgeTable;
+	private LongIntHashMap mPairToEdge;
+	private int mNumEdges;
+	private int[] mEdgePart1 = new int[16];
+	private int[] mEdgePart2 = new int[16];
+	private int[] mEdgeFirstMask = new int[16];
+	private int mNumMasks;
+	private long[] mMasks = new long[16];
+	private int[] mMaskNext = new int[16];
 	
 	/** BE extraction rule weights */
 	private double[] mStrengths;
 	
 	private IntIntHashMap mBeToModelFrequency;
 	
+	/** Edge weights, side weights and result of the last solveIfChanged call */
+	private double[] mLastEdgeWeights;
+	private double mLastPart1Weight;
+	private double mLastPart2Weight;
+	private Object[] mLastResult;
+	private boolean mLastResultReused;
+	
 	public BEMatcher(double[] strengths, final List<BE> beList1, final List<BE> beList2, IntIntHashMap beToModelFrequency) {
 		mBeToModelFrequency = beToModelFrequency;
 		mStrengths = strengths;
@@ -50,7 +68,7 @@ public class BEMatcher {
 		mPart2ToIndex = new IntObjectHashMap<IntArrayList>(numPart2);
 		mPart2StrengthIndices = new int[numPart2];
 		
-		mEdgeTable = new IntObjectHashMap<IntObjectHashMap<List<BitSet>>>(numPart1);
+		mPairToEdge = new LongIntHashMap(numPart1);
 		
 		populate(mBEList1, mPart1ToIndex, mPart1StrengthIndices);
 		populate(mBEList2, mPart2ToIndex, mPart2StrengthIndices);
@@ -70,7 +88,7 @@ public class BEMatcher {
 		}
 	}
 	
-	public void updateEdge(BE be1, BE be2, BitSet bs) {
+	public void updateEdge(BE be1, BE be2, long mask) {
 		// I forget, but I think the equivList will never be of size > 1 if duplicates are ignored
 		IntArrayList equivList = mPart2ToIndex.get(be2.getEquivalentId());
 		if(equivList != null) {
@@ -79,83 +97,159 @@ public class BEMatcher {
 			
 			for(int i = 0; i < numPart1; i++) {
 				int i1 = part1UniqueList.get(i);
-				IntObjectHashMap<List<BitSet>> links = mEdgeTable.get(i1);
-				if(links == null) {
-					mEdgeTable.put(i1, links = new IntObjectHashMap<List<BitSet>>());
-				}
 				int numEquivIds = equivList.size();
 				for(int j = 0; j < numEquivIds; j++) {
 					int i2 = equivList.get(j);
-					List<BitSet> current = links.get(i2);
-					if(current == null) {
-						links.put(i2, current = new LinkedList<BitSet>());
-						current.add(bs);
+					long pair = ((long)i1 << 32) | (i2 & 0xFFFFFFFFL);
+					// stored as edge index + 1 since the map returns 0 for missing keys
+					int edge = mPairToEdge.get(pair)-1;
+					if(edge < 0) {
+						edge = addEdge(i1, i2);
+						mPairToEdge.put(pair, edge+1);
+						mEdgeFirstMask[edge] = addMask(mask, -1);
 					}
 					else {
 						boolean isSuperSet = false;
-						for(BitSet bsPrior : current) {
-							BitSet copy = new BitSet();
-							copy.or(bs);
-							copy.or(bsPrior);
-							if(copy.equals(bs)) {
+						int last = -1;
+						for(int m = mEdgeFirstMask[edge]; m >= 0; m = mMaskNext[m]) {
+							if((mMasks[m] & ~mask) == 0) {
 								isSuperSet = true;
 								break;
 							}
+							last = m;
 						}
 						// There is no point in adding a link that has a super set
 						// of an existing set of transforms since it could not have a 
 						// a higher weight (because no transform weight is > 1.0)
 						if(!isSuperSet) {
-							current.add(bs);
+							mMaskNext[last] = addMask(mask, -1);
 						}
 					}
-					//links.put(i2, Math.max(currentScore, bs));
 				}
 			}
 		}
 	}
+	
+	private int addEdge(int i1, int i2) {
+		if(mNumEdges == mEdgePart1.length) {
+			int newLength = mNumEdges*2;
+			mEdgePart1 = Arrays.copyOf(mEdgePart1, newLength);
+			mEdgePart2 = Arrays.copyOf(mEdgePart2, newLength);
+			mEdgeFirstMask = Arrays.copyOf(mEdgeFirstMask, newLength);
+		}
+		mEdgePart1[mNumEdges] = i1;
+		mEdgePart2[mNumEdges] = i2;
+		return mNumEdges++;
+	}
+	
+	private int addMask(long mask, int next) {
+		if(mNumMasks == mMasks.length) {
+			int newLength = mNumMasks*2;
+			mMasks = Arrays.copyOf(mMasks, newLength);
+			mMaskNext = Arrays.copyOf(mMaskNext, newLength);
+		}
+		mMasks[mNumMasks] = mask;
+		mMaskNext[mNumMasks] = next;
+		return mNumMasks++;
+	}
 
 	/**
 	 * 
 	 */
 	public Object[] solve(IntIntHashMap bitIndexToWeightIndex, double[] transformWeights, TallyFunction tallyFunction) {
-		
+		return solve(bitIndexToWeightIndex, transformWeights, tallyFunction, DEFAULT_ASSIGNMENT_ALGORITHM);
+	}
+	
+	/**
+	 * Same as above but with the given assignment solver 
+	 */
+	public Object[] solve(IntIntHashMap bitIndexToWeightIndex, double[] transformWeights, TallyFunction tallyFunction, AssignmentAlgorithm assignmentAlgorithm) {
+		// Sum up the total weight of the left side of the graph
+		double part1Weight = calcGraphSideWeight(mBEList1, mStrengths, mBeToModelFrequency, tallyFunction);
+		// Sum up the total weight of the right side of the graph
+		double part2Weight = calcGraphSideWeight(mBEList2, mStrengths, mBeToModelFrequency, tallyFunction);
+		return solve(bitIndexToWeightIndex, transformWeights, tallyFunction, assignmentAlgorithm, part1Weight, part2Weight);
+	}
+	
+	/**
+	 * Same as above but with the side weights (see calcGraphSideWeight) already known, 
+	 * as they are when a TopicScoringContext is shared by all the peers of a topic
+	 */
+	public Object[] solve(IntIntHashMap bitIndexToWeightIndex, double[] transformWeights, TallyFunction tallyFunction, AssignmentAlgorithm assignmentAlgorithm, double part1Weight, double part2Weight) {
+		return solve(calcEdgeWeights(bitIndexToWeightIndex, transformWeights, tallyFunction), assignmentAlgorithm, part1Weight, part2Weight);
+	}
+	
+	/**
+	 * Same as above, but the edge structure is kept between calls and the assignment is only solved 
+	 * again if the edge weights or the side weights differ from those of the previous call 
+	 * (for example, when only the weights of transforms that this graph doesn't use have changed).
+	 */
+	public Object[] solveIfChanged(IntIntHashMap bitIndexToWeightIndex, double[] transformWeights, TallyFunction tallyFunction, AssignmentAlgorithm assignmentAlgorithm, double part1Weight, double part2Weight) {
+		double[] edgeWeights = calcEdgeWeights(bitIndexToWeightIndex, transformWeights, tallyFunction);
+		mLastResultReused = mLastResult != null 
+						 && part1Weight == mLastPart1Weight 
+						 && part2Weight == mLastPart2Weight
+						 && Arrays.equals(edgeWeights, mLastEdgeWeights);
+		if(!mLastResultReused) {
+			mLastResult = solve(edgeWeights, assignmentAlgorithm, part1Weight, part2Weight);
+			mLastEdgeWeights = edgeWeights;
+			mLastPart1Weight = part1Weight;
+			mLastPart2Weight = part2Weight;
+		}
+		return mLastResult;
+	}
+	
+	/**
+	 * Returns true if the last solveIfChanged call returned the previous result
+	 */
+	public boolean isLastResultReused() {
+		return mLastResultReused;
+	}
+	
+	/**
+	 * Calculates the weight of each edge (0 for edges that can't be used)
+	 */
+	private double[] calcEdgeWeights(IntIntHashMap bitIndexToWeightIndex, double[] transformWeights, TallyFunction tallyFunction) {
+		double[] edgeWeights = new double[mNumEdges];
+		for(int e = 0; e < mNumEdges; e++) {
+			int job = mEdgePart2[e];
+			double max = 0.0;
+			BE be2 = mBEList2.get(job);
+			double tally = tallyFunction.tally((double)mBeToModelFrequency.get(be2.getEquivalentId()), be2);
+			for(int m = mEdgeFirstMask[e]; m >= 0; m = mMaskNext[m]) {
+				// Score is BEWEIGHT * PRODUCT(WEIGHT OF EACH TRANSFORM USED IN ORDER TO CREATE MAPPING)
+				// Hence, an exact match gets whatever the tallyFunction says the weight of the be is
+				double score = tally;
+				for (long bits = mMasks[m]; bits != 0; bits &= bits-1) {
+					score *= transformWeights[bitIndexToWeightIndex.get(Long.numberOfTrailingZeros(bits))];
+				}
+				if(score > max) {
+					max = score;
+				}
+			}
+			if(max > 0.0) { // should always be true?
+				edgeWeights[e] = max * mStrengths[mPart2StrengthIndices[job]];
+			}
+		}
+		return edgeWeights;
+	}
+	
+	private Object[] solve(double[] edgeWeights, AssignmentAlgorithm assignmentAlgorithm, double part1Weight, double part2Weight) {
 		// Create the mapping (left to right to matchWeight)
 		IntObjectHashMap<IntDoubleHashMap> edgeMap = new IntObjectHashMap<IntDoubleHashMap>();
-		IntArrayList keys = mEdgeTable.keys();
-		final int numKeys = keys.size();
-		for(int i = 0; i < numKeys; i++) {
-			int key = keys.get(i);
+		for(int e = 0; e < mNumEdges; e++) {
+			int key = mEdgePart1[e];
 			IntDoubleHashMap map = edgeMap.get(key);
 			if(map == null) {
 				edgeMap.put(key, map = new IntDoubleHashMap());
 			}
-			IntObjectHashMap<List<BitSet>> links = mEdgeTable.get(key);
-			IntArrayList jobs = links.keys();
-			final int numJobs = jobs.size();
-			for(int j = 0; j < numJobs; j++) {
-				int job = jobs.get(j);
-				List<BitSet> bitSets = links.get(job);
-				double max = 0.0;
-				for(BitSet bs : bitSets) {
-					// Score is BEWEIGHT * PRODUCT(WEIGHT OF EACH TRANSFORM USED IN ORDER TO CREATE MAPPING)
-					// Hence, an exact match gets whatever the tallyFunction says the weight of the be is
-					double score = tallyFunction.tally((double)mBeToModelFrequency.get(mBEList2.get(job).getEquivalentId()),mBEList2.get(job));
-					for (int t = bs.nextSetBit(0); t >= 0; t = bs.nextSetBit(t+1)) {
-						score *= transformWeights[bitIndexToWeightIndex.get(t)];
-     				} 
-					if(score > max) {
-						max = score;
-					}
-				}
-				if(max > 0.0) { // should always be true?
-					map.put(job, max * mStrengths[mPart2StrengthIndices[job]]);
-				}
+			if(edgeWeights[e] > 0.0) {
+				map.put(mEdgePart2[e], edgeWeights[e]);
 			}
 		}
 		
 		// 
-		int[][] assignments = WeightedAssignmentSolver.assignment(mBEList1.size(), mBEList2.size(), edgeMap);
+		int[][] assignments = assignmentAlgorithm.assignment(mBEList1.size(), mBEList2.size(), edgeMap);
 		double result = 0.0;
 		List<BE> matchedBEs = new ArrayList<BE>(assignments.length);
 		for(int[] assignment : assignments) {
@@ -170,23 +264,22 @@ public class BEMatcher {
 			matchedBEs.add(mBEList2.get(assignment[1]));
 		}
 		
-		// Sum up the total weight of the left side of the graph
-		double part1Weight = calcGraphSideWeight(mBEList1, mPart1StrengthIndices, tallyFunction);
-		// Sum up the total weight of the right side of the graph
-		double part2Weight = calcGraphSideWeight(mBEList2, mPart2StrengthIndices, tallyFunction);
-		
 		double precision = part1Weight == 0 ? 0 : result / part1Weight;
 		double recall = part2Weight == 0 ? 0 : result / part2Weight;
 		return new Object[]{precision, recall, matchedBEs};
 	}
 	
-	private double calcGraphSideWeight(List<BE> beList, int[] strengthIndices, TallyFunction tallyFunction) {
+	/**
+	 * Total weight of one side of the graph: the sum of each BE's rule weight times its tally
+	 */
+	public static double calcGraphSideWeight(List<BE> beList, double[] strengths, IntIntHashMap beToModelFrequency, TallyFunction tallyFunction) {
 		double graphSideWeight = 0;
 		final int part = beList.size();
 		for(int i = 0; i < part; i++) {
+			BE be = beList.get(i);
 			// get the weight of the BE based upon frequency (1.0 for Binary tally function)
-			double freqWeight = tallyFunction.tally((double)mBeToModelFrequency.get(beList.get(i).getEquivalentId()),beList.get(i));
-			graphSideWeight += mStrengths[strengthIndices[i]] * freqWeight;
+			double freqWeight = tallyFunction.tally((double)beToModelFrequency.get(be.getEquivalentId()), be);
+			graphSideWeight += strengths[be.getCoeff()-1] * freqWeight;
 		}
 		return graphSideWeight;
 	}
@@ -1,7 +1,10 @@
 package bewte;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -12,14 +15,29 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import tratz.jwni.WordNet;
+import tratz.runpipe.util.ContentCache;
+import tratz.runpipe.util.Shard;
+import tratz.runpipe.util.ShardManifest;
 
+import foal.list.LongArrayList;
 import foal.map.IntObjectHashMap;
 
 import bewte.io.BESetReader;
+import bewte.io.BEXBuffer;
+import bewte.io.BinaryBEXWriter;
 import bewte.io.TransformInfoReader;
 import bewte.names.NameExtractor;
+import bewte.transforms.AbstractBETransform;
 import bewte.transforms.BETransform;
 import bewte.util.BEUtils;
 
@@ -27,6 +45,11 @@ public class BEXpander {
 
 	public static final int MAX_PER_DIR = 200;
 	
+	public static final String TEXT_FORMAT = "text";
+	public static final String BINARY_FORMAT = "binary";
+	
+	public static final long DEFAULT_CACHE_SIZE_MB = 1024;
+	
 	public static void main(String[] args) throws Exception {
 		File beDir = new File(args[0]);
 		File outputDir = new File(args[1]);
@@ -36,9 +59,133 @@ public class BEXpander {
 		String referenceFilePattern = args[5];
 		File transformsListFile = new File(args[6]);
 		NameExtractor topicNameGenerator = (NameExtractor)Class.forName(args[7]).newInstance();
+		// Optional output format, text (default) or binary (see BinaryBEXWriter)
+		String outputFormat = args.length > 8 ? args[8] : TEXT_FORMAT;
+		if(!outputFormat.equals(TEXT_FORMAT) && !outputFormat.equals(BINARY_FORMAT)) {
+			throw new IllegalArgumentException("Unknown output format: " + outputFormat);
+		}
+		boolean binaryOutput = outputFormat.equals(BINARY_FORMAT);
+		// Optional number of threads; peer files are expanded in parallel (default=1)
+		int numThreads = args.length > 9 ? Integer.parseInt(args[9]) : 1;
+		// Optional cache directory; peers whose BEs, references and configuration are unchanged are copied from the cache (default=none)
+		String cacheDir = args.length > 10 ? args[10] : "";
+		// Optional size limit of the cache in megabytes (default=1024)
+		long cacheSizeMB = args.length > 11 ? Long.parseLong(args[11]) : DEFAULT_CACHE_SIZE_MB;
+		// Optional shard of the topics to expand, as index/numShards (default=none, all the topics in the range)
+		Shard shard = args.length > 12 && args[12].length() > 0 ? Shard.parse(args[12]) : null;
+		// Optional file to write a manifest of the expanded files to on completion (see ShardManifest; default=none)
+		File manifestFile = args.length > 13 && args[13].length() > 0 ? new File(args[13]) : null;
 		
 		new WordNet(new File(wordNetDir).getAbsoluteFile().toURI().toString());
 		
+		// Transforms keep per-peer state (and some aren't thread safe) so each worker gets its own pipeline
+		TransformPipelines pipelines = new TransformPipelines(transformsListFile, numThreads);
+		ContentCache cache = null;
+		String cacheFingerprint = null;
+		if(cacheDir.length() > 0) {
+			cache = new ContentCache(new File(cacheDir), cacheSizeMB << 20);
+			cacheFingerprint = new ContentCache.KeyBuilder().add(pipelines.getFingerprint()).addFingerprint(new File(wordNetDir)).toKey();
+		}
+		ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+		try {
+			List<File> expandedFiles = expand(beDir, outputDir, startIndex, endIndex, referenceFilePattern, topicNameGenerator, binaryOutput, pipelines, executor, cache, cacheFingerprint, shard);
+			if(manifestFile != null) {
+				List<String> names = new ArrayList<String>();
+				for(File file : expandedFiles) {
+					names.add(file.getName());
+				}
+				new ShardManifest(shard, names).write(manifestFile);
+			}
+		}
+		finally {
+			if(executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * A pool of loaded transform pipelines. A pipeline is borrowed for expanding one peer at a time,
+	 * so the pool can be shared by concurrent expansions and kept between runs.
+	 */
+	public static class TransformPipelines {
+		
+		private final IntObjectHashMap<String> mBitToTransformName = new IntObjectHashMap<String>();
+		private final Map<String, Integer> mTransformNameToBitIndex = new HashMap<String, Integer>();
+		private final List<String> mTransformNames = new ArrayList<String>();
+		private final BlockingQueue<List> mPipelines;
+		private final String mFingerprint;
+		
+		public TransformPipelines(File transformsListFile, int numPipelines) throws Exception {
+			mFingerprint = new ContentCache.KeyBuilder().addCodeFingerprint(BEXpander.class).addContents(transformsListFile).toKey();
+			mPipelines = new ArrayBlockingQueue<List>(numPipelines);
+			mPipelines.add(createTransformPipeline(transformsListFile, new ArrayList(), mBitToTransformName, mTransformNameToBitIndex));
+			for(int bit = 0; bit < mBitToTransformName.size(); bit++) {
+				mTransformNames.add(mBitToTransformName.get(bit));
+			}
+			for(int i = 1; i < numPipelines; i++) {
+				mPipelines.add(createTransformPipeline(transformsListFile, new ArrayList(), new IntObjectHashMap<String>(), new HashMap<String, Integer>()));
+			}
+		}
+		
+		/**
+		 * Identifies the transform list and the code, for cache keys
+		 */
+		public String getFingerprint() {
+			return mFingerprint;
+		}
+	}
+	
+	public static void expand(File beDir, 
+							  File outputDir, 
+							  int startIndex, 
+							  int endIndex, 
+							  String referenceFilePattern, 
+							  NameExtractor topicNameGenerator, 
+							  boolean binaryOutput, 
+							  TransformPipelines pipelines, 
+							  ExecutorService executor) throws Exception {
+		expand(beDir, outputDir, startIndex, endIndex, referenceFilePattern, topicNameGenerator, binaryOutput, pipelines, executor, null, null);
+	}
+	
+	/**
+	 * Expands the BE files of topics startIndex..endIndex-1 (endIndex < 0 for all topics) into outputDir.
+	 * Peers are expanded on the executor if one is given, otherwise in the calling thread.
+	 * If a cache is given, a peer's BEX file is taken from the cache when the peer's BEs, the topic's references
+	 * and cacheFingerprint (which should identify the transforms and WordNet) are unchanged.
+	 * WordNet must already be loaded.
+	 */
+	public static void expand(File beDir, 
+							  File outputDir, 
+							  int startIndex, 
+							  int endIndex, 
+							  String referenceFilePattern, 
+							  NameExtractor topicNameGenerator, 
+							  boolean binaryOutput, 
+							  TransformPipelines pipelines, 
+							  ExecutorService executor,
+							  ContentCache cache,
+							  String cacheFingerprint) throws Exception {
+		expand(beDir, outputDir, startIndex, endIndex, referenceFilePattern, topicNameGenerator, binaryOutput, pipelines, executor, cache, cacheFingerprint, null);
+	}
+	
+	/**
+	 * As above, but expands only the topics in the range that belong to the shard (by topic name; all of them if 
+	 * shard is null). Returns the BE files that were expanded.
+	 */
+	public static List<File> expand(File beDir, 
+							  File outputDir, 
+							  int startIndex, 
+							  int endIndex, 
+							  String referenceFilePattern, 
+							  NameExtractor topicNameGenerator, 
+							  boolean binaryOutput, 
+							  TransformPipelines pipelines, 
+							  ExecutorService executor,
+							  ContentCache cache,
+							  String cacheFingerprint,
+							  Shard shard) throws Exception {
+		List<File> expandedFiles = new ArrayList<File>();
 		int currentDirCount = 0;
 		int dirCount = 0;
 		File currentDir = null;
@@ -46,12 +193,6 @@ public class BEXpander {
 		format.setGroupingUsed(false);
 		format.setMaximumFractionDigits(0);
 		format.setMinimumIntegerDigits(8);
-			
-		// Create transform pipeline
-		IntObjectHashMap<String> bitToTransformName = new IntObjectHashMap<String>();
-		List transforms = new ArrayList();
-		Map<String, Integer> transformNameToBitIndex = new HashMap<String, Integer>();
-		createTransformPipeline(transformsListFile, transforms, bitToTransformName, transformNameToBitIndex);
 		
 		List<File> befiles = new ArrayList<File>();
 		BEUtils.getFiles(beDir, befiles);
@@ -76,46 +217,38 @@ public class BEXpander {
 		System.err.println("Number of Topics: " + numTopics);
 		for (int t = startIndex; t < endIndex; t++) {
 			String topic = topics.get(t);
-			
+			if(shard != null && !shard.contains(topic)) {
+				continue;
+			}
+		
 			List<File> filesForTopic = BEUtils.getFilesForTopic(topic, befiles, topicNameGenerator);
 			List<File> goldenFiles = BEUtils.getFiles(filesForTopic, referenceFilePattern);
-			
+		
 			System.err.println("Topic: " + topic + " " + (t+1) + " of " + numTopics + " with " + filesForTopic.size() + " entries inc " + goldenFiles.size() + " refs");
 			topicToFiles.put(topic, filesForTopic);
 			topicToGoldenFiles.put(topic, goldenFiles);
-			
+		
 			for(File file : filesForTopic) {
 				fileToLemmaSet.put(file, BESetReader.getLemmaSet(file));
 				List<BE> beList = new ArrayList<BE>();
-				List<Map<BE, List<BitSet>>> map = new ArrayList<Map<BE, List<BitSet>>>();
-				BESetReader.getBeList(beList, file, null, null, null, map, bePartMap, true);
+				List<Map<BE, LongArrayList>> map = new ArrayList<Map<BE, LongArrayList>>();
+				BESetReader.getBeList(beList, file, null, null, null, map, bePartMap, null, true);
 				fileToBes.put(file, beList);
 				String filename = file.getName();
 				String system = filename.substring(filename.lastIndexOf('.') + 1, filename.length());
 				systemsSet.add(system);
 				fileToSystem.put(file, system);
 			}		
-			
+		
 			List<File> modelFiles = topicToGoldenFiles.get(topic);
 			List<File> peerFiles = topicToFiles.get(topic);
-				
-			final int numModels = modelFiles.size();
-			
-			List<BE> goldenBEsSuperList = new ArrayList<BE>();
-			
-			Set<String> modelLemmaSet = new HashSet<String>();	
-			
-			for(int m = 0; m < numModels; m++) {
-				File modelFile = modelFiles.get(m);
-				List<Set<String>> goldenLemmas = fileToLemmaSet.get(modelFile);
-				modelLemmaSet.addAll(goldenLemmas.get(0));
-				modelLemmaSet.addAll(goldenLemmas.get(1));
-				modelLemmaSet.addAll(goldenLemmas.get(2));
-				List<BE> truthBes = fileToBes.get(modelFile);
-				goldenBEsSuperList.addAll(truthBes);
-			}
-			
-			
+			TopicModels models = new TopicModels(modelFiles, fileToBes, fileToLemmaSet);
+		
+			// Results of the transforms that don't depend on the peer are shared by all the peers of the topic
+			TransformCache transformCache = new TransformCache();
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			// cache keys of the BEX files being written
+			Map<File, String> outputToCacheKey = new HashMap<File, String>();
 			final int numPeers = peerFiles.size();
 			for(int p = 0; p < numPeers; p++) {
 				currentDirCount++;
@@ -126,12 +259,41 @@ public class BEXpander {
 					dirCount++;
 				}
 				File peerFile = peerFiles.get(p);
+				expandedFiles.add(peerFile);
 				System.err.println("File: " + peerFile.getName());
 				List<BE> summaryBes = fileToBes.get(peerFile);
 				File outputFile = new File(currentDir, peerFile.getName());
-				applyTransforms(outputFile, bitToTransformName, transformNameToBitIndex, transforms, summaryBes, goldenBEsSuperList, modelLemmaSet);
+				if(cache != null) {
+					String cacheKey = createCacheKey(cacheFingerprint, binaryOutput, peerFile, modelFiles);
+					byte[] cached = cache.get(cacheKey);
+					if(cached != null) {
+						writeFully(outputFile, cached);
+						continue;
+					}
+					outputToCacheKey.put(outputFile, cacheKey);
+				}
+				ExpansionTask task = new ExpansionTask(outputFile, binaryOutput ? pipelines.mTransformNames : null, null, pipelines, transformCache, summaryBes, models);
+				if(executor == null) {
+					task.call();
+				}
+				else {
+					futures.add(executor.submit(task));
+				}
 			}
-			
+			// Wait for the topic to finish (rethrowing any failure)
+			for(Future<Object> future : futures) {
+				future.get();
+			}
+			for(Map.Entry<File, String> entry : outputToCacheKey.entrySet()) {
+				try {
+					cache.put(entry.getValue(), ContentCache.readFully(entry.getKey()));
+				}
+				catch(IOException ioe) {
+					// the cache is only an optimization; the output file is there either way
+					System.err.println("Unable to cache " + entry.getKey() + ": " + ioe.getMessage());
+				}
+			}
+		
 			// Clean up memory
 			List<File> files = topicToFiles.remove(topic);
 			topicToGoldenFiles.remove(topic);
@@ -140,7 +302,162 @@ public class BEXpander {
 				fileToLemmaSet.remove(file);
 			}
 			System.gc();
-		}		
+		}
+		return expandedFiles;
+	}
+	
+	private static String createCacheKey(String cacheFingerprint, boolean binaryOutput, File peerFile, List<File> referenceFiles) throws IOException {
+		ContentCache.KeyBuilder builder = new ContentCache.KeyBuilder().add(cacheFingerprint).add(binaryOutput ? BINARY_FORMAT : TEXT_FORMAT);
+		builder.addContents(peerFile);
+		for(File referenceFile : referenceFiles) {
+			builder.addContents(referenceFile);
+		}
+		return builder.toKey();
+	}
+	
+	private static void writeFully(File file, byte[] data) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			os.write(data);
+		}
+		finally {
+			os.close();
+		}
+	}
+	
+	/**
+	 * Expands the BEs of one topic in memory, returning each peer's BEs and transformed BEs in place of the
+	 * BEX file that expand() would write. If debugDir is non-null the (text) BEX files are written there as well.
+	 * WordNet must already be loaded.
+	 */
+	public static Map<File, BEXBuffer> expandTopic(List<File> peerFiles, 
+												   List<File> referenceFiles, 
+												   Map<File, List<BE>> fileToBes, 
+												   Map<File, List<Set<String>>> fileToLemmaSet, 
+												   TransformPipelines pipelines, 
+												   ExecutorService executor, 
+												   File debugDir) throws Exception {
+		TopicModels models = new TopicModels(referenceFiles, fileToBes, fileToLemmaSet);
+		TransformCache cache = new TransformCache();
+		Map<File, BEXBuffer> peerToBuffer = new HashMap<File, BEXBuffer>();
+		List<Future<Object>> futures = new ArrayList<Future<Object>>();
+		for(File peerFile : peerFiles) {
+			BEXBuffer buffer = new BEXBuffer(pipelines.mTransformNames);
+			peerToBuffer.put(peerFile, buffer);
+			ExpansionTask task = new ExpansionTask(debugDir == null ? null : new File(debugDir, peerFile.getName()), null, buffer, pipelines, cache, fileToBes.get(peerFile), models);
+			if(executor == null) {
+				task.call();
+			}
+			else {
+				futures.add(executor.submit(task));
+			}
+		}
+		for(Future<Object> future : futures) {
+			future.get();
+		}
+		return peerToBuffer;
+	}
+	
+	/**
+	 * The reference BEs of a topic and the strings and lemmas derived from them
+	 */
+	private static class TopicModels {
+		
+		final List<BE> truthBes = new ArrayList<BE>();
+		final Set<String> lemmaSet = new HashSet<String>();
+		final Set<String> strings = new HashSet<String>();
+		final Set<String> partStrings = new HashSet<String>();
+		
+		public TopicModels(List<File> modelFiles, Map<File, List<BE>> fileToBes, Map<File, List<Set<String>>> fileToLemmaSet) {
+			for(File modelFile : modelFiles) {
+				List<Set<String>> goldenLemmas = fileToLemmaSet.get(modelFile);
+				lemmaSet.addAll(goldenLemmas.get(0));
+				lemmaSet.addAll(goldenLemmas.get(1));
+				lemmaSet.addAll(goldenLemmas.get(2));
+				truthBes.addAll(fileToBes.get(modelFile));
+			}
+			for(BE be : truthBes) {
+				strings.add(be.toTextString());
+				for(BE.BEPart part : be.getParts()) {
+					partStrings.add(part.text);
+					partStrings.add(part.text.toLowerCase());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Expands the BEs of one peer file using a transform pipeline borrowed from the pool
+	 */
+	private static class ExpansionTask implements Callable<Object> {
+		
+		private final File mOutputFile;
+		private final List<String> mBinaryTransformNames;
+		private final BEXBuffer mBuffer;
+		private final TransformPipelines mPipelines;
+		private final TransformCache mCache;
+		private final List<BE> mSummaryBes;
+		private final TopicModels mModels;
+		
+		public ExpansionTask(File outputFile, 
+							 List<String> binaryTransformNames, 
+							 BEXBuffer buffer,
+							 TransformPipelines pipelines,
+							 TransformCache cache,
+							 List<BE> summaryBes, 
+							 TopicModels models) {
+			mOutputFile = outputFile;
+			mBinaryTransformNames = binaryTransformNames;
+			mBuffer = buffer;
+			mPipelines = pipelines;
+			mCache = cache;
+			mSummaryBes = summaryBes;
+			mModels = models;
+		}
+		
+		public Object call() throws Exception {
+			List transforms = mPipelines.mPipelines.take();
+			try {
+				applyTransforms(mOutputFile, mBinaryTransformNames, mBuffer, mPipelines.mBitToTransformName, mPipelines.mTransformNameToBitIndex, transforms, mCache, mSummaryBes, mModels.truthBes, mModels.lemmaSet, mModels.strings, mModels.partStrings);
+			}
+			finally {
+				mPipelines.mPipelines.add(transforms);
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Memoizes, per transform and BE, the results of the transforms that don't depend on the peer.
+	 * Shared by the workers expanding the peers of a topic. 
+	 */
+	private static class TransformCache {
+		
+		private final static List<BE> NO_RESULT = new ArrayList<BE>(0);
+		
+		private final ConcurrentMap<String, ConcurrentMap<String, List<BE>>> mTransformToResults = new ConcurrentHashMap<String, ConcurrentMap<String, List<BE>>>();
+		
+		public List<BE> transform(BETransform transform, BE be, Set<String> allModelStrings) {
+			if(!(transform instanceof AbstractBETransform) || ((AbstractBETransform)transform).dependsOnPeer()) {
+				return transform.transform(be, allModelStrings);
+			}
+			ConcurrentMap<String, List<BE>> results = mTransformToResults.get(transform.getName());
+			if(results == null) {
+				mTransformToResults.putIfAbsent(transform.getName(), new ConcurrentHashMap<String, List<BE>>());
+				results = mTransformToResults.get(transform.getName());
+			}
+			// the rule is part of the key since some transforms only apply to certain rules
+			String key = be.getRule() + BEConstants.BE_SEPARATOR_STRING + be.toString();
+			List<BE> transformed = results.get(key);
+			if(transformed == null) {
+				transformed = transform.transform(be, allModelStrings);
+				if(transformed == null) {
+					transformed = NO_RESULT;
+				}
+				results.putIfAbsent(key, transformed);
+			}
+			return transformed == NO_RESULT ? null : transformed;
+		}
 	}
 
 	private static List createTransformPipeline(File transformFile, List transforms, IntObjectHashMap<String> bitToTransformName,  
@@ -172,7 +489,11 @@ public class BEXpander {
 	}
 
 	
-	private static void applyTransforms(File outputFile, IntObjectHashMap<String> bitToTransformName, Map<String, Integer> transformNameToBitIndex, List transforms, List<BE> summaryBes, List<BE> truthBes, Set<String> modelLemmaSet) throws Exception {
+	/**
+	 * Writes the BEs and their transformed versions to the output file (if any), in the binary format if 
+	 * binaryTransformNames (the name of each transform bit) is non-null and as text otherwise, and to the buffer (if any).
+	 */
+	private static void applyTransforms(File outputFile, List<String> binaryTransformNames, BEXBuffer buffer, IntObjectHashMap<String> bitToTransformName, Map<String, Integer> transformNameToBitIndex, List transforms, TransformCache cache, List<BE> summaryBes, List<BE> truthBes, Set<String> modelLemmaSet, Set<String> modelStrings, Set<String> modelPartStrings) throws Exception {
 		int numTransforms = 0;
 	
 		for(Object tObj : transforms) {
@@ -188,29 +509,43 @@ public class BEXpander {
 				}
 			}
 		}
-		Set<String> modelStrings = new HashSet<String>();
-		Set<String> modelPartStrings = new HashSet<String>();
-		for(BE be : truthBes) {
-			modelStrings.add(be.toTextString().toLowerCase());
-			for(BE.BEPart part : be.getParts()) {
-				modelPartStrings.add(part.text);
-				modelPartStrings.add(part.text.toLowerCase());
+		BitSet bs = new BitSet(numTransforms);
+		PrintWriter writer = null;
+		BinaryBEXWriter binaryWriter = null;
+		if(outputFile != null) {
+			if(binaryTransformNames != null) {
+				binaryWriter = new BinaryBEXWriter(outputFile, binaryTransformNames);
+			}
+			else {
+				writer = new PrintWriter(new FileWriter(outputFile));
 			}
 		}
-		
-		BitSet bs = new BitSet(numTransforms);
-		PrintWriter writer = new PrintWriter(new FileWriter(outputFile));
 		for(BE be : summaryBes) {
-			writer.println(be.getRule() + BEConstants.BE_SEPARATOR_STRING + be.toString());
+			if(binaryWriter != null) {
+				binaryWriter.addBE(be);
+			}
+			if(writer != null) {
+				writer.println(be.getRule() + BEConstants.BE_SEPARATOR_STRING + be.toString());
+			}
+			if(buffer != null) {
+				buffer.addBE(be);
+			}
 			Map<String, List<BitSet>> newBeToTransformSet = new HashMap<String, List<BitSet>>();
 			String beString = be.toString().toLowerCase();
-			applyTransforms(writer, bitToTransformName, 0, transformNameToBitIndex, transforms, numTransforms, be, beString, be, bs, newBeToTransformSet, modelStrings, modelPartStrings);
+			applyTransforms(writer, binaryWriter, buffer, cache, bitToTransformName, 0, transformNameToBitIndex, transforms, numTransforms, be, beString, be, bs, newBeToTransformSet, modelStrings, modelPartStrings);
+		}
+		if(binaryWriter != null) {
+			binaryWriter.close();
+		}
+		if(writer != null) {
+			writer.close();
 		}
-		writer.close();
-		
 	}
 	
 	private static void applyTransforms(PrintWriter writer, 
+										BinaryBEXWriter binaryWriter,
+										BEXBuffer buffer,
+										TransformCache cache,
 										IntObjectHashMap<String> bitToTransformName, 
 										int tIndex, 
 										Map<String, Integer> transformNameToBitIndex, 
@@ -236,17 +571,13 @@ public class BEXpander {
 			}
 			for(BETransform bet : tList) {
 				BETransform t = (BETransform)bet;
-				List<BE> transformedBes = t.transform(be, bePartStrings);
+				List<BE> transformedBes = cache.transform(t, be, bePartStrings);
 				if(transformedBes != null) {
 					BitSet newBitSet = new BitSet(numTransforms);
 					newBitSet.or(oldBitSet);
 					newBitSet.set(transformNameToBitIndex.get(t.getName()));
 					
-					StringBuilder buf = new StringBuilder();
-					for (int bit = newBitSet.nextSetBit(0); bit >= 0; bit = newBitSet.nextSetBit(bit+1)) {
-						buf.append(bitToTransformName.get(bit)).append(":");
-     				} 
-					final String transformString = buf.toString();
+					String transformString = null;
 					for(BE transformedBe : transformedBes) {
 						String beString = transformedBe.toString().toLowerCase();
 						if(!beString.equals(origBeString)) {
@@ -256,29 +587,48 @@ public class BEXpander {
 							}
 							boolean isSuperSet = false;
 							for(BitSet bsPrior : bitSets) {
-								BitSet superSet = new BitSet();
-								superSet.or(newBitSet);
-								superSet.or(bsPrior);
-								if(superSet.equals(newBitSet)) {
-									isSuperSet = true;
+								// the new set is a superset of the prior one unless one of the prior's transforms is missing
+								isSuperSet = true;
+								for(int bit = bsPrior.nextSetBit(0); bit >= 0; bit = bsPrior.nextSetBit(bit+1)) {
+									if(!newBitSet.get(bit)) {
+										isSuperSet = false;
+										break;
+									}
+								}
+								if(isSuperSet) {
 									break;
 								}
 							}
 							if(!isSuperSet) {
 								bitSets.add(newBitSet);
 							
-								if(modelStrings.contains(transformedBe.toTextString().toLowerCase())) {
-									String transformedBEString = transformedBe.getRule() + BEConstants.BE_SEPARATOR_STRING + transformedBe.toString();
-									writer.println("\tr" + transformedBEString + "\t" + transformString);
+								if(modelStrings.contains(transformedBe.toTextString())) {
+									if(binaryWriter != null) {
+										binaryWriter.addTransformedBE(transformedBe, newBitSet);
+									}
+									if(buffer != null) {
+										buffer.addTransformedBE(transformedBe, newBitSet);
+									}
+									if(writer != null) {
+										if(transformString == null) {
+											StringBuilder buf = new StringBuilder();
+											for (int bit = newBitSet.nextSetBit(0); bit >= 0; bit = newBitSet.nextSetBit(bit+1)) {
+												buf.append(bitToTransformName.get(bit)).append(":");
+											}
+											transformString = buf.toString();
+										}
+										String transformedBEString = transformedBe.getRule() + BEConstants.BE_SEPARATOR_STRING + transformedBe.toString();
+										writer.println("\tr" + transformedBEString + "\t" + transformString);
+									}
 								}
 							
-								applyTransforms(writer, bitToTransformName, nextIndex, transformNameToBitIndex, transforms, numTransforms, origBe, origBeString, transformedBe, newBitSet, newBeToTransformSet, modelStrings, bePartStrings);	
+								applyTransforms(writer, binaryWriter, buffer, cache, bitToTransformName, nextIndex, transformNameToBitIndex, transforms, numTransforms, origBe, origBeString, transformedBe, newBitSet, newBeToTransformSet, modelStrings, bePartStrings);	
 							}
 						}
 					}
 				}
 			}
-			applyTransforms(writer, bitToTransformName, nextIndex, transformNameToBitIndex, transforms, numTransforms, origBe, origBeString, be, oldBitSet, newBeToTransformSet, modelStrings, bePartStrings);
+			applyTransforms(writer, binaryWriter, buffer, cache, bitToTransformName, nextIndex, transformNameToBitIndex, transforms, numTransforms, origBe, origBeString, be, oldBitSet, newBeToTransformSet, modelStrings, bePartStrings);
 		}
 	}
 
@@ -1,26 +1,36 @@
 package bewte;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import foal.list.DoubleArrayList;
+import foal.list.LongArrayList;
 import foal.map.IntIntHashMap;
 import foal.map.IntObjectHashMap;
+import mathalgo.AssignmentAlgorithm;
+import mathalgo.AssignmentAlgorithms;
+import mathalgo.RecordingAssignmentAlgorithm;
 import bewte.BE.BEPart;
 import bewte.endanalysis.AbstractEndAnalyzer;
-import bewte.endanalysis.EndAnalyzer;
 import bewte.io.BESetReader;
+import bewte.io.BEXBuffer;
 import bewte.io.TransformInfoReader;
 import bewte.names.NameExtractor;
 import bewte.scoring.TallyFunction;
@@ -34,6 +44,17 @@ import bewte.util.BEUtils;
  */
 public class BEwT_E {
 	
+	/** System property naming a file to record every BE matching graph to */
+	public final static String RECORD_ASSIGNMENTS_PROPERTY = "bewte_record_assignments";
+	
+	/** Topic loading modes: read every topic up front, read one topic at a time, or one at a time while reading the next in the background */
+	public final static String LOAD_ALL = "all";
+	public final static String LOAD_STREAMING = "streaming";
+	public final static String LOAD_PREFETCH = "prefetch";
+	
+	/** Number of topics whose peers are scored concurrently when topics are streamed and there are several threads */
+	public final static int STREAMED_TOPICS_IN_FLIGHT = 2;
+	
 	private class CmdArgs {
 		public final static int BE_DIRS_INDEX = 0;
 		public final static int SYSTEM_LEVEL_OUTPUT_FILE_INDEX = 1;
@@ -47,6 +68,9 @@ public class BEwT_E {
 		public final static int END_PROCESSOR_CONFIG_INDEX = 9;
 		public final static int TOPIC_NAME_GENERATOR_INDEX = 10;
 		public final static int FILE_PATTERN_INDEX = 11;
+		public final static int NUM_THREADS_INDEX = 12;
+		public final static int ASSIGNMENT_ALGORITHM_INDEX = 13;
+		public final static int TOPIC_LOADING_INDEX = 14;
 		
 		String[] beDirs;
 		File systemLevelOutputFile;
@@ -60,6 +84,9 @@ public class BEwT_E {
 		File endProcessorConfig;
 		NameExtractor topicNameGenerator;
 		String filePattern;
+		int numThreads;
+		AssignmentAlgorithm assignmentAlgorithm;
+		String topicLoading;
 		
 		public CmdArgs init(String[] args) throws Exception {
 			// Directory containing BE files
@@ -86,22 +113,62 @@ public class BEwT_E {
 			topicNameGenerator = (NameExtractor)Class.forName(args[TOPIC_NAME_GENERATOR_INDEX]).newInstance();
 			// Regex pattern for limiting which BE files are included
 			filePattern = args[FILE_PATTERN_INDEX];
+			// Number of threads used for scoring peer summaries (optional, default=1)
+			numThreads = args.length > NUM_THREADS_INDEX ? Integer.parseInt(args[NUM_THREADS_INDEX]) : 1;
+			// Name of the assignment solver used for BE matching (optional, default=mincostflow)
+			assignmentAlgorithm = AssignmentAlgorithms.forName(args.length > ASSIGNMENT_ALGORITHM_INDEX ? args[ASSIGNMENT_ALGORITHM_INDEX] : AssignmentAlgorithms.DEFAULT);
+			// How BE files are loaded: all, streaming or prefetch (optional, default=all)
+			topicLoading = args.length > TOPIC_LOADING_INDEX ? args[TOPIC_LOADING_INDEX] : LOAD_ALL;
+			if(!topicLoading.equals(LOAD_ALL) && !topicLoading.equals(LOAD_STREAMING) && !topicLoading.equals(LOAD_PREFETCH)) {
+				throw new IllegalArgumentException("Unknown topic loading mode: " + topicLoading);
+			}
+			// The matching graphs can be recorded for AssignmentSolverRegression
+			String recordFile = System.getProperty(RECORD_ASSIGNMENTS_PROPERTY);
+			if(recordFile != null) {
+				assignmentAlgorithm = new RecordingAssignmentAlgorithm(assignmentAlgorithm, new File(recordFile));
+			}
 			
 			// for convenience, this method returns a reference to the object
 			return this;
 		}
 	}
 	
+	// Where the progress of the evaluation is logged
+	private final PrintStream mLog;
+	
+	public BEwT_E() {
+		this(System.out);
+	}
+	
+	public BEwT_E(PrintStream log) {
+		mLog = log;
+	}
+	
 	public static void main(String[] args) throws Exception {
 		new BEwT_E().evaluate(args);
 	}
 	
 	public void evaluate(String[] args) throws Exception {
+		evaluate(args, null);
+	}
+	
+	/**
+	 * Scores BEs held in memory (as returned by BEXpander.expandTopic, keyed by BE file) if fileToBEXs is non-null,
+	 * in which case the BE directories and file pattern arguments are ignored, and otherwise the BEX files
+	 */
+	public void evaluate(String[] args, Map<File, BEXBuffer> fileToBEXs) throws Exception {
 		// Read the params
 		CmdArgs params = new CmdArgs().init(args);
 		
 		// Create the end analysis object (not needed typically)
-		EndAnalyzer endAnalyzerObject = AbstractEndAnalyzer.createEnder(params.endProcessorConfig);
+		AbstractEndAnalyzer endAnalyzerObject = AbstractEndAnalyzer.createEnder(params.endProcessorConfig);
+		// When iterating, the analyzer can ask for the BE matchers to be kept between iterations. A matcher references
+		// the BE lists of its topic, so caching is turned off when streaming (it would keep every topic in memory).
+		boolean cacheMatchers = endAnalyzerObject.isCachingMatchers() && params.topicLoading.equals(LOAD_ALL);
+		if(cacheMatchers != endAnalyzerObject.isCachingMatchers()) {
+			mLog.println("BE matchers are not cached when topics are loaded in " + params.topicLoading + " mode");
+		}
+		MatcherCache matcherCache = cacheMatchers ? new MatcherCache() : null;
 		
 		// Read BE extraction rule to rule weights
 		IntIntHashMap ruleToWeightIndex = readRuleToWeightIndex(params.beExtractionRuleList);
@@ -109,18 +176,25 @@ public class BEwT_E {
 		
 		List<String> topics = new ArrayList<String>(); // Why a list and not a set???
 		List<File> allFiles = new ArrayList<File>();
-		for(String dir : params.beDirs) {
-			File fileDir = new File(dir);
-			// Collect all BE files under this directory and its subdirectories
-			List<File> files = new ArrayList<File>(); 
-			BEUtils.getFiles(fileDir, files, params.filePattern);
-			allFiles.addAll(files);
+		if(fileToBEXs != null) {
+			allFiles.addAll(fileToBEXs.keySet());
+			Collections.sort(allFiles);
+			topics.addAll(BEUtils.getTopicList(allFiles, params.topicNameGenerator));
+		}
+		else {
+			for(String dir : params.beDirs) {
+				File fileDir = new File(dir);
+				// Collect all BE files under this directory and its subdirectories
+				List<File> files = new ArrayList<File>(); 
+				BEUtils.getFiles(fileDir, files, params.filePattern);
+				allFiles.addAll(files);
 			
-			// Read list of topics
-			List<String> topicsForDir = BEUtils.getTopicList(files, params.topicNameGenerator);
-			for(String topicName : topicsForDir) {
-				String topic = /*prefix +*/ topicName;
-				topics.add(topic);
+				// Read list of topics
+				List<String> topicsForDir = BEUtils.getTopicList(files, params.topicNameGenerator);
+				for(String topicName : topicsForDir) {
+					String topic = /*prefix +*/ topicName;
+					topics.add(topic);
+				}
 			}
 		}
 		Collections.sort(topics);
@@ -131,6 +205,9 @@ public class BEwT_E {
 		IntObjectHashMap<String> bitToTransformName = new IntObjectHashMap<String>();
 		Map<String, Integer> transformNameToBitIndex = new HashMap<String, Integer>();
 		BEXpander.createBitMaps(transforms, bitToTransformName, transformNameToBitIndex);
+		if(transformNameToBitIndex.size() > BEConstants.MAX_TRANSFORMS) {
+			throw new IllegalArgumentException("Too many transforms: " + transformNameToBitIndex.size() + " (at most " + BEConstants.MAX_TRANSFORMS + " are supported)");
+		}
 		IntIntHashMap bitIndexToWeightIndex = new IntIntHashMap();
 		double[] transformWeights = TransformInfoReader.readTransformCoeffs(params.transformCoeffs, bitIndexToWeightIndex, transformNameToBitIndex);
 	
@@ -148,62 +225,67 @@ public class BEwT_E {
 		Map<String, List<File>> topicToFiles = new HashMap<String, List<File>>();
 		Map<String, List<File>> topicToGoldenFiles = new HashMap<String, List<File>>();
 		
-		Map<File, List<BE>> fileToBEs = new HashMap<File, List<BE>>();
-		Map<File, List<Map<BE, List<BitSet>>>> fileToBEXs = new HashMap<File, List<Map<BE, List<BitSet>>>>();
-		
 		Map<File, String> fileToSystem = new HashMap<File, String>();
 		
-		Map<String, BEPart> bePartCanonicalMap = new HashMap<String, BEPart>();
 		for(String topic : topics) {
-			System.out.println("Loading topic data for topic: " + topic + " ...");
+			mLog.println("Loading topic data for topic: " + topic + " ...");
 			List<File> filesForTopic = BEUtils.getFilesForTopic(topic, allFiles, params.topicNameGenerator);
 			List<File> referenceFiles = BEUtils.getFiles(filesForTopic, ".*" + params.refSystemsPattern);
-			System.out.println("... finished. Topic has " + filesForTopic.size() + " files including " + referenceFiles.size() + " references");
+			mLog.println("... finished. Topic has " + filesForTopic.size() + " files including " + referenceFiles.size() + " references");
 			topicToFiles.put(topic, filesForTopic);
 			topicToGoldenFiles.put(topic, referenceFiles);
 			
 			for(File file : filesForTopic) {
-				List<BE> beList = new ArrayList<BE>();
-				List<Map<BE, List<BitSet>>> beToTransformedBes = new ArrayList<Map<BE, List<BitSet>>>();
-				BESetReader.getBeList(beList, file, new HashSet<String>(), ruleToWeightIndex, transformNameToBitIndex, beToTransformedBes, bePartCanonicalMap, params.includeDuplicateBEs);
-				fileToBEs.put(file, beList);
-				fileToBEXs.put(file, beToTransformedBes);
 				fileToSystem.put(file, params.topicNameGenerator.getSystemName(file));
 			}
 		}
-		bePartCanonicalMap.clear();
-		System.gc();
 		
+		// Either read all BE files now or, when streaming, read each topic's files as it is scored
+		// The BEs of this evaluation are interned in its own dictionary
+		TopicBESource beSource = new TopicBESource(topics, topicToFiles, fileToBEXs, new BEDictionary(), ruleToWeightIndex, transformNameToBitIndex, params.includeDuplicateBEs, params.topicLoading);
+		if(!beSource.isStreaming()) {
+			beSource.loadAll();
+			System.gc();
+		}
 		
 		boolean loopAgain = false;
 		int iteration = 1;
-		do {
-			System.out.println("Iteration: " + iteration);
+		try {
+			do {
+				mLog.println("Iteration: " + iteration);
 			
-			loopAgain = false;
-			long iterationStart = System.nanoTime();
+				loopAgain = false;
+				long iterationStart = System.nanoTime();
 			
-			Map<String, Double> systemToScore = new HashMap<String, Double>();
-			Map<String, Map<String, Double>> topicToSystemToScore = new HashMap<String, Map<String,Double>>();
-			// Main evaluation
-			mainEvaluation(systemToScore, topicToSystemToScore, topics, allFiles, topicToFiles, topicToGoldenFiles, fileToSystem, fileToBEs, ruleWeights, params.tallyFunction, params.refSystemsPattern, bitIndexToWeightIndex, transformWeights, fileToBEXs);
+				Map<String, Double> systemToScore = new HashMap<String, Double>();
+				Map<String, Map<String, Double>> topicToSystemToScore = new HashMap<String, Map<String,Double>>();
+				// Main evaluation
+				mainEvaluation(systemToScore, topicToSystemToScore, topics, allFiles, topicToFiles, topicToGoldenFiles, fileToSystem, beSource, ruleWeights, params.tallyFunction, params.refSystemsPattern, bitIndexToWeightIndex, transformWeights, params.numThreads, params.assignmentAlgorithm, matcherCache);
 			
-			// Write out system level scores
-			if(iteration == 1) System.out.println("Writing system level scores to: " + params.systemLevelOutputFile.getAbsolutePath());
-			writeSystemLevelScores(params.systemLevelOutputFile, systemToScore, topicToSystemToScore);
+				// Write out system level scores
+				if(iteration == 1) mLog.println("Writing system level scores to: " + params.systemLevelOutputFile.getAbsolutePath());
+				writeSystemLevelScores(params.systemLevelOutputFile, systemToScore, topicToSystemToScore);
 			
-			// Write out summary level scores
-			if(iteration == 1) System.out.println("Writing summary level scores to: " + params.summaryLevelOutputFile.getAbsolutePath());
-			writeSummaryLevelScores(params.summaryLevelOutputFile, systemToScore, topicToSystemToScore, topics);
+				// Write out summary level scores
+				if(iteration == 1) mLog.println("Writing summary level scores to: " + params.summaryLevelOutputFile.getAbsolutePath());
+				writeSummaryLevelScores(params.summaryLevelOutputFile, systemToScore, topicToSystemToScore, topics);
 			
-			// Do something more (optional) and decide whether to loop again
-			loopAgain = endAnalyzerObject.doSomething(topics, systemToScore, topicToSystemToScore, ruleWeights, transformWeights, transformNameToBitIndex, ruleToWeightIndex, bitIndexToWeightIndex);
-			if(iteration == 1) System.out.println("Iteration: " + iteration + " seconds: " + ((System.nanoTime() - iterationStart)/1000000.0));
+				// Do something more (optional) and decide whether to loop again
+				loopAgain = endAnalyzerObject.doSomething(topics, systemToScore, topicToSystemToScore, ruleWeights, transformWeights, transformNameToBitIndex, ruleToWeightIndex, bitIndexToWeightIndex);
+				if(iteration == 1) mLog.println("Iteration: " + iteration + " seconds: " + ((System.nanoTime() - iterationStart)/1000000.0));
 			
-			iteration++;
+				iteration++;
+			}
+			// Typically there is no reason to loop again. This is included for optimization (or other) purposes.
+			while(loopAgain);
+		}
+		finally {
+			beSource.close();
+		}
+		
+		if(params.assignmentAlgorithm instanceof RecordingAssignmentAlgorithm) {
+			((RecordingAssignmentAlgorithm)params.assignmentAlgorithm).close();
 		}
-		// Typically there is no reason to loop again. This is included for optimization (or other) purposes.
-		while(loopAgain);
 	}
 	
 	private void mainEvaluation(
@@ -216,61 +298,83 @@ public class BEwT_E {
 			Map<String, List<File>> topicToFiles, 
 			Map<String, List<File>> topicToReferenceFiles,
 			Map<File, String> fileToSystem, 
-			Map<File, List<BE>> fileToBEs, 
+			TopicBESource beSource, 
 			double[] ruleWeights, 
 			TallyFunction tallyFunction, 
 			String refSystemsPattern, 
 			//IntIntHashMap ruleToWeightIndex,
 			IntIntHashMap bitIndexToWeightIndex, 
 			double[] transformWeights,
-			Map<File, List<Map<BE, List<BitSet>>>> fileToBEXs) throws IOException {
+			int numThreads,
+			AssignmentAlgorithm assignmentAlgorithm,
+			MatcherCache matcherCache) throws IOException, InterruptedException, ExecutionException {
 		
 		Map<String, Integer> systemToScoreCount = new HashMap<String, Integer>();
 		Map<String, Double> systemToUnnormalizedOverallScore = new HashMap<String, Double>();
 		
 		final int numTopics = topics.size();
-		// Process each topic separately
-		for (int t = 0; t < numTopics; t++) {		
-			String topic = topics.get(t);
-			
-			List<File> referenceFiles = topicToReferenceFiles.get(topic);
-			List<File> peerFiles = topicToFiles.get(topic);
-			
-			System.out.println("Processing topic: " + topic + " " + peerFiles.size() + " Peer Files." + referenceFiles.size() + " References");
-			
-			Map<String, Double> systemToScoreForTopic = new HashMap<String, Double>();
-			topicToSystemToScore.put(topic, systemToScoreForTopic);		
-			if(referenceFiles.size() == 0) {
-				System.err.println("WARNING: No models found for topic: " + topic);
-			}
-			else {
-				// Score each summary
-				for(File peerFile : peerFiles) {
-					System.out.println("Peer: " + peerFile.toString() );
-					String system =  fileToSystem.get(peerFile);
+		
+		// A scoring task is created for every (topic, peer) pair. The tasks share nothing but read-only data.
+		// In parallel mode the tasks are submitted up front (or, when streaming, a few topics ahead, so that the
+		// threads are not left idle while the last peers of a topic finish); the results (and their logs) are 
+		// still consumed in the sequential order so the aggregated scores are identical
+		List<List<PeerScoringTask>> topicToTasks = new ArrayList<List<PeerScoringTask>>(Collections.<List<PeerScoringTask>>nCopies(numTopics, null));
+		List<List<Future<Double>>> topicToFutures = new ArrayList<List<Future<Double>>>(Collections.<List<Future<Double>>>nCopies(numTopics, null));
+		ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+		final int topicsInFlight = !beSource.isStreaming() ? numTopics : (executor == null ? 1 : STREAMED_TOPICS_IN_FLIGHT);
+		int numTopicsCreated = 0;
+		
+		try {
+			// Process each topic separately
+			for (int t = 0; t < numTopics; t++) {		
+				String topic = topics.get(t);
+				for(; numTopicsCreated < numTopics && numTopicsCreated < t + topicsInFlight; numTopicsCreated++) {
+					createTasks(numTopicsCreated, topics, topicToFiles, topicToReferenceFiles, beSource, tallyFunction, ruleWeights, transformWeights, bitIndexToWeightIndex, assignmentAlgorithm, matcherCache, executor, mLog, topicToTasks, topicToFutures);
+				}
 				
-					double score = 0.0;
+				List<File> referenceFiles = topicToReferenceFiles.get(topic);
+				List<File> peerFiles = topicToFiles.get(topic);
 				
-					// NOTE: Consider create objects that perform the calc score
-					if(referenceFiles.size() == 1 || tallyFunction instanceof TallyFunction.BinaryTallyFunction) {
-						System.out.println("Fast score calc... " );
-						score = calculateScoreFast(peerFile, referenceFiles, fileToBEs,	fileToBEXs, tallyFunction, ruleWeights, transformWeights, bitIndexToWeightIndex);
-					
-					}
-					else {
-						System.out.println("Score calc... " );
-						score = calculateScore(peerFile, referenceFiles, fileToBEs,	fileToBEXs,	tallyFunction, ruleWeights, transformWeights, bitIndexToWeightIndex);
+				mLog.println("Processing topic: " + topic + " " + peerFiles.size() + " Peer Files." + referenceFiles.size() + " References");
+				
+				Map<String, Double> systemToScoreForTopic = new HashMap<String, Double>();
+				topicToSystemToScore.put(topic, systemToScoreForTopic);		
+				if(referenceFiles.size() == 0) {
+					mLog.println("WARNING: No models found for topic: " + topic);
+				}
+				else {
+					// Score each summary
+					List<PeerScoringTask> tasks = topicToTasks.get(t);
+					final int numTasks = tasks.size();
+					for(int p = 0; p < numTasks; p++) {
+						PeerScoringTask task = tasks.get(p);
+						String system =  fileToSystem.get(task.mPeerFile);
+						
+						double score = executor == null ? task.call() : topicToFutures.get(t).get(p).get();
+						task.flushLog();
+	
+						// Place the score into the map
+						systemToScoreForTopic.put(system, score);
+						Double prevScore = systemToUnnormalizedOverallScore.get(system);
+						systemToUnnormalizedOverallScore.put(system, (prevScore == null ? 0d : prevScore) + score);
+						Integer oldCount = systemToScoreCount.get(system);
+						systemToScoreCount.put(system, (oldCount == null ? 0 : oldCount) + 1);
+						mLog.println("...done" );
 					}
-
-					// Place the score into the map
-					systemToScoreForTopic.put(system, score);
-					Double prevScore = systemToUnnormalizedOverallScore.get(system);
-					systemToUnnormalizedOverallScore.put(system, (prevScore == null ? 0d : prevScore) + score);
-					Integer oldCount = systemToScoreCount.get(system);
-					systemToScoreCount.put(system, (oldCount == null ? 0 : oldCount) + 1);
-					System.out.println("...done" );
 				}
+				// Release the topic (only the streaming source actually frees its BEs); its matchers go with it
+				topicToTasks.set(t, null);
+				topicToFutures.set(t, null);
+				if(beSource.release(t) && matcherCache != null) {
+					matcherCache.release(topic);
+				}
+			}
+		}
+		finally {
+			if(executor != null) {
+				executor.shutdownNow();
 			}
+			beSource.reset();
 		}
 		// Normalize system scores (divide by number of summaries)
 		for(String system : systemToUnnormalizedOverallScore.keySet()) {
@@ -279,62 +383,325 @@ public class BEwT_E {
 		}
 	}
 	
+	/**
+	 * Creates (and, given an executor, submits) the scoring tasks of topic t
+	 */
+	private static void createTasks(int t,
+									List<String> topics,
+									Map<String, List<File>> topicToFiles, 
+									Map<String, List<File>> topicToReferenceFiles,
+									TopicBESource beSource,
+									TallyFunction tallyFunction,
+									double[] ruleWeights,
+									double[] transformWeights,
+									IntIntHashMap bitIndexToWeightIndex,
+									AssignmentAlgorithm assignmentAlgorithm,
+									MatcherCache matcherCache,
+									ExecutorService executor,
+									PrintStream log,
+									List<List<PeerScoringTask>> topicToTasks,
+									List<List<Future<Double>>> topicToFutures) throws IOException, InterruptedException, ExecutionException {
+		String topic = topics.get(t);
+		List<File> referenceFiles = topicToReferenceFiles.get(topic);
+		List<File> peerFiles = topicToFiles.get(topic);
+		List<PeerScoringTask> tasks = new ArrayList<PeerScoringTask>(peerFiles.size());
+		if(referenceFiles.size() > 0) {
+			TopicBEs topicBEs = beSource.get(t);
+			// The reference frequencies and weights are shared by all the peers of the topic
+			TopicScoringContext context = new TopicScoringContext(referenceFiles, topicBEs.fileToBEs, tallyFunction, ruleWeights);
+			for(File peerFile : peerFiles) {
+				PeerMatchers matchers = matcherCache == null ? new PeerMatchers(peerFile, false) : matcherCache.get(topic, peerFile);
+				tasks.add(new PeerScoringTask(peerFile, context, matchers, topicBEs.fileToBEs, topicBEs.fileToBEXs, tallyFunction, ruleWeights, transformWeights, bitIndexToWeightIndex, assignmentAlgorithm, log, executor != null));
+			}
+		}
+		topicToTasks.set(t, tasks);
+		if(executor != null) {
+			List<Future<Double>> futures = new ArrayList<Future<Double>>(tasks.size());
+			for(PeerScoringTask task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			topicToFutures.set(t, futures);
+		}
+	}
+	
+	/**
+	 * The BEs and transformed BEs of a set of files
+	 */
+	private static class TopicBEs {
+		final Map<File, List<BE>> fileToBEs = new HashMap<File, List<BE>>();
+		final Map<File, List<Map<BE, LongArrayList>>> fileToBEXs = new HashMap<File, List<Map<BE, LongArrayList>>>();
+	}
+	
+	/**
+	 * Supplies the BEs of each topic. In the default mode every topic is read up front and held 
+	 * for all iterations. In streaming mode a topic is read when its tasks are created and released once
+	 * it is scored, so peak memory follows the largest few (STREAMED_TOPICS_IN_FLIGHT) topics rather than
+	 * the whole collection; in prefetch mode the topic after those is read by a background thread. BE matchers
+	 * are never cached across iterations in the streaming modes, since they would hold on to every topic.
+	 */
+	private static class TopicBESource {
+		
+		private final List<String> mTopics;
+		private final Map<String, List<File>> mTopicToFiles;
+		// BEs held in memory in place of the files (null to read the files)
+		private final Map<File, BEXBuffer> mFileToBEXs;
+		private final BEDictionary mDictionary;
+		private final IntIntHashMap mRuleToWeightIndex;
+		private final Map<String, Integer> mTransformNameToBitIndex;
+		private final boolean mIncludeDuplicateBEs;
+		private final boolean mStreaming;
+		private final ExecutorService mPrefetcher;
+		
+		// all topics (default mode)
+		private TopicBEs mAllTopics;
+		// topics read and not yet released, and the topic being prefetched (streaming mode)
+		private final Map<Integer, TopicBEs> mLoaded = new HashMap<Integer, TopicBEs>();
+		private int mNextIndex = -1;
+		private Future<TopicBEs> mNext;
+		
+		public TopicBESource(List<String> topics,
+							 Map<String, List<File>> topicToFiles,
+							 Map<File, BEXBuffer> fileToBEXs,
+							 BEDictionary dictionary,
+							 IntIntHashMap ruleToWeightIndex,
+							 Map<String, Integer> transformNameToBitIndex,
+							 boolean includeDuplicateBEs,
+							 String loadingMode) {
+			mTopics = topics;
+			mTopicToFiles = topicToFiles;
+			mFileToBEXs = fileToBEXs;
+			mDictionary = dictionary;
+			mRuleToWeightIndex = ruleToWeightIndex;
+			mTransformNameToBitIndex = transformNameToBitIndex;
+			mIncludeDuplicateBEs = includeDuplicateBEs;
+			mStreaming = !loadingMode.equals(LOAD_ALL);
+			mPrefetcher = loadingMode.equals(LOAD_PREFETCH) ? Executors.newSingleThreadExecutor() : null;
+		}
+		
+		public boolean isStreaming() {
+			return mStreaming;
+		}
+		
+		public void loadAll() throws IOException {
+			mAllTopics = new TopicBEs();
+			Map<String, BEPart> bePartCanonicalMap = new HashMap<String, BEPart>();
+			for(String topic : mTopics) {
+				load(mTopicToFiles.get(topic), mAllTopics, bePartCanonicalMap);
+			}
+		}
+		
+		public TopicBEs get(int t) throws IOException, InterruptedException, ExecutionException {
+			if(!mStreaming) {
+				return mAllTopics;
+			}
+			TopicBEs topicBEs = mLoaded.get(t);
+			if(topicBEs == null) {
+				if(t == mNextIndex) {
+					topicBEs = mNext.get();
+					mNext = null;
+					mNextIndex = -1;
+				}
+				else {
+					if(mNext != null) {
+						// the prefetched topic was skipped
+						mNext.cancel(true);
+						mNext = null;
+						mNextIndex = -1;
+					}
+					topicBEs = load(t);
+				}
+				mLoaded.put(t, topicBEs);
+				if(mPrefetcher != null && mNext == null && t+1 < mTopics.size() && !mLoaded.containsKey(t+1)) {
+					final int next = t+1;
+					mNextIndex = next;
+					mNext = mPrefetcher.submit(new Callable<TopicBEs>() {
+						public TopicBEs call() throws IOException {
+							return load(next);
+						}
+					});
+				}
+			}
+			return topicBEs;
+		}
+		
+		/**
+		 * Called once topic t has been scored. Returns true if the BEs of the topic were dropped.
+		 */
+		public boolean release(int t) {
+			return mStreaming && mLoaded.remove(t) != null;
+		}
+		
+		/**
+		 * Drops any streamed topics (the next pass starts over from the first topic)
+		 */
+		public void reset() {
+			if(mNext != null) {
+				mNext.cancel(true);
+				mNext = null;
+			}
+			mNextIndex = -1;
+			mLoaded.clear();
+		}
+		
+		public void close() {
+			reset();
+			if(mPrefetcher != null) {
+				mPrefetcher.shutdownNow();
+			}
+		}
+		
+		private TopicBEs load(int t) throws IOException {
+			TopicBEs topicBEs = new TopicBEs();
+			load(mTopicToFiles.get(mTopics.get(t)), topicBEs, new HashMap<String, BEPart>());
+			return topicBEs;
+		}
+		
+		private void load(List<File> files, TopicBEs topicBEs, Map<String, BEPart> bePartCanonicalMap) throws IOException {
+			for(File file : files) {
+				List<BE> beList = new ArrayList<BE>();
+				List<Map<BE, LongArrayList>> beToTransformedBes = new ArrayList<Map<BE, LongArrayList>>();
+				if(mFileToBEXs != null) {
+					mFileToBEXs.get(file).getBeList(beList, new HashSet<String>(), mRuleToWeightIndex, mTransformNameToBitIndex, beToTransformedBes, bePartCanonicalMap, mDictionary, mIncludeDuplicateBEs);
+				}
+				else {
+					BESetReader.getBeList(beList, file, new HashSet<String>(), mRuleToWeightIndex, mTransformNameToBitIndex, beToTransformedBes, bePartCanonicalMap, mDictionary, mIncludeDuplicateBEs);
+				}
+				topicBEs.fileToBEs.put(file, beList);
+				topicBEs.fileToBEXs.put(file, beToTransformedBes);
+			}
+		}
+	}
+	
+	/**
+	 * Scores a single peer summary against the references of its topic.
+	 * When buffered, the log output is held until {@link #flushLog()} is called so that 
+	 * the log of parallel runs reads the same as that of sequential runs. 
+	 */
+	private static class PeerScoringTask implements Callable<Double> {
+		
+		private final File mPeerFile;
+		private final TopicScoringContext mContext;
+		private final PeerMatchers mMatchers;
+		private final Map<File, List<BE>> mFileToBEs;
+		private final Map<File, List<Map<BE, LongArrayList>>> mFileToBEXs;
+		private final TallyFunction mTallyFunction;
+		private final double[] mRuleWeights;
+		private final double[] mTransformWeights;
+		private final IntIntHashMap mBitIndexToWeightIndex;
+		private final AssignmentAlgorithm mAssignmentAlgorithm;
+		private final PrintStream mOut;
+		private final ByteArrayOutputStream mLogBuffer;
+		private final PrintStream mLog;
+		
+		public PeerScoringTask(File peerFile, 
+							   TopicScoringContext context, 
+							   PeerMatchers matchers,
+							   Map<File, List<BE>> fileToBEs, 
+							   Map<File, List<Map<BE, LongArrayList>>> fileToBEXs,
+							   TallyFunction tallyFunction,
+							   double[] ruleWeights,
+							   double[] transformWeights,
+							   IntIntHashMap bitIndexToWeightIndex,
+							   AssignmentAlgorithm assignmentAlgorithm,
+							   PrintStream out,
+							   boolean buffered) {
+			mPeerFile = peerFile;
+			mContext = context;
+			mMatchers = matchers;
+			mFileToBEs = fileToBEs;
+			mFileToBEXs = fileToBEXs;
+			mTallyFunction = tallyFunction;
+			mRuleWeights = ruleWeights;
+			mTransformWeights = transformWeights;
+			mBitIndexToWeightIndex = bitIndexToWeightIndex;
+			mAssignmentAlgorithm = assignmentAlgorithm;
+			mOut = out;
+			mLogBuffer = buffered ? new ByteArrayOutputStream() : null;
+			mLog = buffered ? new PrintStream(mLogBuffer) : out;
+		}
+		
+		public Double call() {
+			mLog.println("Peer: " + mPeerFile.toString() );
+			mMatchers.startIteration();
+			double score;
+			// NOTE: Consider create objects that perform the calc score
+			if(mContext.getNumReferences() == 1 || mTallyFunction instanceof TallyFunction.BinaryTallyFunction) {
+				mLog.println("Fast score calc... " );
+				score = calculateScoreFast(mPeerFile, mContext, mMatchers, mFileToBEs, mFileToBEXs, mTallyFunction, mRuleWeights, mTransformWeights, mBitIndexToWeightIndex, mAssignmentAlgorithm, mLog);
+			}
+			else {
+				mLog.println("Score calc... " );
+				score = calculateScore(mPeerFile, mContext, mMatchers, mFileToBEs, mFileToBEXs, mTallyFunction, mRuleWeights, mTransformWeights, mBitIndexToWeightIndex, mAssignmentAlgorithm, mLog);
+			}
+			if(mMatchers.isUnchanged()) {
+				mLog.println("Edge weights unchanged, previous matchings reused" );
+			}
+			return score;
+		}
+		
+		public void flushLog() {
+			if(mLogBuffer != null) {
+				mLog.flush();
+				mOut.print(mLogBuffer.toString());
+			}
+		}
+	}
+	
 	private static double calculateScore(File peerFile, 
-										 List<File> referenceFiles, 
+										 TopicScoringContext context, 
+										 PeerMatchers matchers,
 										 Map<File, List<BE>> fileToBEs, 
-										 Map<File, List<Map<BE, List<BitSet>>>> fileToBEXs,
+										 Map<File, List<Map<BE, LongArrayList>>> fileToBEXs,
 										 TallyFunction tallyFunction,
 										 double[] beRuleWeights,
 										 double[] transformWeights,
-										 IntIntHashMap bitIndexToWeightIndex) {
-		boolean isModelSummary = referenceFiles.contains(peerFile);				
+										 IntIntHashMap bitIndexToWeightIndex,
+										 AssignmentAlgorithm assignmentAlgorithm,
+										 PrintStream log) {
+		List<File> referenceFiles = context.getReferenceFiles();
+		int peerIndex = context.indexOf(peerFile);
 		double score = 0.0;
-		if(isModelSummary) {
-			
-						
+		if(peerIndex != TopicScoringContext.NONE) {
+			// Reference summaries are scored against the frequencies of the other references
+			IntIntHashMap beToModelFrequency = context.getFrequencies(peerIndex);
+			double peerWeight = context.getReferenceWeight(peerIndex, peerIndex);
 			final int numReferences = referenceFiles.size();
 			for(int i = 0; i < numReferences; i++) {
-				File modelFile = referenceFiles.get(i);
-				
-				List<File> modelFiles = new ArrayList<File>(referenceFiles);
-				modelFiles.remove(peerFile);
-				IntIntHashMap beToModelFrequency = createBEFrequencyMap(modelFiles, fileToBEs);
-			
 				double precision = 0.0;
 				double recall = 0.0;
-				if(!modelFile.equals(peerFile)) {
-					BEMatcher wbg = createBEMatcher(peerFile, modelFile, fileToBEs, fileToBEXs, beToModelFrequency, beRuleWeights);
-					Object[] precisionAndRecall = wbg.solve(bitIndexToWeightIndex, transformWeights, tallyFunction);
+				if(i != peerIndex) {
+					BEMatcher wbg = matchers.get(referenceFiles.get(i), fileToBEs, fileToBEXs, beToModelFrequency, beRuleWeights);
+					Object[] precisionAndRecall = matchers.solve(wbg, bitIndexToWeightIndex, transformWeights, tallyFunction, assignmentAlgorithm, peerWeight, context.getReferenceWeight(i, peerIndex));
 					precision = (Double)precisionAndRecall[0];
 					recall = (Double)precisionAndRecall[1];
 				}
 				score = Math.max(recall, score);
 				
-				System.out.println("Reference Summary P=" + precision + " R=" + recall );
+				log.println("Reference Summary P=" + precision + " R=" + recall );
 			}
 		}
 		else {
 			// Compare summary against each reference
+			List<BE> peerBEs = fileToBEs.get(peerFile);
 			double totalRecall = 0.0;
 			final int numReferences = referenceFiles.size();
 			for(int i = 0; i < numReferences; i++) {
 				double max = 0.0;
-				List<File> modelFiles = new ArrayList<File>(referenceFiles);
-				modelFiles.remove(referenceFiles.get(i));
-				IntIntHashMap beToModelFrequency = createBEFrequencyMap(modelFiles, fileToBEs);
+				IntIntHashMap beToModelFrequency = context.getFrequencies(i);
+				double peerWeight = context.getSideWeight(peerBEs, i);
 				for(int j = 0; j < numReferences; j++) {
 					if(i != j) {
 						File modelFile = referenceFiles.get(j);
 						double precision = 0.0;
 						double recall = 0.0;
-						BEMatcher wbg = createBEMatcher(peerFile, modelFile, fileToBEs, fileToBEXs, beToModelFrequency, beRuleWeights);
-						Object[] precisionAndRecall = wbg.solve(bitIndexToWeightIndex, transformWeights, tallyFunction);
+						BEMatcher wbg = matchers.get(modelFile, fileToBEs, fileToBEXs, beToModelFrequency, beRuleWeights);
+						Object[] precisionAndRecall = matchers.solve(wbg, bitIndexToWeightIndex, transformWeights, tallyFunction, assignmentAlgorithm, peerWeight, context.getReferenceWeight(j, i));
 						precision = (Double)precisionAndRecall[0];
 						recall = (Double)precisionAndRecall[1];
 						if(recall > max) {
 							max = recall;
 						}
-						System.out.println("System Summary P=" + precision + " R=" + recall );
+						log.println("System Summary P=" + precision + " R=" + recall );
 					}
 				}
 				totalRecall += max;
@@ -346,35 +713,35 @@ public class BEwT_E {
 
 	// faster calc if using binary tallying
 	private static double calculateScoreFast(File peerFile,
-			List<File> referenceFiles, Map<File, List<BE>> fileToBEs,
-			Map<File, List<Map<BE, List<BitSet>>>> fileToBEXs,
+			TopicScoringContext context, PeerMatchers matchers, Map<File, List<BE>> fileToBEs,
+			Map<File, List<Map<BE, LongArrayList>>> fileToBEXs,
 			TallyFunction tallyFunction, double[] ruleWeights,
-			double[] transformWeights, IntIntHashMap bitIndexToWeightIndex) {
-		boolean isModelSummary = referenceFiles.contains(peerFile);
+			double[] transformWeights, IntIntHashMap bitIndexToWeightIndex,
+			AssignmentAlgorithm assignmentAlgorithm, PrintStream log) {
+		List<File> referenceFiles = context.getReferenceFiles();
+		int peerIndex = context.indexOf(peerFile);
 		double score = 0.0;
-		if (isModelSummary) {
+		if (peerIndex != TopicScoringContext.NONE) {
 			final int numReferences = referenceFiles.size();
 			if(numReferences == 1) {
 				score = 1.0;
 			}
 			else {
+				IntIntHashMap beToModelFrequency = context.getFrequencies(peerIndex);
+				double peerWeight = context.getReferenceWeight(peerIndex, peerIndex);
 				for (int m = 0; m < numReferences; m++) {
 					File modelFile = referenceFiles.get(m);
 
-					List<File> modelFiles = new ArrayList<File>(referenceFiles);
-					modelFiles.remove(peerFile);
-					IntIntHashMap beToModelFrequency = createBEFrequencyMap(
-							modelFiles, fileToBEs);
-
 					double precision = 0.0;
 					double recall = 0.0;
-					if (!modelFile.equals(peerFile)) {
-						BEMatcher wbg = createBEMatcher(peerFile, modelFile,
+					if (m != peerIndex) {
+						BEMatcher wbg = matchers.get(modelFile,
 							fileToBEs, fileToBEXs, beToModelFrequency,
 							ruleWeights);
-						Object[] precisionAndRecall = wbg.solve(
+						Object[] precisionAndRecall = matchers.solve(wbg, 
 								bitIndexToWeightIndex, transformWeights,
-								tallyFunction);
+								tallyFunction, assignmentAlgorithm, 
+								peerWeight, context.getReferenceWeight(m, peerIndex));
 						precision = (Double)precisionAndRecall[0];
 						recall = (Double) precisionAndRecall[1];
 					} else {
@@ -382,25 +749,27 @@ public class BEwT_E {
 						recall = 0;
 					}
 					score = Math.max(recall, score);
-					System.out.println("Reference Summary P=" + precision + " R=" + recall );
+					log.println("Reference Summary P=" + precision + " R=" + recall );
 				}
 			}
 		} 
 		else {
 			// Compare summary against each reference
-			IntIntHashMap beToModelFrequency = createBEFrequencyMap(referenceFiles, fileToBEs);
+			IntIntHashMap beToModelFrequency = context.getFrequencies(TopicScoringContext.NONE);
+			double peerWeight = context.getSideWeight(fileToBEs.get(peerFile), TopicScoringContext.NONE);
 			DoubleArrayList scores = new DoubleArrayList();
 			final int numReferences = referenceFiles.size();
 			for (int i = 0; i < numReferences; i++) {		
 				File modelFile = referenceFiles.get(i);
 				double precision = 0.0;
 				double recall = 0.0;
-				BEMatcher wbg = createBEMatcher(peerFile, modelFile,
+				BEMatcher wbg = matchers.get(modelFile,
 								fileToBEs, fileToBEXs, beToModelFrequency,
 								ruleWeights);
-				Object[] precisionAndRecall = wbg.solve(
+				Object[] precisionAndRecall = matchers.solve(wbg, 
 								bitIndexToWeightIndex, transformWeights,
-								tallyFunction);
+								tallyFunction, assignmentAlgorithm,
+								peerWeight, context.getReferenceWeight(i, TopicScoringContext.NONE));
 				precision = (Double)precisionAndRecall[0];
 				recall = (Double) precisionAndRecall[1];
 				if(i > 0) {
@@ -414,7 +783,7 @@ public class BEwT_E {
 				else {
 					scores.add(recall);
 				}
-				System.out.println("System Summary " + i + " P=" + precision + " R=" + recall );
+				log.println("System Summary " + i + " P=" + precision + " R=" + recall );
 			}
 			score = scores.size() <= 1 ? scores.get(0) : ((numReferences-1)*scores.get(scores.size()-1) + scores.get(scores.size()-2)) / numReferences; 
 		}
@@ -422,36 +791,125 @@ public class BEwT_E {
 	}
 
 	
+	/**
+	 * The PeerMatchers kept across EndAnalyzer iterations, grouped by topic so that the matchers of a topic
+	 * can be dropped together with its BEs. Every cached (peer, reference) graph holds its edges and their 
+	 * transform masks, so the cache typically costs several times the memory of the BEs of the cached topics.
+	 */
+	private static class MatcherCache {
+		
+		private final Map<String, Map<File, PeerMatchers>> mTopicToMatchers = new HashMap<String, Map<File, PeerMatchers>>();
+		
+		public PeerMatchers get(String topic, File peerFile) {
+			Map<File, PeerMatchers> peerToMatchers = mTopicToMatchers.get(topic);
+			if(peerToMatchers == null) {
+				mTopicToMatchers.put(topic, peerToMatchers = new HashMap<File, PeerMatchers>());
+			}
+			PeerMatchers matchers = peerToMatchers.get(peerFile);
+			if(matchers == null) {
+				peerToMatchers.put(peerFile, matchers = new PeerMatchers(peerFile, true));
+			}
+			return matchers;
+		}
+		
+		public void release(String topic) {
+			mTopicToMatchers.remove(topic);
+		}
+	}
+	
+	/**
+	 * The BEMatchers of one peer summary. When caching, the matchers (and with them the edge structure 
+	 * and transform masks of each graph) are kept across EndAnalyzer iterations, which request them in the
+	 * same order every time, and a graph is only solved again if its edge weights have changed.
+	 */
+	private static class PeerMatchers {
+		
+		private final File mPeerFile;
+		private final boolean mCaching;
+		private final List<BEMatcher> mMatchers = new ArrayList<BEMatcher>();
+		private final List<File> mModelFiles = new ArrayList<File>();
+		private int mNext;
+		private int mNumReused;
+		
+		public PeerMatchers(File peerFile, boolean caching) {
+			mPeerFile = peerFile;
+			mCaching = caching;
+		}
+		
+		public void startIteration() {
+			mNext = 0;
+			mNumReused = 0;
+		}
+		
+		public BEMatcher get(File modelFile,
+							 Map<File, List<BE>> fileToBes,
+							 Map<File, List<Map<BE, LongArrayList>>> fileToBEXs,
+							 IntIntHashMap beToModelFrequency,
+							 double[] ruleWeights) {
+			if(!mCaching) {
+				return createBEMatcher(mPeerFile, modelFile, fileToBes, fileToBEXs, beToModelFrequency, ruleWeights);
+			}
+			if(mNext < mMatchers.size()) {
+				if(!mModelFiles.get(mNext).equals(modelFile)) {
+					throw new IllegalStateException("BE matchers requested in a different order for peer: " + mPeerFile);
+				}
+				return mMatchers.get(mNext++);
+			}
+			BEMatcher matcher = createBEMatcher(mPeerFile, modelFile, fileToBes, fileToBEXs, beToModelFrequency, ruleWeights);
+			mMatchers.add(matcher);
+			mModelFiles.add(modelFile);
+			mNext++;
+			return matcher;
+		}
+		
+		public Object[] solve(BEMatcher matcher, IntIntHashMap bitIndexToWeightIndex, double[] transformWeights, TallyFunction tallyFunction, AssignmentAlgorithm assignmentAlgorithm, double part1Weight, double part2Weight) {
+			if(!mCaching) {
+				return matcher.solve(bitIndexToWeightIndex, transformWeights, tallyFunction, assignmentAlgorithm, part1Weight, part2Weight);
+			}
+			Object[] result = matcher.solveIfChanged(bitIndexToWeightIndex, transformWeights, tallyFunction, assignmentAlgorithm, part1Weight, part2Weight);
+			if(matcher.isLastResultReused()) {
+				mNumReused++;
+			}
+			return result;
+		}
+		
+		/**
+		 * Returns true if every matching of this iteration was reused from the previous one
+		 */
+		public boolean isUnchanged() {
+			return mCaching && mNext > 0 && mNumReused == mNext;
+		}
+	}
+	
 	/**
 	 * Create object for performing the BE matching
 	 */
 	private static BEMatcher createBEMatcher(File peerFile, 
 									   File modelFile, 
 									   Map<File, List<BE>> fileToBes,
-									   Map<File, List<Map<BE, List<BitSet>>>> fileToBEXs,
+									   Map<File, List<Map<BE, LongArrayList>>> fileToBEXs,
 									   IntIntHashMap beToModelFrequency,
 									   double[] ruleWeights) {
 		List<BE> summaryBes = fileToBes.get(peerFile);
 		List<BE> truthBes = fileToBes.get(modelFile);
 		int numTruthBes = truthBes.size();						
 	
-		BitSet emptyBitSet = new BitSet();
 		BEMatcher matcher = new BEMatcher(ruleWeights, summaryBes, truthBes, beToModelFrequency);
 		int numSummaryBes = summaryBes.size();
-		List<Map<BE, List<BitSet>>> BEXes = fileToBEXs.get(peerFile);
+		List<Map<BE, LongArrayList>> BEXes = fileToBEXs.get(peerFile);
 		for(int i = 0; i < numSummaryBes; i++) {
 			BE summaryBE = summaryBes.get(i);
-			Map<BE, List<BitSet>> bexMap = BEXes.get(i);
+			Map<BE, LongArrayList> bexMap = BEXes.get(i);
 			for(int j = 0; j < numTruthBes; j++) {
 				BE truthBE = truthBes.get(j);
 				if(summaryBE.equals(truthBE)) {
-					matcher.updateEdge(summaryBE, truthBE, emptyBitSet);
+					matcher.updateEdge(summaryBE, truthBE, 0L);
 				}
 			}
 			for(BE be : bexMap.keySet()) {
-				List<BitSet> bitSets = bexMap.get(be);
-				for(int j = bitSets.size()-1; j>=0; j--) {
-					matcher.updateEdge(summaryBE, be, bitSets.get(j));
+				LongArrayList masks = bexMap.get(be);
+				for(int j = masks.size()-1; j>=0; j--) {
+					matcher.updateEdge(summaryBE, be, masks.getQuick(j));
 				}
 			}
 		}
@@ -478,31 +936,12 @@ public class BEwT_E {
 		return ruleToWeight;
 	}
 	
-	/**
-	 * Create map containing BE->frequency mapping 
-	 */
-	private static IntIntHashMap createBEFrequencyMap(List<File> files, Map<File, List<BE>> fileToBEs) {
-		IntIntHashMap beToFrequency = new IntIntHashMap();
-		for(File file : files) {
-			List<BE> beList = fileToBEs.get(file);
-			IntIntHashMap beEquivIdSet = new IntIntHashMap();
-			for(BE be : beList) {
-				int equivId = be.getEquivalentId();
-				if(beEquivIdSet.get(equivId) == 0) {
-					beEquivIdSet.put(equivId, 1);
-					beToFrequency.put(equivId, beToFrequency.get(equivId)+1);
-				}
-			}
-		}
-		return beToFrequency;
-	}
-	
 	/**
 	 * Writes out overall system level scores 
 	 */
 	private static void writeSystemLevelScores(File outputFile, Map<String, Double> systemToScore,
 							Map<String, Map<String, Double>> topicToSystemToScore) throws IOException {
-		PrintWriter out = new PrintWriter(outputFile);
+		PrintWriter out = new PrintWriter(outputFile, "UTF-8");
 		List<String> keys = BEUtils.sortScores(systemToScore.keySet(), systemToScore);
 		for (String system : keys) {
 			
@@ -518,7 +957,7 @@ public class BEwT_E {
 	 */
 	private static void writeSummaryLevelScores(File outputFile, Map<String, Double> systemToScore,
 		Map<String, Map<String, Double>> topicToSystemToScore, List<String> topics) throws IOException {
-		PrintWriter out = new PrintWriter(outputFile);
+		PrintWriter out = new PrintWriter(outputFile, "UTF-8");
 		for(String topic : topics) {
 			Map<String, Double> systemToScoreByTopic = topicToSystemToScore.get(topic);
 			List<String> keys = BEUtils.sortScores(systemToScoreByTopic.keySet(), systemToScoreByTopic);
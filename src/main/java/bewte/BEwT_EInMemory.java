@@ -0,0 +1,98 @@
+package bewte;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tratz.runpipe.EndPoint;
+import tratz.runpipe.Pipe;
+import tratz.runpipe.util.RunPipe;
+
+import bewte.beextraction.InMemoryBasicElementExtractor;
+import bewte.io.BEXBuffer;
+import bewte.names.NameExtractor;
+import bewte.names.T2VStyleNameExtractor;
+import bewte.util.BEUtils;
+
+/**
+ * Runs the four steps of BEwT_Evaluation in one process without writing the parsed documents,
+ * BE files or BEX files: the BEs are handed from the extraction to the expansion and from the
+ * expansion to the scoring in memory. The summaries are scored in the order of their names, so the
+ * scores match those of BEwT_Evaluation when its BEX directory lists the files in that order.
+ */
+public class BEwT_EInMemory {
+
+	public static void main(String[] args) throws Exception {
+		// Directory of the summaries (optional)
+		String summariesDir = args.length > 0 ? args[0] : BEwT_Evaluation.SUMMARIES_DIR;
+		// System level output file (optional)
+		String systemLevelFile = args.length > 1 ? args[1] : BEwT_Evaluation.SYSTEM_LEVEL_OUTPUT_FILE;
+		// Summary level output file (optional)
+		String summaryLevelFile = args.length > 2 ? args[2] : BEwT_Evaluation.SUMMARY_LEVEL_OUTPUT_FILE;
+		// Directory to write the BE and BEX files to, for debugging (optional)
+		File debugDir = args.length > 3 ? new File(args[3]) : null;
+		// Number of threads for the expansion (optional, default=1)
+		int numThreads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+		System.setProperty("bewte_path", BEwT_Evaluation.PATH);
+		evaluate(summariesDir, systemLevelFile, summaryLevelFile, debugDir, numThreads);
+	}
+
+	public static void evaluate(String summariesDir, String systemLevelFile, String summaryLevelFile, File debugDir, int numThreads) throws Exception {
+		// Steps 1 and 2. Parse input documents and extract BEs (the annotators load WordNet)
+		System.err.println("Parsing and extracting BEs");
+		Pipe pipe = RunPipe.createPipe(BEwT_Evaluation.createFusedArgs(summariesDir, debugDir == null ? null : new File(debugDir, "BEs").getPath()));
+		try {
+			pipe.go();
+		}
+		finally {
+			pipe.close();
+		}
+		InMemoryBasicElementExtractor extractor = null;
+		for(EndPoint endPoint : pipe.getEndProcessingUnits()) {
+			if(endPoint instanceof InMemoryBasicElementExtractor) {
+				extractor = (InMemoryBasicElementExtractor)endPoint;
+			}
+		}
+		Map<File, List<BE>> fileToBes = extractor.getFileToBes();
+		Map<File, List<Set<String>>> fileToLemmaSet = extractor.getFileToLemmaSet();
+
+		// Step 3. Perform Transformations
+		System.err.println("Performing transformations");
+		BEXpander.TransformPipelines pipelines = new BEXpander.TransformPipelines(new File(BEwT_Evaluation.ENGLISH_TRANSFORM_LIST), numThreads);
+		ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+		File bexDebugDir = null;
+		if(debugDir != null) {
+			bexDebugDir = new File(debugDir, "BEXs");
+			bexDebugDir.mkdirs();
+		}
+		Map<File, BEXBuffer> fileToBEXs = new HashMap<File, BEXBuffer>();
+		try {
+			NameExtractor topicNameGenerator = new T2VStyleNameExtractor();
+			List<File> files = new ArrayList<File>(fileToBes.keySet());
+			List<String> topics = BEUtils.getTopicList(files, topicNameGenerator);
+			Collections.sort(topics);
+			for(String topic : topics) {
+				List<File> filesForTopic = BEUtils.getFilesForTopic(topic, files, topicNameGenerator);
+				List<File> referenceFiles = BEUtils.getFiles(filesForTopic, ".*"+BEwT_Evaluation.REFERENCE_NAME_PATTERN);
+				fileToBEXs.putAll(BEXpander.expandTopic(filesForTopic, referenceFiles, fileToBes, fileToLemmaSet, pipelines, executor, bexDebugDir));
+			}
+		}
+		finally {
+			if(executor != null) {
+				executor.shutdown();
+			}
+		}
+
+		// Step 4. Perform Evaluation
+		System.err.println("Scoring");
+		new BEwT_E().evaluate(BEwT_Evaluation.createStep4Args(BEwT_Evaluation.STEP3_OUTPUT_DIR, systemLevelFile, summaryLevelFile), fileToBEXs);
+	}
+
+}
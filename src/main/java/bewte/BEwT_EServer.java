@@ -0,0 +1,331 @@
+package bewte;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import tratz.runpipe.Annotator;
+import tratz.runpipe.Pipe;
+import tratz.runpipe.util.RunPipe;
+
+import bewte.names.T2VStyleNameExtractor;
+
+/**
+ * Long-running evaluation service. Runs the same four steps as BEwT_Evaluation but keeps WordNet,
+ * the tagging/parsing/NER models and the BE transforms loaded between requests.
+ *
+ * Listens on a local port. A request is a sequence of summaries followed by EVALUATE:
+ *   SUMMARY <filename> <numLines>
+ *   <numLines lines of text>
+ *   ...
+ *   EVALUATE
+ * Filenames follow the T2V naming convention (references must match BEwT_Evaluation.REFERENCE_NAME_PATTERN).
+ * The reply is either
+ *   OK
+ *   SYSTEM_LEVEL <numLines>
+ *   <system level output>
+ *   SUMMARY_LEVEL <numLines>
+ *   <summary level output>
+ * or a single ERROR <message> line. A client that sends nothing for the read timeout gets an ERROR reply
+ * and is disconnected, so stalled connections cannot hold on to the workers.
+ */
+public class BEwT_EServer {
+
+	public final static String SUMMARY_COMMAND = "SUMMARY";
+	public final static String EVALUATE_COMMAND = "EVALUATE";
+	public final static String OK_REPLY = "OK";
+	public final static String ERROR_REPLY = "ERROR";
+	public final static String SYSTEM_LEVEL_SECTION = "SYSTEM_LEVEL";
+	public final static String SUMMARY_LEVEL_SECTION = "SUMMARY_LEVEL";
+
+	private final static String USAGE = "Usage: BEwT_EServer <port> <numWorkers> [numPipelines=1] [maxQueuedRequests=numWorkers] [readTimeoutSeconds=60]";
+
+	static final String WORK_DIR = BEwT_Evaluation.INTERMEDIATE_FILES_DIR+"/server";
+
+	// Loaded (initialized) copies of the step 1 and step 2 annotators, borrowed by one request at a time
+	private final BlockingQueue<Pipe> mParsingPipes;
+	private final BlockingQueue<Pipe> mExtractionPipes;
+	private final BEXpander.TransformPipelines mTransformPipelines;
+
+	private final File mWorkDir;
+	private int mRequestCount;
+
+	public BEwT_EServer(File workDir, int numPipelines) throws Exception {
+		mWorkDir = workDir;
+		mWorkDir.mkdirs();
+		mParsingPipes = new ArrayBlockingQueue<Pipe>(numPipelines);
+		mExtractionPipes = new ArrayBlockingQueue<Pipe>(numPipelines);
+		// The annotators load WordNet as they are initialized
+		for(int i = 0; i < numPipelines; i++) {
+			Pipe parsingPipe = RunPipe.createPipe(BEwT_Evaluation.createStep1Args(BEwT_Evaluation.SUMMARIES_DIR, BEwT_Evaluation.STEP1_OUTPUT_DIR));
+			parsingPipe.initializeAnnotators();
+			mParsingPipes.add(parsingPipe);
+			Pipe extractionPipe = RunPipe.createPipe(BEwT_Evaluation.createStep2Args(BEwT_Evaluation.STEP1_OUTPUT_DIR, BEwT_Evaluation.STEP2_OUTPUT_DIR));
+			extractionPipe.initializeAnnotators();
+			mExtractionPipes.add(extractionPipe);
+		}
+		mTransformPipelines = new BEXpander.TransformPipelines(new File(BEwT_Evaluation.ENGLISH_TRANSFORM_LIST), numPipelines);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2 || args.length > 5) {
+			exitWithUsage("Wrong number of arguments");
+		}
+		// Local port to listen on
+		int port = parseArg(args[0], "port", 0);
+		// Number of requests evaluated concurrently
+		int numWorkers = parseArg(args[1], "numWorkers", 1);
+		// Number of loaded copies of the annotators and transforms (optional, default=1)
+		int numPipelines = args.length > 2 ? parseArg(args[2], "numPipelines", 1) : 1;
+		// Number of requests that may wait for a worker before new ones are refused (optional, default=number of workers)
+		int maxQueuedRequests = args.length > 3 ? parseArg(args[3], "maxQueuedRequests", 1) : numWorkers;
+		// Seconds a request may wait for input from the client (optional, default=60)
+		final int readTimeout = (args.length > 4 ? parseArg(args[4], "readTimeoutSeconds", 1) : 60) * 1000;
+
+		System.setProperty("bewte_path", BEwT_Evaluation.PATH);
+
+		final BEwT_EServer server = new BEwT_EServer(new File(WORK_DIR), numPipelines);
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(maxQueuedRequests));
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+		System.err.println("BEwT-E server listening on port " + port);
+		try {
+			while(true) {
+				final Socket socket = serverSocket.accept();
+				try {
+					socket.setSoTimeout(readTimeout);
+				}
+				catch(SocketException se) {
+					System.err.println("Failed to set read timeout: " + se.getMessage());
+					close(socket);
+					continue;
+				}
+				try {
+					workers.execute(new Runnable() {
+						public void run() {
+							server.handle(socket);
+						}
+					});
+				}
+				catch(RejectedExecutionException ree) {
+					reply(socket, ERROR_REPLY + " Server busy");
+				}
+			}
+		}
+		finally {
+			serverSocket.close();
+			workers.shutdownNow();
+		}
+	}
+
+	private static int parseArg(String arg, String name, int min) {
+		int value = 0;
+		try {
+			value = Integer.parseInt(arg);
+		}
+		catch(NumberFormatException nfe) {
+			exitWithUsage(name + " must be an integer: " + arg);
+		}
+		if(value < min) {
+			exitWithUsage(name + " must be at least " + min + ": " + value);
+		}
+		return value;
+	}
+
+	private static void exitWithUsage(String message) {
+		System.err.println(message);
+		System.err.println(USAGE);
+		System.exit(1);
+	}
+
+	private static void reply(Socket socket, String line) {
+		try {
+			PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+			writer.println(line);
+			writer.flush();
+		}
+		catch(IOException ioe) {
+			System.err.println("Failed to reply: " + ioe.getMessage());
+		}
+		finally {
+			close(socket);
+		}
+	}
+	
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		}
+		catch(IOException ioe) {
+			System.err.println("Failed to close connection: " + ioe.getMessage());
+		}
+	}
+
+	public void handle(Socket socket) {
+		File requestDir = null;
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8")));
+			try {
+				requestDir = createRequestDir();
+				File summariesDir = new File(requestDir, "summaries");
+				summariesDir.mkdirs();
+				int numSummaries = readSummaries(reader, summariesDir);
+				if(numSummaries == 0) {
+					throw new IllegalArgumentException("No summaries");
+				}
+				File systemLevelFile = new File(requestDir, "systemLevelOutput.txt");
+				File summaryLevelFile = new File(requestDir, "summaryLevelOutput.txt");
+				evaluate(summariesDir, requestDir, systemLevelFile, summaryLevelFile);
+				writer.println(OK_REPLY);
+				writeSection(writer, SYSTEM_LEVEL_SECTION, systemLevelFile);
+				writeSection(writer, SUMMARY_LEVEL_SECTION, summaryLevelFile);
+			}
+			catch(Exception e) {
+				e.printStackTrace();
+				writer.println(ERROR_REPLY + " " + String.valueOf(e.getMessage()).replace('\n', ' '));
+			}
+			writer.flush();
+		}
+		catch(IOException ioe) {
+			System.err.println("Request failed: " + ioe.getMessage());
+		}
+		finally {
+			close(socket);
+			if(requestDir != null) {
+				delete(requestDir);
+			}
+		}
+	}
+
+	/**
+	 * Runs steps 1-4 on the summaries, writing the intermediate files and the scoring log (evaluation.log) 
+	 * under the work directory
+	 */
+	public void evaluate(File summariesDir, File workDir, File systemLevelFile, File summaryLevelFile) throws Exception {
+		File parsedDir = new File(workDir, "parsed");
+		File beDir = new File(workDir, "BEs");
+		File bexDir = new File(workDir, "BEXs");
+
+		// Step 1. Parse input documents
+		runWithLoadedAnnotators(RunPipe.createPipe(BEwT_Evaluation.createStep1Args(summariesDir.getPath(), parsedDir.getPath(), "UTF-8")), mParsingPipes);
+		// Step 2. Extract BEs
+		runWithLoadedAnnotators(RunPipe.createPipe(BEwT_Evaluation.createStep2Args(parsedDir.getPath(), beDir.getPath())), mExtractionPipes);
+		// Step 3. Perform Transformations
+		BEXpander.expand(beDir, bexDir, 0, -1, ".*"+BEwT_Evaluation.REFERENCE_NAME_PATTERN, new T2VStyleNameExtractor(), false, mTransformPipelines, null);
+		// Step 4. Perform Evaluation
+		PrintStream log = new PrintStream(new File(workDir, "evaluation.log"), "UTF-8");
+		try {
+			new BEwT_E(log).evaluate(BEwT_Evaluation.createStep4Args(bexDir.getPath(), systemLevelFile.getPath(), summaryLevelFile.getPath()));
+		}
+		finally {
+			log.close();
+		}
+	}
+
+	/**
+	 * Runs the (uninitialized) pipe with the annotators of a loaded pipe in place of its own
+	 */
+	private static void runWithLoadedAnnotators(Pipe pipe, BlockingQueue<Pipe> loadedPipes) throws Exception {
+		for(Annotator annotator : pipe.getAnnotators()) {
+			pipe.removeAnnotator(annotator);
+		}
+		Pipe loadedPipe = loadedPipes.take();
+		try {
+			for(Annotator annotator : loadedPipe.getAnnotators()) {
+				pipe.addAnnotator(annotator, null);
+			}
+			pipe.go(false);
+		}
+		finally {
+			loadedPipes.add(loadedPipe);
+		}
+	}
+
+	private synchronized File createRequestDir() throws IOException {
+		File dir;
+		do {
+			dir = new File(mWorkDir, "request" + (mRequestCount++));
+		}
+		while(dir.exists());
+		if(!dir.mkdirs()) {
+			throw new IOException("Unable to create directory: " + dir);
+		}
+		return dir;
+	}
+
+	private static int readSummaries(BufferedReader reader, File summariesDir) throws IOException {
+		int numSummaries = 0;
+		String line = null;
+		while((line = reader.readLine()) != null && !line.equals(EVALUATE_COMMAND)) {
+			String[] split = line.split("\\s+");
+			if(split.length != 3 || !split[0].equals(SUMMARY_COMMAND)) {
+				throw new IllegalArgumentException("Expected " + SUMMARY_COMMAND + " <filename> <numLines> or " + EVALUATE_COMMAND + ": " + line);
+			}
+			String filename = split[1];
+			if(!new File(filename).getName().equals(filename) || filename.startsWith(".")) {
+				throw new IllegalArgumentException("Illegal filename: " + filename);
+			}
+			int numLines = Integer.parseInt(split[2]);
+			// read back by StandardTextDocReader with the same encoding (see evaluate)
+			PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(summariesDir, filename)), "UTF-8"));
+			for(int i = 0; i < numLines; i++) {
+				String text = reader.readLine();
+				if(text == null) {
+					writer.close();
+					throw new IllegalArgumentException("Unexpected end of input in: " + filename);
+				}
+				writer.println(text);
+			}
+			writer.close();
+			numSummaries++;
+		}
+		if(line == null) {
+			throw new IllegalArgumentException("Missing " + EVALUATE_COMMAND);
+		}
+		return numSummaries;
+	}
+
+	private static void writeSection(PrintWriter writer, String section, File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		// the output files are written in UTF-8 (see BEwT_E)
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		String line = null;
+		while((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		writer.println(section + " " + lines.size());
+		for(String l : lines) {
+			writer.println(l);
+		}
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -1,7 +1,14 @@
 package bewte;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import tratz.runpipe.util.RunPipe;
 
+import bewte.io.StandardTextDocReader;
+
 public class BEwT_Evaluation {
 		
 	static final String PATH = "/tmp/BEwT/";
@@ -67,12 +74,27 @@ public class BEwT_Evaluation {
 	}
 	
 	public static void step1() throws Exception {
-		String[] args1 = new String[] {
+		RunPipe.main(createStep1Args(SUMMARIES_DIR, STEP1_OUTPUT_DIR));
+	}
+	
+	static String[] createStep1Args(String summariesDir, String outputDir) {
+		return createStep1Args(summariesDir, outputDir, null);
+	}
+	
+	/**
+	 * @param encoding encoding of the summaries (null for the platform's default encoding)
+	 */
+	static String[] createStep1Args(String summariesDir, String outputDir, String encoding) {
+		List<String> args = new ArrayList<String>(Arrays.asList(
 				RunPipe.CORPUS_READER,
 				"tratz.runpipe.impl.corpusreader.DirectoryCorpusReader",
-				"InputDirectories="+SUMMARIES_DIR,
+				"InputDirectories="+summariesDir,
 				RunPipe.DOC_READER,
-				"bewte.io.StandardTextDocReader",
+				"bewte.io.StandardTextDocReader"));
+		if(encoding != null) {
+			args.add(StandardTextDocReader.PARAM_ENCODING+"="+encoding);
+		}
+		args.addAll(Arrays.asList(
 				RunPipe.ANNOTATOR,
 				"tratz.runpipe.impl.annotators.sentence.BreakIteratorSentenceAnnotator",
 				"ONLY_WHEN_NECESSARY=true",
@@ -88,44 +110,65 @@ public class BEwT_Evaluation {
 				"WordNetDir="+WORDNET_DIR,
 				"VchTransform=true",
 				RunPipe.END_POINT,
-				"tratz.runpipe.impl.endpoints.GzippedDocumentWriter",
-				"OutputDir="+STEP1_OUTPUT_DIR
-		};
-		RunPipe.main(args1);
+				"tratz.runpipe.impl.endpoints.StandoffDocumentWriter",
+				"OutputDir="+outputDir));
+		return args.toArray(new String[args.size()]);
 	}
 	
 	public static void step2() throws Exception {
-		String[] args2 = new String[] {
+		RunPipe.main(createStep2Args(STEP1_OUTPUT_DIR, STEP2_OUTPUT_DIR));
+	}
+	
+	static String[] createStep2Args(String parsedDir, String outputDir) {
+		return new String[] {
 				RunPipe.CORPUS_READER,
-				"tratz.runpipe.impl.corpusreader.GzippedCorpusReader",
-				"InputDirectories="+STEP1_OUTPUT_DIR,
+				"tratz.runpipe.impl.corpusreader.StandoffCorpusReader",
+				"InputDirectories="+parsedDir,
 				RunPipe.ANNOTATOR,
 				"tratz.runpipe.impl.annotators.parse.TokenFieldUpdater",
 				"WordNetDir="+WORDNET_DIR,
 				RunPipe.ANNOTATOR,
-				"runpipewrappers.ner.OpenNlpNerWrapper",
-				"ModelPath="+OPENNLP_NER_MODELS_DIR+"/person.bin.gz",
-				"AnnotationClass=tratz.runpipe.annotations.PersonAnnotation",
-				RunPipe.ANNOTATOR,
-				"runpipewrappers.ner.OpenNlpNerWrapper",
-				"ModelPath="+OPENNLP_NER_MODELS_DIR+"/organization.bin.gz",
-				"AnnotationClass=tratz.runpipe.annotations.OrganizationAnnotation",				
-				RunPipe.ANNOTATOR,
-				"runpipewrappers.ner.OpenNlpNerWrapper", 
-				"ModelPath="+OPENNLP_NER_MODELS_DIR+"/location.bin.gz",
-				"AnnotationClass=tratz.runpipe.annotations.LocationAnnotation",
+				"runpipewrappers.ner.OpenNlpMultiNerWrapper",
+				"ModelPaths="+OPENNLP_NER_MODELS_DIR+"/person.bin.gz"+File.pathSeparator
+					+OPENNLP_NER_MODELS_DIR+"/organization.bin.gz"+File.pathSeparator
+					+OPENNLP_NER_MODELS_DIR+"/location.bin.gz",
+				"AnnotationClasses=tratz.runpipe.annotations.PersonAnnotation"+File.pathSeparator
+					+"tratz.runpipe.annotations.OrganizationAnnotation"+File.pathSeparator
+					+"tratz.runpipe.annotations.LocationAnnotation",
 				RunPipe.END_POINT,
 				"bewte.beextraction.BasicElementExtractor",
-				"OutputDir="+STEP2_OUTPUT_DIR
-		};	
-		RunPipe.main(args2);
+				"OutputDir="+outputDir
+		};
 	}
 
 	
+	/**
+	 * Steps 1 and 2 as a single pipe, with the BEs kept in memory by an InMemoryBasicElementExtractor.
+	 * The BE files are also written to beDebugDir unless it is null.
+	 */
+	static String[] createFusedArgs(String summariesDir, String beDebugDir) {
+		List<String> args = new ArrayList<String>();
+		// the reader and annotators of step 1 followed by the annotators of step 2
+		List<String> step1Args = Arrays.asList(createStep1Args(summariesDir, null));
+		List<String> step2Args = Arrays.asList(createStep2Args(null, null));
+		args.addAll(step1Args.subList(0, step1Args.indexOf(RunPipe.END_POINT)));
+		args.addAll(step2Args.subList(step2Args.indexOf(RunPipe.ANNOTATOR), step2Args.indexOf(RunPipe.END_POINT)));
+		args.add(RunPipe.END_POINT);
+		args.add("bewte.beextraction.InMemoryBasicElementExtractor");
+		if(beDebugDir != null) {
+			args.add("OutputDir="+beDebugDir);
+		}
+		return args.toArray(new String[args.size()]);
+	}
+	
 	public static void step3() throws Exception {
-		String[] args3 = new String[] {
-				STEP2_OUTPUT_DIR,
-				STEP3_OUTPUT_DIR,
+		BEXpander.main(createStep3Args(STEP2_OUTPUT_DIR, STEP3_OUTPUT_DIR));
+	}
+	
+	static String[] createStep3Args(String beDir, String outputDir) {
+		return new String[] {
+				beDir,
+				outputDir,
 				WORDNET_DIR,
 				"0",
 				"-1",
@@ -133,14 +176,17 @@ public class BEwT_Evaluation {
 				ENGLISH_TRANSFORM_LIST,
 				"bewte.names.T2VStyleNameExtractor"				
 		};
-		BEXpander.main(args3);	
 	}
 	
 	public static void step4() throws Exception {
-		String[] args4 = new String[] {
-				STEP3_OUTPUT_DIR,
-				SYSTEM_LEVEL_OUTPUT_FILE,
-				SUMMARY_LEVEL_OUTPUT_FILE,
+		BEwT_E.main(createStep4Args(STEP3_OUTPUT_DIR, SYSTEM_LEVEL_OUTPUT_FILE, SUMMARY_LEVEL_OUTPUT_FILE));
+	}
+	
+	static String[] createStep4Args(String bexDir, String systemLevelOutputFile, String summaryLevelOutputFile) {
+		return new String[] {
+				bexDir,
+				systemLevelOutputFile,
+				summaryLevelOutputFile,
 				"bewte.scoring.TallyFunction$BinaryTallyFunction",
 				"false",
 				ENGLISH_RULE_LIST,
@@ -151,7 +197,6 @@ public class BEwT_Evaluation {
 				"bewte.names.T2VStyleNameExtractor",
 				".*"				
 		};
-		BEwT_E.main(args4);	
 	}
 
 }
@@ -0,0 +1,89 @@
+package bewte;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import tratz.runpipe.util.ShardManifest;
+
+import bewte.util.BEUtils;
+
+/**
+ * Checks that the shards of a sharded BEXpander run (see its shard and manifest arguments) are complete and
+ * then scores their combined output with BEwT_E. Every BE file must have been expanded by exactly one shard
+ * and its BEX file must be found in one of the BEX directories given to BEwT_E.
+ * 
+ * Arguments: the manifest files or directories holding them (separated by the path separator), the BE directory,
+ * followed by the BEwT_E arguments, whose BE directories are the BEX directories of the shards.
+ */
+public class MergeShards {
+
+	public static void main(String[] args) throws Exception {
+		List<File> manifestFiles = new ArrayList<File>();
+		for(String manifestFile : args[0].split(File.pathSeparator)) {
+			manifestFiles.add(new File(manifestFile));
+		}
+		File beDir = new File(args[1]);
+		String[] bewteArgs = Arrays.copyOfRange(args, 2, args.length);
+		String[] bexDirs = bewteArgs[0].split(File.pathSeparator);
+		
+		List<ShardManifest> manifests = ShardManifest.readAll(manifestFiles);
+		List<String> problems = verify(manifests, beDir, bexDirs);
+		if(problems.size() > 0) {
+			for(String problem : problems) {
+				System.err.println(problem);
+			}
+			System.err.println("Shards incomplete: " + problems.size() + " problem(s)");
+			System.exit(1);
+		}
+		System.err.println("All " + manifests.size() + " shards complete");
+		new BEwT_E().evaluate(bewteArgs);
+	}
+	
+	/**
+	 * Returns a description of each problem found (empty if the shards are complete)
+	 */
+	public static List<String> verify(List<ShardManifest> manifests, File beDir, String[] bexDirs) {
+		List<String> problems = ShardManifest.verify(manifests);
+		
+		Set<String> expandedFiles = new HashSet<String>();
+		for(ShardManifest manifest : manifests) {
+			expandedFiles.addAll(manifest.getEntries());
+		}
+		List<File> beFiles = new ArrayList<File>();
+		BEUtils.getFiles(beDir, beFiles);
+		Set<String> beFileNames = new HashSet<String>();
+		for(File beFile : beFiles) {
+			beFileNames.add(beFile.getName());
+			if(!expandedFiles.contains(beFile.getName())) {
+				problems.add("Not expanded by any shard: " + beFile.getName());
+			}
+		}
+		Set<String> bexFileNames = new HashSet<String>();
+		for(String bexDir : bexDirs) {
+			List<File> bexFiles = new ArrayList<File>();
+			BEUtils.getFiles(new File(bexDir), bexFiles);
+			for(File bexFile : bexFiles) {
+				if(!bexFileNames.add(bexFile.getName())) {
+					problems.add("More than one BEX file: " + bexFile.getName());
+				}
+			}
+		}
+		List<String> sortedExpandedFiles = new ArrayList<String>(expandedFiles);
+		Collections.sort(sortedExpandedFiles);
+		for(String expandedFile : sortedExpandedFiles) {
+			if(!beFileNames.contains(expandedFile)) {
+				problems.add("Expanded but not in the BE directory: " + expandedFile);
+			}
+			if(!bexFileNames.contains(expandedFile)) {
+				problems.add("Missing BEX file: " + expandedFile);
+			}
+		}
+		return problems;
+	}
+	
+}
@@ -0,0 +1,117 @@
+package bewte;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import foal.list.IntArrayList;
+import foal.map.IntIntHashMap;
+
+import bewte.scoring.TallyFunction;
+
+/**
+ * Holds the parts of the scoring that depend only on the topic: the reference frequency
+ * tables (over all N references and with each reference left out in turn) and the side weight
+ * of every reference under each of these N+1 tables. It is built once per topic and shared,
+ * read-only, by the scoring of all the topic's peers.
+ */
+public class TopicScoringContext {
+
+	/** Passed as the excluded reference to use the frequencies over all references */
+	public final static int NONE = -1;
+
+	private final List<File> mReferenceFiles;
+	private final double[] mRuleWeights;
+	private final TallyFunction mTallyFunction;
+
+	// index N holds the table over all references, index i the table without reference i
+	private final IntIntHashMap[] mFrequencies;
+	// mReferenceWeights[k][j] is the side weight of reference j under table k
+	private final double[][] mReferenceWeights;
+
+	public TopicScoringContext(List<File> referenceFiles, Map<File, List<BE>> fileToBEs, TallyFunction tallyFunction, double[] ruleWeights) {
+		mReferenceFiles = referenceFiles;
+		mRuleWeights = ruleWeights;
+		mTallyFunction = tallyFunction;
+
+		final int numReferences = referenceFiles.size();
+		// The distinct BEs of each reference
+		IntArrayList[] uniqueIds = new IntArrayList[numReferences];
+		IntIntHashMap all = new IntIntHashMap();
+		for(int i = 0; i < numReferences; i++) {
+			uniqueIds[i] = new IntArrayList();
+			IntIntHashMap beEquivIdSet = new IntIntHashMap();
+			for(BE be : fileToBEs.get(referenceFiles.get(i))) {
+				int equivId = be.getEquivalentId();
+				if(beEquivIdSet.get(equivId) == 0) {
+					beEquivIdSet.put(equivId, 1);
+					uniqueIds[i].add(equivId);
+					all.put(equivId, all.get(equivId)+1);
+				}
+			}
+		}
+
+		mFrequencies = new IntIntHashMap[numReferences+1];
+		mFrequencies[numReferences] = all;
+		for(int i = 0; i < numReferences; i++) {
+			IntIntHashMap leaveOneOut = (IntIntHashMap)all.clone();
+			IntArrayList ids = uniqueIds[i];
+			final int numIds = ids.size();
+			for(int k = 0; k < numIds; k++) {
+				int equivId = ids.getQuick(k);
+				int count = leaveOneOut.get(equivId)-1;
+				if(count == 0) {
+					leaveOneOut.removeKey(equivId);
+				}
+				else {
+					leaveOneOut.put(equivId, count);
+				}
+			}
+			mFrequencies[i] = leaveOneOut;
+		}
+
+		mReferenceWeights = new double[numReferences+1][numReferences];
+		for(int k = 0; k <= numReferences; k++) {
+			for(int j = 0; j < numReferences; j++) {
+				mReferenceWeights[k][j] = BEMatcher.calcGraphSideWeight(fileToBEs.get(referenceFiles.get(j)), ruleWeights, mFrequencies[k], tallyFunction);
+			}
+		}
+	}
+
+	public int getNumReferences() {
+		return mReferenceFiles.size();
+	}
+
+	public List<File> getReferenceFiles() {
+		return mReferenceFiles;
+	}
+
+	/**
+	 * Returns the index of the file among the references, or NONE
+	 */
+	public int indexOf(File file) {
+		return mReferenceFiles.indexOf(file);
+	}
+
+	/**
+	 * Returns the BE frequency table over all references except the excluded one (NONE for all references)
+	 */
+	public IntIntHashMap getFrequencies(int excludedReference) {
+		return mFrequencies[excludedReference == NONE ? mReferenceFiles.size() : excludedReference];
+	}
+
+	/**
+	 * Returns the side weight of reference j under the frequency table that excludes the given reference
+	 */
+	public double getReferenceWeight(int j, int excludedReference) {
+		return mReferenceWeights[excludedReference == NONE ? mReferenceFiles.size() : excludedReference][j];
+	}
+
+	/**
+	 * Computes the side weight of a (peer) BE list under the frequency table that excludes the given reference
+	 */
+	public double getSideWeight(List<BE> beList, int excludedReference) {
+		return BEMatcher.calcGraphSideWeight(beList, mRuleWeights, getFrequencies(excludedReference), mTallyFunction);
+	}
+
+}
@@ -1,8 +1,9 @@
 package bewte.annotations;
 
 import tratz.runpipe.TextDocument;
+import tratz.runpipe.util.StandoffDocumentCodec;
 
-public class DateAnnotation extends CanonicalizingAnnotation {
+public class DateAnnotation extends CanonicalizingAnnotation implements StandoffDocumentCodec.StringAttributes {
 	
 	public static final long serialVersionUID = 1;
 	
@@ -17,6 +18,10 @@ public class DateAnnotation extends CanonicalizingAnnotation {
 		mYear = year;
 	}
 	
+	public DateAnnotation(TextDocument doc, int start, int end) {
+		super(doc, start, end);
+	}
+	
 	@Override
 	public String getCanonicalString() {
 		return mMonth + "-" + mDate + "-" + mYear;
@@ -27,4 +32,16 @@ public class DateAnnotation extends CanonicalizingAnnotation {
 		return DateAnnotation.class.getSimpleName();
 	}
 	
+	@Override
+	public String[] getStringAttributes() {
+		return new String[]{mMonth, mDate, mYear};
+	}
+	
+	@Override
+	public void setStringAttributes(String[] attributes) {
+		mMonth = attributes[0];
+		mDate = attributes[1];
+		mYear = attributes[2];
+	}
+	
 }
\ No newline at end of file
@@ -2,7 +2,10 @@ package bewte.beextraction;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -24,7 +27,9 @@ import tratz.runpipe.annotations.Sentence;
 import tratz.runpipe.annotations.Token;
 import tratz.runpipe.annotations.Token.Arc;
 import tratz.runpipe.impl.EndPointImpl;
+import tratz.runpipe.util.ContentCache;
 import tratz.runpipe.util.RunpipeUtils;
+import tratz.runpipe.util.StandoffDocumentCodec;
 import tratz.util.TreebankConstants;
 
 import bewte.BEConstants;
@@ -35,13 +40,36 @@ import bewte.annotations.DateAnnotation;
 public class BasicElementExtractor extends EndPointImpl {
 	
 	public final static String PARAM_OUTPUT_DIR = "OutputDir";
+	// Optional: directory of a cache of the BEs of each document (none if empty)
+	public final static String PARAM_CACHE_DIR = "CacheDir";
+	// Optional: size limit of the cache in megabytes
+	public final static String PARAM_CACHE_SIZE = "CacheSize";
+	
+	public final static long DEFAULT_CACHE_SIZE_MB = 1024;
 	
 	private File mOutputDirectory;
 	
+	private ContentCache mCache;
+	private String mCacheFingerprint;
 	
 	@Override
 	public void initialize(Map<String, String> params) throws InitializationException {
 		mOutputDirectory = new File(params.get(PARAM_OUTPUT_DIR));
+		initializeCache(params);
+	}
+	
+	protected void initializeCache(Map<String, String> params) throws InitializationException {
+		String cacheDir = params.get(PARAM_CACHE_DIR);
+		if(cacheDir != null && cacheDir.length() > 0) {
+			String cacheSize = params.get(PARAM_CACHE_SIZE);
+			try {
+				mCache = new ContentCache(new File(cacheDir), (cacheSize == null ? DEFAULT_CACHE_SIZE_MB : Long.parseLong(cacheSize)) << 20);
+			}
+			catch(IOException ioe) {
+				throw new InitializationException(ioe);
+			}
+			mCacheFingerprint = new ContentCache.KeyBuilder().addCodeFingerprint(getClass()).toKey();
+		}
 	}
 
 	private int mDirectoryCount;
@@ -90,13 +118,58 @@ public class BasicElementExtractor extends EndPointImpl {
 			mDirectoryCount++;
 		}
 		
-		PrintWriter writer = null;
+		String uri = doc.getUri();
+		try {
+			Writer writer = new FileWriter(new File(mCurrentDirectory,uri.substring(uri.lastIndexOf('/')+1)));
+			writer.write(getBEText(doc));
+			writer.close();
+		}
+		catch(IOException ioe) {
+			throw new ProcessException(ioe);
+		}
+	}
+	
+	/**
+	 * Returns the BEs of the document as written to the BE file, from the cache if it holds them
+	 */
+	protected String getBEText(TextDocument doc) throws ProcessException {
+		String key = null;
+		if(mCache != null) {
+			try {
+				key = new ContentCache.KeyBuilder().add(mCacheFingerprint).add(doc).toKey();
+			}
+			catch(IOException ioe) {
+				throw new ProcessException(ioe);
+			}
+			byte[] cached = mCache.get(key);
+			if(cached != null) {
+				return new String(cached, StandoffDocumentCodec.UTF8);
+			}
+		}
+		StringWriter text = new StringWriter();
+		PrintWriter writer = new PrintWriter(text);
+		extract(doc, writer);
+		writer.close();
+		if(key != null) {
+			try {
+				mCache.put(key, text.toString().getBytes(StandoffDocumentCodec.UTF8));
+			}
+			catch(IOException ioe) {
+				// the BEs are simply not cached
+				System.err.println("Unable to cache the BEs of " + doc.getUri() + ": " + ioe.getMessage());
+			}
+		}
+		return text.toString();
+	}
+	
+	/**
+	 * Writes the BEs of the document to the writer (which is not closed)
+	 */
+	public void extract(TextDocument doc, PrintWriter writer) throws ProcessException {
 		try {
 			Set<String> centerLemmaSet = new HashSet<String>();
 			Set<String> rightLemmaSet = new HashSet<String>();
 			Set<String> leftLemmaSet = new HashSet<String>();
-			String uri = doc.getUri();
-			writer = new PrintWriter(new FileWriter(new File(mCurrentDirectory,uri.substring(uri.lastIndexOf('/')+1))));
 			List<Sentence> sentences = (List)doc.getAnnotationList(Sentence.class);
 			List<Token> tokens = (List<Token>)doc.getAnnotationList(Token.class);
 			if(sentences != null && tokens != null) {
@@ -566,7 +639,7 @@ public class BasicElementExtractor extends EndPointImpl {
 		catch(Exception e) {
 			throw new ProcessException(e);
 		}
-		writer.close();
+		writer.flush();
 	}
 	
 	private Token getFirstChild(Token t, String depend) {
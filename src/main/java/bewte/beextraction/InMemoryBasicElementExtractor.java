@@ -0,0 +1,81 @@
+package bewte.beextraction;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import foal.list.LongArrayList;
+
+import tratz.runpipe.InitializationException;
+import tratz.runpipe.ProcessException;
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.ThreadSafe;
+
+import bewte.BE;
+import bewte.io.BESetReader;
+
+/**
+ * Keeps the BEs of each document in memory (as BEXpander would read them from the BE file)
+ * instead of writing BE files. The documents are keyed by a File named like the BE file would be.
+ * If the OutputDir parameter is given the BE files are written there as well (flat, for debugging).
+ * Takes the same cache parameters as BasicElementExtractor.
+ */
+public class InMemoryBasicElementExtractor extends BasicElementExtractor implements ThreadSafe {
+
+	private File mDebugDirectory;
+
+	private final Map<File, List<BE>> mFileToBes = new HashMap<File, List<BE>>();
+	private final Map<File, List<Set<String>>> mFileToLemmaSet = new HashMap<File, List<Set<String>>>();
+	private final Map<String, BE.BEPart> mBePartMap = new HashMap<String, BE.BEPart>();
+
+	@Override
+	public void initialize(Map<String, String> params) throws InitializationException {
+		String outputDir = params.get(PARAM_OUTPUT_DIR);
+		if(outputDir != null) {
+			mDebugDirectory = new File(outputDir);
+			mDebugDirectory.mkdirs();
+		}
+		initializeCache(params);
+	}
+
+	@Override
+	public void process(TextDocument doc) throws ProcessException {
+		String uri = doc.getUri();
+		File file = new File(uri.substring(uri.lastIndexOf('/')+1));
+		String text = getBEText(doc);
+		try {
+			List<BE> beList = new ArrayList<BE>();
+			List<Set<String>> lemmaSet;
+			synchronized(this) {
+				BESetReader.getBeList(beList, new BufferedReader(new StringReader(text)), null, null, null, new ArrayList<Map<BE, LongArrayList>>(), mBePartMap, null, true);
+				lemmaSet = BESetReader.getLemmaSet(new BufferedReader(new StringReader(text)));
+				mFileToBes.put(file, beList);
+				mFileToLemmaSet.put(file, lemmaSet);
+			}
+			if(mDebugDirectory != null) {
+				FileWriter debugWriter = new FileWriter(new File(mDebugDirectory, file.getName()));
+				debugWriter.write(text);
+				debugWriter.close();
+			}
+		}
+		catch(IOException ioe) {
+			throw new ProcessException(ioe);
+		}
+	}
+
+	public synchronized Map<File, List<BE>> getFileToBes() {
+		return mFileToBes;
+	}
+
+	public synchronized Map<File, List<Set<String>>> getFileToLemmaSet() {
+		return mFileToLemmaSet;
+	}
+
+}
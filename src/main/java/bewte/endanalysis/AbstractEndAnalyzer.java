@@ -12,8 +12,20 @@ import foal.map.IntIntHashMap;
 
 public abstract class AbstractEndAnalyzer implements EndAnalyzer {
 	
+	/** 
+	 * Config parameter: keep the BE matchers between iterations and only re-solve those whose edge weights change.
+	 * The matching graph of every (peer, reference) pair is then held for the whole run, which typically takes 
+	 * several times the memory of the BEs themselves. Ignored when topics are streamed.
+	 */
+	public static final String CACHE_MATCHERS_PARAM = "CACHE_MATCHERS";
+	
 	protected String mAutoSystemsPattern;
 	protected String mRefSystemsPattern;
+	protected boolean mCacheMatchers;
+	
+	public boolean isCachingMatchers() {
+		return mCacheMatchers;
+	}
 	
 	public void setSystemPatterns(String autoSystemsPattern, String refSystemsPattern) {
 		mAutoSystemsPattern = autoSystemsPattern;
@@ -43,6 +55,7 @@ public abstract class AbstractEndAnalyzer implements EndAnalyzer {
 			}
 		}
 		reader.close();
+		ender.mCacheMatchers = Boolean.parseBoolean(params.get(CACHE_MATCHERS_PARAM));
 		ender.init(params);
 		return ender;
 	}
@@ -6,25 +6,38 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import foal.list.LongArrayList;
 import foal.map.IntIntHashMap;
 
 import bewte.BE;
 import bewte.BEConstants;
+import bewte.BEDictionary;
 import bewte.BE.BEPart;
 
 public class BESetReader {
 	
 	public static List<Set<String>> getLemmaSet(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			return getLemmaSet(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Reads the left, center and right lemma sets of a BE file (the reader is not closed)
+	 */
+	public static List<Set<String>> getLemmaSet(BufferedReader reader) throws IOException {
 		List<Set<String>> listOfLemmaSets = Arrays.asList((Set<String>)new HashSet<String>(), (Set<String>)new HashSet<String>(), (Set<String>)new HashSet<String>());
 		
-		BufferedReader reader = new BufferedReader(new FileReader(file));
 		String line = null;
 		while((line = reader.readLine()) != null) {
 			if(line.startsWith("@lemmas")) {
@@ -45,23 +58,97 @@ public class BESetReader {
 				}
 			}
 		}
-		reader.close();
 		return listOfLemmaSets;
 	}
 	
+	/**
+	 * Collects BEs and their transformed versions in file order, dropping duplicate BEs 
+	 * (and the transformed versions that follow them) unless multiples are allowed.
+	 * Shared by the text and binary BEX readers.
+	 */
+	public static class BEListBuilder {
+		private final List<BE> mBes;
+		private final List<Map<BE, LongArrayList>> mBeToTransforms;
+		private final boolean mMultiplesAllowed;
+		private final Set<BE> mSeenBEs = new HashSet<BE>();
+		private Map<BE, LongArrayList> mPrevBeMap;
+		private boolean mPreviousBeSkipped;
+		
+		public BEListBuilder(List<BE> bes, List<Map<BE, LongArrayList>> beToTransforms, boolean multiplesAllowed) {
+			mBes = bes;
+			mBeToTransforms = beToTransforms;
+			mMultiplesAllowed = multiplesAllowed;
+		}
+		
+		public void addBE(BE be) {
+			if(!mSeenBEs.add(be)) {
+				if(mMultiplesAllowed) {
+					mPreviousBeSkipped = false;
+					mBes.add(be);
+					mBeToTransforms.add(mPrevBeMap = new HashMap<BE, LongArrayList>());	
+				}
+				else {
+					mPreviousBeSkipped = true;	
+				}							
+			}
+			else {
+				mPreviousBeSkipped = false;
+				mBes.add(be);
+				mBeToTransforms.add(mPrevBeMap = new HashMap<BE, LongArrayList>());
+			}
+		}
+		
+		public void addTransformedBE(BE be, long mask) {
+			if(!mPreviousBeSkipped) {
+				LongArrayList masks = mPrevBeMap.get(be);
+				if(masks == null) {
+					mPrevBeMap.put(be, masks = new LongArrayList(2));
+					masks.add(mask);
+				}
+				else {
+					addMask(masks, mask);
+				}
+			}
+		}
+	}
+	
 	public static void getBeList(List<BE> bes, 
 								 File file, 
 								 Set<String> rulesToIgnore, 
 								 IntIntHashMap ruleToAlpha,
 								 Map<String, Integer> transformNameToBitIndex,
-								 List<Map<BE, List<BitSet>>> beToTransforms,
+								 List<Map<BE, LongArrayList>> beToTransforms,
 								 Map<String, BEPart> bePartCanonicalMap,
+								 BEDictionary dictionary,
 								 boolean multiplesAllowed) throws IOException {
-		IntIntHashMap beToCount = new IntIntHashMap();
+		if(BinaryBEXReader.isBinaryBEXFile(file)) {
+			BinaryBEXReader reader = new BinaryBEXReader(file);
+			reader.getBeList(bes, rulesToIgnore, ruleToAlpha, transformNameToBitIndex, beToTransforms, bePartCanonicalMap, dictionary, multiplesAllowed);
+			return;
+		}
 		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			getBeList(bes, reader, rulesToIgnore, ruleToAlpha, transformNameToBitIndex, beToTransforms, bePartCanonicalMap, dictionary, multiplesAllowed);
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Reads BEs in the text format (the reader is not closed)
+	 */
+	public static void getBeList(List<BE> bes, 
+								 BufferedReader reader, 
+								 Set<String> rulesToIgnore, 
+								 IntIntHashMap ruleToAlpha,
+								 Map<String, Integer> transformNameToBitIndex,
+								 List<Map<BE, LongArrayList>> beToTransforms,
+								 Map<String, BEPart> bePartCanonicalMap,
+								 BEDictionary dictionary,
+								 boolean multiplesAllowed) throws IOException {
+		BEListBuilder builder = new BEListBuilder(bes, beToTransforms, multiplesAllowed);
 		String line = null;
-		Map<BE, List<BitSet>> prevBeMap = null;
-		boolean previousBeSkipped = false;
 		char splitChar = BEConstants.BE_SEPARATOR_CHAR;
 		String splitString = ""+splitChar;//"\\"+splitChar;
 		while ((line = reader.readLine()) != null) {
@@ -100,76 +187,54 @@ public class BESetReader {
 					}
 					
 					int ruleNum = Integer.parseInt(rule);
-					BE be = new BE(parts, ruleNum, ruleToAlpha != null ? ruleToAlpha.get(ruleNum) : -1);
-					int id = be.getEquivalentId();//.getUniqueId();
+					BE be = new BE(parts, ruleNum, ruleToAlpha != null ? ruleToAlpha.get(ruleNum) : -1, dictionary);
 					if(tabStart) {
-						if(!previousBeSkipped) {
-							List<BitSet> bitSets = prevBeMap.get(be);
-							BitSet newBitSet = createBitSet(transforms, transformNameToBitIndex);
-							boolean isSuperSet = false;
-							if(bitSets == null) {
-								prevBeMap.put(be, bitSets = new ArrayList<BitSet>());
-							}
-							else {
-								List<BitSet> bitSetsToRemove = new ArrayList<BitSet>();
-								for(BitSet bsPrior : bitSets) {
-									if(newBitSet.equals(bsPrior)) {
-										bitSetsToRemove.add(bsPrior);
-									}
-									else {
-										BitSet superSet = new BitSet();
-										superSet.or(newBitSet);
-										superSet.or(bsPrior);
-										if(superSet.equals(bsPrior)) {
-											bitSetsToRemove.add(bsPrior);
-										}
-										else if(superSet.equals(newBitSet)) {
-											isSuperSet = true;
-											break;
-										}
-									}
-								}
-								if(!isSuperSet) {
-									bitSets.removeAll(bitSetsToRemove);
-								}
-							}
-							if(!isSuperSet) {
-								bitSets.add(newBitSet);
-							}
-						}
+						builder.addTransformedBE(be, createMask(transforms, transformNameToBitIndex));
 					}
 					else {
-						int count = beToCount.get(id);
-						if(count > 0) {
-							beToCount.put(id, count+1);
-							if(multiplesAllowed) {
-								previousBeSkipped = false;
-								bes.add(be);
-								beToTransforms.add(prevBeMap = new HashMap<BE, List<BitSet>>());	
-							}
-							else {
-								previousBeSkipped = true;	
-							}							
-						}
-						else {
-							previousBeSkipped = false;
-							beToCount.put(id, 1);
-							bes.add(be);
-							beToTransforms.add(prevBeMap = new HashMap<BE, List<BitSet>>());
-						}
+						builder.addBE(be);
 					}
 				}
 			}
 		}
-		reader.close();
 	}
 	
-	private static BitSet createBitSet(String[] transformNames, Map<String, Integer> transformNameToBitIndex) {
-		BitSet bs = new BitSet();
+	/**
+	 * Adds the transform mask to the list unless the list already holds a strict subset of it.
+	 * Masks that are supersets of (or equal to) the new mask are removed.
+	 */
+	public static void addMask(LongArrayList masks, long newMask) {
+		final int numMasks = masks.size();
+		for(int i = 0; i < numMasks; i++) {
+			long prior = masks.getQuick(i);
+			if(prior != newMask && (prior & ~newMask) == 0) {
+				return;
+			}
+		}
+		int kept = 0;
+		for(int i = 0; i < numMasks; i++) {
+			long prior = masks.getQuick(i);
+			if((newMask & ~prior) != 0) {
+				masks.setQuick(kept++, prior);
+			}
+		}
+		masks.setSize(kept);
+		masks.add(newMask);
+	}
+	
+	/**
+	 * Encodes the named transforms as a bit mask (transform bit indices must be less than 64)
+	 */
+	public static long createMask(String[] transformNames, Map<String, Integer> transformNameToBitIndex) {
+		long mask = 0;
 		for(String s : transformNames) {
-			bs.set(transformNameToBitIndex.get(s));
+			int bit = transformNameToBitIndex.get(s);
+			if(bit >= BEConstants.MAX_TRANSFORMS) {
+				throw new IllegalArgumentException("Too many transforms, at most " + BEConstants.MAX_TRANSFORMS + " are supported: " + s);
+			}
+			mask |= 1L << bit;
 		}
-		return bs;
+		return mask;
 	}
 	
 	
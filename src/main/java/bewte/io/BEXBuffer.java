@@ -0,0 +1,138 @@
+package bewte.io;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import foal.list.LongArrayList;
+import foal.map.IntIntHashMap;
+
+import bewte.BE;
+import bewte.BEConstants;
+import bewte.BEDictionary;
+import bewte.BE.BEPart;
+
+/**
+ * Holds BEs and their transformed versions in memory, in the order BEXpander produces them.
+ * It takes the place of a BEX file (written like BinaryBEXWriter, read like BinaryBEXReader)
+ * when the expansion and the scoring run in the same process.
+ */
+public class BEXBuffer {
+
+	private final List<String> mTransformNames;
+	private final List<BE> mEntries = new ArrayList<BE>();
+	// 0 for a BE of the summary, otherwise the transforms that produced it
+	private final LongArrayList mMasks = new LongArrayList();
+
+	/**
+	 * @param transformNames the name of the transform for each bit of the transform masks
+	 */
+	public BEXBuffer(List<String> transformNames) {
+		if(transformNames.size() > BEConstants.MAX_TRANSFORMS) {
+			throw new IllegalArgumentException("Too many transforms, at most " + BEConstants.MAX_TRANSFORMS + " are supported: " + transformNames.size());
+		}
+		mTransformNames = transformNames;
+	}
+
+	public synchronized void addBE(BE be) {
+		mEntries.add(be);
+		mMasks.add(0L);
+	}
+
+	public synchronized void addTransformedBE(BE be, BitSet transforms) {
+		long mask = 0;
+		for(int bit = transforms.nextSetBit(0); bit >= 0; bit = transforms.nextSetBit(bit+1)) {
+			if(bit >= mTransformNames.size()) {
+				throw new IllegalArgumentException("Unknown transform bit: " + bit);
+			}
+			mask |= 1L << bit;
+		}
+		mEntries.add(be);
+		mMasks.add(mask);
+	}
+
+	public synchronized int getNumEntries() {
+		return mEntries.size();
+	}
+
+	/**
+	 * Same contract as BESetReader.getBeList
+	 */
+	public synchronized void getBeList(List<BE> bes,
+						  Set<String> rulesToIgnore,
+						  IntIntHashMap ruleToAlpha,
+						  Map<String, Integer> transformNameToBitIndex,
+						  List<Map<BE, LongArrayList>> beToTransforms,
+						  Map<String, BEPart> bePartCanonicalMap,
+						  BEDictionary dictionary,
+						  boolean multiplesAllowed) {
+		BESetReader.BEListBuilder builder = new BESetReader.BEListBuilder(bes, beToTransforms, multiplesAllowed);
+		int[] bitMap = createBitMap(transformNameToBitIndex);
+		boolean checkRules = rulesToIgnore != null && rulesToIgnore.size() > 0;
+		final int numEntries = mEntries.size();
+		for(int entry = 0; entry < numEntries; entry++) {
+			BE be = mEntries.get(entry);
+			int rule = be.getRule();
+			if(checkRules && rulesToIgnore.contains(Integer.toString(rule))) {
+				continue;
+			}
+			be = new BE(getParts(be, bePartCanonicalMap), rule, ruleToAlpha != null ? ruleToAlpha.get(rule) : -1, dictionary);
+			long bufferMask = mMasks.getQuick(entry);
+			if(bufferMask == 0) {
+				builder.addBE(be);
+			}
+			else {
+				long mask = 0;
+				for(long bits = bufferMask; bits != 0; bits &= bits-1) {
+					mask |= 1L << bitMap[Long.numberOfTrailingZeros(bits)];
+				}
+				builder.addTransformedBE(be, mask);
+			}
+		}
+	}
+
+	private static List<BEPart> getParts(BE be, Map<String, BEPart> bePartCanonicalMap) {
+		List<BEPart> parts = be.getParts();
+		if(bePartCanonicalMap == null) {
+			return parts;
+		}
+		List<BEPart> canonicalParts = new ArrayList<BEPart>(parts.size());
+		for(BEPart part : parts) {
+			String bePartString = part.text + BEConstants.BE_SEPARATOR_CHAR + part.type;
+			BEPart canonicalPart = bePartCanonicalMap.get(bePartString);
+			if(canonicalPart == null) {
+				bePartCanonicalMap.put(bePartString, canonicalPart = part);
+			}
+			canonicalParts.add(canonicalPart);
+		}
+		return canonicalParts;
+	}
+
+	/**
+	 * Builds the mapping from this buffer's transform bits to the caller's bit numbering
+	 */
+	private int[] createBitMap(Map<String, Integer> transformNameToBitIndex) {
+		final int numTransforms = mTransformNames.size();
+		int[] bitMap = new int[numTransforms];
+		for(int b = 0; b < numTransforms; b++) {
+			if(transformNameToBitIndex == null) {
+				bitMap[b] = b;
+			}
+			else {
+				String name = mTransformNames.get(b);
+				Integer bit = transformNameToBitIndex.get(name);
+				if(bit == null) {
+					throw new IllegalArgumentException("Unknown transform: " + name);
+				}
+				if(bit >= BEConstants.MAX_TRANSFORMS) {
+					throw new IllegalArgumentException("Too many transforms, at most " + BEConstants.MAX_TRANSFORMS + " are supported: " + name);
+				}
+				bitMap[b] = bit;
+			}
+		}
+		return bitMap;
+	}
+
+}
@@ -0,0 +1,243 @@
+package bewte.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import foal.list.LongArrayList;
+import foal.map.IntIntHashMap;
+
+import bewte.BE;
+import bewte.BEConstants;
+import bewte.BEDictionary;
+import bewte.BE.BEPart;
+
+/**
+ * Reads the binary columnar BEX format written by BinaryBEXWriter.
+ * The columns are read in place; strings are only decoded the first time a part that uses them is needed.
+ * Files of up to MAX_HEAP_SIZE bytes (which includes the BEX file of a typical summary) are read into
+ * the heap, larger ones are memory mapped. A mapping is only released once the reader is garbage
+ * collected, and until then a mapped file cannot be deleted or overwritten on Windows.
+ */
+public class BinaryBEXReader {
+
+	// largest file read into the heap rather than mapped
+	public final static int MAX_HEAP_SIZE = 8*1024*1024;
+
+	private ByteBuffer mBuffer;
+
+	private int mNumStrings;
+	private int mNumTransforms;
+	private int mNumParts;
+	private int mNumEntries;
+
+	// byte offsets of the columns
+	private int mStringOffsetsStart;
+	private int mTransformNamesStart;
+	private int mPartTextStart;
+	private int mPartTypeStart;
+	private int mEntryRuleStart;
+	private int mEntryPartStartStart;
+	private int mPartRefsStart;
+	private int mEntryMaskStart;
+	private int mBlobStart;
+
+	private String[] mStrings;
+	private BEPart[] mParts;
+
+	public BinaryBEXReader(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if(size <= MAX_HEAP_SIZE) {
+				mBuffer = ByteBuffer.allocate((int)size);
+				while(mBuffer.hasRemaining()) {
+					if(channel.read(mBuffer) < 0) {
+						throw new IOException("Unexpected end of file: " + file);
+					}
+				}
+				mBuffer.clear();
+			}
+			else {
+				mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+		}
+		finally {
+			raf.close();
+		}
+		ByteBuffer buffer = mBuffer;
+		if(buffer.getInt(0) != BinaryBEXWriter.MAGIC) {
+			throw new IOException("Not a binary BEX file: " + file);
+		}
+		int version = buffer.getInt(4);
+		if(version != BinaryBEXWriter.VERSION) {
+			throw new IOException("Unsupported binary BEX version " + version + ": " + file);
+		}
+		mNumStrings = buffer.getInt(8);
+		mNumTransforms = buffer.getInt(12);
+		mNumParts = buffer.getInt(16);
+		mNumEntries = buffer.getInt(20);
+		int numPartRefs = buffer.getInt(24);
+
+		mStringOffsetsStart = 4*BinaryBEXWriter.HEADER_INTS;
+		mTransformNamesStart = mStringOffsetsStart + 4*(mNumStrings+1);
+		mPartTextStart = mTransformNamesStart + 4*mNumTransforms;
+		mPartTypeStart = mPartTextStart + 4*mNumParts;
+		mEntryRuleStart = mPartTypeStart + 4*mNumParts;
+		mEntryPartStartStart = mEntryRuleStart + 4*mNumEntries;
+		mPartRefsStart = mEntryPartStartStart + 4*(mNumEntries+1);
+		int intsEnd = mPartRefsStart + 4*numPartRefs;
+		mEntryMaskStart = (intsEnd % 8 == 0) ? intsEnd : intsEnd + 4;
+		mBlobStart = mEntryMaskStart + 8*mNumEntries;
+
+		mStrings = new String[mNumStrings];
+		mParts = new BEPart[mNumParts];
+	}
+
+	/**
+	 * Returns true if the file starts with the binary BEX magic number
+	 */
+	public static boolean isBinaryBEXFile(File file) throws IOException {
+		if(file.length() < 4*BinaryBEXWriter.HEADER_INTS) {
+			return false;
+		}
+		DataInputStream dis = new DataInputStream(new FileInputStream(file));
+		try {
+			return dis.readInt() == BinaryBEXWriter.MAGIC;
+		}
+		finally {
+			dis.close();
+		}
+	}
+
+	public int getNumEntries() {
+		return mNumEntries;
+	}
+
+	public int getRule(int entry) {
+		return mBuffer.getInt(mEntryRuleStart + 4*entry);
+	}
+
+	/**
+	 * Returns the transform mask (in this file's bit numbering) of the entry, 0 for a BE of the summary
+	 */
+	public long getMask(int entry) {
+		return mBuffer.getLong(mEntryMaskStart + 8*entry);
+	}
+
+	public String getTransformName(int bit) {
+		return getString(mBuffer.getInt(mTransformNamesStart + 4*bit));
+	}
+
+	public BEPart getPart(int part, Map<String, BEPart> bePartCanonicalMap) {
+		BEPart bePart = mParts[part];
+		if(bePart == null) {
+			String text = getString(mBuffer.getInt(mPartTextStart + 4*part));
+			String type = getString(mBuffer.getInt(mPartTypeStart + 4*part));
+			if(bePartCanonicalMap != null) {
+				String bePartString = text + BEConstants.BE_SEPARATOR_CHAR + type;
+				bePart = bePartCanonicalMap.get(bePartString);
+				if(bePart == null) {
+					bePartCanonicalMap.put(bePartString, bePart = new BEPart(text, type));
+				}
+			}
+			else {
+				bePart = new BEPart(text, type);
+			}
+			mParts[part] = bePart;
+		}
+		return bePart;
+	}
+
+	public List<BEPart> getParts(int entry, Map<String, BEPart> bePartCanonicalMap) {
+		int start = mBuffer.getInt(mEntryPartStartStart + 4*entry);
+		int end = mBuffer.getInt(mEntryPartStartStart + 4*(entry+1));
+		List<BEPart> parts = new ArrayList<BEPart>(end-start);
+		for(int i = start; i < end; i++) {
+			parts.add(getPart(mBuffer.getInt(mPartRefsStart + 4*i), bePartCanonicalMap));
+		}
+		return parts;
+	}
+
+	private String getString(int id) {
+		String s = mStrings[id];
+		if(s == null) {
+			int start = mBuffer.getInt(mStringOffsetsStart + 4*id);
+			int end = mBuffer.getInt(mStringOffsetsStart + 4*(id+1));
+			byte[] bytes = new byte[end-start];
+			ByteBuffer blob = mBuffer.duplicate();
+			blob.position(mBlobStart + start);
+			blob.get(bytes);
+			mStrings[id] = s = new String(bytes, BinaryBEXWriter.UTF8);
+		}
+		return s;
+	}
+
+	/**
+	 * Builds the mapping from this file's transform bits to the caller's bit numbering
+	 */
+	private int[] createBitMap(Map<String, Integer> transformNameToBitIndex) {
+		int[] bitMap = new int[mNumTransforms];
+		for(int b = 0; b < mNumTransforms; b++) {
+			if(transformNameToBitIndex == null) {
+				bitMap[b] = b;
+			}
+			else {
+				String name = getTransformName(b);
+				Integer bit = transformNameToBitIndex.get(name);
+				if(bit == null) {
+					throw new IllegalArgumentException("Unknown transform: " + name);
+				}
+				if(bit >= BEConstants.MAX_TRANSFORMS) {
+					throw new IllegalArgumentException("Too many transforms, at most " + BEConstants.MAX_TRANSFORMS + " are supported: " + name);
+				}
+				bitMap[b] = bit;
+			}
+		}
+		return bitMap;
+	}
+
+	/**
+	 * Same contract as BESetReader.getBeList
+	 */
+	public void getBeList(List<BE> bes,
+						  Set<String> rulesToIgnore,
+						  IntIntHashMap ruleToAlpha,
+						  Map<String, Integer> transformNameToBitIndex,
+						  List<Map<BE, LongArrayList>> beToTransforms,
+						  Map<String, BEPart> bePartCanonicalMap,
+						  BEDictionary dictionary,
+						  boolean multiplesAllowed) {
+		BESetReader.BEListBuilder builder = new BESetReader.BEListBuilder(bes, beToTransforms, multiplesAllowed);
+		int[] bitMap = createBitMap(transformNameToBitIndex);
+		boolean checkRules = rulesToIgnore != null && rulesToIgnore.size() > 0;
+		for(int entry = 0; entry < mNumEntries; entry++) {
+			int rule = getRule(entry);
+			if(checkRules && rulesToIgnore.contains(Integer.toString(rule))) {
+				continue;
+			}
+			BE be = new BE(getParts(entry, bePartCanonicalMap), rule, ruleToAlpha != null ? ruleToAlpha.get(rule) : -1, dictionary);
+			long fileMask = getMask(entry);
+			if(fileMask == 0) {
+				builder.addBE(be);
+			}
+			else {
+				long mask = 0;
+				for(long bits = fileMask; bits != 0; bits &= bits-1) {
+					mask |= 1L << bitMap[Long.numberOfTrailingZeros(bits)];
+				}
+				builder.addTransformedBE(be, mask);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package bewte.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import foal.list.ByteArrayList;
+import foal.list.IntArrayList;
+import foal.list.LongArrayList;
+
+import bewte.BE;
+import bewte.BEConstants;
+
+/**
+ * Writes BEs and their transformed versions in the binary columnar BEX format read by BinaryBEXReader.
+ * Entries are buffered in memory and the file is written by close().
+ *
+ * Layout (big-endian):
+ * header: magic, version, numStrings, numTransforms, numParts, numEntries, numPartRefs, blobLength
+ * int stringOffsets[numStrings+1]   byte offsets of the UTF-8 strings within the blob
+ * int transformNames[numTransforms] string id of the transform for each mask bit
+ * int partText[numParts], partType[numParts]   string ids of the distinct BE parts
+ * int entryRule[numEntries]
+ * int entryPartStart[numEntries+1]  entry i uses partRefs[entryPartStart[i]..entryPartStart[i+1]-1]
+ * int partRefs[numPartRefs]
+ * padding to a multiple of 8 bytes
+ * long entryMask[numEntries]        0 for a BE of the summary, otherwise the transforms that produced it
+ * byte blob[blobLength]
+ */
+public class BinaryBEXWriter {
+
+	public static final int MAGIC = 0x42455831; // "BEX1"
+	public static final int VERSION = 1;
+	public static final int HEADER_INTS = 8;
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File mFile;
+	private IntArrayList mTransformNames = new IntArrayList();
+
+	private Map<String, Integer> mStringToId = new HashMap<String, Integer>();
+	private IntArrayList mStringOffsets = new IntArrayList();
+	private ByteArrayList mBlob = new ByteArrayList();
+
+	private Map<String, Integer> mPartToId = new HashMap<String, Integer>();
+	private IntArrayList mPartText = new IntArrayList();
+	private IntArrayList mPartType = new IntArrayList();
+
+	private IntArrayList mEntryRule = new IntArrayList();
+	private IntArrayList mEntryPartStart = new IntArrayList();
+	private IntArrayList mPartRefs = new IntArrayList();
+	private LongArrayList mEntryMask = new LongArrayList();
+
+	/**
+	 * @param transformNames the name of the transform for each bit of the transform masks
+	 */
+	public BinaryBEXWriter(File file, List<String> transformNames) {
+		mFile = file;
+		if(transformNames.size() > BEConstants.MAX_TRANSFORMS) {
+			throw new IllegalArgumentException("Too many transforms, at most " + BEConstants.MAX_TRANSFORMS + " are supported: " + transformNames.size());
+		}
+		mStringOffsets.add(0);
+		for(String name : transformNames) {
+			mTransformNames.add(getStringId(name));
+		}
+		mEntryPartStart.add(0);
+	}
+
+	public void addBE(BE be) {
+		addEntry(be, 0L);
+	}
+
+	public void addTransformedBE(BE be, BitSet transforms) {
+		long mask = 0;
+		for(int bit = transforms.nextSetBit(0); bit >= 0; bit = transforms.nextSetBit(bit+1)) {
+			if(bit >= mTransformNames.size()) {
+				throw new IllegalArgumentException("Unknown transform bit: " + bit);
+			}
+			mask |= 1L << bit;
+		}
+		addEntry(be, mask);
+	}
+
+	private void addEntry(BE be, long mask) {
+		mEntryRule.add(be.getRule());
+		mEntryMask.add(mask);
+		for(BE.BEPart part : be.getParts()) {
+			String key = part.text + BEConstants.BE_SEPARATOR_CHAR + part.type;
+			Integer id = mPartToId.get(key);
+			if(id == null) {
+				mPartToId.put(key, id = mPartText.size());
+				mPartText.add(getStringId(part.text));
+				mPartType.add(getStringId(part.type));
+			}
+			mPartRefs.add(id);
+		}
+		mEntryPartStart.add(mPartRefs.size());
+	}
+
+	private int getStringId(String s) {
+		Integer id = mStringToId.get(s);
+		if(id == null) {
+			mStringToId.put(s, id = mStringToId.size());
+			byte[] bytes = s.getBytes(UTF8);
+			for(byte b : bytes) {
+				mBlob.add(b);
+			}
+			mStringOffsets.add(mBlob.size());
+		}
+		return id;
+	}
+
+	public void close() throws IOException {
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFile), 1 << 16));
+		final int numStrings = mStringToId.size();
+		final int numEntries = mEntryRule.size();
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(numStrings);
+		dos.writeInt(mTransformNames.size());
+		dos.writeInt(mPartText.size());
+		dos.writeInt(numEntries);
+		dos.writeInt(mPartRefs.size());
+		dos.writeInt(mBlob.size());
+		writeInts(dos, mStringOffsets);
+		writeInts(dos, mTransformNames);
+		writeInts(dos, mPartText);
+		writeInts(dos, mPartType);
+		writeInts(dos, mEntryRule);
+		writeInts(dos, mEntryPartStart);
+		writeInts(dos, mPartRefs);
+		if(dos.size() % 8 != 0) {
+			dos.writeInt(0);
+		}
+		for(int i = 0; i < numEntries; i++) {
+			dos.writeLong(mEntryMask.getQuick(i));
+		}
+		dos.write(mBlob.elements(), 0, mBlob.size());
+		dos.close();
+	}
+
+	private static void writeInts(DataOutputStream dos, IntArrayList list) throws IOException {
+		final int size = list.size();
+		for(int i = 0; i < size; i++) {
+			dos.writeInt(list.getQuick(i));
+		}
+	}
+
+}
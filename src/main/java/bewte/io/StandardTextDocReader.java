@@ -6,6 +6,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import tratz.runpipe.TextDocument;
 
@@ -15,8 +16,19 @@ import tratz.runpipe.TextDocument;
  */
 public class StandardTextDocReader extends CanonicalizingTextDocumentReader {
 	
+	// character encoding of the documents (optional, default: the platform's default encoding)
+	public final static String PARAM_ENCODING = "Encoding";
+	
+	private String mEncoding;
+	
+	@Override
+	public void initialize(Map<String, String> params) {
+		super.initialize(params);
+		mEncoding = params == null ? null : params.get(PARAM_ENCODING);
+	}
+	
 	public void hydrateDocument(InputStream istream, TextDocument doc) throws IOException {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(istream));
+		BufferedReader reader = new BufferedReader(mEncoding == null ? new InputStreamReader(istream) : new InputStreamReader(istream, mEncoding));
 		String l = null;
 		List<String> sentences = new ArrayList<String>();
 		while((l = reader.readLine()) != null) {
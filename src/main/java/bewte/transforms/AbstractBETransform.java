@@ -33,6 +33,14 @@ abstract public class AbstractBETransform implements BETransform, TreebankConsta
 
 	}
 	
+	/**
+	 * Returns true if the output of transform depends on the peer BEs passed to reinitialize.
+	 * If it doesn't, BEXpander shares the transform's results between all the peers of a topic.
+	 */
+	public boolean dependsOnPeer() {
+		return false;
+	}
+	
 	abstract public List<BE> transform(BE be, Set<String> allModelStrings);
 	
 		
@@ -74,6 +74,11 @@ public class AcronymTransform extends FirstOrLastTransformer {
 		expansions.add(text);
 	}
 
+	@Override
+	public boolean dependsOnPeer() {
+		return true;
+	}
+	
 	@Override
 	public void reinitialize(List<BE> bes, List<BE> bes2, Set<String> modelLemmaSet) throws Exception {
 		super.reinitialize(bes, bes2, modelLemmaSet);
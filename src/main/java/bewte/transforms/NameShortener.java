@@ -34,6 +34,11 @@ public class NameShortener extends FirstOrLastTransformer {
 	
 	private Set<String> mCompanyEndings = new HashSet<String>(Arrays.asList("corp", "corp.", "co", "co.", "inc", "inc.", "ltd", "ltd.", "assn", "assn.", "association", "corporation", "company", "incoporated", "plc", "limited", "national", "international"));
 		
+	@Override
+	public boolean dependsOnPeer() {
+		return true;
+	}
+	
 	@Override
 	public void reinitialize(List<BE> bes, List<BE> bes2, Set<String> modelLemmaSet) throws Exception {
 		super.reinitialize(bes, bes2, modelLemmaSet);
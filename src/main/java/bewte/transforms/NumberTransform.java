@@ -18,6 +18,11 @@ public class NumberTransform extends FirstOrLastTransformer {
 
 	private DoubleArrayList mDoubleList;
 	
+	@Override
+	public boolean dependsOnPeer() {
+		return true;
+	}
+	
 	@Override
 	public void reinitialize(List<BE> bes, List<BE> bes2, Set<String> modelLemmaSet) throws Exception {
 		super.reinitialize(bes, bes2, modelLemmaSet);
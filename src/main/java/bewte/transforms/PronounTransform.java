@@ -27,6 +27,11 @@ public class PronounTransform extends FirstOrLastTransformer{
 	private Set<String> mOrganizationStrings = new HashSet<String>();
 	private Set<String> mPluralStrings = new HashSet<String>();
 	
+	@Override
+	public boolean dependsOnPeer() {
+		return true;
+	}
+	
 	@Override
 	public void reinitialize(List<BE> bes, List<BE> bes2, Set<String> modelLemmaSet) throws Exception {
 		super.reinitialize(bes, bes2, modelLemmaSet);
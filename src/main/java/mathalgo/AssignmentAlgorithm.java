@@ -0,0 +1,32 @@
+package mathalgo;
+
+import foal.map.IntDoubleHashMap;
+import foal.map.IntObjectHashMap;
+
+/**
+ * A solver for the weighted assignment problem. 
+ * Returns the selected (part 1, part 2) pairs ordered by part 1 index.
+ */
+public interface AssignmentAlgorithm {
+	
+	public int[][] assignment(int part1Size, int part2Size, IntObjectHashMap<IntDoubleHashMap> costMatrix);
+	
+	/**
+	 * The original min-cost flow solver (linked list Graph, Bellman-Ford and Fibonacci heap Dijkstra)
+	 */
+	public static class MinCostFlow implements AssignmentAlgorithm {
+		public int[][] assignment(int part1Size, int part2Size, IntObjectHashMap<IntDoubleHashMap> costMatrix) {
+			return WeightedAssignmentSolver.assignment(part1Size, part2Size, costMatrix);
+		}
+	}
+	
+	/**
+	 * Successive shortest paths over compressed sparse row arrays
+	 */
+	public static class SparseShortestPath implements AssignmentAlgorithm {
+		public int[][] assignment(int part1Size, int part2Size, IntObjectHashMap<IntDoubleHashMap> costMatrix) {
+			return SparseAssignmentSolver.assignment(part1Size, part2Size, costMatrix);
+		}
+	}
+	
+}
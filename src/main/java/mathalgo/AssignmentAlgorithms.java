@@ -0,0 +1,28 @@
+package mathalgo;
+
+/**
+ * Looks up assignment solvers by name
+ */
+public class AssignmentAlgorithms {
+	
+	public final static String MIN_COST_FLOW = "mincostflow";
+	public final static String SPARSE_SHORTEST_PATH = "ssp";
+	
+	public final static String DEFAULT = MIN_COST_FLOW;
+	
+	/**
+	 * Returns the solver with the given short name, or else creates an instance of the named class 
+	 */
+	public static AssignmentAlgorithm forName(String name) throws Exception {
+		if(name == null || name.equals(MIN_COST_FLOW)) {
+			return new AssignmentAlgorithm.MinCostFlow();
+		}
+		else if(name.equals(SPARSE_SHORTEST_PATH)) {
+			return new AssignmentAlgorithm.SparseShortestPath();
+		}
+		else {
+			return (AssignmentAlgorithm)Class.forName(name).newInstance();
+		}
+	}
+	
+}
@@ -0,0 +1,123 @@
+package mathalgo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import foal.map.IntDoubleHashMap;
+import foal.map.IntObjectHashMap;
+
+/**
+ * Checks assignment solvers against each other on graphs recorded by RecordingAssignmentAlgorithm
+ * 
+ * Usage: AssignmentSolverRegression recordedGraphsFile [solverName...]
+ * The first solver (default: mincostflow) is the reference. The total weight of the matching of 
+ * every other solver must agree with it (up to floating point summation order). Timings are reported
+ * for each solver.
+ */
+public class AssignmentSolverRegression {
+	
+	public final static double TOLERANCE = 1e-9;
+	
+	public static class RecordedGraph {
+		public final int part1Size;
+		public final int part2Size;
+		public final IntObjectHashMap<IntDoubleHashMap> costMatrix;
+		public RecordedGraph(int part1Size, int part2Size, IntObjectHashMap<IntDoubleHashMap> costMatrix) {
+			this.part1Size = part1Size;
+			this.part2Size = part2Size;
+			this.costMatrix = costMatrix;
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		List<RecordedGraph> graphs = readGraphs(new File(args[0]));
+		List<String> solverNames = new ArrayList<String>();
+		for(int i = 1; i < args.length; i++) {
+			solverNames.add(args[i]);
+		}
+		if(solverNames.size() == 0) {
+			solverNames.add(AssignmentAlgorithms.MIN_COST_FLOW);
+			solverNames.add(AssignmentAlgorithms.SPARSE_SHORTEST_PATH);
+		}
+		System.err.println("Read " + graphs.size() + " graphs");
+		
+		final int numGraphs = graphs.size();
+		final int numSolvers = solverNames.size();
+		double[][] totals = new double[numSolvers][numGraphs];
+		for(int s = 0; s < numSolvers; s++) {
+			AssignmentAlgorithm algorithm = AssignmentAlgorithms.forName(solverNames.get(s));
+			long start = System.nanoTime();
+			for(int g = 0; g < numGraphs; g++) {
+				RecordedGraph graph = graphs.get(g);
+				int[][] assignments = algorithm.assignment(graph.part1Size, graph.part2Size, graph.costMatrix);
+				totals[s][g] = totalWeight(assignments, graph);
+			}
+			System.err.println(solverNames.get(s) + " milliseconds: " + ((System.nanoTime() - start)/1000000.0));
+		}
+		
+		int numFailures = 0;
+		for(int s = 1; s < numSolvers; s++) {
+			double maxDifference = 0.0;
+			for(int g = 0; g < numGraphs; g++) {
+				double difference = Math.abs(totals[s][g] - totals[0][g]);
+				maxDifference = Math.max(maxDifference, difference);
+				if(difference > TOLERANCE * Math.max(1.0, Math.abs(totals[0][g]))) {
+					System.err.println("MISMATCH: graph " + g + " " + solverNames.get(0) + "=" + totals[0][g] + " " + solverNames.get(s) + "=" + totals[s][g]);
+					numFailures++;
+				}
+			}
+			System.err.println(solverNames.get(s) + " vs " + solverNames.get(0) + " max difference: " + maxDifference);
+		}
+		System.err.println(numFailures == 0 ? "OK" : ("FAILED: " + numFailures + " mismatches"));
+		if(numFailures > 0) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Returns the total weight of the edges of the assignment
+	 */
+	public static double totalWeight(int[][] assignments, RecordedGraph graph) {
+		double total = 0.0;
+		for(int[] assignment : assignments) {
+			IntDoubleHashMap links = graph.costMatrix.get(assignment[0]);
+			if(links == null || !links.containsKey(assignment[1])) {
+				throw new IllegalStateException("Assignment uses a missing edge: " + assignment[0] + " " + assignment[1]);
+			}
+			total += links.get(assignment[1]);
+		}
+		return total;
+	}
+	
+	public static List<RecordedGraph> readGraphs(File file) throws IOException {
+		List<RecordedGraph> graphs = new ArrayList<RecordedGraph>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line = null;
+		while((line = reader.readLine()) != null) {
+			if(line.startsWith("g ")) {
+				String[] split = line.split(" ");
+				int part1Size = Integer.parseInt(split[1]);
+				int part2Size = Integer.parseInt(split[2]);
+				int numEdges = Integer.parseInt(split[3]);
+				IntObjectHashMap<IntDoubleHashMap> costMatrix = new IntObjectHashMap<IntDoubleHashMap>();
+				for(int e = 0; e < numEdges; e++) {
+					String[] edge = reader.readLine().split(" ");
+					int i = Integer.parseInt(edge[0]);
+					IntDoubleHashMap links = costMatrix.get(i);
+					if(links == null) {
+						costMatrix.put(i, links = new IntDoubleHashMap());
+					}
+					links.put(Integer.parseInt(edge[1]), Double.parseDouble(edge[2]));
+				}
+				graphs.add(new RecordedGraph(part1Size, part2Size, costMatrix));
+			}
+		}
+		reader.close();
+		return graphs;
+	}
+	
+}
@@ -0,0 +1,122 @@
+package mathalgo;
+
+/**
+ * Indexed binary min-heap over the integers [0, maxSize)
+ * Like FHeap, the keys are held in an array owned by the caller
+ */
+public class BinaryHeap {
+
+	private int numNodes;
+	private double[] key;
+	private int[] heap;
+	// position of each element within the heap array (-1 if not in the heap)
+	private int[] position;
+
+	public BinaryHeap(int maxSize, double[] keys) {
+		this.key = keys;
+		heap = new int[maxSize];
+		position = new int[maxSize];
+		for(int i = 0; i < maxSize; i++) {
+			position[i] = -1;
+		}
+	}
+
+	public int minimum() {
+		return numNodes == 0 ? -1 : heap[0];
+	}
+
+	public boolean isEmpty() {
+		return numNodes == 0;
+	}
+
+	public boolean contains(int x) {
+		return position[x] >= 0;
+	}
+
+	public void insert(int x) {
+		heap[numNodes] = x;
+		position[x] = numNodes;
+		numNodes++;
+		siftUp(position[x]);
+	}
+
+	public int extractMin() {
+		if(numNodes == 0) {
+			return -1;
+		}
+		int z = heap[0];
+		position[z] = -1;
+		numNodes--;
+		if(numNodes > 0) {
+			int last = heap[numNodes];
+			heap[0] = last;
+			position[last] = 0;
+			siftDown(0);
+		}
+		return z;
+	}
+
+	/**
+	 * Sets the key of x to newKey, inserting x if it isn't already in the heap
+	 */
+	public void decreaseKey(int x, double newKey) {
+		key[x] = newKey;
+		if(position[x] < 0) {
+			insert(x);
+		}
+		else {
+			siftUp(position[x]);
+		}
+	}
+
+	/**
+	 * Removes all elements from the heap, leaving the keys untouched
+	 */
+	public void clear() {
+		for(int i = 0; i < numNodes; i++) {
+			position[heap[i]] = -1;
+		}
+		numNodes = 0;
+	}
+
+	private void siftUp(int i) {
+		int x = heap[i];
+		double k = key[x];
+		while(i > 0) {
+			int parent = (i-1) >>> 1;
+			int p = heap[parent];
+			if(key[p] <= k) {
+				break;
+			}
+			heap[i] = p;
+			position[p] = i;
+			i = parent;
+		}
+		heap[i] = x;
+		position[x] = i;
+	}
+
+	private void siftDown(int i) {
+		int x = heap[i];
+		double k = key[x];
+		int half = numNodes >>> 1;
+		while(i < half) {
+			int child = 2*i+1;
+			int c = heap[child];
+			int right = child+1;
+			if(right < numNodes && key[heap[right]] < key[c]) {
+				child = right;
+				c = heap[child];
+			}
+			if(k <= key[c]) {
+				break;
+			}
+			heap[i] = c;
+			position[c] = i;
+			i = child;
+		}
+		heap[i] = x;
+		position[x] = i;
+	}
+
+}
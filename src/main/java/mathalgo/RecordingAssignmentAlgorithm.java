@@ -0,0 +1,60 @@
+package mathalgo;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import foal.list.IntArrayList;
+import foal.map.IntDoubleHashMap;
+import foal.map.IntObjectHashMap;
+
+/**
+ * Writes every graph passed to the wrapped solver to a file so that solvers can be 
+ * compared on real inputs later (see AssignmentSolverRegression).
+ * 
+ * Each graph is written as a header line 'g part1Size part2Size numEdges' followed
+ * by one 'i j weight' line per edge.
+ */
+public class RecordingAssignmentAlgorithm implements AssignmentAlgorithm {
+	
+	private AssignmentAlgorithm mAlgorithm;
+	private PrintWriter mWriter;
+	
+	public RecordingAssignmentAlgorithm(AssignmentAlgorithm algorithm, File outputFile) throws IOException {
+		mAlgorithm = algorithm;
+		mWriter = new PrintWriter(new FileWriter(outputFile));
+	}
+	
+	public int[][] assignment(int part1Size, int part2Size, IntObjectHashMap<IntDoubleHashMap> costMatrix) {
+		record(part1Size, part2Size, costMatrix);
+		return mAlgorithm.assignment(part1Size, part2Size, costMatrix);
+	}
+	
+	private synchronized void record(int part1Size, int part2Size, IntObjectHashMap<IntDoubleHashMap> costMatrix) {
+		StringBuilder buf = new StringBuilder();
+		int numEdges = 0;
+		IntArrayList part1Nodes = costMatrix.keys();
+		part1Nodes.sort();
+		for(int p1 = 0; p1 < part1Nodes.size(); p1++) {
+			int i = part1Nodes.get(p1);
+			IntDoubleHashMap links = costMatrix.get(i);
+			IntArrayList part2Nodes = links.keys();
+			part2Nodes.sort();
+			for(int p2 = 0; p2 < part2Nodes.size(); p2++) {
+				int j = part2Nodes.get(p2);
+				// Double.toString round trips exactly
+				buf.append(i).append(' ').append(j).append(' ').append(links.get(j)).append('\n');
+				numEdges++;
+			}
+		}
+		mWriter.println("g " + part1Size + " " + part2Size + " " + numEdges);
+		mWriter.print(buf);
+		mWriter.flush();
+	}
+	
+	public synchronized void close() {
+		mWriter.close();
+	}
+	
+}
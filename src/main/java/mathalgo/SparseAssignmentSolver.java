@@ -0,0 +1,219 @@
+package mathalgo;
+
+import java.util.Arrays;
+
+import foal.list.IntArrayList;
+import foal.map.IntDoubleHashMap;
+import foal.map.IntObjectHashMap;
+
+/**
+ * Solves the weighted assignment problem using successive shortest paths
+ *
+ * Solves the same problem as WeightedAssignmentSolver (a maximum cardinality matching
+ * of maximum total weight, using only edges of positive weight) but without building a
+ * Graph. The edges are held in compressed sparse row arrays, the residual graph is
+ * implied by the current matching, and Dijkstra runs on a BinaryHeap that only
+ * holds the vertices reached so far and stops as soon as the sink is settled.
+ *
+ * Vertex numbering: part 1 vertices are 0..part1Size-1, part 2 vertices are
+ * part1Size..part1Size+part2Size-1 and the sink is part1Size+part2Size. The source
+ * is implicit.
+ */
+public class SparseAssignmentSolver {
+
+	public static int[][] assignment(int part1Size,
+									 int part2Size,
+									 IntObjectHashMap<IntDoubleHashMap> costMatrix)  {
+		if(part1Size <= 0 || part2Size <= 0) {
+			return new int[0][2];
+		}
+
+		// Build the compressed sparse rows (columns sorted within each row so that ties are broken consistently)
+		int[] rowStart = new int[part1Size+1];
+		IntArrayList part1Nodes = costMatrix.keys();
+		final int numPart1Nodes = part1Nodes.size();
+		int numEdges = 0;
+		for(int p1 = 0; p1 < numPart1Nodes; p1++) {
+			int i = part1Nodes.get(p1);
+			IntDoubleHashMap links = costMatrix.get(i);
+			IntArrayList part2Nodes = links.keys();
+			final int numPart2Nodes = part2Nodes.size();
+			for(int p2 = 0; p2 < numPart2Nodes; p2++) {
+				if(links.get(part2Nodes.get(p2)) > 0) {
+					rowStart[i+1]++;
+					numEdges++;
+				}
+			}
+		}
+		for(int i = 0; i < part1Size; i++) {
+			rowStart[i+1] += rowStart[i];
+		}
+		int[] columns = new int[numEdges];
+		double[] edgeWeights = new double[numEdges];
+		int[] fill = new int[part1Size];
+		for(int p1 = 0; p1 < numPart1Nodes; p1++) {
+			int i = part1Nodes.get(p1);
+			IntDoubleHashMap links = costMatrix.get(i);
+			IntArrayList part2Nodes = links.keys();
+			part2Nodes.sort();
+			final int numPart2Nodes = part2Nodes.size();
+			for(int p2 = 0; p2 < numPart2Nodes; p2++) {
+				int j = part2Nodes.get(p2);
+				double weight = links.get(j);
+				if(weight > 0) {
+					int e = rowStart[i] + fill[i]++;
+					columns[e] = j;
+					edgeWeights[e] = weight;
+				}
+			}
+		}
+
+		return assignment(part1Size, part2Size, rowStart, columns, edgeWeights);
+	}
+
+	/**
+	 * Solves the assignment problem for a graph given in compressed sparse row form.
+	 * The edges of part 1 vertex i are rowStart[i]..rowStart[i+1]-1, with part 2 vertex columns[e]
+	 * and weight edgeWeights[e]. Returns the matched (part 1, part 2) pairs ordered by part 1 index.
+	 */
+	public static int[][] assignment(int part1Size,
+									 int part2Size,
+									 int[] rowStart,
+									 int[] columns,
+									 double[] edgeWeights) {
+		final int sink = part1Size + part2Size;
+		final int numVertices = sink + 1;
+
+		int[] part1Match = new int[part1Size];
+		int[] part2Match = new int[part2Size];
+		// edge index of each part 2 vertex's matched edge
+		int[] part2MatchEdge = new int[part2Size];
+		Arrays.fill(part1Match, -1);
+		Arrays.fill(part2Match, -1);
+
+		// Initial potentials. Costs are negated weights, so the shortest distance from the source to
+		// a part 2 vertex is its cheapest incoming edge. This is what Bellman-Ford would compute on this DAG.
+		double[] potentials = new double[numVertices];
+		double sinkPotential = 0;
+		for(int i = 0; i < part1Size; i++) {
+			for(int e = rowStart[i]; e < rowStart[i+1]; e++) {
+				int v = part1Size + columns[e];
+				if(-edgeWeights[e] < potentials[v]) {
+					potentials[v] = -edgeWeights[e];
+					if(potentials[v] < sinkPotential) {
+						sinkPotential = potentials[v];
+					}
+				}
+			}
+		}
+		potentials[sink] = sinkPotential;
+
+		double[] distances = new double[numVertices];
+		// predecessor edge of each part 2 vertex, predecessor part 2 vertex of the sink
+		int[] predecessorEdge = new int[part2Size];
+		int[] predecessorPart1 = new int[part2Size];
+		int sinkPredecessor = -1;
+		boolean[] settled = new boolean[numVertices];
+		BinaryHeap heap = new BinaryHeap(numVertices, distances);
+
+		int numMatched = 0;
+		final int smallerPartition = Math.min(part1Size, part2Size);
+		while(numMatched < smallerPartition) {
+			Arrays.fill(distances, Double.MAX_VALUE);
+			Arrays.fill(settled, false);
+			heap.clear();
+
+			// Edges from the (implicit) source to each unmatched part 1 vertex
+			for(int i = 0; i < part1Size; i++) {
+				if(part1Match[i] < 0 && rowStart[i] < rowStart[i+1]) {
+					heap.decreaseKey(i, -potentials[i]);
+				}
+			}
+
+			double sinkDistance = Double.MAX_VALUE;
+			while(!heap.isEmpty()) {
+				int v = heap.extractMin();
+				settled[v] = true;
+				double d = distances[v];
+				if(v == sink) {
+					sinkDistance = d;
+					break;
+				}
+				if(v < part1Size) {
+					// unmatched edges out of part 1 vertex
+					int matched = part1Match[v];
+					for(int e = rowStart[v]; e < rowStart[v+1]; e++) {
+						int j = columns[e];
+						if(j != matched) {
+							int to = part1Size + j;
+							if(!settled[to]) {
+								double P = d - edgeWeights[e] + potentials[v] - potentials[to];
+								if(P < distances[to]) {
+									heap.decreaseKey(to, P);
+									predecessorEdge[j] = e;
+									predecessorPart1[j] = v;
+								}
+							}
+						}
+					}
+				}
+				else {
+					int j = v - part1Size;
+					int matched = part2Match[j];
+					if(matched < 0) {
+						// free part 2 vertex, edge to the sink
+						if(!settled[sink]) {
+							double P = d + potentials[v] - potentials[sink];
+							if(P < distances[sink]) {
+								heap.decreaseKey(sink, P);
+								sinkPredecessor = j;
+							}
+						}
+					}
+					else if(!settled[matched]) {
+						// reverse of the matched edge
+						double P = d + edgeWeights[part2MatchEdge[j]] + potentials[v] - potentials[matched];
+						if(P < distances[matched]) {
+							heap.decreaseKey(matched, P);
+						}
+					}
+				}
+			}
+
+			if(sinkDistance == Double.MAX_VALUE) {
+				// Didn't find a path to the sink, must be finished
+				break;
+			}
+
+			// Update the potentials. Vertices that were not settled are at least as far as the sink.
+			for(int v = 0; v < numVertices; v++) {
+				potentials[v] += Math.min(distances[v], sinkDistance);
+			}
+
+			// Augment along the path (alternating between part 2 vertices and their predecessors)
+			int j = sinkPredecessor;
+			while(true) {
+				int i = predecessorPart1[j];
+				int previous = part1Match[i];
+				part1Match[i] = j;
+				part2Match[j] = i;
+				part2MatchEdge[j] = predecessorEdge[j];
+				if(previous < 0) {
+					break;
+				}
+				j = previous;
+			}
+			numMatched++;
+		}
+
+		int[][] result = new int[numMatched][];
+		int r = 0;
+		for(int i = 0; i < part1Size; i++) {
+			if(part1Match[i] >= 0) {
+				result[r++] = new int[]{i, part1Match[i]};
+			}
+		}
+		return result;
+	}
+
+}
@@ -1,6 +1,7 @@
 package mathalgo;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -18,6 +19,13 @@ import foal.map.IntObjectHashMap;
  */
 public class WeightedAssignmentSolver {
 	
+	/** Orders assignments by their part 1 index */
+	private final static Comparator<int[]> ASSIGNMENT_ORDER = new Comparator<int[]>() {
+		public int compare(int[] a1, int[] a2) {
+			return a1[0] < a2[0] ? -1 : (a1[0] == a2[0] ? 0 : 1);
+		}
+	};
+	
 	public static int[][] assignment(int part1Size, 
 									 int part2Size, 
 									 IntObjectHashMap<IntDoubleHashMap> costMatrix)  {
@@ -99,6 +107,9 @@ public class WeightedAssignmentSolver {
 			result[i][1] = e.from-part1Size;
 			i++;
 		}
+		// The flow edges are hashed by identity, so sort to give callers a deterministic order
+		// (summing the matched weights in a fixed order keeps the scores reproducible)
+		Arrays.sort(result, ASSIGNMENT_ORDER);
 		return result;
 	}
 	
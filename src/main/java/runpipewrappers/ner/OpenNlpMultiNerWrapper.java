@@ -0,0 +1,134 @@
+package runpipewrappers.ner;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import opennlp.maxent.io.BinaryGISModelReader;
+import opennlp.model.AbstractModel;
+import opennlp.tools.namefind.NameFinderME;
+import opennlp.tools.util.Span;
+import tratz.runpipe.Annotation;
+import tratz.runpipe.Annotator;
+import tratz.runpipe.InitializationException;
+import tratz.runpipe.ProcessException;
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.annotations.Sentence;
+import tratz.runpipe.annotations.Token;
+import tratz.runpipe.util.RunpipeUtils;
+
+/**
+ * OpenNLP Named Entity Recognition with several models (e.g. person, organization and location) in one pass.
+ * The token strings of a document's sentences are read once and every model is run over all of them.
+ * The models are loaded once and shared by the copies of the annotator made for other threads; each copy 
+ * has its own NameFinderMEs since these keep adaptive data.
+ */
+public class OpenNlpMultiNerWrapper implements Annotator {
+	
+	// model files, separated by the path separator
+	public final static String PARAM_MODEL_PATHS = "ModelPaths";
+	// annotation class for each model, separated by the path separator
+	public final static String PARAM_ANNOTATION_CLASSES = "AnnotationClasses";
+	
+	private final static Map<String, AbstractModel> sModels = new HashMap<String, AbstractModel>();
+	
+	private NameFinderME[] mNameFinders;
+	private Constructor[] mAnnotationConstructors;
+	
+	public void initialize(Map<String, String> params) throws InitializationException {
+		String[] modelPaths = params.get(PARAM_MODEL_PATHS).split(File.pathSeparator);
+		String[] annotationClasses = params.get(PARAM_ANNOTATION_CLASSES).split(File.pathSeparator);
+		if(modelPaths.length != annotationClasses.length) {
+			throw new InitializationException(new IllegalArgumentException(PARAM_MODEL_PATHS + " and " + PARAM_ANNOTATION_CLASSES + " must have the same number of entries"));
+		}
+		try {
+			mNameFinders = new NameFinderME[modelPaths.length];
+			mAnnotationConstructors = new Constructor[modelPaths.length];
+			for(int m = 0; m < modelPaths.length; m++) {
+				mNameFinders[m] = new NameFinderME(getModel(modelPaths[m]));
+				Class annotationClass = Class.forName(annotationClasses[m]);
+				mAnnotationConstructors[m] = annotationClass.getConstructor(new Class[]{TextDocument.class});
+			}
+		}
+		catch(Exception e) {
+			throw new InitializationException(e);
+		}
+	}
+	
+	/**
+	 * Returns the model in the (gzipped) file, loading it the first time it is asked for
+	 */
+	public static AbstractModel getModel(String modelPath) throws IOException {
+		String key = new File(modelPath).getAbsolutePath();
+		synchronized(sModels) {
+			AbstractModel model = sModels.get(key);
+			if(model == null) {
+				DataInputStream inStream = new DataInputStream(new GZIPInputStream(new FileInputStream(modelPath)));
+				try {
+					model = new BinaryGISModelReader(inStream).getModel();
+				}
+				finally {
+					inStream.close();
+				}
+				sModels.put(key, model);
+			}
+			return model;
+		}
+	}
+	
+	public void process(TextDocument doc) throws ProcessException {
+		List<Sentence> sentences = (List<Sentence>)doc.getAnnotationList(Sentence.class);
+		List<Token> tokens = (List<Token>)doc.getAnnotationList(Token.class);
+		if(sentences != null && tokens != null) {
+			String docText = doc.getText();
+			final int numSentences = sentences.size();
+			List<List<Token>> sentenceTokens = new ArrayList<List<Token>>(numSentences);
+			String[][] sentenceTokenStrings = new String[numSentences][];
+			for(int s = 0; s < numSentences; s++) {
+				List<Token> containedTokens = RunpipeUtils.getSublist(sentences.get(s), tokens);
+				final int numTokens = containedTokens.size();
+				String[] tokenStrings = new String[numTokens];
+				for(int t = 0; t < numTokens; t++) {
+					Token token = containedTokens.get(t);
+					tokenStrings[t] = docText.substring(token.getStart(), token.getEnd());
+				}
+				sentenceTokens.add(containedTokens);
+				sentenceTokenStrings[s] = tokenStrings;
+			}
+			for(int m = 0; m < mNameFinders.length; m++) {
+				NameFinderME nameFinder = mNameFinders[m];
+				for(int s = 0; s < numSentences; s++) {
+					Span[] spans = nameFinder.find(sentenceTokenStrings[s]);
+					if(spans != null) {
+						addAnnotations(doc, spans, sentenceTokens.get(s), mAnnotationConstructors[m]);
+					}
+					nameFinder.clearAdaptiveData();
+				}
+			}
+		}
+	}
+	
+	private static void addAnnotations(TextDocument doc, Span[] spans, List<Token> containedTokens, Constructor annotationConstructor) throws ProcessException {
+		for(int i = 0; i < spans.length; i++) {
+			int entityStart = containedTokens.get(spans[i].getStart()).getStart();
+			int entityEnd = containedTokens.get(spans[i].getEnd()-1).getEnd();
+			try {
+				Annotation newAnnot = (Annotation)annotationConstructor.newInstance(new Object[]{doc});
+				newAnnot.setStart(entityStart);
+				newAnnot.setEnd(entityEnd);
+				doc.addAnnotation(newAnnot);
+			}
+			catch(Exception e) {
+				throw new ProcessException(e);
+			}
+		}
+	}
+	
+}
@@ -1,14 +1,10 @@
 package runpipewrappers.ner;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
 
-import opennlp.maxent.io.BinaryGISModelReader;
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.util.Span;
 import tratz.runpipe.Annotation;
@@ -22,6 +18,7 @@ import tratz.runpipe.util.RunpipeUtils;
 
 /**
  * OpenNLP Named Entity Recognition interfacing code
+ * (see OpenNlpMultiNerWrapper for running several models in one pass)
  */
 public class OpenNlpNerWrapper implements Annotator {
 
@@ -33,9 +30,8 @@ public class OpenNlpNerWrapper implements Annotator {
 	
 	public void initialize(Map<String, String> params) throws InitializationException {
 		try {
-			DataInputStream inStream = new DataInputStream(new GZIPInputStream(new FileInputStream(params.get(PARAM_MODEL_PATH))));
-			mNer = new NameFinderME(new BinaryGISModelReader(inStream).getModel());
-			inStream.close();
+			// the model is shared with other instances (e.g. the copies made for other threads)
+			mNer = new NameFinderME(OpenNlpMultiNerWrapper.getModel(params.get(PARAM_MODEL_PATH)));
 			
 			Class annotationClass = Class.forName(params.get(PARAM_ANNOTATION_CLASS));
 			mAnnotationConstructor = annotationClass.getConstructor(new Class[]{TextDocument.class});
@@ -52,7 +48,6 @@ public class OpenNlpNerWrapper implements Annotator {
 		if(tokens != null) {
 			for(Annotation sentence : sentences) {
 				processSentence(doc, (Sentence)sentence, tokens);
-				mNer.clearAdaptiveData();
 			}
 		}
 	}
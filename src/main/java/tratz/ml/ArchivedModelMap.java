@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.ml;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only map of models stored in a <code>ModelArchive</code> by <code>MappedLinearClassificationModel.write</code>.
+ * Each model is loaded the first time it is looked up. Safe for use by several threads.
+ */
+public class ArchivedModelMap extends AbstractMap<String, LinearClassificationModel> {
+	
+	private final ModelArchive mArchive;
+	private final String mSectionPrefix;
+	private final Set<String> mNames;
+	private final Map<String, LinearClassificationModel> mLoaded = new ConcurrentHashMap<String, LinearClassificationModel>();
+	
+	/**
+	 * @param archive - the archive, which must stay open while the map is used
+	 * @param sectionPrefix - prepended to the model names to get the names they were written under
+	 * @param names - the names of the models
+	 */
+	public ArchivedModelMap(ModelArchive archive, String sectionPrefix, List<String> names) {
+		mArchive = archive;
+		mSectionPrefix = sectionPrefix;
+		mNames = Collections.unmodifiableSet(new LinkedHashSet<String>(names));
+	}
+	
+	@Override
+	public LinearClassificationModel get(Object name) {
+		LinearClassificationModel model = mLoaded.get(name);
+		if(model == null && mNames.contains(name)) {
+			synchronized(this) {
+				model = mLoaded.get(name);
+				if(model == null) {
+					try {
+						model = new MappedLinearClassificationModel(mArchive, mSectionPrefix + name);
+					}
+					catch(IOException ioe) {
+						throw new RuntimeException("Failed to load model: " + name, ioe);
+					}
+					catch(ClassNotFoundException cnfe) {
+						throw new RuntimeException("Failed to load model: " + name, cnfe);
+					}
+					mLoaded.put((String)name, model);
+				}
+			}
+		}
+		return model;
+	}
+	
+	@Override
+	public boolean containsKey(Object name) {
+		return mNames.contains(name);
+	}
+	
+	@Override
+	public int size() {
+		return mNames.size();
+	}
+	
+	@Override
+	public Set<String> keySet() {
+		return mNames;
+	}
+	
+	/**
+	 * Loads all the models
+	 */
+	@Override
+	public Set<Map.Entry<String, LinearClassificationModel>> entrySet() {
+		Map<String, LinearClassificationModel> models = new LinkedHashMap<String, LinearClassificationModel>();
+		for(String name : mNames) {
+			models.put(name, get(name));
+		}
+		return Collections.unmodifiableMap(models).entrySet();
+	}
+	
+}
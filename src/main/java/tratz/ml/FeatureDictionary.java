@@ -47,6 +47,13 @@ public class FeatureDictionary implements Serializable {
 		}
 	}
 	
+	public void override(TwoPartKey key, int index) {
+		mDict.put(key.hash, key.checksum, index);
+		if(index > maxIndex) {
+			maxIndex = index;
+		}
+	}
+	
 	public int lookupIndex(String key, boolean add) {
 		int result = -1;
 		int index = mDict.get(key);
@@ -49,6 +49,27 @@ public class LinearClassificationModel implements Serializable {
 		mAlphabet = alphabet;
 	}
 	
+	// for MappedLinearClassificationModel
+	protected LinearClassificationModel() {
+		
+	}
+	
+	List<float[]> getWeights() {
+		return mModel;
+	}
+	
+	int[] getModelLabelOrder() {
+		return mModelLabelOrder;
+	}
+	
+	ClassDictionary getLabelAlphabet() {
+		return mLabelAlphabet;
+	}
+	
+	FeatureDictionary getFeatureAlphabet() {
+		return mAlphabet;
+	}
+	
 	public LinearClassificationModel createTrimmedModel(double amountToRemove) {
 		assert(amountToRemove < 1.0 && amountToRemove > 0.0);
 		
@@ -129,9 +150,14 @@ public class LinearClassificationModel implements Serializable {
 		for(int i = 0; i < numClasses; i++) {
 			decVals[i] = calculateScore(featList, mModel.get(i), x);
 		}
+		return rank(decVals, mModelLabelOrder, mLabelAlphabet);
+	}
+	
+	protected static ClassScoreTuple[] rank(float[] decVals, int[] modelLabelOrder, ClassDictionary labelAlphabet) {
+		final int numClasses = decVals.length;
 		ClassScoreTuple[] ranks = new ClassScoreTuple[numClasses];
 		for(int i = 0; i < numClasses; i++) {
-			ranks[i] = new ClassScoreTuple(mLabelAlphabet.lookupLabel(mModelLabelOrder[i]), 0);
+			ranks[i] = new ClassScoreTuple(labelAlphabet.lookupLabel(modelLabelOrder[i]), 0);
 		}
 		for(int i = 0; i < numClasses; i++) {
 			ranks[i].score = decVals[i];
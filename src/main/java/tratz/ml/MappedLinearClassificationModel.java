@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.ml;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import foal.function.LongIntProcedure;
+
+import tratz.types.ChecksumMap;
+import tratz.types.LongIntMap;
+import tratz.types.MappedLongIntTable;
+import tratz.types.ChecksumMap.TwoPartKey;
+
+/**
+ * A <code>LinearClassificationModel</code> read from a <code>ModelArchive</code>, with its feature dictionary 
+ * and weights memory-mapped rather than on the heap. The weights are stored feature by feature, so the 
+ * weights of one feature for all the classes are next to each other. 
+ * Instances are read-only and can't be serialized; <code>toHeapModel</code> makes a copy that can.
+ */
+public class MappedLinearClassificationModel extends LinearClassificationModel {
+	public final static long serialVersionUID = 1;
+	
+	// sections of a model in the archive
+	public final static String LABELS_SECTION = "/labels",
+							   FEATURES_SECTION = "/features",
+							   WEIGHTS_SECTION = "/weights";
+	
+	private final static int NOT_FOUND = ChecksumMap.DEFAULT_NOT_FOUND_VALUE;
+	
+	private transient int[] mModelLabelOrder;
+	private transient ClassDictionary mLabelAlphabet;
+	private transient int mNumClasses;
+	private transient int mNumFeatures;
+	private transient MappedLongIntTable mFeatures;
+	private transient FloatBuffer mWeights;
+	
+	public MappedLinearClassificationModel(ModelArchive archive, String name) throws IOException, ClassNotFoundException {
+		Object[] labels = (Object[])archive.readObject(name + LABELS_SECTION);
+		mModelLabelOrder = (int[])labels[0];
+		mLabelAlphabet = (ClassDictionary)labels[1];
+		mNumClasses = (Integer)labels[2];
+		mNumFeatures = (Integer)labels[3];
+		mFeatures = new MappedLongIntTable(archive.mapSection(name + FEATURES_SECTION), NOT_FOUND);
+		mWeights = archive.mapSection(name + WEIGHTS_SECTION).asFloatBuffer();
+	}
+	
+	@Override
+	public ClassScoreTuple[] getDecision(Set<String> features) {
+		final int numClasses = mNumClasses;
+		float[] decVals = new float[numClasses];
+		for(String feat : features) {
+			int index = mFeatures.get(ChecksumMap.createKey(feat));
+			if(index >= 0 && index < mNumFeatures) {
+				int base = index*numClasses;
+				for(int i = 0; i < numClasses; i++) {
+					decVals[i] += mWeights.get(base+i);
+				}
+			}
+		}
+		return rank(decVals, mModelLabelOrder, mLabelAlphabet);
+	}
+	
+	/**
+	 * Trims a copy of the model on the heap
+	 */
+	@Override
+	public LinearClassificationModel createTrimmedModel(double amountToRemove) {
+		return toHeapModel().createTrimmedModel(amountToRemove);
+	}
+	
+	/**
+	 * Copies the model's feature dictionary and weights to the heap
+	 */
+	public LinearClassificationModel toHeapModel() {
+		final int numClasses = mNumClasses;
+		final int numFeatures = mNumFeatures;
+		List<float[]> vectors = new ArrayList<float[]>(numClasses);
+		for(int i = 0; i < numClasses; i++) {
+			float[] vector = new float[numFeatures];
+			for(int f = 0; f < numFeatures; f++) {
+				vector[f] = mWeights.get(f*numClasses+i);
+			}
+			vectors.add(vector);
+		}
+		final FeatureDictionary alphabet = new FeatureDictionary();
+		mFeatures.forEachPair(new LongIntProcedure() {
+			public boolean apply(long key, int index) {
+				// getDecision ignores features without weights
+				if(index >= 0 && index < numFeatures) {
+					alphabet.override(new TwoPartKey(ChecksumMap.getHash(key), ChecksumMap.getChecksum(key)), index);
+				}
+				return true;
+			}
+		});
+		return new LinearClassificationModel(vectors, mModelLabelOrder, mLabelAlphabet, alphabet);
+	}
+	
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		throw new NotSerializableException("Mapped models can't be serialized, write the original model instead");
+	}
+	
+	/**
+	 * Writes the model to the archive under the given name
+	 */
+	public static void write(LinearClassificationModel model, ModelArchive.Writer writer, String name) throws IOException {
+		List<float[]> vectors = model.getWeights();
+		final int numClasses = vectors.size();
+		int numFeatures = 0;
+		for(float[] vector : vectors) {
+			numFeatures = Math.max(numFeatures, vector.length);
+		}
+		if((long)numFeatures*numClasses*4 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Model is too large to map: " + numFeatures + " features, " + numClasses + " classes");
+		}
+		writer.writeObject(name + LABELS_SECTION, new Object[]{model.getModelLabelOrder(), model.getLabelAlphabet(), numClasses, numFeatures});
+		
+		Map<TwoPartKey, Integer> keyToIndex = model.getFeatureAlphabet().getKeySet();
+		LongIntMap features = new LongIntMap(keyToIndex.size(), NOT_FOUND);
+		for(Map.Entry<TwoPartKey, Integer> entry : keyToIndex.entrySet()) {
+			TwoPartKey key = entry.getKey();
+			features.put(ChecksumMap.createKey(key.hash, key.checksum), entry.getValue());
+		}
+		ByteBuffer table = ByteBuffer.allocate(MappedLongIntTable.getCapacity(features.size())*MappedLongIntTable.SLOT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		MappedLongIntTable.write(table, features, NOT_FOUND);
+		writer.writeSection(name + FEATURES_SECTION, table);
+		
+		ByteBuffer weights = ByteBuffer.allocate(numFeatures*numClasses*4).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i = 0; i < numClasses; i++) {
+			float[] vector = vectors.get(i);
+			for(int f = 0; f < vector.length; f++) {
+				weights.putFloat((f*numClasses+i)*4, vector[f]);
+			}
+		}
+		writer.writeSection(name + WEIGHTS_SECTION, weights);
+	}
+	
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.ml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Versioned binary container of named sections, used to store classification models so that they 
+ * can be loaded one at a time and have their weights memory-mapped.
+ * <p>
+ * File layout: a header page (magic number, version, number of sections, offset and length of the directory),
+ * the sections, each starting on a page boundary, and the directory (name, offset and length of each section).
+ * Numbers in the header are little-endian, as are the sections written by the classes using the archive.
+ */
+public class ModelArchive {
+	
+	public final static int MAGIC = 0x414D4D54; // "TMMA"
+	public final static int VERSION = 1;
+	
+	private final static int PAGE_SIZE = 4096;
+	
+	private final static int H_MAGIC = 0,
+							 H_VERSION = 4,
+							 H_NUM_SECTIONS = 8,
+							 H_DIRECTORY_OFFSET = 16,
+							 H_DIRECTORY_LENGTH = 24,
+							 HEADER_LENGTH = 32;
+	
+	private final RandomAccessFile mFile;
+	private final FileChannel mChannel;
+	// section name -> {offset, length}
+	private final Map<String, long[]> mSections = new LinkedHashMap<String, long[]>();
+	
+	public ModelArchive(File file) throws IOException {
+		mFile = new RandomAccessFile(file, "r");
+		mChannel = mFile.getChannel();
+		boolean opened = false;
+		try {
+			ByteBuffer header = read(0, HEADER_LENGTH);
+			if(header.getInt(H_MAGIC) != MAGIC) {
+				throw new IOException("Not a model archive: " + file);
+			}
+			if(header.getInt(H_VERSION) != VERSION) {
+				throw new IOException("Unsupported model archive version " + header.getInt(H_VERSION) + ": " + file);
+			}
+			int numSections = header.getInt(H_NUM_SECTIONS);
+			long directoryLength = header.getLong(H_DIRECTORY_LENGTH);
+			if(directoryLength < 0 || directoryLength > Integer.MAX_VALUE) {
+				throw new IOException("Corrupt model archive, directory length " + directoryLength + ": " + file);
+			}
+			ByteBuffer directory = read(header.getLong(H_DIRECTORY_OFFSET), (int)directoryLength);
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(directory.array()));
+			for(int i = 0; i < numSections; i++) {
+				String name = dis.readUTF();
+				mSections.put(name, new long[]{dis.readLong(), dis.readLong()});
+			}
+			opened = true;
+		}
+		finally {
+			if(!opened) {
+				mFile.close();
+			}
+		}
+	}
+	
+	/**
+	 * Checks the first bytes of the file for the archive's magic number 
+	 */
+	public static boolean isModelArchive(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[4];
+			int read = 0;
+			int n;
+			while(read < bytes.length && (n = is.read(bytes, read, bytes.length-read)) != -1) {
+				read += n;
+			}
+			return read == bytes.length && ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+		finally {
+			is.close();
+		}
+	}
+	
+	public Set<String> getSectionNames() {
+		return Collections.unmodifiableSet(mSections.keySet());
+	}
+	
+	public boolean hasSection(String name) {
+		return mSections.containsKey(name);
+	}
+	
+	/**
+	 * Maps a section into memory (read-only, little-endian). The mapping remains valid after the archive is closed.
+	 */
+	public ByteBuffer mapSection(String name) throws IOException {
+		long[] section = getSection(name);
+		if(section[1] > Integer.MAX_VALUE) {
+			throw new IOException("Section is too large to map: " + name + " " + section[1] + " bytes");
+		}
+		return mChannel.map(FileChannel.MapMode.READ_ONLY, section[0], section[1]).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Deserializes the object stored in a section by <code>Writer.writeObject</code>
+	 */
+	public Object readObject(String name) throws IOException, ClassNotFoundException {
+		long[] section = getSection(name);
+		if(section[1] > Integer.MAX_VALUE) {
+			throw new IOException("Section is too large to read: " + name + " " + section[1] + " bytes");
+		}
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(read(section[0], (int)section[1]).array()));
+		Object object = ois.readObject();
+		ois.close();
+		return object;
+	}
+	
+	public void close() throws IOException {
+		mFile.close();
+	}
+	
+	private long[] getSection(String name) throws IOException {
+		long[] section = mSections.get(name);
+		if(section == null) {
+			throw new IOException("No such section in model archive: " + name);
+		}
+		return section;
+	}
+	
+	// positional reads, so that several threads can load sections
+	private ByteBuffer read(long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while(buffer.hasRemaining()) {
+			if(mChannel.read(buffer, offset+buffer.position()) == -1) {
+				throw new IOException("Unexpected end of model archive");
+			}
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Writes an archive. The header is written by <code>close</code>, so an archive that wasn't 
+	 * closed isn't recognized as one.
+	 */
+	public static class Writer {
+		
+		private final RandomAccessFile mFile;
+		private final FileChannel mChannel;
+		private final Map<String, long[]> mSections = new LinkedHashMap<String, long[]>();
+		private long mPosition = PAGE_SIZE;
+		
+		public Writer(File file) throws IOException {
+			mFile = new RandomAccessFile(file, "rw");
+			mFile.setLength(0);
+			mChannel = mFile.getChannel();
+		}
+		
+		public void writeObject(String name, Object object) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bytes);
+			oos.writeObject(object);
+			oos.close();
+			writeSection(name, ByteBuffer.wrap(bytes.toByteArray()));
+		}
+		
+		/**
+		 * Writes the remaining bytes of the buffer as a section
+		 */
+		public void writeSection(String name, ByteBuffer data) throws IOException {
+			if(mSections.containsKey(name)) {
+				throw new IllegalArgumentException("Duplicate section name: " + name);
+			}
+			long offset = align(mPosition);
+			long length = data.remaining();
+			write(data, offset);
+			mSections.put(name, new long[]{offset, length});
+			mPosition = offset + length;
+		}
+		
+		public void close() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bytes);
+			for(Map.Entry<String, long[]> entry : mSections.entrySet()) {
+				dos.writeUTF(entry.getKey());
+				dos.writeLong(entry.getValue()[0]);
+				dos.writeLong(entry.getValue()[1]);
+			}
+			dos.close();
+			long directoryOffset = align(mPosition);
+			write(ByteBuffer.wrap(bytes.toByteArray()), directoryOffset);
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(H_MAGIC, 0);
+			header.putInt(H_VERSION, VERSION);
+			header.putInt(H_NUM_SECTIONS, mSections.size());
+			header.putLong(H_DIRECTORY_OFFSET, directoryOffset);
+			header.putLong(H_DIRECTORY_LENGTH, bytes.size());
+			write(header, 0);
+			mChannel.force(false);
+			// magic number last, so that an interrupted write isn't mistaken for an archive
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			magic.putInt(0, MAGIC);
+			write(magic, H_MAGIC);
+			mChannel.force(false);
+			mFile.close();
+		}
+		
+		private void write(ByteBuffer data, long offset) throws IOException {
+			while(data.hasRemaining()) {
+				offset += mChannel.write(data, offset);
+			}
+		}
+		
+	}
+	
+	private static long align(long offset) {
+		return (offset + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+	}
+	
+}
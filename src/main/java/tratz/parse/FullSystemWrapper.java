@@ -28,6 +28,7 @@ import java.util.zip.GZIPInputStream;
 
 import tratz.jwni.WordNet;
 import tratz.ml.ClassScoreTuple;
+import tratz.ml.ModelArchive;
 import tratz.parse.transform.VchTransformer;
 import tratz.parse.types.Arc;
 import tratz.parse.types.Parse;
@@ -44,6 +45,7 @@ public class FullSystemWrapper {
 	public final static String[] PREPOSITION_DEPENDENCY_RELATIONS = new String[]{ParseConstants.PREP_MOD_DEP, ParseConstants.AGENT_DEP, ParseConstants.COPULAR_COMPLEMENT_DEP};
 	
 	private NLParser mParser;
+	private ParseCache mParseCache;
 	private PosTagger mPosTagger;
 	private ClassificationBundle mPsdWrapper = null,
 	 							 mNnWrapper = null,
@@ -129,6 +131,30 @@ public class FullSystemWrapper {
 		mSrlPredicatesWrapper = srlPredicatesWrapper;
 	}
 	
+	/**
+	 * Sets the cache to look sentences up in before parsing them (null to always parse)
+	 */
+	public void setParseCache(ParseCache parseCache) {
+		mParseCache = parseCache;
+	}
+	
+	public ParseCache getParseCache() {
+		return mParseCache;
+	}
+	
+	/**
+	 * Sets the number of threads the sentences given to <code>process(List, ...)</code> are parsed with
+	 */
+	public void setParseThreads(int numThreads) {
+		mParser.setNumThreads(numThreads);
+	}
+	
+	public void posTag(Sentence sentence) {
+		if(mPosTagger != null) {
+			mPosTagger.posTag(sentence.getTokens());
+		}
+	}
+	
 	public FullSystemResult process(Sentence sentence, 
 						        boolean doPosTag,
 								boolean doParse, 
@@ -142,41 +168,71 @@ public class FullSystemWrapper {
 		// Part-of-Speech tag if has not already been POS-tagged
 		if(doPosTag) {
 			// Part-of-Speech tagging
-			if(mPosTagger != null) {
-				mPosTagger.posTag(tokens);
-			}
+			posTag(sentence);
 		}
 			
 		// Parse the sentence
-		Parse parse = null;
-		Parse srlLabeledParse = null;
-		
 		if(doParse) {
-			parse = mParser.parseSentence(sentence);
-			
-			if(doPrepDisambiguation) {
-				// Preposition sense disambiguation
-				performSemanticAnnotation(mPsdWrapper, sentence, parse, PREPOSITION_DEPENDENCY_RELATIONS);
-			}
-			if(doNnDisambiguation) {
-				// Noun-noun compounding interpretation
-				performSemanticAnnotation(mNnWrapper, sentence, parse, NOUN_COMPOUND_DEPENDENCY_RELATIONS);
-			}
-			
-			if(doPossInterp) {
-				// Interpretation of possessives
-				performSemanticAnnotation(mPossWrapper, sentence, parse, POSSESSIVE_DEPENDENCY_RELATIONS);
-			}
-		
-			if(doSrl) {
-				// Semantic role labeling
-				srlLabeledParse = performSrlAnnotation(mSrlArgsWrapper, mSrlPredicatesWrapper, sentence, parse);
+			Parse parse = mParseCache == null ? mParser.parseSentence(sentence) : mParseCache.parseSentence(mParser, sentence);
+			return annotate(sentence, parse, doPrepDisambiguation, doNnDisambiguation, doPossInterp, doSrl);
+		}
+		else {
+			return new FullSystemResult(new Parse(sentence, null, null), null);
+		}
+	}
+	
+	/**
+	 * Processes several sentences that have already been part-of-speech tagged (see <code>posTag</code>).
+	 * The same as calling <code>process</code> on each of them, except that the sentences are parsed
+	 * together, in parallel if <code>setParseThreads</code> was given several threads.
+	 * @return the results, in the order of the sentences
+	 */
+	public List<FullSystemResult> process(List<Sentence> sentences,
+										  boolean doParse, 
+										  boolean doPrepDisambiguation, 
+										  boolean doNnDisambiguation, 
+										  boolean doPossInterp, 
+										  boolean doSrl) {
+		List<FullSystemResult> results = new ArrayList<FullSystemResult>(sentences.size());
+		if(doParse) {
+			List<Parse> parses = mParseCache == null ? mParser.parseSentences(sentences) : mParseCache.parseSentences(mParser, sentences);
+			for(int i = 0; i < sentences.size(); i++) {
+				results.add(annotate(sentences.get(i), parses.get(i), doPrepDisambiguation, doNnDisambiguation, doPossInterp, doSrl));
 			}
 		}
 		else {
-			parse = new Parse(sentence, null, null);
+			for(Sentence sentence : sentences) {
+				results.add(new FullSystemResult(new Parse(sentence, null, null), null));
+			}
+		}
+		return results;
+	}
+	
+	private FullSystemResult annotate(Sentence sentence, 
+									  Parse parse, 
+									  boolean doPrepDisambiguation, 
+									  boolean doNnDisambiguation, 
+									  boolean doPossInterp, 
+									  boolean doSrl) {
+		Parse srlLabeledParse = null;
+		if(doPrepDisambiguation) {
+			// Preposition sense disambiguation
+			performSemanticAnnotation(mPsdWrapper, sentence, parse, PREPOSITION_DEPENDENCY_RELATIONS);
+		}
+		if(doNnDisambiguation) {
+			// Noun-noun compounding interpretation
+			performSemanticAnnotation(mNnWrapper, sentence, parse, NOUN_COMPOUND_DEPENDENCY_RELATIONS);
+		}
+		
+		if(doPossInterp) {
+			// Interpretation of possessives
+			performSemanticAnnotation(mPossWrapper, sentence, parse, POSSESSIVE_DEPENDENCY_RELATIONS);
 		}
 		
+		if(doSrl) {
+			// Semantic role labeling
+			srlLabeledParse = performSrlAnnotation(mSrlArgsWrapper, mSrlPredicatesWrapper, sentence, parse);
+		}
 		return new FullSystemResult(parse, srlLabeledParse);
 	}
 	
@@ -258,9 +314,14 @@ public class FullSystemWrapper {
 	public static ClassificationBundle readBundle(File inputFile, String name) throws IOException, ClassNotFoundException {
 		ClassificationBundle bundle;
 		System.err.print("Loading "+name+"...");
-		ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new FileInputStream(inputFile)));
-		bundle = (ClassificationBundle)ois.readObject();
-		ois.close();
+		if(ModelArchive.isModelArchive(inputFile)) {
+			bundle = ClassificationBundle.readArchive(inputFile);
+		}
+		else {
+			ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new FileInputStream(inputFile)));
+			bundle = (ClassificationBundle)ois.readObject();
+			ois.close();
+		}
 		System.err.println("Done");
 		return bundle;
 	}
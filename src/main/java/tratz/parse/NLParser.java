@@ -17,6 +17,7 @@
 package tratz.parse;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,9 +26,20 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
+import tratz.parse.featgen.HashedFeatureBuilder;
 import tratz.parse.featgen.ParseFeatureGenerator;
+import tratz.parse.featgen.TemplateParseFeatureGenerator;
+import tratz.parse.ml.FeatureKeyModel;
+import tratz.parse.ml.MappedParseModel;
 import tratz.parse.ml.ParseModel;
 import tratz.parse.types.Arc;
 import tratz.parse.types.Parse;
@@ -40,31 +52,98 @@ import tratz.types.IntArrayList;
 /**
  * The parsing class. Implements Goldberg and Elhadad's (2010) algorithm with Nivre-style (2009)
  * reordering to support non-projectivity.
- *
+ * A parser may be shared by several threads as long as its model isn't being trained at the same time.
  */
 public class NLParser {
 	
-	public static long sFeatGenTime = 0;
-	public static long sDotProductTime = 0;
+	/**
+	 * Scratch space that a thread reuses for each sentence it parses
+	 */
+	private static class ParseState {
+		final Set<String> ftSet = new HashSet<String>();
+		HashedFeatureBuilder keyBuilder;
+		IntArrayList[] featureCache = new IntArrayList[0];
+		ArrayList[] actionCache = new ArrayList[0];
+		boolean[] actionListStale = new boolean[0];
+		double[] scores = new double[0];
+		int[] indices = new int[0];
+		
+		void reset(int numTokens, int numActions) {
+			if(featureCache.length < numTokens+1) {
+				featureCache = new IntArrayList[numTokens+1];
+				actionCache = new ArrayList[numTokens+1];
+				actionListStale = new boolean[numTokens+1];
+			}
+			for(int i = 0; i < numTokens+1; i++) {
+				if(actionCache[i] != null) {
+					actionCache[i].clear();
+				}
+				actionListStale[i] = true;
+			}
+			if(scores.length < numActions) {
+				scores = new double[numActions];
+				indices = new int[numActions];
+			}
+		}
+	}
 	
+	// nanoseconds spent generating features and scoring actions, summed over all threads
+	private final AtomicLong mFeatGenTime = new AtomicLong();
+	private final AtomicLong mDotProductTime = new AtomicLong();
+	
+	private final ThreadLocal<ParseState> mParseStates = new ThreadLocal<ParseState>() {
+		@Override
+		protected ParseState initialValue() {
+			return new ParseState();
+		}
+	};
+	
+	private int mNumThreads = 1;
+	private ExecutorService mExecutor;
 	
 	private ParseModel mModel;
 	private ParseFeatureGenerator mFeatGen;
 	
+	// Set when the features can be looked up by their keys without building the feature Strings
+	private TemplateParseFeatureGenerator mTemplateFeatGen;
+	private FeatureKeyModel mKeyModel;
+	
 	public NLParser(ParseModel model, ParseFeatureGenerator featGen) {
 		mModel = model;
 		mFeatGen = featGen;
+		initFeatureKeys();
 	}
 	
+	/**
+	 * Loads a serialized model (gzipped if the file name ends in .gz) or memory-maps a model written by <code>MappedParseModel.write</code>
+	 */
 	public NLParser(String modelFile) throws IOException, ClassNotFoundException {
-		InputStream is = new BufferedInputStream(new FileInputStream(modelFile));
-		if(modelFile.endsWith(".gz")) {
-			is = new GZIPInputStream(is);
+		File file = new File(modelFile);
+		if(MappedParseModel.isMappedModel(file)) {
+			MappedParseModel model = new MappedParseModel(file);
+			mModel = model;
+			mFeatGen = model.getFeatureGenerator();
+		}
+		else {
+			InputStream is = new BufferedInputStream(new FileInputStream(file));
+			if(modelFile.endsWith(".gz")) {
+				is = new GZIPInputStream(is);
+			}
+			ObjectInputStream ois = new ObjectInputStream(is);
+			mModel = (ParseModel)ois.readObject();
+			mFeatGen = (ParseFeatureGenerator)ois.readObject();
+			ois.close();
+		}
+		initFeatureKeys();
+	}
+	
+	private void initFeatureKeys() {
+		if(mFeatGen instanceof TemplateParseFeatureGenerator 
+				&& mModel instanceof FeatureKeyModel 
+				&& ((FeatureKeyModel)mModel).supportsFeatureKeys()) {
+			mTemplateFeatGen = (TemplateParseFeatureGenerator)mFeatGen;
+			mKeyModel = (FeatureKeyModel)mModel;
 		}
-		ObjectInputStream ois = new ObjectInputStream(is);
-		mModel = (ParseModel)ois.readObject();
-		mFeatGen = (ParseFeatureGenerator)ois.readObject();
-		ois.close();
 	}
 	
 	private IntArrayList getValues(ParseModel model, Set<String> fts, IntArrayList values, boolean addFeats) {
@@ -78,6 +157,17 @@ public class NLParser {
 		return values;
 	}
 	
+	private IntArrayList getValues(FeatureKeyModel model, HashedFeatureBuilder keys, IntArrayList values) {
+		final int numKeys = keys.size();
+		for(int i = 0; i < numKeys; i++) {
+			int index = model.getIndex(keys.getKey(i));
+			if(index != Integer.MIN_VALUE) {
+				values.add(index);
+			}
+		}
+		return values;
+	}
+	
 	public Parse parseSentence(Sentence sentence) {
 		Parse returnValue = null;
 		List<Token> tokens = sentence.getTokens();
@@ -86,8 +176,21 @@ public class NLParser {
 			
 		List[] currentArcs = new List[numTokens+1];
 		int creationOrderIndex = 1;
-		double[] scores = new double[mModel.getActions().size()];
-		int[] indices = new int[mModel.getActions().size()];
+		long featGenTime = 0, dotProductTime = 0;
+		
+		// Reused items (less memory [de]allocation)
+		final ParseState state = mParseStates.get();
+		state.reset(numTokens, mModel.getActions().size());
+		final double[] scores = state.scores;
+		final int[] indices = state.indices;
+		final IntArrayList[] featureCache = state.featureCache;
+		final ArrayList[] actionCache = state.actionCache;
+		final boolean[] actionListStale = state.actionListStale;
+		final Set<String> ftSet = state.ftSet;
+		if(mKeyModel != null && state.keyBuilder == null) {
+			state.keyBuilder = new HashedFeatureBuilder();
+		}
+		final HashedFeatureBuilder keyBuilder = mKeyModel != null ? state.keyBuilder : null;
 		
 		TokenPointer first = null;
 		// Create data structure
@@ -106,16 +209,6 @@ public class NLParser {
 			prev = ptr;
 		}
 		
-		IntArrayList[] featureCache = new IntArrayList[numTokens+1];
-		ArrayList[] actionCache = new ArrayList[numTokens+1];
-		boolean[] actionListStale = new boolean[numTokens+1];
-		for(int i = 0; i < numTokens+1; i++) {
-			actionListStale[i] = true;
-		}
-		
-		// Reused item (less memory [de]allocation)
-		final Set<String> ftSet = new HashSet<String>();
-		
 		while(first != null && first.next != null) {
 			TokenPointer ptr = first;
 			while(ptr != null) {
@@ -126,15 +219,27 @@ public class NLParser {
 					IntArrayList features = featureCache[token.getIndex()];
 					
 					long sfeat = System.nanoTime();
-					mFeatGen.genFeats(ftSet, mModel, tokens, tokenToPtr[token.getIndex()], currentArcs);
-					if(features == null) {
-						featureCache[token.getIndex()] = features = new IntArrayList(ftSet.size());
+					if(keyBuilder != null) {
+						mTemplateFeatGen.genFeats(keyBuilder, mModel, tokens, tokenToPtr[token.getIndex()], currentArcs);
+						keyBuilder.removeDuplicates();
+						if(features == null) {
+							featureCache[token.getIndex()] = features = new IntArrayList(keyBuilder.size());
+						}
+						features.clear();
+						getValues(mKeyModel, keyBuilder, features);
+						keyBuilder.clear();
 					}
-					features.clear();
-					//IntArrayList values = new IntArrayList(fts.size());
-					featureCache[token.getIndex()] = features = getValues(mModel, ftSet, features, false);
-					ftSet.clear();
-					sFeatGenTime += System.nanoTime()-sfeat;
+					else {
+						mFeatGen.genFeats(ftSet, mModel, tokens, tokenToPtr[token.getIndex()], currentArcs);
+						if(features == null) {
+							featureCache[token.getIndex()] = features = new IntArrayList(ftSet.size());
+						}
+						features.clear();
+						//IntArrayList values = new IntArrayList(fts.size());
+						featureCache[token.getIndex()] = features = getValues(mModel, ftSet, features, false);
+						ftSet.clear();
+					}
+					featGenTime += System.nanoTime()-sfeat;
 					//featTime += System.nanoTime()-start;
 					
 				
@@ -154,7 +259,7 @@ public class NLParser {
 					
 					long start = System.nanoTime();
 					mModel.score(actionNames, features, indices, scores);
-					sDotProductTime += System.nanoTime()-start;
+					dotProductTime += System.nanoTime()-start;
 					for(int i = 0; i < numActions; i++) {
 						String action = actionNames.get(i);
 						ParseAction oldAction = actions.get(i);
@@ -198,6 +303,8 @@ public class NLParser {
 				throw new RuntimeException("Bizarre. No valid action found. Unsupported part-of-speech perhaps?");
 			}
 		}
+			mFeatGenTime.addAndGet(featGenTime);
+			mDotProductTime.addAndGet(dotProductTime);
 		
 			Token root = new Token("[ROOT]", 0);
 			List<Arc> sentenceArcs = new ArrayList<Arc>();
@@ -212,6 +319,112 @@ public class NLParser {
 		return returnValue; 
 	}
 	
+	/**
+	 * Parses the sentences using the threads set by <code>setNumThreads</code>
+	 * @return the parses, in the order of the sentences
+	 */
+	public List<Parse> parseSentences(List<Sentence> sentences) {
+		ExecutorService executor = getExecutor();
+		if(executor == null || sentences.size() < 2) {
+			List<Parse> parses = new ArrayList<Parse>(sentences.size());
+			for(Sentence sentence : sentences) {
+				parses.add(parseSentence(sentence));
+			}
+			return parses;
+		}
+		return parseSentences(sentences, executor);
+	}
+	
+	/**
+	 * Parses the sentences using the executor's threads
+	 * @return the parses, in the order of the sentences
+	 */
+	public List<Parse> parseSentences(List<Sentence> sentences, ExecutorService executor) {
+		List<Future<Parse>> futures = new ArrayList<Future<Parse>>(sentences.size());
+		for(final Sentence sentence : sentences) {
+			futures.add(executor.submit(new Callable<Parse>() {
+				public Parse call() {
+					return parseSentence(sentence);
+				}
+			}));
+		}
+		List<Parse> parses = new ArrayList<Parse>(sentences.size());
+		try {
+			for(Future<Parse> future : futures) {
+				parses.add(future.get());
+			}
+		}
+		catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ie);
+		}
+		catch(ExecutionException ee) {
+			if(ee.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)ee.getCause();
+			}
+			throw new RuntimeException(ee.getCause());
+		}
+		finally {
+			for(Future<Parse> future : futures) {
+				future.cancel(false);
+			}
+		}
+		return parses;
+	}
+	
+	/**
+	 * Sets the number of threads <code>parseSentences(List)</code> uses (default: 1). The threads are daemon threads
+	 * and are created the first time they are needed.
+	 */
+	public synchronized void setNumThreads(int numThreads) {
+		if(numThreads != mNumThreads) {
+			shutdown();
+			mNumThreads = Math.max(1, numThreads);
+		}
+	}
+	
+	public synchronized int getNumThreads() {
+		return mNumThreads;
+	}
+	
+	private synchronized ExecutorService getExecutor() {
+		if(mExecutor == null && mNumThreads > 1) {
+			mExecutor = Executors.newFixedThreadPool(mNumThreads, new ThreadFactory() {
+				private int mThreadNum;
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "parser-" + (mThreadNum++));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return mExecutor;
+	}
+	
+	/**
+	 * Stops the threads used by <code>parseSentences(List)</code>, if any
+	 */
+	public synchronized void shutdown() {
+		if(mExecutor != null) {
+			mExecutor.shutdown();
+			mExecutor = null;
+		}
+	}
+	
+	/**
+	 * Returns the time spent generating features, summed over all threads, in nanoseconds
+	 */
+	public long getFeatGenTime() {
+		return mFeatGenTime.get();
+	}
+	
+	/**
+	 * Returns the time spent scoring the parse actions, summed over all threads, in nanoseconds
+	 */
+	public long getDotProductTime() {
+		return mDotProductTime.get();
+	}
+	
 	public ParseAction getBestAction(TokenPointer first, 
 									List[] actionCache, 
 									TokenPointer[] tokenToPtr, 
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+
+package tratz.parse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tratz.parse.types.Arc;
+import tratz.parse.types.Parse;
+import tratz.parse.types.Sentence;
+import tratz.parse.types.Token;
+
+/**
+ * Bounded cache of parses keyed by the text and part-of-speech sequence of the sentence, so that repeated
+ * sentences (common across the systems and topics of an evaluation) are parsed only once. A hit returns
+ * a new Parse of the sentence passed in, with arcs identical to those the parser produced.
+ * The least recently used parses are dropped when the cache is full. If a backing file is given the
+ * parses are appended to it as they are added and read back when the cache is created; the file is
+ * tied to the model it was written with and is discarded when opened with a different model id.
+ * Appended parses are flushed to the file in batches, on flush() and close(), and when the JVM exits.
+ * Safe for use by several threads.
+ */
+public class ParseCache {
+	
+	public final static int DEFAULT_MAX_ENTRIES = 100000;
+	
+	// number of appended parses after which the backing file is flushed
+	public final static int FLUSH_INTERVAL = 1000;
+	
+	private final static int FILE_VERSION = 2;
+	private final static char TOKEN_SEPARATOR = '\u0000';
+	private final static char POS_SEPARATOR = '\u0001';
+	
+	/**
+	 * Compact form of the arcs of a parse (indices rather than tokens); index 0 is the root
+	 */
+	private static class CachedParse {
+		final String[] texts;
+		final String[] posTags;
+		final int[] children;
+		final int[] heads;
+		final int[] creationNums;
+		final String[] dependencies;
+		
+		CachedParse(String[] texts, String[] posTags, int numArcs) {
+			this.texts = texts;
+			this.posTags = posTags;
+			children = new int[numArcs];
+			heads = new int[numArcs];
+			creationNums = new int[numArcs];
+			dependencies = new String[numArcs];
+		}
+	}
+	
+	private final int mMaxEntries;
+	private final String mModelId;
+	private final File mBackingFile;
+	private final LinkedHashMap<String, CachedParse> mEntries;
+	private DataOutputStream mBackingStream;
+	private int mNumUnflushed;
+	
+	private long mHits;
+	private long mMisses;
+	
+	public ParseCache(int maxEntries) {
+		mMaxEntries = maxEntries;
+		mModelId = null;
+		mBackingFile = null;
+		mEntries = createEntryMap();
+	}
+	
+	/**
+	 * Creates a cache backed by the file, loading the parses already in it
+	 * @param modelId identifies the parsing model (see createModelId)
+	 */
+	public ParseCache(int maxEntries, File backingFile, String modelId) throws IOException {
+		mMaxEntries = maxEntries;
+		mModelId = modelId;
+		mBackingFile = backingFile;
+		mEntries = createEntryMap();
+		boolean rewrite = true;
+		if(backingFile.exists()) {
+			int numRecords = load();
+			// also compact the file once it holds many parses that were dropped
+			rewrite = numRecords < 0 || numRecords > 2*mMaxEntries;
+		}
+		if(rewrite) {
+			writeAll();
+		}
+		else {
+			mBackingStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mBackingFile, true)));
+		}
+		flushOnExit(this);
+	}
+	
+	private LinkedHashMap<String, CachedParse> createEntryMap() {
+		return new LinkedHashMap<String, CachedParse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedParse> eldest) {
+				return size() > mMaxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Identifies a model file by its path, size and modification time
+	 */
+	public static String createModelId(File modelFile) {
+		return modelFile.getAbsolutePath() + ":" + modelFile.length() + ":" + modelFile.lastModified();
+	}
+	
+	/**
+	 * Returns the id of the model the backing file is tied to (null if there is no backing file)
+	 */
+	public String getModelId() {
+		return mModelId;
+	}
+	
+	/**
+	 * Returns the cached parse of the sentence, or parses it with the parser (and caches the result)
+	 */
+	public Parse parseSentence(NLParser parser, Sentence sentence) {
+		Parse parse = get(sentence);
+		if(parse == null) {
+			parse = parser.parseSentence(sentence);
+			if(parse != null) {
+				put(sentence, parse);
+			}
+		}
+		return parse;
+	}
+	
+	/**
+	 * Like parseSentence but for several sentences; the ones that aren't cached are parsed with 
+	 * <code>parser.parseSentences</code> (and so in parallel if the parser has several threads)
+	 * @return the parses, in the order of the sentences
+	 */
+	public List<Parse> parseSentences(NLParser parser, List<Sentence> sentences) {
+		final int numSentences = sentences.size();
+		List<Parse> parses = new ArrayList<Parse>(numSentences);
+		List<Sentence> misses = new ArrayList<Sentence>();
+		for(Sentence sentence : sentences) {
+			Parse parse = get(sentence);
+			if(parse == null) {
+				misses.add(sentence);
+			}
+			parses.add(parse);
+		}
+		if(misses.size() > 0) {
+			List<Parse> missParses = parser.parseSentences(misses);
+			int m = 0;
+			for(int i = 0; i < numSentences; i++) {
+				if(parses.get(i) == null) {
+					Parse parse = missParses.get(m++);
+					if(parse != null) {
+						put(sentences.get(i), parse);
+					}
+					parses.set(i, parse);
+				}
+			}
+		}
+		return parses;
+	}
+	
+	/**
+	 * Returns a parse of the sentence copied from the cache, or null if the sentence isn't cached
+	 */
+	public Parse get(Sentence sentence) {
+		List<Token> tokens = sentence.getTokens();
+		if(!hasSequentialIndices(tokens)) {
+			return null;
+		}
+		CachedParse cached;
+		synchronized(this) {
+			cached = mEntries.get(createKey(tokens));
+			if(cached == null) {
+				mMisses++;
+				return null;
+			}
+			mHits++;
+		}
+		final int numTokens = tokens.size();
+		Token root = new Token("[ROOT]", 0);
+		Token[] indexToToken = new Token[numTokens+1];
+		indexToToken[0] = root;
+		for(int i = 0; i < numTokens; i++) {
+			indexToToken[i+1] = tokens.get(i);
+		}
+		final int numArcs = cached.children.length;
+		List<Arc> arcs = new ArrayList<Arc>(numArcs);
+		for(int a = 0; a < numArcs; a++) {
+			arcs.add(new Arc(indexToToken[cached.children[a]], indexToToken[cached.heads[a]], cached.dependencies[a], cached.creationNums[a]));
+		}
+		return new Parse(sentence, root, arcs);
+	}
+	
+	/**
+	 * Caches the arcs of the parse of the sentence
+	 */
+	public void put(Sentence sentence, Parse parse) {
+		List<Token> tokens = sentence.getTokens();
+		if(!hasSequentialIndices(tokens)) {
+			return;
+		}
+		final int numTokens = tokens.size();
+		String[] texts = new String[numTokens];
+		String[] posTags = new String[numTokens];
+		for(int i = 0; i < numTokens; i++) {
+			Token token = tokens.get(i);
+			texts[i] = token.getText();
+			posTags[i] = token.getPos();
+		}
+		List<Arc> arcs = parse.getArcs();
+		CachedParse cached = new CachedParse(texts, posTags, arcs.size());
+		for(int a = 0; a < arcs.size(); a++) {
+			Arc arc = arcs.get(a);
+			cached.children[a] = arc.getChild().getIndex();
+			cached.heads[a] = arc.getHead().getIndex();
+			cached.creationNums[a] = arc.getCreationNum();
+			cached.dependencies[a] = arc.getDependency();
+		}
+		synchronized(this) {
+			mEntries.put(createKey(tokens), cached);
+			if(mBackingStream != null) {
+				try {
+					writeRecord(mBackingStream, cached);
+					if(++mNumUnflushed >= FLUSH_INTERVAL) {
+						mBackingStream.flush();
+						mNumUnflushed = 0;
+					}
+				}
+				catch(IOException ioe) {
+					// carry on without the backing file
+					System.err.println("Unable to write to parse cache file " + mBackingFile + ": " + ioe);
+					closeBackingStream();
+				}
+			}
+		}
+	}
+	
+	public synchronized int size() {
+		return mEntries.size();
+	}
+	
+	public synchronized long getNumHits() {
+		return mHits;
+	}
+	
+	public synchronized long getNumMisses() {
+		return mMisses;
+	}
+	
+	/**
+	 * Writes the parses added so far to the backing file, if any
+	 */
+	public synchronized void flush() {
+		if(mBackingStream != null) {
+			try {
+				mBackingStream.flush();
+				mNumUnflushed = 0;
+			}
+			catch(IOException ioe) {
+				System.err.println("Unable to write to parse cache file " + mBackingFile + ": " + ioe);
+				closeBackingStream();
+			}
+		}
+	}
+	
+	/**
+	 * Closes the backing file, if any. The cache remains usable in memory.
+	 */
+	public synchronized void close() {
+		closeBackingStream();
+	}
+	
+	private void closeBackingStream() {
+		if(mBackingStream != null) {
+			try {
+				mBackingStream.close();
+			}
+			catch(IOException ioe) {
+				System.err.println("Unable to close parse cache file " + mBackingFile + ": " + ioe);
+			}
+			mBackingStream = null;
+		}
+	}
+	
+	// file-backed caches to flush when the JVM exits
+	private final static List<WeakReference<ParseCache>> sOpenCaches = new ArrayList<WeakReference<ParseCache>>();
+	private static Thread sShutdownHook;
+	
+	private static void flushOnExit(ParseCache cache) {
+		synchronized(sOpenCaches) {
+			for(Iterator<WeakReference<ParseCache>> it = sOpenCaches.iterator(); it.hasNext();) {
+				if(it.next().get() == null) {
+					it.remove();
+				}
+			}
+			sOpenCaches.add(new WeakReference<ParseCache>(cache));
+			if(sShutdownHook == null) {
+				sShutdownHook = new Thread() {
+					public void run() {
+						synchronized(sOpenCaches) {
+							for(WeakReference<ParseCache> ref : sOpenCaches) {
+								ParseCache openCache = ref.get();
+								if(openCache != null) {
+									openCache.flush();
+								}
+							}
+						}
+					}
+				};
+				Runtime.getRuntime().addShutdownHook(sShutdownHook);
+			}
+		}
+	}
+	
+	private static boolean hasSequentialIndices(List<Token> tokens) {
+		final int numTokens = tokens.size();
+		for(int i = 0; i < numTokens; i++) {
+			if(tokens.get(i).getIndex() != i+1) {
+				return false;
+			}
+		}
+		return numTokens > 0;
+	}
+	
+	private static String createKey(List<Token> tokens) {
+		StringBuilder sb = new StringBuilder();
+		for(Token token : tokens) {
+			sb.append(token.getText()).append(POS_SEPARATOR).append(token.getPos()).append(TOKEN_SEPARATOR);
+		}
+		return sb.toString();
+	}
+	
+	private static String createKey(String[] texts, String[] posTags) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < texts.length; i++) {
+			sb.append(texts[i]).append(POS_SEPARATOR).append(posTags[i]).append(TOKEN_SEPARATOR);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Reads the backing file. Returns the number of records read, or -1 if the file must be rewritten
+	 * (it is for another model or ends with a record cut short by an interrupted run).
+	 */
+	private int load() throws IOException {
+		int numRecords = 0;
+		DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(mBackingFile)));
+		try {
+			if(dis.readInt() != FILE_VERSION || !dis.readUTF().equals(mModelId)) {
+				return -1;
+			}
+			Map<String, String> dependencies = new HashMap<String, String>();
+			while(true) {
+				int numTokens;
+				try {
+					numTokens = dis.readInt();
+				}
+				catch(EOFException eofe) {
+					return numRecords;
+				}
+				CachedParse cached = readRecord(dis, numTokens, dependencies);
+				mEntries.put(createKey(cached.texts, cached.posTags), cached);
+				numRecords++;
+			}
+		}
+		catch(EOFException eofe) {
+			return -1;
+		}
+		finally {
+			dis.close();
+		}
+	}
+	
+	/**
+	 * (Re)writes the backing file with the parses currently in the cache
+	 */
+	private void writeAll() throws IOException {
+		File tempFile = new File(mBackingFile.getPath() + ".tmp");
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		dos.writeInt(FILE_VERSION);
+		dos.writeUTF(mModelId);
+		for(CachedParse cached : mEntries.values()) {
+			writeRecord(dos, cached);
+		}
+		dos.close();
+		if(mBackingFile.exists() && !mBackingFile.delete()) {
+			throw new IOException("Unable to replace parse cache file: " + mBackingFile);
+		}
+		if(!tempFile.renameTo(mBackingFile)) {
+			throw new IOException("Unable to rename " + tempFile + " to " + mBackingFile);
+		}
+		mBackingStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mBackingFile, true)));
+	}
+	
+	private static void writeRecord(DataOutputStream dos, CachedParse cached) throws IOException {
+		final int numTokens = cached.texts.length;
+		dos.writeInt(numTokens);
+		for(int i = 0; i < numTokens; i++) {
+			dos.writeUTF(cached.texts[i]);
+			String pos = cached.posTags[i];
+			dos.writeBoolean(pos != null);
+			if(pos != null) {
+				dos.writeUTF(pos);
+			}
+		}
+		final int numArcs = cached.children.length;
+		dos.writeInt(numArcs);
+		for(int a = 0; a < numArcs; a++) {
+			dos.writeInt(cached.children[a]);
+			dos.writeInt(cached.heads[a]);
+			dos.writeInt(cached.creationNums[a]);
+			// arcs need not have a dependency label
+			String dependency = cached.dependencies[a];
+			dos.writeBoolean(dependency != null);
+			if(dependency != null) {
+				dos.writeUTF(dependency);
+			}
+		}
+	}
+	
+	private static CachedParse readRecord(DataInputStream dis, int numTokens, Map<String, String> canonicalDependencies) throws IOException {
+		String[] texts = new String[numTokens];
+		String[] posTags = new String[numTokens];
+		for(int i = 0; i < numTokens; i++) {
+			texts[i] = dis.readUTF();
+			posTags[i] = dis.readBoolean() ? dis.readUTF() : null;
+		}
+		final int numArcs = dis.readInt();
+		CachedParse cached = new CachedParse(texts, posTags, numArcs);
+		for(int a = 0; a < numArcs; a++) {
+			cached.children[a] = dis.readInt();
+			cached.heads[a] = dis.readInt();
+			cached.creationNums[a] = dis.readInt();
+			if(dis.readBoolean()) {
+				String dependency = dis.readUTF();
+				String canonical = canonicalDependencies.get(dependency);
+				if(canonical == null) {
+					canonicalDependencies.put(dependency, canonical = dependency);
+				}
+				cached.dependencies[a] = canonical;
+			}
+		}
+		return cached;
+	}
+	
+}
@@ -17,8 +17,10 @@
 package tratz.parse;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,10 +55,16 @@ public class ParsingScript {
 								OPT_SENTENCE_WRITER_OPTIONS = "writeroptions",
 								OPT_INPUT = "input",
 								
-								OPT_WORDNET_DIR = "wndir";
+								OPT_WORDNET_DIR = "wndir",
+								
+								OPT_PARSE_CACHE_SIZE = "parsecachesize",
+								OPT_PARSE_CACHE_FILE = "parsecachefile",
+								OPT_THREADS = "threads";
 								//OPT_VCH_CONVERT = "convertvch";
 	
 	public final static Boolean DEFAULT_VCH_CONVERT = Boolean.FALSE;
+	// with several threads, the sentences are read and parsed this many per thread at a time
+	public final static int SENTENCES_PER_THREAD = 50;
 	public final static String DEFAULT_SENTENCE_READER_CLASS = tratz.parse.io.ConllxSentenceReader.class.getName();
 	
 	private static CommandLineOptions createOptions() {
@@ -76,6 +84,9 @@ public class ParsingScript {
 		cmdOpts.addOption(OPT_WORDNET_DIR, "file", "WordNet dictionary (dict) directory");
 		//cmdOpts.addOption(OPT_VCH_CONVERT, "boolean", "convert vch->{aux,auxpass}, *subj->{*subj,*subjpass}");
 		cmdOpts.addOption(OPT_INPUT, "file", "input file/directory (if left out, standard input will be used instead)");
+		cmdOpts.addOption(OPT_PARSE_CACHE_SIZE, "integer", "maximum number of sentence parses to cache (default: " + ParseCache.DEFAULT_MAX_ENTRIES + ")");
+		cmdOpts.addOption(OPT_PARSE_CACHE_FILE, "file", "file to keep cached sentence parses in between runs");
+		cmdOpts.addOption(OPT_THREADS, "integer", "number of threads to parse with (default: 1)");
 		
 		return cmdOpts;
 	}
@@ -122,6 +133,20 @@ public class ParsingScript {
 		//boolean doVchConversion = cmdLine.getBooleanValue(OPT_VCH_CONVERT, DEFAULT_VCH_CONVERT);
 
 		FullSystemWrapper fullSystemWrapper = new FullSystemWrapper(prepositionModelFile, nounCompoundModelFile, possessivesModelFile, srlArgsModelFile, srlPredicatesModelFile, posModelFile, parseModelFile, wnDir);
+		// Cache of sentence parses
+		String parseCacheSize = cmdLine.getStringValue(OPT_PARSE_CACHE_SIZE);
+		String parseCacheFile = cmdLine.getStringValue(OPT_PARSE_CACHE_FILE);
+		if(parseCacheSize != null || parseCacheFile != null) {
+			int maxEntries = parseCacheSize == null ? ParseCache.DEFAULT_MAX_ENTRIES : Integer.parseInt(parseCacheSize);
+			fullSystemWrapper.setParseCache(parseCacheFile == null ? new ParseCache(maxEntries) 
+					: new ParseCache(maxEntries, new File(parseCacheFile), ParseCache.createModelId(new File(parseModelFile))));
+		}
+		
+		// Number of parsing threads
+		String threads = cmdLine.getStringValue(OPT_THREADS);
+		int numThreads = threads == null ? 1 : Integer.parseInt(threads);
+		fullSystemWrapper.setParseThreads(numThreads);
+		final int batchSize = numThreads > 1 ? numThreads * SENTENCES_PER_THREAD : 1;
 		
 		// START THE PARSING
 		System.err.println("Beginning sentence processing:");
@@ -136,32 +161,44 @@ public class ParsingScript {
 			reader = new BufferedReader(new InputStreamReader(System.in));
 		}
 		
-		// PROCESS EACH SENTENCE
+		// PROCESS EACH SENTENCE (a batch at a time, to parse the sentences of a batch in parallel)
 		Parse emptyOrOldParse = null;
-		while((emptyOrOldParse = sentenceReader.readSentence(reader)) != null) {
-			Sentence sentence = emptyOrOldParse.getSentence();
-			
-			//for(Token t : sentence.getTokens()) {
-				//System.err.print(t.getText()+" ");
-			//}
-			//System.err.println();
-			
-			List<Token> tokens = sentence.getTokens(); 
-			FullSystemResult result = fullSystemWrapper.process(sentence, tokens.size() > 0 && tokens.get(0).getPos() == null,
-					true, true, true, true, true);
-			
-			// Output sentence
-			sentenceWriter.appendSentence(sentence, 
-										  result.getParse(), 
-										  result.getSrlParse() == null ? null : result.getSrlParse().getHeadArcs());
+		List<Sentence> batch = new ArrayList<Sentence>(batchSize);
+		do {
+			batch.clear();
+			while(batch.size() < batchSize && (emptyOrOldParse = sentenceReader.readSentence(reader)) != null) {
+				Sentence sentence = emptyOrOldParse.getSentence();
+				
+				//for(Token t : sentence.getTokens()) {
+					//System.err.print(t.getText()+" ");
+				//}
+				//System.err.println();
+				
+				List<Token> tokens = sentence.getTokens(); 
+				if(tokens.size() > 0 && tokens.get(0).getPos() == null) {
+					fullSystemWrapper.posTag(sentence);
+				}
+				batch.add(sentence);
+			}
+			List<FullSystemResult> results = fullSystemWrapper.process(batch, true, true, true, true, true);
 			
-			// Keep track of some counts
-			totalTokens += sentence.getTokens().size();
-			totalSentences++;
-			if(totalSentences % 100 == 0) {
-				System.err.println(totalSentences);
+			for(int i = 0; i < batch.size(); i++) {
+				Sentence sentence = batch.get(i);
+				FullSystemResult result = results.get(i);
+				// Output sentence
+				sentenceWriter.appendSentence(sentence, 
+											  result.getParse(), 
+											  result.getSrlParse() == null ? null : result.getSrlParse().getHeadArcs());
+				
+				// Keep track of some counts
+				totalTokens += sentence.getTokens().size();
+				totalSentences++;
+				if(totalSentences % 100 == 0) {
+					System.err.println(totalSentences);
+				}
 			}
-		}			
+		}
+		while(emptyOrOldParse != null);
 		reader.close();
 		sentenceWriter.close();
 		
@@ -170,6 +207,11 @@ public class ParsingScript {
 		System.err.println("Time: " + totalTime/1000.0 +" seconds");
 		System.err.println("Total sentences: " + totalSentences);
 		System.err.println("Total tokens: " + totalTokens);
+		ParseCache parseCache = fullSystemWrapper.getParseCache();
+		if(parseCache != null) {
+			parseCache.close();
+			System.err.println("Parse cache hits: " + parseCache.getNumHits() + " misses: " + parseCache.getNumMisses());
+		}
 	}
 
 }
\ No newline at end of file
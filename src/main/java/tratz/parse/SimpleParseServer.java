@@ -17,6 +17,7 @@
 package tratz.parse;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -47,7 +48,10 @@ public class SimpleParseServer {
 		OPT_SRL_PREDICATES_MODEL = "srlpredmodel",
 		
 		OPT_WORDNET_DIR = "wndir",
-		OPT_PORT_NUMBER = "port";
+		OPT_PORT_NUMBER = "port",
+		
+		OPT_PARSE_CACHE_SIZE = "parsecachesize",
+		OPT_PARSE_CACHE_FILE = "parsecachefile";
 
 	public final static String DEFAULT_SENTENCE_READER_CLASS = tratz.parse.io.ConllxSentenceReader.class.getName();
 	
@@ -119,6 +123,8 @@ public class SimpleParseServer {
 		cmdOpts.addOption(OPT_SRL_ARGS_MODEL, "file", "semantic role labeling model file");
 
 		cmdOpts.addOption(OPT_WORDNET_DIR, "file", "WordNet dictionary (dict) directory");
+		cmdOpts.addOption(OPT_PARSE_CACHE_SIZE, "integer", "maximum number of sentence parses to cache (default: " + ParseCache.DEFAULT_MAX_ENTRIES + ")");
+		cmdOpts.addOption(OPT_PARSE_CACHE_FILE, "file", "file to keep cached sentence parses in between runs");
 
 		return cmdOpts;
 	}
@@ -256,6 +262,14 @@ public class SimpleParseServer {
 		int portNumber = cmdLine.getIntegerValue(OPT_PORT_NUMBER);
 		System.err.println("Port number: " + portNumber);
 		FullSystemWrapper fullSysWrapper = new FullSystemWrapper(prepositionModelFile, nounCompoundModelFile, possessivesModelFile, srlArgsModelFile, srlPredicatesModelFile, posModelFile, parseModelFile, wnDir);
+		// Cache of sentence parses
+		String parseCacheSize = cmdLine.getStringValue(OPT_PARSE_CACHE_SIZE);
+		String parseCacheFile = cmdLine.getStringValue(OPT_PARSE_CACHE_FILE);
+		if(parseCacheSize != null || parseCacheFile != null) {
+			int maxEntries = parseCacheSize == null ? ParseCache.DEFAULT_MAX_ENTRIES : Integer.parseInt(parseCacheSize);
+			fullSysWrapper.setParseCache(parseCacheFile == null ? new ParseCache(maxEntries) 
+					: new ParseCache(maxEntries, new File(parseCacheFile), ParseCache.createModelId(new File(parseModelFile))));
+		}
 		
 		SimpleParseServer server = new SimpleParseServer(portNumber, fullSysWrapper);
 		server.launch();
@@ -20,10 +20,10 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -45,7 +45,7 @@ import tratz.types.ChecksumMap;
  * may affect training, which is strange... that would only make sense if either 
  * 1) there is a bug or 2) there is some sort of numerical issue creeping up
  */
-public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatureGenerator {
+public class DefaultEnParseFeatureGenerator implements Serializable, TemplateParseFeatureGenerator {
 	
 	public final static long serialVersionUID = 1;
 	
@@ -57,6 +57,22 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		loadMap();
 	}
 	
+	// set up the transient state here rather than lazily, so that one generator can be used by several threads
+	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		mDummy = new TokenPointer(new Token(null, DUMMY_PART_OF_SPEECH, 0), null, null);
+		if(mFeatMap2 == null) {
+			// "Strange... didn't save the BC map... problem seems fixed now,
+			// must have been a serialization issue. Can probably take this out now
+			try {
+				loadMap();
+			}
+			catch(Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
 	// load the Brown clusters
 	private void loadMap() throws Exception {
 		mFeatMap2 = new ChecksumMap<String>();
@@ -91,16 +107,6 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 	}
 	
 	private String getBC(String s) {
-		if(mFeatMap2 == null) {
-			try {
-				// "Strange... didn't save the BC map... problem seems fixed now,
-				// must have been a serialization issue. Can probably take this out now
-				loadMap();
-			}
-			catch(Exception e) {
-				e.printStackTrace();
-			}
-		}
 		String retValue;
 		if(s==null) {
 			retValue = "-2";
@@ -186,9 +192,10 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 	// private final String[] = new String[]{"騚", "騛", "騜", "騝", "騞", "騟"};
 	
 	public void genFeats(Set<String> fts, ParseModel model, List<Token> tokens, TokenPointer ptr, List[] currentArcs) {
-		if(mDummy == null) {
-			mDummy = new TokenPointer(new Token(null, "na", 0), null, null);
-		}
+		genFeats(new StringFeatureBuilder(fts), model, tokens, ptr, currentArcs);
+	}
+	
+	public void genFeats(FeatureBuilder fb, ParseModel model, List<Token> tokens, TokenPointer ptr, List[] currentArcs) {
 		// Word forms, tags, pos, cpos
 		final String[] frm = new String[NTOK], tag = new String[NTOK];
 		final String[] pos = new String[NTOK], cpos = new String[NTOK];
@@ -228,49 +235,49 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 			
 			String posi = pos[i];
 			// noun vs verb pos tag error possibility indicator
-			if(posi.equals("NNS") || posi.equals("VBZ")) fts.add("⼩nz"+i);
-			if(posi.equals("NN") || posi.equals("VB")) fts.add("⼩nv"+i);
+			if(posi.equals("NNS") || posi.equals("VBZ")) fb.append("⼩nz").append(i).add();
+			if(posi.equals("NN") || posi.equals("VB")) fb.append("⼩nv").append(i).add();
 			
 			// vbd vs vbn POS tag error possibility indicator
-			if(posi.equals("VBN") || posi.equals("VBD")) fts.add("⼑1"+i); else fts.add("⼑2"+i);
+			if(posi.equals("VBN") || posi.equals("VBD")) fb.append("⼑1").append(i).add(); else fb.append("⼑2").append(i).add();
 			
 			if(posi.equals("DT")) {
 				// is article indicator
 				if(frm[i].equals("the") || frm[i].equals("a") || frm[i].equals("an")) {
-					fts.add("⼓1"+i); 
+					fb.append("⼓1").append(i).add(); 
 				}
 				else {
-					fts.add("⼓2"+i);
+					fb.append("⼓2").append(i).add();
 				}
 			}
 			
 			// Superlative indicator
-			if(posi.equals("RBS") || posi.equals("JJS")) fts.add(i+"⼩s");
+			if(posi.equals("RBS") || posi.equals("JJS")) fb.append(i).append("⼩s").add();
 			// Comparative indicator
-			if(posi.equals("RBR") || posi.equals("JJR")) fts.add(i+"⼩c");
+			if(posi.equals("RBR") || posi.equals("JJR")) fb.append(i).append("⼩c").add();
 			// Possessive pronoun indicator
-			if(posi.equals("WP$") || posi.equals("PRP$")) fts.add(i+"⼩p");
+			if(posi.equals("WP$") || posi.equals("PRP$")) fb.append(i).append("⼩p").add();
 			
 			
 			// Features
-			fts.add(tag[i]+uniTagPrefixes[i]);
-			fts.add(cpos[i]+uniCposPrefixes[i]);
-			fts.add(bc[i]+uniTagPrefixes[i]);
+			fb.append(tag[i]).append(uniTagPrefixes[i]).add();
+			fb.append(cpos[i]).append(uniCposPrefixes[i]).add();
+			fb.append(bc[i]).append(uniTagPrefixes[i]).add();
 			
 			if(frm[i] != null) {
-				fts.add(frm[i]+uniFrmPrefixes[i]);
+				fb.append(frm[i]).append(uniFrmPrefixes[i]).add();
 			}
 			//fts.add(soP[i]+(verbsPoses.contains(tag[i]) ? hasSoModifier(tp[i].tok, currentArcs) : false));
-			fts.add(tag[i]+(kids[i][0] == mDummy.tok && kids[i][1] == mDummy.tok)+NCP[i]);	
-			fts.add(tag[i]+lenP[i]+length(tp[i], kids[i]));
+			fb.append(tag[i]).append(kids[i][0] == mDummy.tok && kids[i][1] == mDummy.tok).append(NCP[i]).add();	
+			fb.append(tag[i]).append(lenP[i]).append(length(tp[i], kids[i])).add();
 			
 			
 		}
 		
 		for(int i = 0; i < NTOK-1; i++) {
 			boolean delta = Math.abs(tp[i].tok.getIndex()-tp[i+1].tok.getIndex())>1;
-			fts.add(deltaP[i]+delta);
-			fts.add(delta+"+"+tag[i]+dt[i]+tag[i+1]);
+			fb.append(deltaP[i]).append(delta).add();
+			fb.append(delta).append("+").append(tag[i]).append(dt[i]).append(tag[i+1]).add();
 		}
 		
 		// Dependency relation features: note: l2 and r2 seem to be useful
@@ -280,12 +287,12 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		Set<String> deprelsr0 = addAllDeprels("⻬", tp[R0].tok, currentArcs);
 		Set<String> deprelsr1 = addAllDeprels("⻭", tp[R1].tok, currentArcs);
 		Set<String> deprelsr2 = addAllDeprels("㋠", tp[R2].tok, currentArcs);
-		for(String s : deprelsl2) fts.add(s);
-		for(String s : deprelsl1) fts.add(s);
-		for(String s : deprelsl0) fts.add(s);
-		for(String s : deprelsr0) fts.add(s);
-		for(String s : deprelsr1) fts.add(s);
-		for(String s : deprelsr2) fts.add(s);
+		for(String s : deprelsl2) fb.add(s);
+		for(String s : deprelsl1) fb.add(s);
+		for(String s : deprelsl0) fb.add(s);
+		for(String s : deprelsr0) fb.add(s);
+		for(String s : deprelsr1) fb.add(s);
+		for(String s : deprelsr2) fb.add(s);
 		
 		// in betweens (potentially big).. should be limited to a fixed window for theoretical
 		// complexity reasons
@@ -297,9 +304,9 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 			for(int i = r0i; i > minIndex; i--) {
 				Token t = tokens.get(i-1);
 				String text = getForm(t);
-				fts.add(getTag(t)+"⺎");
+				fb.append(getTag(t)).append("⺎").add();
 				if(inbetweenWordsOfInterest.contains(text)) {
-					fts.add(text+"⺎");
+					fb.append(text).append("⺎").add();
 				}
 			}
 		}
@@ -307,25 +314,25 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		// no features of interest for pos[L2].equals("CC") (yet :) )
 		
 		if("CC".equals(pos[L1])) {
-			addL1CCFeats(kids[L1][1], fts, frm, pos, cpos, tag, rcpos, lcpos);
+			addL1CCFeats(kids[L1][1], fb, frm, pos, cpos, tag, rcpos, lcpos);
 		}
 		
 		if("CC".equals(pos[L0])) {
-			addL0CCFeats(kids[L0][1], fts, frm, pos, cpos, rcpos);
+			addL0CCFeats(kids[L0][1], fb, frm, pos, cpos, rcpos);
 		}
 		
 		if("CC".equals(pos[R0])) {
-			addR0CCFeats(kids[R0][1], fts, currentArcs, deprelsl2, deprelsl1, deprelsl0, frm, pos, cpos, rcpos, rccpos, rcfrm, tp);
+			addR0CCFeats(kids[R0][1], fb, currentArcs, deprelsl2, deprelsl1, deprelsl0, frm, pos, cpos, rcpos, rccpos, rcfrm, tp);
 		}
 		
 		if("CC".equals(pos[R1])) {
 			addR1CCFeats(kids[R1][1], 
-					     fts, currentArcs, deprelsl1, deprelsl0, deprelsr0, tag, frm, rcpos, rccpos, cpos, pos, rcfrm);
+					     fb, currentArcs, deprelsl1, deprelsl0, deprelsr0, tag, frm, rcpos, rccpos, cpos, pos, rcfrm);
 		}
 		
 		if("CC".equals(pos[R2])) {
 			addR2CCFeats(kids[R2][1], 
-					     fts, 
+					     fb, 
 					     currentArcs, 
 					     deprelsl0, 
 					     deprelsr0, 
@@ -339,29 +346,28 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		
 		Arc r0whadvmod = getDeprel(tp[R0].tok, currentArcs, ParseConstants.WH_ADVERBIAL_DEP);
 		if(r0whadvmod != null) {
-			String prefix = getForm(r0whadvmod.getChild())+"鬵";
-			fts.add(prefix+frm[L0]);fts.add(prefix+tag[L0]);
-			fts.add(prefix+bc[L0]);
-			fts.add(frm[L0]+"⿉");fts.add(tag[L0]+"鬻");fts.add(bc[L0]+"鬴");
+			String whForm = getForm(r0whadvmod.getChild());
+			fb.append(whForm).append("鬵").append(frm[L0]).add();fb.append(whForm).append("鬵").append(tag[L0]).add();
+			fb.append(whForm).append("鬵").append(bc[L0]).add();
+			fb.append(frm[L0]).append("⿉").add();fb.append(tag[L0]).append("鬻").add();fb.append(bc[L0]).append("鬴").add();
 		}
 		Arc r1whadvmod = getDeprel(tp[R1].tok, currentArcs, ParseConstants.WH_ADVERBIAL_DEP);
 		if(r1whadvmod != null) {
-			String prefix = getForm(r1whadvmod.getChild())+"顁";
-			fts.add(prefix+frm[R0]);fts.add(prefix+tag[R0]);
-			fts.add(prefix+bc[R0]);
-			fts.add(frm[R0]+"⿋");fts.add(tag[R0]+"魙");	fts.add(bc[R0]+"鬮");
+			String whForm = getForm(r1whadvmod.getChild());
+			fb.append(whForm).append("顁").append(frm[R0]).add();fb.append(whForm).append("顁").append(tag[R0]).add();
+			fb.append(whForm).append("顁").append(bc[R0]).add();
+			fb.append(frm[R0]).append("⿋").add();fb.append(tag[R0]).append("魙").add();	fb.append(bc[R0]).append("鬮").add();
 		}
 		final int numl0Deprels = deprelsl0.size();
 		if(numl0Deprels > 1) {
 			List<String> deprelsListl0 = new ArrayList<String>(deprelsl0);
 			Collections.sort(deprelsListl0);
 			for(int i = 0; i < numl0Deprels; i++) {
-				String newFeat = "⿅"+deprelsListl0.get(i);
-				fts.add("ᅄ"+tag[L0]+"+"+deprelsListl0.get(i));
-				fts.add("ᅄ"+bc[L0]+"+"+deprelsListl0.get(i));
+				fb.append("ᅄ").append(tag[L0]).append("+").append(deprelsListl0.get(i)).add();
+				fb.append("ᅄ").append(bc[L0]).append("+").append(deprelsListl0.get(i)).add();
 				for(int j = 0; j < numl0Deprels; j++) {
 					if(i != j) {
-						fts.add(newFeat + deprelsListl0.get(j));
+						fb.append("⿅").append(deprelsListl0.get(i)).append(deprelsListl0.get(j)).add();
 					}
 				}
 			}
@@ -371,40 +377,35 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 			List<String> deprelsListr0 = new ArrayList<String>(deprelsr0);
 			Collections.sort(deprelsListr0);
 			for(int i = 0; i < numr0Deprels; i++) {
-				String newFeat = "⿆"+deprelsListr0.get(i);
-				fts.add("ᄹ"+tag[R0]+"+"+deprelsListr0.get(i));
-				fts.add("ᄹ"+bc[R0]+"+"+deprelsListr0.get(i));
+				fb.append("ᄹ").append(tag[R0]).append("+").append(deprelsListr0.get(i)).add();
+				fb.append("ᄹ").append(bc[R0]).append("+").append(deprelsListr0.get(i)).add();
 				for(int j = 0; j < numr0Deprels; j++) {
 					if(i != j) {
-						fts.add(newFeat + deprelsListr0.get(j));
+						fb.append("⿆").append(deprelsListr0.get(i)).append(deprelsListr0.get(j)).add();
 					}
 				}
 			}
 		}
 		for(String deprell0 : deprelsl0) {
 			// l0 x r0
-			String newFeat = deprell0+"⿁";
-			fts.add(deprell0+tag[R0]+"⿇");
-			fts.add(deprell0+bc[R0]+"⿇");
-			String l0tdr0 = tag[L0]+"⿈";
+			fb.append(deprell0).append(tag[R0]).append("⿇").add();
+			fb.append(deprell0).append(bc[R0]).append("⿇").add();
 			for(String deprelr0 : deprelsr0) {
 				// l0t x dp(r0)
-				fts.add(l0tdr0+deprelr0);
-				fts.add(bc[L0]+"+"+deprelr0);
+				fb.append(tag[L0]).append("⿈").append(deprelr0).add();
+				fb.append(bc[L0]).append("+").append(deprelr0).add();
 				// dp(l0) x dp(r0)
-				fts.add(newFeat+deprelr0);
+				fb.append(deprell0).append("⿁").append(deprelr0).add();
 			}
-			String newFeat2 = deprell0+"⿂";
 			for(String deprell1 : deprelsl1) {
 				// dp(l1) x dp(l0) 
-				fts.add(newFeat2+deprell1);
+				fb.append(deprell0).append("⿂").append(deprell1).add();
 			}
 		}
 		for(String deprelr1 : deprelsr1) {
-			String prefix = deprelr1+"⿃";
 			for(String deprelr0 : deprelsr0) {
 				// dp(r0) x dp(r1)
-				fts.add(prefix+deprelr0);
+				fb.append(deprelr1).append("⿃").append(deprelr0).add();
 			}
 		}
 
@@ -412,38 +413,37 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 			String tag1 = getTag(tokens.get(r0i));
 			String tag2 = getTag(tokens.get(r0i+1));
 			//String tag3 = r0i < tokens.size()-2 ? getTag(tokens.get(r0i+2)) : "na";
-			String twotags = tag1+"+"+tag2;
-			fts.add("㑆r"+tag1);
-			fts.add("㑆r"+twotags);
+			fb.append("㑆r").append(tag1).add();
+			fb.append("㑆r").append(tag1).append("+").append(tag2).add();
 			//㑇
 		}
 		
 		// Find new characters for X and Y
-		fts.add("X"+tag[L0]+"+"+tag[R0]+"+"+bcrc[R0]);
-		fts.add("Y"+tag[L0]+"+"+tag[R0]+"+"+bcrc[L0]);
+		fb.append("X").append(tag[L0]).append("+").append(tag[R0]).append("+").append(bcrc[R0]).add();
+		fb.append("Y").append(tag[L0]).append("+").append(tag[R0]).append("+").append(bcrc[L0]).add();
 		// coarse tags
 		
 		// Ambiguous L1,L2 cpos and bc feats 
-		fts.add("⼧"+cpos[L2]);fts.add(bc[L2]+"⼧");
-		fts.add("⼧"+cpos[L1]);fts.add(bc[L1]+"⼧");
+		fb.append("⼧").append(cpos[L2]).add();fb.append(bc[L2]).append("⼧").add();
+		fb.append("⼧").append(cpos[L1]).add();fb.append(bc[L1]).append("⼧").add();
 		
 		// BUG! Fix me (hmm... on second thought it doesn't look like a bug)
-		fts.add("⼨"+cpos[R1]);fts.add(bc[R1]+"⼨");
-		fts.add("⼨"+cpos[R2]);fts.add(bc[R2]+"⼨");
+		fb.append("⼨").append(cpos[R1]).add();fb.append(bc[R1]).append("⼨").add();
+		fb.append("⼨").append(cpos[R2]).add();fb.append(bc[R2]).append("⼨").add();
 		
 		if(!cpos[L2].equals("VB") && !cpos[L1].equals("VB") && 
 				!cpos[R1].equals("VB") && !cpos[R2].equals("VB")) {
 			if(!cpos[L0].equals("VB") && cpos[R0].equals("VB")) {
-				fts.add("r0LonelyVerb");
+				fb.add("r0LonelyVerb");
 			}
 			else if(cpos[L0].equals("VB") && !cpos[R0].equals("VB")) {
-				fts.add("l0LonelyVerb");
+				fb.add("l0LonelyVerb");
 			}
 		}
 		
 		// Might be useless....
 		if(tag[L0].equals("JJ") || tag[L0].equals("NN") || tag[L0].equals("NNS") || tag[L0].equals("NNP") || tag[L0].equals("NNPS")) {
-			if(hasTooModifier(tp[L0].tok, currentArcs)) fts.add("ᅃ");
+			if(hasTooModifier(tp[L0].tok, currentArcs)) fb.add("ᅃ");
 		}
 		// no unigram tag+child tag entries..... interesting
 		
@@ -451,79 +451,78 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		for(int i = 0; i < NTOK-1; i++) {
 			int lseqi = lseq[i], rseqi = rseq[i];
 			String lf = frm[lseqi], rf = frm[rseqi], lt = tag[lseqi], rt = tag[rseqi];
-			String t2 = lt+"+"+rt+"+";
 			// tag-tag and word-word
-			fts.add(tt[i]+t2); fts.add(lf+ww[i]+rf);
+			fb.append(tt[i]).append(lt).append("+").append(rt).append("+").add(); fb.append(lf).append(ww[i]).append(rf).add();
 			// tag-word / word-tag
-			fts.add(lf+wt[i]+rt); fts.add(rf+tw[i]+lt);
-			fts.add(tt[i]+bc[lseqi]+"+"+bc[rseqi]);
-			fts.add(t2+lcpos[lseqi]+ttlclc[i]+lcpos[rseqi]);
-			fts.add(t2+lcpos[lseqi]+ttlcrc[i]+rcpos[rseqi]);
-			fts.add(t2+rcpos[lseqi]+ttrclc[i]+lcpos[rseqi]);
-			fts.add(t2+rcpos[lseqi]+ttrcrc[i]+rcpos[rseqi]);
+			fb.append(lf).append(wt[i]).append(rt).add(); fb.append(rf).append(tw[i]).append(lt).add();
+			fb.append(tt[i]).append(bc[lseqi]).append("+").append(bc[rseqi]).add();
+			fb.append(lt).append("+").append(rt).append("+").append(lcpos[lseqi]).append(ttlclc[i]).append(lcpos[rseqi]).add();
+			fb.append(lt).append("+").append(rt).append("+").append(lcpos[lseqi]).append(ttlcrc[i]).append(rcpos[rseqi]).add();
+			fb.append(lt).append("+").append(rt).append("+").append(rcpos[lseqi]).append(ttrclc[i]).append(lcpos[rseqi]).add();
+			fb.append(lt).append("+").append(rt).append("+").append(rcpos[lseqi]).append(ttrcrc[i]).append(rcpos[rseqi]).add();
 		}
 		// More tag-tag
-		fts.add("⿌"+tag[L1]+"+"+tag[R1]);
+		fb.append("⿌").append(tag[L1]).append("+").append(tag[R1]).add();
 
 		// ROOT-related features
 		if(tag[L1].equals("na") && tag[R1].equals("na")) {
-			fts.add("VR"+bc[L0]+"+"+bc[R0]);
-			fts.add("⿍"+tag[L0]+"+"+tag[R0]);
+			fb.append("VR").append(bc[L0]).append("+").append(bc[R0]).add();
+			fb.append("⿍").append(tag[L0]).append("+").append(tag[R0]).add();
 		}
 		
-		addPrepositionFeats(fts, cpos, tag, frm, rcpos, rcfrm, bc, bcrc);
+		addPrepositionFeats(fb, cpos, tag, frm, rcpos, rcfrm, bc, bcrc);
 	}
 	
 	private void addL1CCFeats(Token kidL1_1,
-							  Set<String> fts, 
+							  FeatureBuilder fb, 
 			 				  String[] frm, 
 			 				  String[] pos, 
 			 				  String[] cpos,
 			 				  String[] tag,
 			 				  String[] rcpos,
 			 				  String[] lcpos) {
-		fts.add(frm[L1]+"⺒"+rcpos[L1]);
-		fts.add("l1CChasChild"+(kidL1_1 == mDummy.tok));
+		fb.append(frm[L1]).append("⺒").append(rcpos[L1]).add();
+		fb.append("l1CChasChild").append(kidL1_1 == mDummy.tok).add();
 		
 		// May not hurt to change these equivalence features to be simple combo features
 		// L0 CC L2 (matches of pos, cpos, frm)
-		fts.add(pos[L0].equals(pos[L2])+"⿐"+tag[R0]);
-		fts.add(cpos[L0].equals(cpos[L2])+"⿑"+tag[R0]);
-		fts.add(frm[L0].equals(frm[L2])+"⿒"+tag[R0]);
+		fb.append(pos[L0].equals(pos[L2])).append("⿐").append(tag[R0]).add();
+		fb.append(cpos[L0].equals(cpos[L2])).append("⿑").append(tag[R0]).add();
+		fb.append(frm[L0].equals(frm[L2])).append("⿒").append(tag[R0]).add();
 		
 		// R0 CC L2 (matches of pos, cpos, frm) AMBIGUOUS with above features - did I mean them to be???
-		fts.add(pos[R0].equals(pos[L2])+"⿐"+tag[R0]);
-		fts.add(cpos[R0].equals(cpos[L2])+"⿑"+tag[R0]);
-		if(frm[R0] != null) fts.add(frm[R0].equals(frm[L2])+"⿒"+tag[R0]);
+		fb.append(pos[R0].equals(pos[L2])).append("⿐").append(tag[R0]).add();
+		fb.append(cpos[R0].equals(cpos[L2])).append("⿑").append(tag[R0]).add();
+		if(frm[R0] != null) fb.append(frm[R0].equals(frm[L2])).append("⿒").append(tag[R0]).add();
 		
 		// What is this feature for? Shouldn't it probably be rcpos[L1], not rcpos[L2]! Hmm...
-		fts.add(tag[L2]+"+"+tag[L0]+"+"+tag[R0]+"+"+rcpos[L2]+"⺖"+lcpos[L2]);
+		fb.append(tag[L2]).append("+").append(tag[L0]).append("+").append(tag[R0]).append("+").append(rcpos[L2]).append("⺖").append(lcpos[L2]).add();
 			
 		// EXTREMELY PRODUCTIVE.. achieves its goal.. and more(perhaps some not so good things?)
-		fts.add("⺙"+tag[L2]+"+"+tag[L0]+"+"+tag[R0]);
+		fb.append("⺙").append(tag[L2]).append("+").append(tag[L0]).append("+").append(tag[R0]).add();
 	}
 	
-	private void addL0CCFeats(Token kidL0_1, Set<String> fts, String[] frm, String[] pos, String[] cpos, String[] rcpos) {
-		fts.add(frm[L0]+"⺓"+rcpos[L0]);
-		fts.add("l0HasChild"+(kidL0_1 == mDummy.tok));
+	private void addL0CCFeats(Token kidL0_1, FeatureBuilder fb, String[] frm, String[] pos, String[] cpos, String[] rcpos) {
+		fb.append(frm[L0]).append("⺓").append(rcpos[L0]).add();
+		fb.append("l0HasChild").append(kidL0_1 == mDummy.tok).add();
 
 		// ?/l2 CC/l1 ?/l0 ?/r0 ?/r1 ?/r2
-		fts.add(pos[L2]+"+"+pos[L1]+"+"+pos[R0]);
+		fb.append(pos[L2]).append("+").append(pos[L1]).append("+").append(pos[R0]).add();
 		
-		fts.add(cpos[L2]+"⺢"+cpos[R0]);
+		fb.append(cpos[L2]).append("⺢").append(cpos[R0]).add();
 		
-		fts.add(pos[R0].equals(pos[L1])+"⿔");fts.add(cpos[R0].equals(cpos[L1])+"頤");fts.add((frm[R0]!=null&&frm[R0].equals(frm[L1]))+"頤頤");
-		fts.add(pos[R0].equals(pos[L2])+"⿓");fts.add(cpos[R0].equals(cpos[L2])+"頦");fts.add((frm[R0]!=null&&frm[R0].equals(frm[L2]))+"⿓⿓");
+		fb.append(pos[R0].equals(pos[L1])).append("⿔").add();fb.append(cpos[R0].equals(cpos[L1])).append("頤").add();fb.append(frm[R0]!=null&&frm[R0].equals(frm[L1])).append("頤頤").add();
+		fb.append(pos[R0].equals(pos[L2])).append("⿓").add();fb.append(cpos[R0].equals(cpos[L2])).append("頦").add();fb.append(frm[R0]!=null&&frm[R0].equals(frm[L2])).append("⿓⿓").add();
 		
-		fts.add(pos[R1].equals(pos[L1])+"⿕");fts.add(cpos[R1].equals(cpos[L1])+"⿕2");fts.add((frm[R1]!=null&&frm[R1].equals(frm[L1]))+"⿕3");
-		fts.add(pos[R1].equals(pos[L2])+"々");fts.add(cpos[R1].equals(cpos[L2])+"々2");fts.add((frm[R1]!=null&&frm[R1].equals(frm[L2]))+"々3");
+		fb.append(pos[R1].equals(pos[L1])).append("⿕").add();fb.append(cpos[R1].equals(cpos[L1])).append("⿕2").add();fb.append(frm[R1]!=null&&frm[R1].equals(frm[L1])).append("⿕3").add();
+		fb.append(pos[R1].equals(pos[L2])).append("々").add();fb.append(cpos[R1].equals(cpos[L2])).append("々2").add();fb.append(frm[R1]!=null&&frm[R1].equals(frm[L2])).append("々3").add();
 		
-		fts.add(pos[R2].equals(pos[L1])+"〇");fts.add(cpos[R2].equals(cpos[L1])+"頣");fts.add((frm[R2]!=null&&frm[R2].equals(frm[L1]))+"頣3");
-		fts.add(pos[R2].equals(pos[L2])+"〣");fts.add(cpos[R2].equals(cpos[L2])+"頡");fts.add((frm[R2]!=null&&frm[R2].equals(frm[L2]))+"頡3");
+		fb.append(pos[R2].equals(pos[L1])).append("〇").add();fb.append(cpos[R2].equals(cpos[L1])).append("頣").add();fb.append(frm[R2]!=null&&frm[R2].equals(frm[L1])).append("頣3").add();
+		fb.append(pos[R2].equals(pos[L2])).append("〣").add();fb.append(cpos[R2].equals(cpos[L2])).append("頡").add();fb.append(frm[R2]!=null&&frm[R2].equals(frm[L2])).append("頡3").add();
 	}
 	
 	private void addR0CCFeats(Token kidR0_1, 
-			Set<String> fts, 
+			FeatureBuilder fb, 
 			List[] currentArcs, 
 			Set<String> deprelsl2, 
 			Set<String> deprelsl1, 
@@ -535,32 +534,32 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 			String[] rccpos,
 			String[] rcfrm,
 			TokenPointer[] tp) {
-		fts.add(frm[R0]+"⺔"+rcpos[R0]);
+		fb.append(frm[R0]).append("⺔").append(rcpos[R0]).add();
 		// r0 has child
-		fts.add((kidR0_1 != mDummy.tok)+"頩");
+		fb.append(kidR0_1 != mDummy.tok).append("頩").add();
 		if(kidR0_1 != mDummy.tok) {
 			Set<String> d = new HashSet<String>();
 			Set<String> r0cDeprels = addAllDeprels("", kidR0_1, currentArcs);
 			//Set<String> deprelsl2 = addAllDeprels("",  tp[L2].tok, currentArcs);
 			for(String dep : r0cDeprels) {
-				for(String l0deprel : deprelsl0) fts.add(dep+"㐲"+l0deprel);
-				for(String l1deprel : deprelsl1) fts.add(dep+"㐁"+l1deprel);
-				for(String l2deprel : deprelsl2) fts.add(dep+"㐴"+l2deprel);
+				for(String l0deprel : deprelsl0) fb.append(dep).append("㐲").append(l0deprel).add();
+				for(String l1deprel : deprelsl1) fb.append(dep).append("㐁").append(l1deprel).add();
+				for(String l2deprel : deprelsl2) fb.append(dep).append("㐴").append(l2deprel).add();
 			}
 		}
 		
 		// ?/l2 ?/l1 Z/l0 CC/r0<-Z
 		// encourage l0<-r0
 		// GOOD FEATURES
-		if(rcpos[R0].equals(pos[L0])) fts.add("ZC==");
-		if(rccpos[R0].equals(cpos[L0])) fts.add("ZC~~");
+		if(rcpos[R0].equals(pos[L0])) fb.add("ZC==");
+		if(rccpos[R0].equals(cpos[L0])) fb.add("ZC~~");
 		
 		// X/l0 CC/r0<-X
 		// encourage attaching CC now
-		if(frm[L0].equals(rcfrm[R0])) fts.add("ZC11");
+		if(frm[L0].equals(rcfrm[R0])) fb.add("ZC11");
 		
 		// strong negative
-		if(frm[L1] != null && frm[L1].equals(rcfrm[R0])) fts.add("ZC7");
+		if(frm[L1] != null && frm[L1].equals(rcfrm[R0])) fb.add("ZC7");
 		
 		Token r0RCd = getDeterminer(kidR0_1, currentArcs);
 		Token l0d = getDeterminer(tp[L0].tok, currentArcs);
@@ -574,18 +573,18 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		boolean reql2 = r0RCd!=null&&l2d!=null&&r0RCd.getText()!=null&&r0RCd.getText().equalsIgnoreCase(l2d.getText());
 		// ZC15:,16,17,18 // ONLY AFFECT cc
 		// 'true' is POSITIVE for cc-right (good, same determiner=>they are a good match)
-		if(reql0) fts.add("⺞"+reql0);
+		if(reql0) fb.append("⺞").append(reql0).add();
 		// 'true' is VERY NEGATIVE for cc-right (good, next one has the same determiner=>wait a bit)
-		if(reql2) fts.add("⺟"+reql2);
+		if(reql2) fb.append("⺟").append(reql2).add();
 		// VERY NEGATIVE FOR cc-right (good, next one has same determiner but immediate left does not=>definitely wait)
-		if(reql2 && !reql0) fts.add("⺠");
+		if(reql2 && !reql0) fb.add("⺠");
 		
 		// Affects many things, appears to be useful
-		fts.add("⺡" + isDefinitel2d + "+"+isDefinitel0d+"+"+isDefiniter0RCd);
+		fb.append("⺡").append(isDefinitel2d).append("+").append(isDefinitel0d).append("+").append(isDefiniter0RCd).add();
 	}
 	
 	private void addR1CCFeats(Token kidsR1_1, 
-		      Set<String> fts, 
+		      FeatureBuilder fb, 
 		      List[] currentArcs, 
 		      Set<String> deprelsl1,
 		      Set<String> deprelsl0, 
@@ -597,49 +596,49 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		      String[] cpos,
 		      String[] pos,
 		      String[] rcfrm) {
-			fts.add(frm[R1]+"⺕"+rcpos[R1]);
+			fb.append(frm[R1]).append("⺕").append(rcpos[R1]).add();
 			// r1 has child
-			fts.add((kidsR1_1 != mDummy.tok) + "頴");
+			fb.append(kidsR1_1 != mDummy.tok).append("頴").add();
 			if(kidsR1_1 != mDummy.tok) {
 				Set<String> r1cDeprels = addAllDeprels("", kidsR1_1, currentArcs);
 				for(String dep : r1cDeprels) {
-					for(String r0deprel : deprelsr0) fts.add(dep+"㑀"+r0deprel);
-					for(String l0deprel : deprelsl0) fts.add(dep+"㑁"+l0deprel);
-					for(String l1deprel : deprelsl1) fts.add(dep+"㑃"+l1deprel);
+					for(String r0deprel : deprelsr0) fb.append(dep).append("㑀").append(r0deprel).add();
+					for(String l0deprel : deprelsl0) fb.append(dep).append("㑁").append(l0deprel).add();
+					for(String l1deprel : deprelsl1) fb.append(dep).append("㑃").append(l1deprel).add();
 				}
 			}
 			
 			// X/l1 Y/l0 Z/r0 and/r1<-X
 			// encourage attaching [Y<-Z]
-			if(rcfrm[R1] != null && rcfrm[R1].equals(frm[L1])) fts.add("ZC10");
+			if(rcfrm[R1] != null && rcfrm[R1].equals(frm[L1])) fb.add("ZC10");
 			
 			// ?/l1 Y/l0 ?/r0 CC/r1<-Y
 			// encourage l0<-r0
 			// USEFUL FEATS
-			if(rcpos[R1].equals(pos[L0])) fts.add("ZC==2");
-			if(rccpos[R1].equals(cpos[L0])) fts.add("ZC~~2");
+			if(rcpos[R1].equals(pos[L0])) fb.add("ZC==2");
+			if(rccpos[R1].equals(cpos[L0])) fb.add("ZC~~2");
 			
 			// X/l0 U/r0 or/r1 Y/r2
 			// X/l0 Y/r0 or/r1<-Y
 			// SOMEWHAT USEFUL FEATS
-			fts.add("ZC8"+frm[R0].equals(frm[R2]));
-			fts.add("ZC9"+frm[R0].equals(rcfrm[R1]));
+			fb.append("ZC8").append(frm[R0].equals(frm[R2])).add();
+			fb.append("ZC9").append(frm[R0].equals(rcfrm[R1])).add();
 			
 			// ****VERY PRODUCTIVE RULE***** MAYBE TOO MUCH SO... ROOM FOR IMPROVEMENT?
-			fts.add(tag[L0]+"+"+tag[R0]+"+"+rcpos[R1]+"⺛"+tag[R2]);
+			fb.append(tag[L0]).append("+").append(tag[R0]).append("+").append(rcpos[R1]).append("⺛").append(tag[R2]).add();
 			
 			// A/l0 X/r0 or/r1 A/r2
 			// A/l0 X/r0 or/r1<-A
-			if(frm[L0].equals(frm[R2]))fts.add("ZC5");
-			if(frm[L0].equals(rcfrm[R1]))fts.add("ZC6");
+			if(frm[L0].equals(frm[R2]))fb.add("ZC5");
+			if(frm[L0].equals(rcfrm[R1]))fb.add("ZC6");
 			
 			// Very productive...
-			fts.add(pos[L0]+"+"+pos[R0]+"⿏"+pos[R2]);
+			fb.append(pos[L0]).append("+").append(pos[R0]).append("⿏").append(pos[R2]).add();
 		
 	}
 	
 	private void addR2CCFeats(Token kidsR2_1, 
-						      Set<String> fts, 
+						      FeatureBuilder fb, 
 						      List[] currentArcs, 
 						      Set<String> deprelsl0, 
 						      Set<String> deprelsr0,
@@ -652,83 +651,83 @@ public class DefaultEnParseFeatureGenerator implements Serializable, ParseFeatur
 		if(kidsR2_1 != mDummy.tok) {
 			Set<String> r2cDeprels = addAllDeprels("",  kidsR2_1, currentArcs);
 			for(String dep : r2cDeprels) {
-				for(String r0deprel : deprelsr0) fts.add(dep+"顂"+r0deprel);
-				for(String l0deprel : deprelsl0) fts.add(dep+"顄"+l0deprel);
+				for(String r0deprel : deprelsr0) fb.append(dep).append("顂").append(r0deprel).add();
+				for(String l0deprel : deprelsl0) fb.append(dep).append("顄").append(l0deprel).add();
 			}
 			
 			// ? ? . ? ? CC->x
-			if(rcfrmR2.equals(frm[L0])) fts.add("ZC12frml0");
+			if(rcfrmR2.equals(frm[L0])) fb.add("ZC12frml0");
 			// ? ? ? . ? CC->x
-			if(rcfrmR2.equals(frm[R0])) fts.add("ZC12");
+			if(rcfrmR2.equals(frm[R0])) fb.add("ZC12");
 			// ? ? ? ? . CC->x
-			if(rcfrmR2.equals(frm[R1])) fts.add("ZC12frm1");
+			if(rcfrmR2.equals(frm[R1])) fb.add("ZC12frm1");
 			
 			
 			if(cpos[R1].equals(rccposR2)) {
-				fts.add("dCCcpos1");
+				fb.add("dCCcpos1");
 				if(pos[R1].equals(rcposR2)) {
-					fts.add("dCCpos1");
+					fb.add("dCCpos1");
 				}
 			}
 			if(rccposR2.equals(cpos[R0])) {
-				fts.add("dCCcpos0");
+				fb.add("dCCcpos0");
 				if(rcposR2.equals(pos[R0])) {
-					fts.add("dCCpos0");
+					fb.add("dCCpos0");
 				}
 			}
 			if(rccposR2.equals(cpos[L0])) {
-				fts.add("dCCcposl0");
+				fb.add("dCCcposl0");
 				if(rcposR2.equals(pos[L0])) {
-					fts.add("dCCposl0");
+					fb.add("dCCposl0");
 				}
 			}
 		}
 		else {
-			fts.add("dCCr1");
+			fb.add("dCCr1");
 		}
 	}
 	
-	private void addPrepositionFeats(Collection<String> fts, String[] cpos, String[] tag, String[] frm, 
+	private void addPrepositionFeats(FeatureBuilder fb, String[] cpos, String[] tag, String[] frm, 
 			String[] rcpos, String[] rcfrm, String[] bc, String[] bcrc) {
 		if(tag[L0].startsWith("IN")) {
-			fts.add(getSubstring(frm[L1], 4)+"+"+frm[L0]+"⾷"+rcpos[L0]);
-			fts.add(frm[L0]+"+"+tag[L1]+"⾸"+rcfrm[L0]);
-			fts.add("⾷"+bc[L1]+"+"+bc[L0]+"+"+bcrc[L0]);
-			fts.add(tag[L1]+"+"+bc[L0]+"⾸"+bcrc[L0]);
+			fb.append(getSubstring(frm[L1], 4)).append("+").append(frm[L0]).append("⾷").append(rcpos[L0]).add();
+			fb.append(frm[L0]).append("+").append(tag[L1]).append("⾸").append(rcfrm[L0]).add();
+			fb.append("⾷").append(bc[L1]).append("+").append(bc[L0]).append("+").append(bcrc[L0]).add();
+			fb.append(tag[L1]).append("+").append(bc[L0]).append("⾸").append(bcrc[L0]).add();
 		}
 		if(tag[R0].startsWith("IN")) {
 			// Ambiguous for L1 and L2
-			fts.add(getSubstring(frm[L2], 4)+"+"+frm[R0]+"⾹"+rcpos[R0]);	fts.add(frm[R0]+"+"+tag[L2]+"⾺"+rcfrm[R0]);
-			fts.add(getSubstring(frm[L1], 4)+"+"+frm[R0]+"⾹"+rcpos[R0]);	fts.add(frm[R0]+"+"+tag[L1]+"⾺"+rcfrm[R0]);
+			fb.append(getSubstring(frm[L2], 4)).append("+").append(frm[R0]).append("⾹").append(rcpos[R0]).add();	fb.append(frm[R0]).append("+").append(tag[L2]).append("⾺").append(rcfrm[R0]).add();
+			fb.append(getSubstring(frm[L1], 4)).append("+").append(frm[R0]).append("⾹").append(rcpos[R0]).add();	fb.append(frm[R0]).append("+").append(tag[L1]).append("⾺").append(rcfrm[R0]).add();
 			
-			fts.add(getSubstring(frm[L0], 4)+"+"+frm[R0]+"⾻"+rcpos[R0]);	fts.add(frm[R0]+"+"+tag[L0]+"⾼"+rcfrm[R0]);
+			fb.append(getSubstring(frm[L0], 4)).append("+").append(frm[R0]).append("⾻").append(rcpos[R0]).add();	fb.append(frm[R0]).append("+").append(tag[L0]).append("⾼").append(rcfrm[R0]).add();
 			
-			fts.add("⾻"+bc[L0]+"+"+bc[R0]+"+"+bcrc[R0]);	fts.add("⾼"+tag[L0]+"+"+bc[R0]+"+"+bcrc[R0]);
+			fb.append("⾻").append(bc[L0]).append("+").append(bc[R0]).append("+").append(bcrc[R0]).add();	fb.append("⾼").append(tag[L0]).append("+").append(bc[R0]).append("+").append(bcrc[R0]).add();
 			
 			if(!rcpos[R0].equals("na")) {
-				fts.add(getSubstring(frm[L1], 4)+"+"+cpos[L0]+"ᅍ"+frm[R0]);
-				fts.add(getSubstring(frm[L1], 4)+"+"+tag[L0]+"ᅎ"+frm[R0]);
-				fts.add("haschildᅏ");
-				fts.add(getSubstring(frm[L0], 4)+"+"+frm[R0]+"ᅐ"+tag[R1]);
+				fb.append(getSubstring(frm[L1], 4)).append("+").append(cpos[L0]).append("ᅍ").append(frm[R0]).add();
+				fb.append(getSubstring(frm[L1], 4)).append("+").append(tag[L0]).append("ᅎ").append(frm[R0]).add();
+				fb.add("haschildᅏ");
+				fb.append(getSubstring(frm[L0], 4)).append("+").append(frm[R0]).append("ᅐ").append(tag[R1]).add();
 				
 				// Ambiguous
-				fts.add(getSubstring(frm[L2], 4)+"⾹"+frm[R0]);	fts.add(tag[L2]+"⾺"+frm[R0]);
-				fts.add(getSubstring(frm[L1], 4)+"⾹"+frm[R0]);	fts.add(tag[L1]+"⾺"+frm[R0]);
+				fb.append(getSubstring(frm[L2], 4)).append("⾹").append(frm[R0]).add();	fb.append(tag[L2]).append("⾺").append(frm[R0]).add();
+				fb.append(getSubstring(frm[L1], 4)).append("⾹").append(frm[R0]).add();	fb.append(tag[L1]).append("⾺").append(frm[R0]).add();
 				
-				fts.add(frm[L0]+"⾻"+frm[R0]);	fts.add(tag[L0]+"⾼"+frm[R0]);
+				fb.append(frm[L0]).append("⾻").append(frm[R0]).add();	fb.append(tag[L0]).append("⾼").append(frm[R0]).add();
 			}
 		}
 		if(tag[R1].startsWith("IN")) {
-			fts.add(getSubstring(frm[R0], 4)+"+"+frm[R1]+"⾽"+rcpos[R1]);	fts.add(frm[R1]+"+"+tag[R0]+"⾾"+rcfrm[R1]);
-			fts.add(getSubstring(frm[L0], 4)+"+"+frm[R1]+"⾿"+rcpos[R1]);	fts.add(frm[R1]+"+"+tag[L0]+"⿀"+rcfrm[R1]);
+			fb.append(getSubstring(frm[R0], 4)).append("+").append(frm[R1]).append("⾽").append(rcpos[R1]).add();	fb.append(frm[R1]).append("+").append(tag[R0]).append("⾾").append(rcfrm[R1]).add();
+			fb.append(getSubstring(frm[L0], 4)).append("+").append(frm[R1]).append("⾿").append(rcpos[R1]).add();	fb.append(frm[R1]).append("+").append(tag[L0]).append("⿀").append(rcfrm[R1]).add();
 			
 			//fts.add("⾿"+bc[L0]+"+"+bc[R1]+"+"+bc[R1]);	
 			//fts.add("⿀"+tag[L0]+"+"+bc[R1]+"+"+bc[R1]);
 			// Was this supposed to have the bc of the right child instead?
-			fts.add("⾿"+bc[L0]+"+"+bc[R1]);	
-			fts.add(tag[L0]+"⿀"+bc[R1]);
-			fts.add(bc[L0]+"⾿"+bc[R1]+"+"+bcrc[R1]);	
-			fts.add(tag[L0]+"⿀"+bc[R1]+"+"+bcrc[R1]);
+			fb.append("⾿").append(bc[L0]).append("+").append(bc[R1]).add();	
+			fb.append(tag[L0]).append("⿀").append(bc[R1]).add();
+			fb.append(bc[L0]).append("⾿").append(bc[R1]).append("+").append(bcrc[R1]).add();	
+			fb.append(tag[L0]).append("⿀").append(bc[R1]).append("+").append(bcrc[R1]).add();
 		}
 	}
 	
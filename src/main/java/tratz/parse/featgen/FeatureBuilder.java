@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.featgen;
+
+/**
+ * Builds features piece by piece. Appending works like String concatenation (a null String appends "null",
+ * booleans append "true" or "false" and ints their decimal representation) and <code>add()</code>
+ * completes the current feature and starts a new one. This lets a feature generator be written once
+ * and produce either the feature Strings or only their keys.
+ */
+public abstract class FeatureBuilder {
+	
+	public abstract FeatureBuilder append(String s);
+	
+	public abstract FeatureBuilder append(int i);
+	
+	public FeatureBuilder append(boolean b) {
+		return append(b ? "true" : "false");
+	}
+	
+	/**
+	 * Completes the current feature
+	 */
+	public abstract void add();
+	
+	/**
+	 * Adds a feature consisting of a single piece
+	 */
+	public void add(String feat) {
+		append(feat);
+		add();
+	}
+	
+}
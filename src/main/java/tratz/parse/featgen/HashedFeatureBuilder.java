@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.featgen;
+
+import java.util.Arrays;
+
+import tratz.types.ChecksumMap;
+
+/**
+ * Computes the 64-bit keys of the features (see <code>ChecksumMap.createKey</code>) without creating the
+ * feature Strings. The String hash and the checksum are updated as each piece is appended, so the keys are
+ * identical to those of the Strings <code>StringFeatureBuilder</code> would have built. The keys are
+ * collected in a reusable array.
+ */
+public class HashedFeatureBuilder extends FeatureBuilder {
+	
+	private final static String NULL = "null";
+	
+	// String.hashCode() of the current feature
+	private int mHash;
+	// ChecksumMap.DefaultChecksumFunction hash of the current feature
+	private int mChecksum;
+	// 31 to the power of the length of the current feature
+	private int mPower = 1;
+	
+	private final char[] mDigits = new char[20];
+	
+	private long[] mKeys = new long[256];
+	private int mNumKeys;
+	
+	@Override
+	public FeatureBuilder append(String s) {
+		if(s == null) {
+			s = NULL;
+		}
+		int hash = mHash, checksum = mChecksum, power = mPower;
+		final int length = s.length();
+		for(int i = 0; i < length; i++) {
+			final char c = s.charAt(i);
+			hash = 31 * hash + c;
+			checksum += c * power;
+			power *= 31;
+		}
+		mHash = hash;
+		mChecksum = checksum;
+		mPower = power;
+		return this;
+	}
+	
+	@Override
+	public FeatureBuilder append(int i) {
+		long value = i;
+		if(value < 0) {
+			append('-');
+			value = -value;
+		}
+		int start = mDigits.length;
+		do {
+			mDigits[--start] = (char)('0' + value % 10);
+			value /= 10;
+		}
+		while(value != 0);
+		for(int d = start; d < mDigits.length; d++) {
+			append(mDigits[d]);
+		}
+		return this;
+	}
+	
+	private void append(char c) {
+		mHash = 31 * mHash + c;
+		mChecksum += c * mPower;
+		mPower *= 31;
+	}
+	
+	@Override
+	public void add() {
+		if(mNumKeys == mKeys.length) {
+			mKeys = Arrays.copyOf(mKeys, mKeys.length * 2);
+		}
+		mKeys[mNumKeys++] = ChecksumMap.createKey(mHash, mChecksum);
+		mHash = 0;
+		mChecksum = 0;
+		mPower = 1;
+	}
+	
+	/**
+	 * Sorts the keys and removes the duplicates, as adding the feature Strings to a Set would
+	 */
+	public void removeDuplicates() {
+		if(mNumKeys > 1) {
+			Arrays.sort(mKeys, 0, mNumKeys);
+			int numUnique = 1;
+			for(int i = 1; i < mNumKeys; i++) {
+				if(mKeys[i] != mKeys[numUnique-1]) {
+					mKeys[numUnique++] = mKeys[i];
+				}
+			}
+			mNumKeys = numUnique;
+		}
+	}
+	
+	public int size() {
+		return mNumKeys;
+	}
+	
+	public long getKey(int i) {
+		return mKeys[i];
+	}
+	
+	public void clear() {
+		mNumKeys = 0;
+		mHash = 0;
+		mChecksum = 0;
+		mPower = 1;
+	}
+	
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.featgen;
+
+import java.util.Collection;
+
+/**
+ * Builds the feature Strings and adds them to a collection
+ */
+public class StringFeatureBuilder extends FeatureBuilder {
+	
+	private final StringBuilder mBuffer = new StringBuilder();
+	private Collection<String> mFeats;
+	
+	public StringFeatureBuilder(Collection<String> feats) {
+		mFeats = feats;
+	}
+	
+	public void setFeatures(Collection<String> feats) {
+		mFeats = feats;
+	}
+	
+	@Override
+	public FeatureBuilder append(String s) {
+		mBuffer.append(s);
+		return this;
+	}
+	
+	@Override
+	public FeatureBuilder append(int i) {
+		mBuffer.append(i);
+		return this;
+	}
+	
+	@Override
+	public void add() {
+		mFeats.add(mBuffer.toString());
+		mBuffer.setLength(0);
+	}
+	
+}
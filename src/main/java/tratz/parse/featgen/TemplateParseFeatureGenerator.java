@@ -0,0 +1,33 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.featgen;
+
+import java.util.List;
+
+import tratz.parse.ml.ParseModel;
+import tratz.parse.types.Token;
+import tratz.parse.types.TokenPointer;
+
+/**
+ * A parse feature generator that writes its features to a <code>FeatureBuilder</code>. Generating into a
+ * <code>HashedFeatureBuilder</code> yields the keys of exactly the features <code>genFeats(Set, ...)</code> would produce.
+ */
+public interface TemplateParseFeatureGenerator extends ParseFeatureGenerator {
+	
+	public void genFeats(FeatureBuilder fb, ParseModel model, List<Token> tokens, TokenPointer ptr, List[] currentArcs);
+	
+}
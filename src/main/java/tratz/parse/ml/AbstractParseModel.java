@@ -18,6 +18,8 @@ package tratz.parse.ml;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -61,13 +63,29 @@ abstract public class AbstractParseModel implements ParseModel {
 	}
 	
 	private List<String> EMPTY_LIST = new ArrayList<String>();
+	// the actions of a pair of parts-of-speech not seen in training
+	private final static List<String> DEFAULT_ACTIONS = Collections.unmodifiableList(Arrays.asList(new String[]{"SWAPRIGHT", "SWAPLEFT", "depr", "depl"}));
+	
 	public List<String> getActions(Token tc, Token tr, Arc[] goldTokenToHead) {
 		
 		if(EMPTY_LIST == null) {
 			EMPTY_LIST = new ArrayList<String>();
 		}
 		List<String> actions;
-		if(mPosPosActs != null) { //mPosPosRightActs != null) {
+		if(mPosPosActs != null && goldTokenToHead == null) {
+			// Parsing: leave the map alone so that several threads can parse with the model
+			Map<String, List<String>> acts = mPosPosActs.get(tc.getPos());
+			if(tr == null) {
+				actions = Collections.emptyList();
+			}
+			else {
+				actions = acts == null ? null : acts.get(tr.getPos());
+				if(actions == null) {
+					actions = DEFAULT_ACTIONS;
+				}
+			}
+		}
+		else if(mPosPosActs != null) { //mPosPosRightActs != null) {
 			
 			//System.err.println(tc.getPos() + " " + (tr == null ? "null" : "r:"+tr.getPos()));
 			//System.err.println(tc.getPos());
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.ml;
+
+/**
+ * A parse model that can look features up by their 64-bit keys (see <code>ChecksumMap.createKey</code>)
+ * as well as by their Strings. Both lookups return the same index for the same feature.
+ */
+public interface FeatureKeyModel {
+	
+	/**
+	 * Returns false if the feature keys of this model can't be computed without the feature Strings
+	 */
+	public boolean supportsFeatureKeys();
+	
+	public int getIndex(long featureKey);
+	
+}
@@ -28,6 +28,7 @@ import tratz.parse.ml.TrainablePerceptron.Entry;
 import tratz.types.ByteArrayList;
 import tratz.types.ChecksumMap;
 import tratz.types.IntArrayList;
+import tratz.types.LongIntMap;
 import tratz.types.ShortArrayList;
 import tratz.types.ChecksumMap.TwoPartKey;
 
@@ -35,7 +36,7 @@ import tratz.types.ChecksumMap.TwoPartKey;
  * A more compact and faster parsing model. These objects are created from
  * existing trained models.
  */
-public class FinalizedParseModel extends AbstractParseModel {
+public class FinalizedParseModel extends AbstractParseModel implements FeatureKeyModel {
 
 	private static final long serialVersionUID = 1L;
 	
@@ -44,7 +45,10 @@ public class FinalizedParseModel extends AbstractParseModel {
 	private short[] mDenseEntries;
 	private int mNumActions;
 	
+	// Models finalized before the feature keys were introduced only have the ChecksumMap
 	private ChecksumMap<String> mFeatToInd;
+	private LongIntMap mFeatKeyToInd;
+	
 	public FinalizedParseModel(List<String> actions,
 			Map<String, Integer> actionToIndex,
 			Map<String, Map<String, List<String>>> posPosActs,
@@ -133,7 +137,7 @@ public class FinalizedParseModel extends AbstractParseModel {
 		numKeysToKeep = Math.min(numKeysToKeep, keptKeys.size());
 		System.err.println("Keeping " + numKeysToKeep + " keys");
 		keys = keys.subList(0, numKeysToKeep);
-		ChecksumMap<String> newFeatToInd = new ChecksumMap<String>();
+		LongIntMap newFeatKeyToInd = new LongIntMap(numKeysToKeep, ChecksumMap.DEFAULT_NOT_FOUND_VALUE);
 		
 		System.err.println("Max sum(abs(feature_weights)): " + maxAbs);
 		
@@ -199,7 +203,7 @@ public class FinalizedParseModel extends AbstractParseModel {
 						denseEntries.add((short)scaledValue);
 					}
 				}
-				newFeatToInd.put(key.hash, key.checksum, index);
+				newFeatKeyToInd.put(ChecksumMap.createKey(key.hash, key.checksum), index);
 			}
 		}
 		//Need to pad the end with 0s
@@ -208,7 +212,7 @@ public class FinalizedParseModel extends AbstractParseModel {
 			denseEntries.add((short)0);
 		}
 		
-		mFeatToInd = newFeatToInd;
+		mFeatKeyToInd = newFeatKeyToInd;
 		
 		mDenseEntries = denseEntries.toCompactArray();
 		denseEntries = null;
@@ -218,7 +222,59 @@ public class FinalizedParseModel extends AbstractParseModel {
 	}
 	
 	public int getIndex(String feat, boolean add) {
-		return mFeatToInd.get(feat);
+		return mFeatKeyToInd != null ? mFeatKeyToInd.get(ChecksumMap.createKey(feat)) : mFeatToInd.get(feat);
+	}
+	
+	public int getIndex(long featureKey) {
+		return mFeatKeyToInd != null ? mFeatKeyToInd.get(featureKey) : mFeatToInd.get(featureKey);
+	}
+	
+	public boolean supportsFeatureKeys() {
+		return mFeatKeyToInd != null || mFeatToInd.hasDefaultFunctions();
+	}
+	
+	/**
+	 * Replaces the ChecksumMap of a model finalized by an older version with a map keyed by the 64-bit feature keys.
+	 * @return false if the model already has the feature key map
+	 */
+	public boolean convertFeatureMap() {
+		if(mFeatKeyToInd != null) {
+			return false;
+		}
+		if(!mFeatToInd.hasDefaultFunctions()) {
+			throw new IllegalStateException("Feature map uses non-default hash functions, feature keys can't be computed");
+		}
+		Map<TwoPartKey, Integer> keyToIndexMap = mFeatToInd.getKeyToIndexMap();
+		LongIntMap featKeyToInd = new LongIntMap(keyToIndexMap.size(), ChecksumMap.DEFAULT_NOT_FOUND_VALUE);
+		for(Map.Entry<TwoPartKey, Integer> entry : keyToIndexMap.entrySet()) {
+			TwoPartKey key = entry.getKey();
+			featKeyToInd.put(ChecksumMap.createKey(key.hash, key.checksum), entry.getValue());
+		}
+		mFeatKeyToInd = featKeyToInd;
+		mFeatToInd = null;
+		return true;
+	}
+
+	// Used by MappedParseModel.write
+	
+	int getNumActions() {
+		return mNumActions;
+	}
+	
+	byte[] getSparseClasses() {
+		return mSparseClasses;
+	}
+	
+	short[] getSparseEntries() {
+		return mSparseEntries;
+	}
+	
+	short[] getDenseEntries() {
+		return mDenseEntries;
+	}
+	
+	LongIntMap getFeatureKeyMap() {
+		return mFeatKeyToInd;
 	}
 
 	public void score(List<String> actions, IntArrayList feats,
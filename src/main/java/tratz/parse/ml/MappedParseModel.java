@@ -0,0 +1,297 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.ml;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map;
+
+import tratz.parse.featgen.ParseFeatureGenerator;
+import tratz.types.ChecksumMap;
+import tratz.types.IntArrayList;
+import tratz.types.LongIntMap;
+import tratz.types.MappedLongIntTable;
+
+/**
+ * A <code>FinalizedParseModel</code> stored in a flat binary file that is memory-mapped instead of
+ * deserialized. The feature table and the weights are read straight from the page cache, so opening a
+ * model is quick and parsers in several processes on one machine share a single copy of it.
+ * Instances are read-only and can't be serialized. The files are created with <code>write</code>
+ * (see <code>tratz.parse.train.ExportMappedParseModel</code>).
+ * <p>
+ * File layout (little-endian, each section starts on a page boundary): a header page; the serialized
+ * actions and feature generator; a <code>MappedLongIntTable</code> of feature keys to indices; the classes
+ * of the sparse features; the sparse weights; the dense weights.
+ */
+public class MappedParseModel extends AbstractParseModel implements FeatureKeyModel {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public final static int MAGIC = 0x4D4D5054; // "TPMM"
+	public final static int VERSION = 1;
+	
+	private final static int PAGE_SIZE = 4096;
+	
+	// header fields
+	private final static int H_MAGIC = 0,
+							 H_VERSION = 4,
+							 H_NUM_ACTIONS = 8,
+							 H_TABLE_CAPACITY = 12,
+							 H_NUM_SPARSE = 16,
+							 H_NUM_DENSE = 20,
+							 H_META_OFFSET = 24,
+							 H_META_LENGTH = 32,
+							 H_TABLE_OFFSET = 40,
+							 H_SPARSE_CLASSES_OFFSET = 48,
+							 H_SPARSE_ENTRIES_OFFSET = 56,
+							 H_DENSE_OFFSET = 64;
+	
+	private transient int mNumActions;
+	private transient MappedLongIntTable mFeatKeyToInd;
+	private transient ByteBuffer mSparseClasses;
+	private transient ShortBuffer mSparseEntries;
+	private transient ShortBuffer mDenseEntries;
+	private transient int mDenseLength;
+	private transient ParseFeatureGenerator mFeatGen;
+	
+	public MappedParseModel(File file) throws IOException, ClassNotFoundException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if(channel.size() < PAGE_SIZE) {
+				throw new IOException("Not a mapped parse model: " + file);
+			}
+			ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, PAGE_SIZE);
+			if(header.getInt(H_MAGIC) != MAGIC) {
+				throw new IOException("Not a mapped parse model: " + file);
+			}
+			if(header.getInt(H_VERSION) != VERSION) {
+				throw new IOException("Unsupported mapped parse model version " + header.getInt(H_VERSION) + ": " + file);
+			}
+			mNumActions = header.getInt(H_NUM_ACTIONS);
+			int tableCapacity = header.getInt(H_TABLE_CAPACITY);
+			int numSparse = header.getInt(H_NUM_SPARSE);
+			int numDense = header.getInt(H_NUM_DENSE);
+			
+			mFeatKeyToInd = new MappedLongIntTable(map(channel, FileChannel.MapMode.READ_ONLY, header.getLong(H_TABLE_OFFSET), (long)tableCapacity*MappedLongIntTable.SLOT_SIZE), ChecksumMap.DEFAULT_NOT_FOUND_VALUE);
+			mSparseClasses = map(channel, FileChannel.MapMode.READ_ONLY, header.getLong(H_SPARSE_CLASSES_OFFSET), numSparse);
+			mSparseEntries = map(channel, FileChannel.MapMode.READ_ONLY, header.getLong(H_SPARSE_ENTRIES_OFFSET), 2L*numSparse).asShortBuffer();
+			mDenseEntries = map(channel, FileChannel.MapMode.READ_ONLY, header.getLong(H_DENSE_OFFSET), 2L*numDense).asShortBuffer();
+			mDenseLength = numDense;
+			
+			channel.position(header.getLong(H_META_OFFSET));
+			ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			mActions = (List<String>)ois.readObject();
+			mActionToIndex = (Map<String, Integer>)ois.readObject();
+			mPosPosActs = (Map<String, Map<String, List<String>>>)ois.readObject();
+			mFeatGen = (ParseFeatureGenerator)ois.readObject();
+		}
+		finally {
+			// the mappings stay valid after the file is closed
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Returns the feature generator that was stored with the model
+	 */
+	public ParseFeatureGenerator getFeatureGenerator() {
+		return mFeatGen;
+	}
+	
+	/**
+	 * Checks the first bytes of the file for the mapped model's magic number 
+	 */
+	public static boolean isMappedModel(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[4];
+			int read = 0;
+			int n;
+			while(read < bytes.length && (n = is.read(bytes, read, bytes.length-read)) != -1) {
+				read += n;
+			}
+			return read == bytes.length && ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+		finally {
+			is.close();
+		}
+	}
+	
+	public int getIndex(String feat, boolean add) {
+		return getIndex(ChecksumMap.createKey(feat));
+	}
+	
+	public int getIndex(long featureKey) {
+		return mFeatKeyToInd.get(featureKey);
+	}
+	
+	public boolean supportsFeatureKeys() {
+		return true;
+	}
+	
+	public void score(List<String> actions, IntArrayList feats,
+			int[] indices, double[] scores) {
+		final int numActions = actions.size();
+		final int numFeats = feats.size();
+		
+		for(int i = 0; i < numActions; i++) {
+			Integer val = mActionToIndex.get(actions.get(i));
+			indices[i] = val == null ? -1 : val;
+			scores[i] = 0;
+		}
+		for(int i = 0; i < numFeats; i++) {
+			int feat = feats.get(i);
+			if(feat >= 0) {
+				for(int a = 0; a < numActions; a++) {
+					int actionIndex = indices[a];
+					if(actionIndex != -1) {
+						int index = feat*mNumActions+actionIndex;
+						// same as FinalizedParseModel, which ignores indices past the end of the dense entries
+						if(index < mDenseLength) {
+							scores[a] += mDenseEntries.get(index);
+						}
+					}
+				}
+			}
+			else {
+				feat = (-feat-1);
+				byte sparseClass = mSparseClasses.get(feat);
+				for(int a = 0; a < numActions; a++) {
+					if(indices[a] == sparseClass) {
+						scores[a] += mSparseEntries.get(feat);
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	public void scoreIntermediate(List<String> action, IntArrayList feats,
+			int[] actionIndices, double[] scores) {
+		
+	}
+	
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		throw new NotSerializableException("Mapped parse models can't be serialized, write the original model instead");
+	}
+	
+	/**
+	 * Writes the model and its feature generator in the mapped format.
+	 * The model's feature map must have been converted (see <code>FinalizedParseModel.convertFeatureMap</code>).
+	 */
+	public static void write(FinalizedParseModel model, ParseFeatureGenerator featGen, File file) throws IOException {
+		LongIntMap featKeyToInd = model.getFeatureKeyMap();
+		if(featKeyToInd == null) {
+			throw new IllegalArgumentException("The model's feature map must be converted to feature keys first");
+		}
+		ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(metaBytes);
+		oos.writeObject(model.mActions);
+		oos.writeObject(model.mActionToIndex);
+		oos.writeObject(model.mPosPosActs);
+		oos.writeObject(featGen);
+		oos.close();
+		byte[] meta = metaBytes.toByteArray();
+		
+		byte[] sparseClasses = model.getSparseClasses();
+		short[] sparseEntries = model.getSparseEntries();
+		short[] denseEntries = model.getDenseEntries();
+		int tableCapacity = MappedLongIntTable.getCapacity(featKeyToInd.size());
+		
+		long metaOffset = PAGE_SIZE;
+		long tableOffset = align(metaOffset + meta.length);
+		long sparseClassesOffset = align(tableOffset + (long)tableCapacity*MappedLongIntTable.SLOT_SIZE);
+		long sparseEntriesOffset = align(sparseClassesOffset + sparseClasses.length);
+		long denseOffset = align(sparseEntriesOffset + 2L*sparseEntries.length);
+		long fileLength = align(denseOffset + 2L*denseEntries.length);
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.setLength(fileLength);
+			FileChannel channel = raf.getChannel();
+			
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, PAGE_SIZE);
+			header.putInt(H_VERSION, VERSION);
+			header.putInt(H_NUM_ACTIONS, model.getNumActions());
+			header.putInt(H_TABLE_CAPACITY, tableCapacity);
+			header.putInt(H_NUM_SPARSE, sparseClasses.length);
+			header.putInt(H_NUM_DENSE, denseEntries.length);
+			header.putLong(H_META_OFFSET, metaOffset);
+			header.putLong(H_META_LENGTH, meta.length);
+			header.putLong(H_TABLE_OFFSET, tableOffset);
+			header.putLong(H_SPARSE_CLASSES_OFFSET, sparseClassesOffset);
+			header.putLong(H_SPARSE_ENTRIES_OFFSET, sparseEntriesOffset);
+			header.putLong(H_DENSE_OFFSET, denseOffset);
+			
+			MappedByteBuffer metaBuffer = map(channel, FileChannel.MapMode.READ_WRITE, metaOffset, meta.length);
+			metaBuffer.put(meta);
+			
+			MappedByteBuffer table = map(channel, FileChannel.MapMode.READ_WRITE, tableOffset, (long)tableCapacity*MappedLongIntTable.SLOT_SIZE);
+			MappedLongIntTable.write(table, featKeyToInd, ChecksumMap.DEFAULT_NOT_FOUND_VALUE);
+			
+			MappedByteBuffer sparseClassesBuffer = map(channel, FileChannel.MapMode.READ_WRITE, sparseClassesOffset, sparseClasses.length);
+			sparseClassesBuffer.put(sparseClasses);
+			MappedByteBuffer sparseEntriesBuffer = map(channel, FileChannel.MapMode.READ_WRITE, sparseEntriesOffset, 2L*sparseEntries.length);
+			sparseEntriesBuffer.asShortBuffer().put(sparseEntries);
+			MappedByteBuffer denseBuffer = map(channel, FileChannel.MapMode.READ_WRITE, denseOffset, 2L*denseEntries.length);
+			denseBuffer.asShortBuffer().put(denseEntries);
+			
+			metaBuffer.force();
+			table.force();
+			sparseClassesBuffer.force();
+			sparseEntriesBuffer.force();
+			denseBuffer.force();
+			// magic number last, so that an interrupted export isn't mistaken for a model
+			header.putInt(H_MAGIC, MAGIC);
+			header.force();
+		}
+		finally {
+			raf.close();
+		}
+	}
+	
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long length) throws IOException {
+		if(length > Integer.MAX_VALUE) {
+			throw new IOException("Model section is too large to map: " + length + " bytes");
+		}
+		MappedByteBuffer buffer = channel.map(mode, offset, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+	
+	private static long align(long offset) {
+		return (offset + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+	}
+	
+}
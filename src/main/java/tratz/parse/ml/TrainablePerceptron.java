@@ -19,12 +19,17 @@ package tratz.parse.ml;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import tratz.parse.types.Arc;
+import tratz.parse.types.Token;
 import tratz.types.ChecksumMap;
 import tratz.types.FloatArrayList;
 import tratz.types.IntArrayList;
+import tratz.types.LongIntMap;
 
 public class TrainablePerceptron extends AbstractParseModel {
 	
@@ -77,213 +82,148 @@ public class TrainablePerceptron extends AbstractParseModel {
 	}
 	
 	public void updateFeature(int actionIndex, int feat, double change) {
-		int numEntries = mEntries.size();
+		updateEntry(mEntries, count, actionIndex, feat, change);
+	}
+	
+	public void update(String action, IntArrayList feats, double change) {
+		int actionIndex = getActionIndex(action, true);
+		//System.err.println("ActionIndex: " + action + " " + actionIndex + " " + change);
+		final int numFeats = feats.size();
+		for(int i = 0; i < numFeats; i++) {
+			updateEntry(mEntries, count, actionIndex, feats.get(i), change);
+		}
+	}
+	
+	/**
+	 * Adds the change to the weight of the action for the feature, first adding the weight's contribution 
+	 * since its last update (at count c) to the sum used for averaging
+	 */
+	private static void updateEntry(List<Entry> entries, int count, int actionIndex, int feat, double change) {
+		int numEntries = entries.size();
 		
 		if(feat >= numEntries) {
 			for(int j = 0; j < feat-numEntries+1; j++) {
-				mEntries.add(new Entry()); // expand to capacity
-				if(numEntries % 100000 == 0) {
-					System.err.println("Entries: " + numEntries);
-				}
+				entries.add(new Entry()); // expand to capacity
+			}
+			if(entries.size() % 100000 == 0) {
+				System.err.println("Entries: " + entries.size());
 			}
 		}
-		Entry entry = mEntries.get(feat);
+		Entry entry = entries.get(feat);
 		
 		if(entry.w == null) {
 			entry.w = new FloatArrayList(1);
 			entry.w2 = new FloatArrayList(1);
 			entry.c = new IntArrayList(1);
-				entry.w2.add(0);
-				entry.w.add((float)change);
-				entry.c.add(count);
-				entry.classOne = actionIndex;
-			}
-			else { 
-				int numWeights = entry.w.size();
-				if(numWeights == 1) {
-				if(entry.classOne == actionIndex) {
-					entry.w2.set(0, entry.w2.get(0)+entry.w.get(0)*(count-entry.c.get(0)));
-					entry.w.set(0, entry.w.get(0)+(float)change);//w.put(feat, oldw+change);
-					entry.c.set(0, count);
-				}
-				else {
-					int oldClassOne = entry.classOne;
-					int c = entry.c.get(0);
-					double w = entry.w.get(0);
-					double w2 = entry.w2.get(0);
-					// Insert new, empty entries
-					int maxIndex = Math.max(actionIndex, entry.classOne);
-					entry.classOne = -1;
-					if(numWeights <= maxIndex) {
-						int numToAdd = maxIndex-numWeights+1;
-						//entry.w2.ensureCapacity(maxIndex+1);
-						//entry.w.ensureCapacity(maxIndex+1);
-						//entry.c.ensureCapacity(maxIndex+1);
-						for(int j = 0; j < numToAdd; j++) {
-							entry.w2.add(0);
-							entry.w.add(0);
-							entry.c.add(0);
-						}
-					}
-					// Move the old entry
-					entry.w2.set(0,0);
-					entry.w.set(0,0);
-					entry.c.set(0,0);
-					entry.w2.set(oldClassOne, (float)w2);
-					entry.w.set(oldClassOne, (float)w);//w.put(feat, oldw+change);
-					entry.c.set(oldClassOne, c);
-					// Update the new entry
-					double oldW = entry.w.get(actionIndex);
-					entry.w2.set(actionIndex, (float)(entry.w2.get(actionIndex)+oldW*(count-entry.c.get(actionIndex))));
-					entry.w.set(actionIndex, (float)(oldW+change));//w.put(feat, oldw+change);
-					entry.c.set(actionIndex, count);
-				}
+			entry.w2.add(0);
+			entry.w.add((float)change);
+			entry.c.add(count);
+			entry.classOne = actionIndex;
+		}
+		else {
+			int numWeights = entry.w.size();
+			if(numWeights == 1) {
+		
+			if(entry.classOne == actionIndex) {
+				entry.w2.set(0, entry.w2.get(0)+entry.w.get(0)*(count-entry.c.get(0)));
+				entry.w.set(0, entry.w.get(0)+(float)change);//w.put(feat, oldw+change);
+				entry.c.set(0, count);
 			}
 			else {
-				// Insert new empty entries as necessary
-				if(numWeights <= actionIndex) {
-					int numToAdd = actionIndex-numWeights+1;
-					//entry.w2.ensureCapacity(actionIndex+1);
-					//entry.w.ensureCapacity(actionIndex+1);
-					//entry.c.ensureCapacity(actionIndex+1);
+				int oldClassOne = entry.classOne;
+				int c = entry.c.get(0);
+				double w = entry.w.get(0);
+				double w2 = entry.w2.get(0);
+				// Insert new, empty entries
+				int maxIndex = Math.max(actionIndex, entry.classOne);
+				entry.classOne = -1;
+				if(numWeights <= maxIndex) {
+					int numToAdd = maxIndex-numWeights+1;
+					//entry.w2.ensureCapacity(maxIndex+1);
+					//entry.w.ensureCapacity(maxIndex+1);
+					//entry.c.ensureCapacity(maxIndex+1);
 					for(int j = 0; j < numToAdd; j++) {
 						entry.w2.add(0);
 						entry.w.add(0);
 						entry.c.add(0);
 					}
 				}
-				// Update appropriate entry
+				// Move the old entry
+				entry.w2.set(0,0);
+				entry.w.set(0,0);
+				entry.c.set(0,0);
+				entry.w2.set(oldClassOne, (float)w2);
+				entry.w.set(oldClassOne, (float)w);//w.put(feat, oldw+change);
+				entry.c.set(oldClassOne, c);
+				// Update the new entry
 				double oldW = entry.w.get(actionIndex);
 				entry.w2.set(actionIndex, (float)(entry.w2.get(actionIndex)+oldW*(count-entry.c.get(actionIndex))));
 				entry.w.set(actionIndex, (float)(oldW+change));//w.put(feat, oldw+change);
 				entry.c.set(actionIndex, count);
 			}
-			}
-		
-	}
-	
-	public void update(String action, IntArrayList feats, double change) {
-		int actionIndex = getActionIndex(action, true);
-		//System.err.println("ActionIndex: " + action + " " + actionIndex + " " + change);
-		final int numFeats = feats.size();
-		
-		int numEntries = mEntries.size();
-		
-		for(int i = 0; i < numFeats; i++) {
-			int feat = feats.get(i);
-			if(feat >= numEntries) {
-				for(int j = 0; j < feat-numEntries+1; j++) {
-					mEntries.add(new Entry()); // expand to capacity
-				}
-				if(mEntries.size() % 100000 == 0) {
-					System.err.println("Entries: " + mEntries.size());
-				}
-			}
-			Entry entry = mEntries.get(feat);
-			
-			if(entry.w == null) {
-				entry.w = new FloatArrayList(1);
-				entry.w2 = new FloatArrayList(1);
-				entry.c = new IntArrayList(1);
-				entry.w2.add(0);
-				entry.w.add((float)change);
-				entry.c.add(count);
-				entry.classOne = actionIndex;
-			}
-			else {
-				int numWeights = entry.w.size();
-				if(numWeights == 1) {
-			
-				if(entry.classOne == actionIndex) {
-					entry.w2.set(0, entry.w2.get(0)+entry.w.get(0)*(count-entry.c.get(0)));
-					entry.w.set(0, entry.w.get(0)+(float)change);//w.put(feat, oldw+change);
-					entry.c.set(0, count);
-				}
-				else {
-					int oldClassOne = entry.classOne;
-					int c = entry.c.get(0);
-					double w = entry.w.get(0);
-					double w2 = entry.w2.get(0);
-					// Insert new, empty entries
-					int maxIndex = Math.max(actionIndex, entry.classOne);
-					entry.classOne = -1;
-					if(numWeights <= maxIndex) {
-						int numToAdd = maxIndex-numWeights+1;
-						//entry.w2.ensureCapacity(maxIndex+1);
-						//entry.w.ensureCapacity(maxIndex+1);
-						//entry.c.ensureCapacity(maxIndex+1);
-						for(int j = 0; j < numToAdd; j++) {
-							entry.w2.add(0);
-							entry.w.add(0);
-							entry.c.add(0);
-						}
-					}
-					// Move the old entry
-					entry.w2.set(0,0);
-					entry.w.set(0,0);
-					entry.c.set(0,0);
-					entry.w2.set(oldClassOne, (float)w2);
-					entry.w.set(oldClassOne, (float)w);//w.put(feat, oldw+change);
-					entry.c.set(oldClassOne, c);
-					// Update the new entry
-					double oldW = entry.w.get(actionIndex);
-					entry.w2.set(actionIndex, (float)(entry.w2.get(actionIndex)+oldW*(count-entry.c.get(actionIndex))));
-					entry.w.set(actionIndex, (float)(oldW+change));//w.put(feat, oldw+change);
-					entry.c.set(actionIndex, count);
-				}
-			}
-			else {
-				// Insert new empty entries as necessary
-				if(numWeights <= actionIndex) {
-					int numToAdd = actionIndex-numWeights+1;
-					//entry.w2.ensureCapacity(actionIndex+1);
-					//entry.w.ensureCapacity(actionIndex+1);
-					//entry.c.ensureCapacity(actionIndex+1);
-					for(int j = 0; j < numToAdd; j++) {
-						entry.w2.add(0);
-						entry.w.add(0);
-						entry.c.add(0);
-					}
+		}
+		else {
+			// Insert new empty entries as necessary
+			if(numWeights <= actionIndex) {
+				int numToAdd = actionIndex-numWeights+1;
+				//entry.w2.ensureCapacity(actionIndex+1);
+				//entry.w.ensureCapacity(actionIndex+1);
+				//entry.c.ensureCapacity(actionIndex+1);
+				for(int j = 0; j < numToAdd; j++) {
+					entry.w2.add(0);
+					entry.w.add(0);
+					entry.c.add(0);
 				}
-				// Update appropriate entry
-				double oldW = entry.w.get(actionIndex);
-				entry.w2.set(actionIndex, (float)(entry.w2.get(actionIndex)+oldW*(count-entry.c.get(actionIndex))));
-				entry.w.set(actionIndex, (float)(oldW+change));//w.put(feat, oldw+change);
-				entry.c.set(actionIndex, count);
 			}
+			// Update appropriate entry
+			double oldW = entry.w.get(actionIndex);
+			entry.w2.set(actionIndex, (float)(entry.w2.get(actionIndex)+oldW*(count-entry.c.get(actionIndex))));
+			entry.w.set(actionIndex, (float)(oldW+change));//w.put(feat, oldw+change);
+			entry.c.set(actionIndex, count);
 		}
 		}
 	}
 	
-
-	
 	public final void scoreIntermediate(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
+		scoreActions(mActionToIndex, mEntries, count, false, actions, feats, indices, scores);
+	}
+	
+	public final void score(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
+		scoreActions(mActionToIndex, mEntries, count, true, actions, feats, indices, scores);
+	}
+	
+	/**
+	 * Scores the actions with the current weights or, if averaged, with the weights averaged over all updates
+	 */
+	private static void scoreActions(Map<String, Integer> actionToIndex, List<Entry> entries, int count, boolean averaged, List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
 		final int numActions = actions.size();
 		//double[] scores = new double[actions.size()];
 		final int numFeats = feats.size();
-		final int numEntries = mEntries.size();
+		final int numEntries = entries.size();
 		for(int i = 0; i < numActions; i++) {
-			Integer val = mActionToIndex.get(actions.get(i));
+			Integer val = actionToIndex.get(actions.get(i));
 			indices[i] = val == null ? -1 : val;
 			scores[i] = 0;
 		}
 		for(int i = 0; i < numFeats; i++) {
 			int feat = feats.get(i);
 			if(feat < numEntries) {
-				Entry entry = mEntries.get(feat);
+				Entry entry = entries.get(feat);
 				int entrySize = entry.c == null ? 0 : entry.c.size();
 				if(entrySize > 1) {
 					for(int a = 0; a < numActions; a++) {
 						int actionIndex = indices[a];
 						if(actionIndex != -1 && actionIndex < entrySize) {
-							scores[a] += entry.w.get(actionIndex);
+							double w = entry.w.get(actionIndex);
+							scores[a] += averaged ? entry.w2.get(actionIndex) + w * (count-entry.c.get(actionIndex)) : w;
 						}
 					}
 				}
 				else if(entrySize == 1) {
 					for(int a = 0; a < numActions; a++) {
 						if(indices[a] == entry.classOne) {
-							scores[a] += entry.w.get(0);
+							double w = entry.w.get(0);
+							scores[a] += averaged ? entry.w2.get(0) + w * (count-entry.c.get(0)) : w;
 							break;
 						}
 					}
@@ -292,52 +232,268 @@ public class TrainablePerceptron extends AbstractParseModel {
 		}
 	}
 	
-	public final void score(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
-		final int numActions = actions.size();
-		//double[] scores = new double[actions.size()];
-		final int numFeats = feats.size();
-		final int numEntries = mEntries.size();
-		for(int i = 0; i < numActions; i++) {
-			Integer val = mActionToIndex.get(actions.get(i));
-			indices[i] = val == null ? -1 : val;
-			scores[i] = 0;
+	public FinalizedParseModel createFinal(double amountToKeep) {
+		return new FinalizedParseModel(mActions, mActionToIndex, mPosPosActs, mFeatToInd, count, (ArrayList<Entry>)mEntries, amountToKeep);
+	}
+	
+	/**
+	 * Creates a shard for training on one part of the data, in parallel with other shards 
+	 * (iterative parameter mixing). The shard starts with this model's current weights; its results are 
+	 * combined with <code>mixShards</code>. The shards add features, actions and part-of-speech pair
+	 * actions to this model's tables, synchronizing on this model, which must not be used otherwise
+	 * until the shards are done.
+	 */
+	public Shard createShard() {
+		return new Shard(this);
+	}
+	
+	/**
+	 * Creates a read-only view of this model for parsing (e.g., the development data) while 
+	 * shards created by <code>createShard</code> are training. The weights must not change while
+	 * the view is in use, so it has to be done before <code>mixShards</code> is called. 
+	 */
+	public ParseModel createParsingView() {
+		return new ParsingView(this);
+	}
+	
+	/**
+	 * Replaces the weights with the mean of the shards' weights and adds the mean of the shards' 
+	 * weight sums to those used for averaging. 
+	 */
+	public void mixShards(List<Shard> shards) {
+		final int numShards = shards.size();
+		int totalCount = 0;
+		int numEntries = mEntries.size();
+		for(Shard shard : shards) {
+			totalCount += shard.mCount;
+			numEntries = Math.max(numEntries, shard.mEntries.size());
 		}
-		for(int i = 0; i < numFeats; i++) {
-			int feat = feats.get(i);
-			if(feat < numEntries) {
-				Entry entry = mEntries.get(feat);
-				int entrySize = entry.c == null ? 0 : entry.c.size();
-				if(entrySize > 1) {
-					for(int a = 0; a < numActions; a++) {
-						int actionIndex = indices[a];
-						if(actionIndex != -1 && actionIndex < entrySize) {
-							double w = entry.w.get(actionIndex);
-							double w2 = entry.w2.get(actionIndex);
-							int c = entry.c.get(actionIndex);
-							scores[a] += w2 + w * (count-c);//entry.w.get(actionIndex);
-							
-						}
+		// the mixed model advances by the mean number of sentences trained on per shard
+		int newCount = count + Math.round(totalCount/(float)numShards);
+		
+		final int width = mActionToIndex.size()+1;
+		double[] weights = new double[width];
+		double[] sums = new double[width];
+		for(int f = 0; f < numEntries; f++) {
+			Arrays.fill(weights, 0);
+			Arrays.fill(sums, 0);
+			int maxIndex = -1;
+			if(f < mEntries.size()) {
+				maxIndex = accumulate(mEntries.get(f), count, 1, null, sums, maxIndex);
+			}
+			for(Shard shard : shards) {
+				if(f < shard.mEntries.size()) {
+					maxIndex = accumulate(shard.mEntries.get(f), shard.mCount, numShards, weights, sums, maxIndex);
+				}
+			}
+			int numNonZero = 0;
+			int lastNonZero = -1;
+			for(int a = 0; a <= maxIndex; a++) {
+				if(weights[a] != 0 || sums[a] != 0) {
+					numNonZero++;
+					lastNonZero = a;
+				}
+			}
+			Entry entry = new Entry();
+			if(numNonZero == 1) {
+				entry.classOne = lastNonZero;
+				entry.w = new FloatArrayList(1);
+				entry.w2 = new FloatArrayList(1);
+				entry.c = new IntArrayList(1);
+				entry.w.add((float)weights[lastNonZero]);
+				entry.w2.add((float)sums[lastNonZero]);
+				entry.c.add(newCount);
+			}
+			else if(numNonZero > 1) {
+				entry.classOne = -1;
+				entry.w = new FloatArrayList(lastNonZero+1);
+				entry.w2 = new FloatArrayList(lastNonZero+1);
+				entry.c = new IntArrayList(lastNonZero+1);
+				for(int a = 0; a <= lastNonZero; a++) {
+					entry.w.add((float)weights[a]);
+					entry.w2.add((float)sums[a]);
+					entry.c.add(newCount);
+				}
+			}
+			if(f < mEntries.size()) {
+				mEntries.set(f, entry);
+			}
+			else {
+				mEntries.add(entry);
+			}
+		}
+		count = newCount;
+	}
+	
+	/**
+	 * Adds an entry's weights (divided by the divisor) to the weights array, if one is given, and 
+	 * its weight sums (also divided) to the sums array. Returns the highest action index seen.  
+	 */
+	private static int accumulate(Entry entry, int count, double divisor, double[] weights, double[] sums, int maxIndex) {
+		if(entry == null || entry.w == null) {
+			return maxIndex;
+		}
+		final int numWeights = entry.w.size();
+		for(int i = 0; i < numWeights; i++) {
+			int actionIndex = numWeights == 1 ? entry.classOne : i;
+			double w = entry.w.get(i);
+			if(weights != null) {
+				weights[actionIndex] += w/divisor;
+			}
+			sums[actionIndex] += (entry.w2.get(i) + w * (count-entry.c.get(i)))/divisor;
+			maxIndex = Math.max(maxIndex, actionIndex);
+		}
+		return maxIndex;
+	}
+	
+	/**
+	 * The feature, action and part-of-speech pair tables of a perceptron as seen by its shards and parsing
+	 * views. The tables belong to the perceptron and are accessed while synchronized on it; the feature and
+	 * action indices are cached locally to keep that to a minimum.
+	 */
+	static abstract class SharedTablesModel extends AbstractParseModel {
+		
+		public static final long serialVersionUID = 1;
+		
+		protected final TrainablePerceptron mParent;
+		private final LongIntMap mLocalIndices = new LongIntMap(1024, ChecksumMap.DEFAULT_NOT_FOUND_VALUE);
+		
+		protected SharedTablesModel(TrainablePerceptron parent) {
+			synchronized(parent) {
+				if(!parent.mFeatToInd.hasDefaultFunctions()) {
+					throw new IllegalStateException("Feature map uses non-default hash functions, can't be shared by shards");
+				}
+				mParent = parent;
+				mActions = parent.mActions;
+				mActionToIndex = new HashMap<String, Integer>(parent.mActionToIndex);
+				mPosPosActs = parent.mPosPosActs;
+			}
+		}
+		
+		@Override
+		public int getIndex(String feat, boolean add) {
+			long key = ChecksumMap.createKey(feat);
+			int index = mLocalIndices.get(key);
+			if(index == ChecksumMap.DEFAULT_NOT_FOUND_VALUE) {
+				synchronized(mParent) {
+					ChecksumMap<String> featToInd = mParent.mFeatToInd;
+					index = featToInd.get(key);
+					if(index == ChecksumMap.DEFAULT_NOT_FOUND_VALUE && add) {
+						featToInd.put(ChecksumMap.getHash(key), ChecksumMap.getChecksum(key), index = featToInd.size());
 					}
 				}
-				else if(entrySize == 1) {
-					for(int a = 0; a < numActions; a++) {
-						if(indices[a] == entry.classOne) {
-							//scores[a] += entry.w.get(0);
-							double w = entry.w.get(0);
-							double w2 = entry.w2.get(0);
-							int c = entry.c.get(0);
-							scores[a] += w2 + w * (count-c);//
-							break;
-						}
+				if(index != ChecksumMap.DEFAULT_NOT_FOUND_VALUE) {
+					mLocalIndices.put(key, index);
+				}
+			}
+			return index;
+		}
+		
+		@Override
+		public int getActionIndex(String action, boolean addIfNecessary) {
+			Integer actionIndex = mActionToIndex.get(action);
+			if(actionIndex == null) {
+				synchronized(mParent) {
+					actionIndex = mParent.getActionIndex(action, addIfNecessary);
+				}
+				mActionToIndex.put(action, actionIndex);
+			}
+			return actionIndex;
+		}
+		
+		@Override
+		public List<String> getActions(Token tc, Token tr, Arc[] goldTokenToHead) {
+			// copied because shards may add to the list
+			synchronized(mParent) {
+				return new ArrayList<String>(mParent.getActions(tc, tr, goldTokenToHead));
+			}
+		}
+		
+	}
+	
+	/**
+	 * Perceptron trained on one shard of the data; see <code>createShard</code>. A shard can only be 
+	 * trained and mixed into its parent, it is not a model of its own.
+	 */
+	public static final class Shard extends SharedTablesModel {
+		
+		public static final long serialVersionUID = 1;
+		
+		private final List<Entry> mEntries;
+		private int mCount;
+		
+		private Shard(TrainablePerceptron parent) {
+			super(parent);
+			// the weights sums start over, mixShards adds the shard's sums to the parent's
+			List<Entry> entries = new ArrayList<Entry>(parent.mEntries.size());
+			for(Entry entry : parent.mEntries) {
+				Entry copy = new Entry();
+				if(entry.w != null) {
+					final int numWeights = entry.w.size();
+					copy.classOne = entry.classOne;
+					copy.w = new FloatArrayList(numWeights);
+					copy.w2 = new FloatArrayList(numWeights);
+					copy.c = new IntArrayList(numWeights);
+					for(int i = 0; i < numWeights; i++) {
+						copy.w.add(entry.w.get(i));
+						copy.w2.add(0);
+						copy.c.add(0);
 					}
 				}
+				entries.add(copy);
 			}
+			mEntries = entries;
+		}
+		
+		@Override
+		public void incrementCount() {
+			mCount++;
 		}
+		
+		@Override
+		public void updateFeature(int actionIndex, int feat, double change) {
+			updateEntry(mEntries, mCount, actionIndex, feat, change);
+		}
+		
+		@Override
+		public void update(String action, IntArrayList feats, double change) {
+			int actionIndex = getActionIndex(action, true);
+			final int numFeats = feats.size();
+			for(int i = 0; i < numFeats; i++) {
+				updateEntry(mEntries, mCount, actionIndex, feats.get(i), change);
+			}
+		}
+		
+		public void scoreIntermediate(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
+			scoreActions(mActionToIndex, mEntries, mCount, false, actions, feats, indices, scores);
+		}
+		
+		public void score(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
+			scoreActions(mActionToIndex, mEntries, mCount, true, actions, feats, indices, scores);
+		}
+		
 	}
 	
-	public FinalizedParseModel createFinal(double amountToKeep) {
-		return new FinalizedParseModel(mActions, mActionToIndex, mPosPosActs, mFeatToInd, count, (ArrayList<Entry>)mEntries, amountToKeep);
+	/**
+	 * Read-only view of a perceptron's weights; see <code>createParsingView</code>
+	 */
+	private static final class ParsingView extends SharedTablesModel {
+		
+		public static final long serialVersionUID = 1;
+		
+		public ParsingView(TrainablePerceptron parent) {
+			super(parent);
+		}
+		
+		public void scoreIntermediate(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
+			scoreActions(mActionToIndex, mParent.mEntries, mParent.count, false, actions, feats, indices, scores);
+		}
+		
+		public void score(List<String> actions, IntArrayList feats, int[] indices, double[] scores) {
+			scoreActions(mActionToIndex, mParent.mEntries, mParent.count, true, actions, feats, indices, scores);
+		}
+		
 	}
 	
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.train;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.zip.GZIPInputStream;
+
+import tratz.cmdline.CommandLineOptions;
+import tratz.cmdline.CommandLineOptionsParser;
+import tratz.cmdline.ParsedCommandLine;
+import tratz.parse.featgen.ParseFeatureGenerator;
+import tratz.parse.ml.FinalizedParseModel;
+import tratz.parse.ml.MappedParseModel;
+
+/**
+ * Script for writing a <code>FinalizedParseModel</code> in the memory-mapped format of <code>MappedParseModel</code>.
+ * The output file can be used wherever a model file is expected by <code>NLParser(String)</code>. 
+ * The mapped format is not compressed and uses the byte order of x86 machines regardless of the platform.
+ */
+public class ExportMappedParseModel {
+	
+	public final static String OPT_INPUT_FILE = "infile",
+							   OPT_OUTPUT_FILE = "outfile";
+	
+	private static CommandLineOptions createOptions() {
+		CommandLineOptions cmdOptions = new CommandLineOptions();
+		cmdOptions.addOption(OPT_INPUT_FILE, "file", "input model file (gzipped if it ends in .gz)");
+		cmdOptions.addOption(OPT_OUTPUT_FILE, "file", "output mapped model file");
+		return cmdOptions;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ParsedCommandLine cmdLine = new CommandLineOptionsParser().parseOptions(createOptions(), args);
+		
+		String inputModel = cmdLine.getStringValue(OPT_INPUT_FILE);
+		String outputModel = cmdLine.getStringValue(OPT_OUTPUT_FILE);
+		
+		System.err.print("Loading model...");
+		InputStream is = new BufferedInputStream(new FileInputStream(inputModel), 1000000);
+		if(inputModel.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
+		}
+		ObjectInputStream ois = new ObjectInputStream(is);
+		FinalizedParseModel model = (FinalizedParseModel)ois.readObject();
+		ParseFeatureGenerator featGen = (ParseFeatureGenerator)ois.readObject();
+		ois.close();
+		System.err.println("Done");
+		
+		System.err.print("Converting feature map...");
+		System.err.println(model.convertFeatureMap() ? "Done" : "Already converted");
+		
+		System.err.print("Writing mapped model...");
+		MappedParseModel.write(model, featGen, new File(outputModel));
+		System.err.println("Done");
+	}
+	
+}
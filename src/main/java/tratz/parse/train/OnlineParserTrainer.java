@@ -32,9 +32,15 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -55,6 +61,9 @@ import tratz.parse.util.ParseScorer;
 /**
  * OnlineParserTrainer
  * For training the parser using an online training strategy (e.g., average perceptron)
+ * With more than one thread, a <code>TrainablePerceptron</code> is trained by iterative parameter mixing:
+ * each iteration the shuffled sentences are split into one shard per thread, a copy of the model is trained
+ * on each shard and the copies are averaged. The development data is parsed while the next iteration trains.
  */
 public class OnlineParserTrainer {
 
@@ -66,6 +75,7 @@ public class OnlineParserTrainer {
 	public final static String DEFAULT_OUTPUT_PREFIX = "parseModel";
 	public final static String DEFAULT_SAVE_ITERATIONS = "new_best";
 	public final static int DEFAULT_FIRST_SAVE_ITERATION = 10;
+	public final static int DEFAULT_NUMBER_OF_THREADS = 1;
 	
 	public final static String OPT_INFILES = "infiles",
 							   OPT_DEVFILES = "devfile",
@@ -78,7 +88,8 @@ public class OnlineParserTrainer {
 							   OPT_BASEMODEL = "basemodel",
 							   OPT_LOG = "log",
 							   OPT_FIRST_SAVE = "firstsaveiteration",
-							   OPT_ITERATIONS_TO_SAVE = "saveiterations";
+							   OPT_ITERATIONS_TO_SAVE = "saveiterations",
+							   OPT_THREADS = "threads";
 	
 	private static CommandLineOptions createCommandLineOptions() {
 		CommandLineOptions cmdOpts = new CommandLineOptions();
@@ -99,6 +110,7 @@ public class OnlineParserTrainer {
 		cmdOpts.addOption(OPT_LOG, 					"file",			"log file name (optional)");
 		cmdOpts.addOption(OPT_FIRST_SAVE,	"integer", 		"first iteration to save after (default:"+DEFAULT_FIRST_SAVE_ITERATION+")");
 		cmdOpts.addOption(OPT_ITERATIONS_TO_SAVE, 		"all,new_best",	"iterations to save model (last iteration always saved) (default:"+DEFAULT_SAVE_ITERATIONS+")");
+		cmdOpts.addOption(OPT_THREADS,		"integer",		"number of training threads, more than 1 requires the default model class (default: "+DEFAULT_NUMBER_OF_THREADS+")");
 		return cmdOpts;
 	}
 	
@@ -119,6 +131,7 @@ public class OnlineParserTrainer {
 		String perSentenceTrainingClass =  commandLine.getStringValue(OPT_TRAININGCLASS, DEFAULT_TRAINING_CLASSNAME);
 		int numIterations = commandLine.getIntegerValue(OPT_ITERATIONS, DEFAULT_NUMBER_OF_ITERATIONS);
 		int firstSaveIteration = commandLine.getIntegerValue(OPT_FIRST_SAVE, DEFAULT_FIRST_SAVE_ITERATION);
+		int numThreads = commandLine.getIntegerValue(OPT_THREADS, DEFAULT_NUMBER_OF_THREADS);
 		
 		// OPTIONAL, NO DEFAULTS
 		String baseModel = commandLine.getStringValue(OPT_BASEMODEL);
@@ -155,6 +168,16 @@ public class OnlineParserTrainer {
 			ois.close();
 		}
 		
+		if(numThreads > 1 && !(parseModel instanceof TrainablePerceptron)) {
+			System.err.println("Parallel training requires a " + TrainablePerceptron.class.getName() + ", training with 1 thread");
+			numThreads = 1;
+		}
+		if(numThreads > 1) {
+			trainInParallel((TrainablePerceptron)parseModel, featGen, parses, numThreads, numIterations, perSentenceTrainingClass, sentenceReaderClass, develFile, firstSaveIteration, outputModels, log);
+			if(log != null) log.close();
+			return;
+		}
+		
 		double bestUnlabeledAcc = 0;
 		double bestLabeledAcc = 0;
 		
@@ -168,14 +191,7 @@ public class OnlineParserTrainer {
 			for(int sentenceIndex = 0; sentenceIndex < parses.size(); sentenceIndex++) {
 				Parse parse = parses.get(sentenceIndex);
 				
-				Arc[] tokenToHead = parse.getHeadArcs();
-				List[] finalTokenToChildren = parse.getDependentArcLists();
-				
-				int[] projectiveIndices = new int[parse.getSentence().getTokens().size()+1];
-				ProjectivityHandler.traverse(parse.getRoot(), finalTokenToChildren, projectiveIndices);
-				Token[] tokenToSubcomponent = ProjectivityHandler.findSubcomponents(parse.getSentence().getTokens(), finalTokenToChildren);
-				
-				TrainingResult result = trainer.train(parse.getSentence().getTokens(), finalTokenToChildren, tokenToHead, parseModel, featGen, tokenToSubcomponent, projectiveIndices);
+				TrainingResult result = trainSentence(trainer, parse, parseModel, featGen);
 				if(result.fatalError || result.maxUpdatesExceeded) {
 					System.err.println("Removing sentence: " + result.fatalError + " " + result.maxUpdatesExceeded);
 					parses.remove(sentenceIndex);
@@ -218,6 +234,160 @@ public class OnlineParserTrainer {
 		if(log != null) log.close();
 	}
 	
+	private static TrainingResult trainSentence(PerSentenceTrainer trainer, Parse parse, ParseModel parseModel, ParseFeatureGenerator featGen) throws Exception {
+		Arc[] tokenToHead = parse.getHeadArcs();
+		List[] finalTokenToChildren = parse.getDependentArcLists();
+		
+		int[] projectiveIndices = new int[parse.getSentence().getTokens().size()+1];
+		ProjectivityHandler.traverse(parse.getRoot(), finalTokenToChildren, projectiveIndices);
+		Token[] tokenToSubcomponent = ProjectivityHandler.findSubcomponents(parse.getSentence().getTokens(), finalTokenToChildren);
+		
+		return trainer.train(parse.getSentence().getTokens(), finalTokenToChildren, tokenToHead, parseModel, featGen, tokenToSubcomponent, projectiveIndices);
+	}
+	
+	/**
+	 * Iterative parameter mixing. The development data of each iteration is parsed, and the model saved if 
+	 * necessary, while the shards of the next iteration train; the model only changes when they are mixed.
+	 */
+	private static void trainInParallel(TrainablePerceptron parseModel,
+									    final ParseFeatureGenerator featGen,
+									    List<Parse> parses,
+									    int numThreads,
+									    int numIterations,
+									    String perSentenceTrainingClass,
+									    final String sentenceReaderClass,
+									    final String develFile,
+									    int firstSaveIteration,
+									    String outputModels,
+									    PrintWriter log) throws Exception {
+		ExecutorService trainingExecutor = Executors.newFixedThreadPool(numThreads);
+		ExecutorService evaluationExecutor = Executors.newSingleThreadExecutor();
+		try {
+			double[] bestScores = new double[2];
+			Future<double[]> pendingScores = null;
+			int pendingIteration = -1;
+			int pendingInvalids = 0;
+			
+			Random rng = new Random(1);
+			for(int iter = 0; iter < numIterations; iter++) {
+				// Shuffle the sentences randomly (important)
+				Collections.shuffle(parses, rng);
+				
+				final AtomicInteger progress = new AtomicInteger();
+				final int numSentences = parses.size();
+				List<TrainablePerceptron.Shard> shards = new ArrayList<TrainablePerceptron.Shard>(numThreads);
+				List<ShardTrainer> shardTrainers = new ArrayList<ShardTrainer>(numThreads);
+				for(int s = 0; s < numThreads; s++) {
+					TrainablePerceptron.Shard shard = parseModel.createShard();
+					shards.add(shard);
+					PerSentenceTrainer trainer = (PerSentenceTrainer)Class.forName(perSentenceTrainingClass).newInstance();
+					shardTrainers.add(new ShardTrainer(trainer, parses.subList(s*numSentences/numThreads, (s+1)*numSentences/numThreads), shard, featGen, progress));
+				}
+				int totalInvalids = 0;
+				Set<Parse> removed = Collections.newSetFromMap(new IdentityHashMap<Parse, Boolean>());
+				for(Future<Integer> future : trainingExecutor.invokeAll(shardTrainers)) {
+					totalInvalids += future.get();
+				}
+				for(ShardTrainer shardTrainer : shardTrainers) {
+					removed.addAll(shardTrainer.mRemoved);
+				}
+				if(removed.size() > 0) {
+					List<Parse> remaining = new ArrayList<Parse>(parses.size()-removed.size());
+					for(Parse parse : parses) {
+						if(!removed.contains(parse)) {
+							remaining.add(parse);
+						}
+					}
+					parses = remaining;
+				}
+				
+				// The previous iteration's model must be evaluated (and saved) before it is replaced
+				if(pendingScores != null) {
+					recordScores(pendingIteration, pendingInvalids, pendingScores.get(), bestScores, firstSaveIteration, outputModels, parseModel, featGen, log);
+				}
+				parseModel.mixShards(shards);
+				
+				final ParseModel view = parseModel.createParsingView();
+				pendingScores = evaluationExecutor.submit(new Callable<double[]>() {
+					public double[] call() throws Exception {
+						return parseFiles((SentenceReader)Class.forName(sentenceReaderClass).newInstance(), view, featGen, develFile);
+					}
+				});
+				pendingIteration = iter;
+				pendingInvalids = totalInvalids;
+			}
+			if(pendingScores != null) {
+				recordScores(pendingIteration, pendingInvalids, pendingScores.get(), bestScores, firstSaveIteration, outputModels, parseModel, featGen, log);
+			}
+		}
+		finally {
+			trainingExecutor.shutdownNow();
+			evaluationExecutor.shutdownNow();
+		}
+		
+		// Save final model
+		saveModel(outputModels+".final.gz", parseModel, featGen);
+	}
+	
+	private static class ShardTrainer implements Callable<Integer> {
+		
+		private PerSentenceTrainer mTrainer;
+		private List<Parse> mParses;
+		private ParseModel mModel;
+		private ParseFeatureGenerator mFeatGen;
+		private AtomicInteger mProgress;
+		private List<Parse> mRemoved = new ArrayList<Parse>();
+		
+		public ShardTrainer(PerSentenceTrainer trainer, List<Parse> parses, ParseModel model, ParseFeatureGenerator featGen, AtomicInteger progress) {
+			mTrainer = trainer;
+			mParses = parses;
+			mModel = model;
+			mFeatGen = featGen;
+			mProgress = progress;
+		}
+		
+		public Integer call() throws Exception {
+			int totalInvalids = 0;
+			for(Parse parse : mParses) {
+				TrainingResult result = trainSentence(mTrainer, parse, mModel, mFeatGen);
+				if(result.fatalError || result.maxUpdatesExceeded) {
+					System.err.println("Removing sentence: " + result.fatalError + " " + result.maxUpdatesExceeded);
+					mRemoved.add(parse);
+				}
+				totalInvalids += Math.abs(result.numUpdatesMade);
+				int i = mProgress.getAndIncrement();
+				if(i%100 == 0) {
+					System.err.println("s: " + i);
+				}
+			}
+			return totalInvalids;
+		}
+		
+	}
+	
+	private static void recordScores(int iter, 
+									 int totalInvalids, 
+									 double[] scores, 
+									 double[] bestScores, 
+									 int firstSaveIteration, 
+									 String outputModels, 
+									 ParseModel parseModel, 
+									 ParseFeatureGenerator featGen, 
+									 PrintWriter log) throws IOException {
+		System.err.println("Current scores (iteration " + iter + "): " + scores[0] + " " + scores[1]);
+		if(log != null) {
+			log.println(iter + "\t" + totalInvalids + "\t" + scores[0] + "\t" + scores[1]);
+			log.flush();
+		}
+		
+		if(iter >= firstSaveIteration && (scores[0] >= bestScores[0] || scores[1] >= bestScores[1])) {
+			bestScores[0] = Math.max(bestScores[0], scores[0]);
+			bestScores[1] = Math.max(bestScores[1], scores[1]);
+			System.err.println("Writing model");
+			saveModel(outputModels+iter+".gz", parseModel, featGen);
+		}
+	}
+	
 	private static void saveModel(String filename, ParseModel parseModel, ParseFeatureGenerator featGen) throws IOException {
 		ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1000000)));
 		oos.writeObject(parseModel);
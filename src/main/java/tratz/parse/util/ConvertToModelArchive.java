@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.parse.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.zip.GZIPInputStream;
+
+import tratz.cmdline.CommandLineOptions;
+import tratz.cmdline.CommandLineOptionsParser;
+import tratz.cmdline.ParsedCommandLine;
+import tratz.ml.LinearClassificationModel;
+import tratz.pos.PosTagger;
+import tratz.pos.featgen.PosFeatureGenerator;
+import tratz.semantics.ClassificationBundle;
+
+/**
+ * Script for converting the serialized part-of-speech tagging model and semantic annotation bundles 
+ * (preposition, noun compound, possessive and SRL models) to <code>ModelArchive</code>s, which load faster 
+ * and keep the model weights off the heap. The type of model is determined from the file's contents.
+ * The archives can be used in place of the original files.
+ */
+public class ConvertToModelArchive {
+	
+	public final static String OPT_INPUT_FILE = "infile",
+							   OPT_OUTPUT_FILE = "outfile";
+	
+	private static CommandLineOptions createOptions() {
+		CommandLineOptions cmdOptions = new CommandLineOptions();
+		cmdOptions.addOption(OPT_INPUT_FILE, "file", "input model file (gzipped if it ends in .gz)");
+		cmdOptions.addOption(OPT_OUTPUT_FILE, "file", "output model archive");
+		return cmdOptions;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ParsedCommandLine cmdLine = new CommandLineOptionsParser().parseOptions(createOptions(), args);
+		
+		String inputFile = cmdLine.getStringValue(OPT_INPUT_FILE);
+		String outputFile = cmdLine.getStringValue(OPT_OUTPUT_FILE);
+		
+		System.err.print("Loading model...");
+		InputStream is = new BufferedInputStream(new FileInputStream(inputFile), 1000000);
+		if(inputFile.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
+		}
+		ObjectInputStream ois = new ObjectInputStream(is);
+		Object model = ois.readObject();
+		if(model instanceof ClassificationBundle) {
+			ois.close();
+			System.err.println("Done");
+			System.err.print("Writing classification bundle...");
+			((ClassificationBundle)model).writeArchive(new File(outputFile));
+		}
+		else if(model instanceof LinearClassificationModel) {
+			PosFeatureGenerator featGen = (PosFeatureGenerator)ois.readObject();
+			ois.close();
+			System.err.println("Done");
+			System.err.print("Writing part-of-speech tagging model...");
+			PosTagger.writeArchive((LinearClassificationModel)model, featGen, new File(outputFile));
+		}
+		else {
+			ois.close();
+			throw new IllegalArgumentException("Unsupported model type: " + model.getClass().getName());
+		}
+		System.err.println("Done");
+	}
+	
+}
@@ -276,8 +276,8 @@ public class ParseScriptForEval {
 		System.err.println("Parsing time: " + (System.currentTimeMillis()-startTime)/1000.0 + " seconds");
 		System.err.println("Accuracy: " + (laCorrect)/((double)laCorrect+laWrong) + " " + unlCorrect/((double)unlCorrect+unlWrong));
 		System.err.println("Exact match: " + (exactMatch/(double)totalSentences));
-		System.err.println("DotTime: " + (NLParser.sDotProductTime)/(1000000.0));
-		System.err.println("FeatTime: " + (NLParser.sFeatGenTime)/(1000000.0));
+		System.err.println("DotTime: " + (parser.getDotProductTime())/(1000000.0));
+		System.err.println("FeatTime: " + (parser.getFeatGenTime())/(1000000.0));
 		System.err.println("NNTime: " + (sNnTime)/(10000000.0));
 		System.err.println("PsdTime: " + (sPsdTime)/(1000000.0));
 		for(FeatureExtractionRule fer : MultiStepFeatureGenerator.ferTimes.keySet()) {
@@ -28,6 +28,8 @@ import java.util.zip.GZIPInputStream;
 
 import tratz.ml.ClassScoreTuple;
 import tratz.ml.LinearClassificationModel;
+import tratz.ml.MappedLinearClassificationModel;
+import tratz.ml.ModelArchive;
 import tratz.parse.types.Token;
 import tratz.pos.featgen.PosFeatureGenerator;
 
@@ -36,15 +38,40 @@ public class PosTagger {
 	protected PosFeatureGenerator mFeatureGenerator; 
 	protected LinearClassificationModel mDecisionModule;
 	
+	// sections of the model archive
+	public final static String ARCHIVE_FEATGEN_SECTION = "featgen",
+							   ARCHIVE_MODEL = "model";
+	
+	/**
+	 * Reads a serialized model (gzipped if the file name ends in .gz) or a model archive written by <code>writeArchive</code>
+	 */
 	public PosTagger(File modelFile) throws IOException, ClassNotFoundException {
-		InputStream is = new FileInputStream(modelFile);
-		if(modelFile.getName().endsWith(".gz")) {
-			is = new GZIPInputStream(is);
+		if(ModelArchive.isModelArchive(modelFile)) {
+			ModelArchive archive = new ModelArchive(modelFile);
+			mFeatureGenerator = (PosFeatureGenerator)archive.readObject(ARCHIVE_FEATGEN_SECTION);
+			mDecisionModule = new MappedLinearClassificationModel(archive, ARCHIVE_MODEL);
+			archive.close();
+		}
+		else {
+			InputStream is = new FileInputStream(modelFile);
+			if(modelFile.getName().endsWith(".gz")) {
+				is = new GZIPInputStream(is);
+			}
+			ObjectInputStream ois = new ObjectInputStream(is);
+			mDecisionModule = (LinearClassificationModel)ois.readObject();
+			mFeatureGenerator = (PosFeatureGenerator)ois.readObject();
+			ois.close(); 
 		}
-		ObjectInputStream ois = new ObjectInputStream(is);
-		mDecisionModule = (LinearClassificationModel)ois.readObject();
-		mFeatureGenerator = (PosFeatureGenerator)ois.readObject();
-		ois.close(); 
+	}
+	
+	/**
+	 * Writes a part-of-speech tagging model as a <code>ModelArchive</code> 
+	 */
+	public static void writeArchive(LinearClassificationModel decisionModule, PosFeatureGenerator featureGenerator, File file) throws IOException {
+		ModelArchive.Writer writer = new ModelArchive.Writer(file);
+		writer.writeObject(ARCHIVE_FEATGEN_SECTION, featureGenerator);
+		MappedLinearClassificationModel.write(decisionModule, writer, ARCHIVE_MODEL);
+		writer.close();
 	}
 	
 	// For Don
@@ -16,18 +16,45 @@
 
 package tratz.runpipe;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.management.JMException;
+
+import tratz.runpipe.metrics.MetricsReporter;
+import tratz.runpipe.metrics.PipeMetrics;
+import tratz.runpipe.util.ContentCache;
+import tratz.runpipe.util.Shard;
+import tratz.runpipe.util.ShardManifest;
+import tratz.runpipe.util.StandoffDocumentCodec;
 
 /**
  *	Defines a pipeline of components for reading in and processing text
  */
 public class Pipe {
 	
+	/** Number of documents that may be read ahead of the end points, per thread */
+	public final static int READ_AHEAD_PER_THREAD = 2;
+	
 	private Map<String, String> mCorpusParams;
 	private Map<String, String> mDocParams;
 	private Map<Annotator, Map<String, String>> mAnnotatorParams = new HashMap<Annotator, Map<String, String>>();
@@ -38,11 +65,36 @@ public class Pipe {
 	private List<Annotator> mAnnotators = new LinkedList<Annotator>();
 	private List<EndPoint> mEndUnits = new LinkedList<EndPoint>();
 	
+	private int mNumThreads = 1;
+	private boolean mOrderedEndPoints = true;
+	
+	private ContentCache mDocumentCache;
+	// Identifies the annotators and their configuration in the document cache keys
+	private String mAnnotatorFingerprint;
+	
+	private boolean mMetricsEnabled;
+	private long mMetricsInterval;
+	private File mMetricsFile;
+	private PipeMetrics mMetrics;
+	
+	private File mManifestFile;
+	private Shard mManifestShard;
+	// names of the documents that have been through the end points, for the manifest
+	private List<String> mFinishedDocuments;
+	
 	public Pipe() {
 		
 	}
 	
 	public void go() throws IOException, DocumentReadException, InitializationException, ProcessException {
+		go(true);
+	}
+	
+	/**
+	 * Runs the pipeline. If initializeAnnotators is false the annotators are assumed to be initialized
+	 * already (see initializeAnnotators()), which allows loaded annotators to be reused by several runs.
+	 */
+	public void go(boolean initializeAnnotators) throws IOException, DocumentReadException, InitializationException, ProcessException {
 		if(mDocumentReader != null) {
 			System.err.println("Initializing document reader");
 			mDocumentReader.initialize(mDocParams);
@@ -51,9 +103,11 @@ public class Pipe {
 
 		System.err.println("Initializing corpus reader");
 		mCorpusReader.initialize(mCorpusParams);
-		for(Annotator annotator : mAnnotators) {
-			System.err.println("Initializing annotator");
-			annotator.initialize(mAnnotatorParams.get(annotator));
+		if(initializeAnnotators) {
+			initializeAnnotators();
+		}
+		if(mDocumentCache != null) {
+			mAnnotatorFingerprint = createAnnotatorFingerprint();
 		}
 		
 		for(EndPoint unit : mEndUnits) {
@@ -61,22 +115,434 @@ public class Pipe {
 			unit.initialize(mEndUnitParams.get(unit));
 		}
 		
-		while(mCorpusReader.hasNext()) {
-			TextDocument doc = mCorpusReader.getNext();
-			
-			for(Annotator annotator : mAnnotators) {
-				annotator.process(doc);
-			}
-			
-			for(EndPoint unit : mEndUnits) {
-				unit.process(doc);
-			}
+		mFinishedDocuments = mManifestFile == null ? null : new ArrayList<String>();
+		MetricsReporter reporter = startMetrics();
+		try {
+			processDocuments();
+		}
+		finally {
+			stopMetrics(reporter);
 		}
 		System.err.println("Annotator processing complete");
+		for(Annotator annotator : mAnnotators) {
+			if(annotator instanceof Flushable) {
+				((Flushable)annotator).flush();
+			}
+		}
+		if(mDocumentCache != null) {
+			System.err.println("Document cache hits: " + mDocumentCache.getNumHits() + " misses: " + mDocumentCache.getNumMisses());
+		}
 		for(EndPoint unit : mEndUnits) {
 			unit.batchFinished();
 		}
 		System.err.println("End point processing complete");
+		if(mManifestFile != null) {
+			new ShardManifest(mManifestShard, mFinishedDocuments).write(mManifestFile);
+		}
+	}
+	
+	private MetricsReporter startMetrics() throws IOException {
+		if(!mMetricsEnabled) {
+			mMetrics = null;
+			return null;
+		}
+		mMetrics = new PipeMetrics(mAnnotators, mEndUnits);
+		try {
+			mMetrics.registerMBeans();
+		}
+		catch(JMException jme) {
+			System.err.println("Unable to publish metrics through JMX: " + jme.getMessage());
+		}
+		MetricsReporter reporter = mMetricsFile == null ? new MetricsReporter(mMetrics) : new MetricsReporter(mMetrics, mMetricsFile);
+		reporter.start(mMetricsInterval);
+		return reporter;
+	}
+	
+	private void stopMetrics(MetricsReporter reporter) {
+		if(reporter != null) {
+			reporter.stop();
+			try {
+				mMetrics.unregisterMBeans();
+			}
+			catch(JMException jme) {
+				System.err.println("Unable to unpublish metrics: " + jme.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Reads every document and passes it through the annotators and end points. Called by go() once 
+	 * the components are initialized.
+	 */
+	protected void processDocuments() throws IOException, DocumentReadException, InitializationException, ProcessException {
+		if(mNumThreads > 1) {
+			processConcurrently();
+		}
+		else {
+			while(mCorpusReader.hasNext()) {
+				TextDocument doc = annotate(mCorpusReader.getNext(), mAnnotators);
+				
+				for(EndPoint unit : mEndUnits) {
+					processEndPoint(unit, doc);
+				}
+				documentFinished(doc);
+			}
+		}
+	}
+	
+	/**
+	 * Processes the documents with mNumThreads worker threads. Each worker borrows a chain of annotators, in which 
+	 * the annotators that aren't ThreadSafe are separate instances, and passes the document to the ThreadSafe end points. 
+	 * The other end points are called from this thread, in corpus order if the end points are ordered.
+	 */
+	private void processConcurrently() throws IOException, DocumentReadException, InitializationException, ProcessException {
+		BlockingQueue<List<Annotator>> chains = new ArrayBlockingQueue<List<Annotator>>(mNumThreads);
+		chains.add(mAnnotators);
+		for(int i = 1; i < mNumThreads; i++) {
+			System.err.println("Initializing annotators for thread " + (i+1));
+			chains.add(copyAnnotators());
+		}
+		List<EndPoint> concurrentEndUnits = new ArrayList<EndPoint>();
+		List<EndPoint> serialEndUnits = new ArrayList<EndPoint>();
+		for(EndPoint unit : mEndUnits) {
+			if(unit instanceof ThreadSafe) {
+				concurrentEndUnits.add(unit);
+			}
+			else {
+				serialEndUnits.add(unit);
+			}
+		}
+		
+		ThreadPoolExecutor executor = (ThreadPoolExecutor)Executors.newFixedThreadPool(mNumThreads);
+		if(mMetrics != null) {
+			mMetrics.registerQueue("waiting", executor.getQueue());
+		}
+		CompletionService<TextDocument> completionService = new ExecutorCompletionService<TextDocument>(executor);
+		LinkedList<Future<TextDocument>> pending = new LinkedList<Future<TextDocument>>();
+		final int maxPending = mNumThreads * READ_AHEAD_PER_THREAD;
+		try {
+			while(mCorpusReader.hasNext()) {
+				DocumentTask task = new DocumentTask(mCorpusReader.getNext(), chains, concurrentEndUnits);
+				pending.add(mOrderedEndPoints ? executor.submit(task) : completionService.submit(task));
+				if(pending.size() >= maxPending) {
+					finishNext(pending, completionService, serialEndUnits);
+				}
+			}
+			while(!pending.isEmpty()) {
+				finishNext(pending, completionService, serialEndUnits);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Waits for a document (the oldest one if the end points are ordered, otherwise whichever finishes first)
+	 * and passes it to the end points that aren't ThreadSafe
+	 */
+	private void finishNext(LinkedList<Future<TextDocument>> pending, CompletionService<TextDocument> completionService, List<EndPoint> serialEndUnits) throws ProcessException {
+		TextDocument doc = null;
+		try {
+			Future<TextDocument> future = null;
+			if(mOrderedEndPoints) {
+				future = pending.removeFirst();
+			}
+			else {
+				future = completionService.take();
+				pending.remove(future);
+			}
+			doc = future.get();
+		}
+		catch(InterruptedException ie) {
+			throw new ProcessException(ie);
+		}
+		catch(ExecutionException ee) {
+			if(ee.getCause() instanceof ProcessException) {
+				throw (ProcessException)ee.getCause();
+			}
+			throw new ProcessException(ee.getCause());
+		}
+		for(EndPoint unit : serialEndUnits) {
+			processEndPoint(unit, doc);
+		}
+		documentFinished(doc);
+	}
+	
+	private class DocumentTask implements Callable<TextDocument> {
+		
+		private final TextDocument mDocument;
+		private final BlockingQueue<List<Annotator>> mChains;
+		private final List<EndPoint> mEndUnits;
+		
+		public DocumentTask(TextDocument document, BlockingQueue<List<Annotator>> chains, List<EndPoint> endUnits) {
+			mDocument = document;
+			mChains = chains;
+			mEndUnits = endUnits;
+		}
+		
+		public TextDocument call() throws Exception {
+			List<Annotator> annotators = mChains.take();
+			TextDocument doc = null;
+			try {
+				doc = annotate(mDocument, annotators);
+			}
+			finally {
+				mChains.add(annotators);
+			}
+			for(EndPoint unit : mEndUnits) {
+				processEndPoint(unit, doc);
+			}
+			return doc;
+		}
+	}
+	
+	/**
+	 * Runs the annotators over the document, or returns the annotated copy from the document cache if there is one
+	 */
+	protected TextDocument annotate(TextDocument doc, List<Annotator> annotators) throws ProcessException {
+		String key = getCacheKey(doc);
+		if(key != null) {
+			TextDocument cachedDoc = getCachedDocument(key, doc);
+			if(cachedDoc != null) {
+				return cachedDoc;
+			}
+		}
+		final int numAnnotators = annotators.size();
+		for(int i = 0; i < numAnnotators; i++) {
+			processAnnotator(i, annotators.get(i), doc);
+		}
+		if(key != null) {
+			cacheDocument(key, doc);
+		}
+		return doc;
+	}
+	
+	/**
+	 * Runs the annotator (at the index in the pipe, or a copy of it), recording its latency if metrics are enabled
+	 */
+	protected void processAnnotator(int index, Annotator annotator, TextDocument doc) throws ProcessException {
+		PipeMetrics metrics = mMetrics;
+		if(metrics == null) {
+			annotator.process(doc);
+		}
+		else {
+			long start = System.nanoTime();
+			annotator.process(doc);
+			metrics.getAnnotatorLatency(index).record(System.nanoTime() - start);
+		}
+	}
+	
+	protected void processEndPoint(EndPoint unit, TextDocument doc) throws ProcessException {
+		PipeMetrics metrics = mMetrics;
+		if(metrics == null) {
+			unit.process(doc);
+		}
+		else {
+			long start = System.nanoTime();
+			unit.process(doc);
+			metrics.getEndPointLatency(unit).record(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Called once the document has been through all the end points
+	 */
+	protected void documentFinished(TextDocument doc) {
+		if(mMetrics != null) {
+			mMetrics.documentFinished(doc);
+		}
+		if(mFinishedDocuments != null) {
+			String uri = doc.getUri();
+			synchronized(mFinishedDocuments) {
+				mFinishedDocuments.add(uri == null ? "" : uri.substring(uri.lastIndexOf('/')+1));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the document cache key of the (unannotated) document, or null if there is no document cache
+	 */
+	protected String getCacheKey(TextDocument doc) throws ProcessException {
+		if(mDocumentCache == null) {
+			return null;
+		}
+		try {
+			return new ContentCache.KeyBuilder().add(mAnnotatorFingerprint).add(doc).toKey();
+		}
+		catch(IOException ioe) {
+			throw new ProcessException(ioe);
+		}
+	}
+	
+	/**
+	 * Returns the cached annotated version of the document, or null if it isn't in the document cache
+	 */
+	protected TextDocument getCachedDocument(String key, TextDocument doc) {
+		byte[] cached = mDocumentCache.get(key);
+		if(cached == null) {
+			return null;
+		}
+		try {
+			TextDocument cachedDoc = StandoffDocumentCodec.read(new ByteArrayInputStream(cached));
+			cachedDoc.setUri(doc.getUri());
+			return cachedDoc;
+		}
+		catch(IOException ioe) {
+			System.err.println("Discarding unreadable cache entry for " + doc.getUri() + ": " + ioe.getMessage());
+			mDocumentCache.remove(key);
+			return null;
+		}
+	}
+	
+	protected void cacheDocument(String key, TextDocument doc) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			StandoffDocumentCodec.write(doc, bytes, StandoffDocumentCodec.Compression.FAST);
+			mDocumentCache.put(key, bytes.toByteArray());
+		}
+		catch(IOException ioe) {
+			// e.g. an annotation type the stand-off format can't hold; the document is just not cached
+			System.err.println("Unable to cache " + doc.getUri() + ": " + ioe.getMessage());
+		}
+	}
+	
+	/**
+	 * Fingerprints the annotators' code and parameters, including the size and modification time of any
+	 * file or directory a parameter names (e.g. a model file)
+	 */
+	private String createAnnotatorFingerprint() {
+		ContentCache.KeyBuilder builder = new ContentCache.KeyBuilder();
+		builder.add(Integer.toString(StandoffDocumentCodec.VERSION));
+		for(Annotator annotator : mAnnotators) {
+			builder.addCodeFingerprint(annotator.getClass());
+			Map<String, String> params = mAnnotatorParams.get(annotator);
+			if(params != null) {
+				for(Map.Entry<String, String> param : new TreeMap<String, String>(params).entrySet()) {
+					builder.add(param.getKey()).add(param.getValue());
+					if(param.getValue() != null && param.getValue().length() > 0) {
+						File file = new File(param.getValue());
+						if(file.exists()) {
+							builder.addFingerprint(file);
+						}
+					}
+				}
+			}
+		}
+		return builder.toKey();
+	}
+	
+	private List<Annotator> copyAnnotators() throws InitializationException {
+		List<Annotator> copies = new ArrayList<Annotator>(mAnnotators.size());
+		for(Annotator annotator : mAnnotators) {
+			copies.add(getInstanceForThread(annotator));
+		}
+		return copies;
+	}
+	
+	/**
+	 * Returns the annotator itself if it is ThreadSafe, otherwise a new instance of it initialized with the same parameters
+	 */
+	protected Annotator getInstanceForThread(Annotator annotator) throws InitializationException {
+		if(annotator instanceof ThreadSafe) {
+			return annotator;
+		}
+		try {
+			Annotator copy = annotator.getClass().newInstance();
+			copy.initialize(mAnnotatorParams.get(annotator));
+			return copy;
+		}
+		catch(InstantiationException ie) {
+			throw new InitializationException(ie);
+		}
+		catch(IllegalAccessException iae) {
+			throw new InitializationException(iae);
+		}
+	}
+	
+	/**
+	 * Closes the annotators that hold resources (those that are Closeable). Call once the pipe, and any
+	 * other pipe using the same annotator instances, is done.
+	 */
+	public void close() throws IOException {
+		for(Annotator annotator : mAnnotators) {
+			if(annotator instanceof Closeable) {
+				((Closeable)annotator).close();
+			}
+		}
+	}
+	
+	public void initializeAnnotators() throws InitializationException {
+		for(Annotator annotator : mAnnotators) {
+			System.err.println("Initializing annotator");
+			annotator.initialize(mAnnotatorParams.get(annotator));
+		}
+	}
+	
+	/**
+	 * Sets the number of documents processed concurrently (default 1, no worker threads)
+	 */
+	public void setNumThreads(int numThreads) {
+		if(numThreads < 1) {
+			throw new IllegalArgumentException("Number of threads (-threads) must be at least 1: " + numThreads);
+		}
+		mNumThreads = numThreads;
+	}
+	
+	public int getNumThreads() {
+		return mNumThreads;
+	}
+	
+	/**
+	 * Sets whether, with several threads, the end points that aren't ThreadSafe must see the documents 
+	 * in the order they were read (default true)
+	 */
+	public void setOrderedEndPoints(boolean ordered) {
+		mOrderedEndPoints = ordered;
+	}
+	
+	public boolean isOrderedEndPoints() {
+		return mOrderedEndPoints;
+	}
+	
+	/**
+	 * Sets the cache of annotated documents (default none). A document is read from the cache instead of 
+	 * being annotated when its text and annotations and the annotators and their parameters (including 
+	 * the files they name) are unchanged. Only annotations the stand-off format holds are kept.
+	 */
+	public void setDocumentCache(ContentCache documentCache) {
+		mDocumentCache = documentCache;
+	}
+	
+	public ContentCache getDocumentCache() {
+		return mDocumentCache;
+	}
+	
+	/**
+	 * Enables metrics (see PipeMetrics) for the following runs. While the pipe runs they are published through JMX and
+	 * reported every reportIntervalSeconds (if positive) and once more at the end, as CSV rows appended to csvFile 
+	 * or as text to standard error if csvFile is null.
+	 */
+	public void enableMetrics(long reportIntervalSeconds, File csvFile) {
+		mMetricsEnabled = true;
+		mMetricsInterval = reportIntervalSeconds;
+		mMetricsFile = csvFile;
+	}
+	
+	/**
+	 * Sets the file to write a manifest of the documents processed to (see ShardManifest) once a run completes,
+	 * recording the shard of the corpus that was processed (null if the whole corpus was)
+	 */
+	public void setManifest(File manifestFile, Shard shard) {
+		mManifestFile = manifestFile;
+		mManifestShard = shard;
+	}
+	
+	/**
+	 * Returns the metrics of the current (or last) run, or null if metrics aren't enabled
+	 */
+	public PipeMetrics getMetrics() {
+		return mMetrics;
 	}
 	
 	public void setCorpusReader(CorpusReader corpusReader, Map<String, String> params) {
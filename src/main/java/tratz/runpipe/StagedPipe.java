@@ -0,0 +1,301 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Pipe that runs each annotator as a separate stage with its own threads. The stages are connected by
+ * bounded queues (reader -> annotator 1 -> ... -> annotator n -> end points), so an expensive annotator can be
+ * given more threads while a full queue holds back the stages in front of it, including the reader.
+ * A stage with several threads has an instance of its annotator per thread unless the annotator is ThreadSafe.
+ * The end points are called from the thread that called go(), in corpus order unless the end points are unordered.
+ * The reader stops reading while queue capacity x (stages + 1) documents are in flight, so documents that overtake
+ * a slow one and wait for their turn at the ordered end points cannot pile up without bound.
+ * Documents found in the document cache are looked up by the reader stage and pass through the annotator stages untouched.
+ */
+public class StagedPipe extends Pipe {
+	
+	/** Default capacity of the queue in front of each stage */
+	public final static int DEFAULT_QUEUE_CAPACITY = 16;
+	
+	// How often a thread waiting on a queue checks whether another stage has failed
+	private final static long FAILURE_CHECK_MILLIS = 100;
+	
+	private int[] mStageThreads = new int[0];
+	private int mQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+	
+	// The first failure in any stage thread
+	private volatile Throwable mFailure;
+	// Permits for the documents between the reader and documentFinished
+	private Semaphore mInFlight;
+	
+	private static class StagedDocument {
+		public final long index;
+		public final TextDocument document;
+		// document cache key, if the document is to be cached once annotated
+		public final String cacheKey;
+		// true if the document came from the document cache and skips the annotators
+		public final boolean annotated;
+		public StagedDocument(long index, TextDocument document, String cacheKey, boolean annotated) {
+			this.index = index;
+			this.document = document;
+			this.cacheKey = cacheKey;
+			this.annotated = annotated;
+		}
+	}
+	
+	// Follows the last document through the stages
+	private final static StagedDocument END = new StagedDocument(-1, null, null, false);
+	
+	public StagedPipe() {
+		
+	}
+	
+	/**
+	 * Sets the number of threads of each annotator's stage, in the order the annotators were added (missing entries are 1)
+	 */
+	public void setStageThreads(int[] stageThreads) {
+		for(int i = 0; i < stageThreads.length; i++) {
+			if(stageThreads[i] < 1) {
+				throw new IllegalArgumentException("Stage threads (-stagethreads) must be at least 1, stage " + (i+1) + " has " + stageThreads[i]);
+			}
+		}
+		mStageThreads = stageThreads;
+	}
+	
+	public int getStageThreads(int stage) {
+		return stage < mStageThreads.length ? mStageThreads[stage] : 1;
+	}
+	
+	/**
+	 * Sets the capacity of the queue in front of each stage (and of the end points)
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if(queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity (-queuecapacity) must be at least 1: " + queueCapacity);
+		}
+		mQueueCapacity = queueCapacity;
+	}
+	
+	@Override
+	protected void processDocuments() throws IOException, DocumentReadException, InitializationException, ProcessException {
+		List<Annotator> annotators = getAnnotators();
+		final int numStages = annotators.size();
+		// queue i feeds stage i, the last queue feeds the end points
+		List<BlockingQueue<StagedDocument>> queues = new ArrayList<BlockingQueue<StagedDocument>>(numStages+1);
+		for(int i = 0; i <= numStages; i++) {
+			queues.add(new ArrayBlockingQueue<StagedDocument>(mQueueCapacity));
+			if(getMetrics() != null) {
+				getMetrics().registerQueue(i < numStages ? "stage" + (i+1) : "endpoints", queues.get(i));
+			}
+		}
+		
+		// Create the stage threads' annotators before anything starts
+		List<Runnable> stageThreads = new ArrayList<Runnable>();
+		stageThreads.add(new ReaderStage(getCorpusReader(), queues.get(0)));
+		for(int s = 0; s < numStages; s++) {
+			final int numThreads = getStageThreads(s);
+			AtomicInteger remainingThreads = new AtomicInteger(numThreads);
+			Annotator annotator = annotators.get(s);
+			for(int t = 0; t < numThreads; t++) {
+				if(t > 0) {
+					System.err.println("Initializing annotator for stage " + (s+1) + " thread " + (t+1));
+				}
+				stageThreads.add(new AnnotatorStage(s, t == 0 ? annotator : getInstanceForThread(annotator), queues.get(s), queues.get(s+1), remainingThreads));
+			}
+		}
+		
+		mFailure = null;
+		mInFlight = new Semaphore(Math.max(1, mQueueCapacity * (numStages+1)));
+		ExecutorService executor = Executors.newFixedThreadPool(stageThreads.size());
+		try {
+			for(Runnable stageThread : stageThreads) {
+				executor.execute(stageThread);
+			}
+			
+			List<EndPoint> endUnits = getEndProcessingUnits();
+			BlockingQueue<StagedDocument> queue = queues.get(numStages);
+			// Documents that overtook an earlier one
+			Map<Long, TextDocument> waiting = new HashMap<Long, TextDocument>();
+			long nextIndex = 0;
+			StagedDocument staged = null;
+			while((staged = take(queue)) != END) {
+				if(staged.cacheKey != null) {
+					cacheDocument(staged.cacheKey, staged.document);
+				}
+				if(!isOrderedEndPoints()) {
+					processEndUnits(endUnits, staged.document);
+				}
+				else {
+					waiting.put(staged.index, staged.document);
+					TextDocument doc = null;
+					while((doc = waiting.remove(nextIndex)) != null) {
+						processEndUnits(endUnits, doc);
+						nextIndex++;
+					}
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private void processEndUnits(List<EndPoint> endUnits, TextDocument doc) throws ProcessException {
+		for(EndPoint unit : endUnits) {
+			processEndPoint(unit, doc);
+		}
+		documentFinished(doc);
+	}
+	
+	@Override
+	protected void documentFinished(TextDocument doc) {
+		super.documentFinished(doc);
+		mInFlight.release();
+	}
+	
+	private StagedDocument take(BlockingQueue<StagedDocument> queue) throws IOException, DocumentReadException, ProcessException {
+		try {
+			StagedDocument staged = null;
+			while((staged = queue.poll(FAILURE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+				checkFailure();
+			}
+			return staged;
+		}
+		catch(InterruptedException ie) {
+			throw new ProcessException(ie);
+		}
+	}
+	
+	private void checkFailure() throws IOException, DocumentReadException, ProcessException {
+		Throwable failure = mFailure;
+		if(failure != null) {
+			if(failure instanceof ProcessException) {
+				throw (ProcessException)failure;
+			}
+			if(failure instanceof DocumentReadException) {
+				throw (DocumentReadException)failure;
+			}
+			if(failure instanceof IOException) {
+				throw (IOException)failure;
+			}
+			throw new ProcessException(failure);
+		}
+	}
+	
+	private synchronized void fail(Throwable t) {
+		if(mFailure == null) {
+			mFailure = t;
+		}
+	}
+	
+	private class ReaderStage implements Runnable {
+		
+		private final CorpusReader mReader;
+		private final BlockingQueue<StagedDocument> mOut;
+		
+		public ReaderStage(CorpusReader reader, BlockingQueue<StagedDocument> out) {
+			mReader = reader;
+			mOut = out;
+		}
+		
+		public void run() {
+			try {
+				long index = 0;
+				while(true) {
+					mInFlight.acquire();
+					if(!mReader.hasNext()) {
+						break;
+					}
+					TextDocument doc = mReader.getNext();
+					String key = getCacheKey(doc);
+					TextDocument cachedDoc = key == null ? null : getCachedDocument(key, doc);
+					if(cachedDoc != null) {
+						mOut.put(new StagedDocument(index++, cachedDoc, null, true));
+					}
+					else {
+						mOut.put(new StagedDocument(index++, doc, key, false));
+					}
+				}
+				mOut.put(END);
+			}
+			catch(InterruptedException ie) {
+				// shutting down
+			}
+			catch(Throwable t) {
+				fail(t);
+			}
+		}
+	}
+	
+	private class AnnotatorStage implements Runnable {
+		
+		private final int mStage;
+		private final Annotator mAnnotator;
+		private final BlockingQueue<StagedDocument> mIn;
+		private final BlockingQueue<StagedDocument> mOut;
+		// Threads of this stage that haven't seen END yet
+		private final AtomicInteger mRemainingThreads;
+		
+		public AnnotatorStage(int stage, Annotator annotator, BlockingQueue<StagedDocument> in, BlockingQueue<StagedDocument> out, AtomicInteger remainingThreads) {
+			mStage = stage;
+			mAnnotator = annotator;
+			mIn = in;
+			mOut = out;
+			mRemainingThreads = remainingThreads;
+		}
+		
+		public void run() {
+			try {
+				while(true) {
+					StagedDocument staged = mIn.take();
+					if(staged == END) {
+						// put it back for the stage's other threads; the last one passes it on
+						mIn.put(END);
+						if(mRemainingThreads.decrementAndGet() == 0) {
+							mOut.put(END);
+						}
+						return;
+					}
+					if(!staged.annotated) {
+						processAnnotator(mStage, mAnnotator, staged.document);
+					}
+					mOut.put(staged);
+				}
+			}
+			catch(InterruptedException ie) {
+				// shutting down
+			}
+			catch(Throwable t) {
+				fail(t);
+			}
+		}
+	}
+	
+}
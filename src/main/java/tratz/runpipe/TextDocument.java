@@ -17,7 +17,8 @@
 package tratz.runpipe;
 
 import java.util.List;
-import java.util.TreeSet;
+import java.util.Set;
+import java.util.SortedSet;
 
 /**
  *	TextDocument interface 
@@ -28,8 +29,13 @@ public interface TextDocument {
 	public void setUri(String uri);
 	public void addAnnotation(Annotation annot);
 	public void removeAnnotation(Annotation annot);
-	public TreeSet<? extends Annotation> getAnnotationSet(Class annotationClass);
+	public SortedSet<? extends Annotation> getAnnotationSet(Class annotationClass);
 	public List<? extends Annotation> getAnnotationList(Class annotationClass);
+	public Set<Class> getAnnotationTypes();
+	/**
+	 * Returns the annotations of the class lying entirely within [start, end), in order (empty if there are none)
+	 */
+	public List<? extends Annotation> getCoveredAnnotations(Class annotationClass, int start, int end);
 	public String getText();
 	public String getUri();
 }
\ No newline at end of file
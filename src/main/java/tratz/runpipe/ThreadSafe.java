@@ -0,0 +1,26 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe;
+
+/**
+ * Marker for Annotators and EndPoints that can process several documents concurrently.
+ * When a Pipe runs with more than one thread, an Annotator that is not ThreadSafe gets a separate
+ * instance for each thread and an EndPoint that is not ThreadSafe is called from a single thread.
+ */
+public interface ThreadSafe {
+
+}
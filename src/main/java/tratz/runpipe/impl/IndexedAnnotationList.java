@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.impl;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import tratz.runpipe.Annotation;
+
+/**
+ * Read-only, sorted list of the annotations of one type, with their start and end offsets kept
+ * in primitive arrays so that range queries are binary searches rather than scans.
+ * The offsets are taken when the list is built; annotations must not be moved afterwards.
+ */
+public class IndexedAnnotationList<T extends Annotation> extends AbstractList<T> implements RandomAccess {
+	
+	private final Object[] mAnnotations;
+	private final int[] mStarts;
+	private final int[] mEnds;
+	
+	/**
+	 * @param annotations annotations in sorted order (start ascending, end descending)
+	 */
+	public IndexedAnnotationList(Collection<? extends T> annotations) {
+		mAnnotations = annotations.toArray();
+		final int numAnnotations = mAnnotations.length;
+		mStarts = new int[numAnnotations];
+		mEnds = new int[numAnnotations];
+		for(int i = 0; i < numAnnotations; i++) {
+			Annotation annot = (Annotation)mAnnotations[i];
+			mStarts[i] = annot.getStart();
+			mEnds[i] = annot.getEnd();
+		}
+	}
+	
+	@Override
+	public T get(int index) {
+		return (T)mAnnotations[index];
+	}
+	
+	@Override
+	public int size() {
+		return mAnnotations.length;
+	}
+	
+	public int getStart(int index) {
+		return mStarts[index];
+	}
+	
+	public int getEnd(int index) {
+		return mEnds[index];
+	}
+	
+	/**
+	 * Returns the index of the first annotation starting at or after the offset (size() if there is none)
+	 */
+	public int firstStartingAt(int offset) {
+		int low = 0;
+		int high = mStarts.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(mStarts[mid] < offset) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Returns the annotations lying entirely within [start, end), in order. When none of the annotations
+	 * starting in the range extend past its end (the usual case, e.g. the tokens of a sentence) the result
+	 * is a view of this list rather than a copy.
+	 */
+	public List<T> getCovered(int start, int end) {
+		final int from = firstStartingAt(start);
+		final int to = firstStartingAt(end);
+		for(int i = from; i < to; i++) {
+			if(mEnds[i] > end) {
+				List<T> covered = new ArrayList<T>(subList(from, i));
+				for(int j = i+1; j < to; j++) {
+					if(mEnds[j] <= end) {
+						covered.add(get(j));
+					}
+				}
+				return Collections.unmodifiableList(covered);
+			}
+		}
+		return subList(from, to);
+	}
+	
+}
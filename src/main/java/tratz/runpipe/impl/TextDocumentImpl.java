@@ -17,10 +17,12 @@
 package tratz.runpipe.impl;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 import tratz.runpipe.Annotation;
@@ -36,6 +38,8 @@ public class TextDocumentImpl implements TextDocument, Serializable {
 	protected String mText;
 	protected String mUri;
 	protected Map<Class, TreeSet<Annotation>> mAnnotationIndex = new HashMap<Class, TreeSet<Annotation>>();
+	// Read-only sorted lists of the annotations of each type, built on demand and dropped when the type changes
+	protected transient Map<Class, IndexedAnnotationList<Annotation>> mIndexedLists;
 	
 	public TextDocumentImpl(String text) {
 		mText = text;
@@ -68,6 +72,7 @@ public class TextDocumentImpl implements TextDocument, Serializable {
 			mAnnotationIndex.put(type, annotations = new TreeSet<Annotation>());
 		}
 		annotations.add(annot);
+		invalidate(type);
 	}
 	
 	@Override
@@ -76,26 +81,60 @@ public class TextDocumentImpl implements TextDocument, Serializable {
 		TreeSet<Annotation> annots = mAnnotationIndex.get(type);
 		if(annots != null) {
 			annots.remove(annot);
+			invalidate(type);
 		}
 	}
 	
+	private void invalidate(Class type) {
+		if(mIndexedLists != null) {
+			mIndexedLists.remove(type);
+		}
+	}
+	
+	private IndexedAnnotationList<Annotation> getIndexedList(Class annotationType) {
+		if(mIndexedLists == null) {
+			mIndexedLists = new HashMap<Class, IndexedAnnotationList<Annotation>>();
+		}
+		IndexedAnnotationList<Annotation> indexedList = mIndexedLists.get(annotationType);
+		if(indexedList == null) {
+			TreeSet<Annotation> annotSet = mAnnotationIndex.get(annotationType);
+			if(annotSet != null) {
+				mIndexedLists.put(annotationType, indexedList = new IndexedAnnotationList<Annotation>(annotSet));
+			}
+		}
+		return indexedList;
+	}
+	
+	/**
+	 * Returns a read-only view of the annotations of the type (changes as annotations are added or removed)
+	 */
 	@Override
-	public TreeSet<Annotation> getAnnotationSet(Class annotationType) {
+	public SortedSet<Annotation> getAnnotationSet(Class annotationType) {
 		TreeSet<Annotation> annotSet = mAnnotationIndex.get(annotationType);
-		if(annotSet != null) {
-			annotSet = new TreeSet<Annotation>(annotSet);
-		}
-		return annotSet;
+		return annotSet == null ? null : Collections.unmodifiableSortedSet(annotSet);
 	}
 	
+	/**
+	 * Returns a read-only list of the annotations of the type as they are now; the list is shared
+	 * by callers until the next change to the type
+	 */
 	@Override
 	public List<Annotation> getAnnotationList(Class annotationType) {
-		TreeSet<Annotation> annotSet = mAnnotationIndex.get(annotationType);
-		List<Annotation> annots = null;
-		if(annotSet != null) {
-			annots = new ArrayList<Annotation>(annotSet);
+		return getIndexedList(annotationType);
+	}
+	
+	@Override
+	public Set<Class> getAnnotationTypes() {
+		return Collections.unmodifiableSet(mAnnotationIndex.keySet());
+	}
+	
+	@Override
+	public List<Annotation> getCoveredAnnotations(Class annotationType, int start, int end) {
+		IndexedAnnotationList<Annotation> indexedList = getIndexedList(annotationType);
+		if(indexedList == null) {
+			return Collections.emptyList();
 		}
-		return annots;
+		return indexedList.getCovered(start, end);
 	}
 	
 	public String getText() {
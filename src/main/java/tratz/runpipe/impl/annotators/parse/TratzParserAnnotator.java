@@ -16,23 +16,22 @@
 
 package tratz.runpipe.impl.annotators.parse;
 
-import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.Flushable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
 
 
 
 import tratz.jwni.WordNet;
 import tratz.parse.NLParser;
-import tratz.parse.featgen.ParseFeatureGenerator;
-import tratz.parse.ml.ParseModel;
+import tratz.parse.ParseCache;
 import tratz.parse.transform.VchTransformer;
 import tratz.parse.types.Arc;
 import tratz.parse.util.NLParserUtils;
@@ -40,17 +39,36 @@ import tratz.runpipe.Annotator;
 import tratz.runpipe.InitializationException;
 import tratz.runpipe.ProcessException;
 import tratz.runpipe.TextDocument;
+import tratz.runpipe.ThreadSafe;
 import tratz.runpipe.annotations.Sentence;
 import tratz.runpipe.annotations.Token;
 import tratz.runpipe.util.RunpipeUtils;
 
-public class TratzParserAnnotator implements Annotator {
+/**
+ * Parses the sentences of the documents. The parser is shared by the Pipe's threads; the ParseThreads
+ * parameter additionally parses the sentences of each document in parallel. The parse cache file is
+ * flushed at the end of each run and closed with the last annotator using it.
+ */
+public class TratzParserAnnotator implements Annotator, ThreadSafe, Flushable, Closeable {
 	
 	public final static String PARAM_MODEL_FILE = "ModelFile";
 	public final static String PARAM_WORDNET_LOCATION = "WordNetDir";
 	public final static String PARAM_ENABLE_VCH_TRANSFORM = "VchTransform";
+	// maximum number of cached sentence parses (the cache is used if this or the cache file is given)
+	public final static String PARAM_PARSE_CACHE_SIZE = "ParseCacheSize";
+	// file to keep the cached parses in between runs (optional)
+	public final static String PARAM_PARSE_CACHE_FILE = "ParseCacheFile";
+	// number of threads to parse the sentences of a document with (default: 1)
+	public final static String PARAM_PARSE_THREADS = "ParseThreads";
+	
+	// annotators with the same model (and cache file) share their cache; an entry goes once no annotator holds its cache
+	private final static Map<String, WeakReference<ParseCache>> sParseCaches = new HashMap<String, WeakReference<ParseCache>>();
+	// number of open annotators using the cache of each key
+	private final static Map<String, Integer> sNumCacheUsers = new HashMap<String, Integer>();
 	
 	private NLParser mNlParser;
+	private ParseCache mParseCache;
+	private String mParseCacheKey;
 	private boolean mVchTransform = false;
 	
 	public void initialize(Map<String, String> args) throws InitializationException {
@@ -58,18 +76,15 @@ public class TratzParserAnnotator implements Annotator {
 			System.err.print("Loading model...");
 			long startTime = System.currentTimeMillis();
 			String modelFile = args.get(PARAM_MODEL_FILE);
-			InputStream is = new BufferedInputStream(new FileInputStream(modelFile));
-			if(modelFile.endsWith(".gz")) {
-				is = new GZIPInputStream(is);
-			}
-			ObjectInputStream ois = new ObjectInputStream(is);
-			ParseModel model = (ParseModel)ois.readObject();
-			ParseFeatureGenerator featGen = (ParseFeatureGenerator)ois.readObject();
-			ois.close();
+			// serialized or memory-mapped model
+			mNlParser = new NLParser(modelFile);
 			System.err.println("loaded");
 			System.err.println("Model loading took: " + (System.currentTimeMillis()-startTime)/1000.0 + " seconds.");
 			
-			mNlParser = new NLParser(model, featGen);
+			String parseThreads = args.get(PARAM_PARSE_THREADS);
+			if(parseThreads != null) {
+				mNlParser.setNumThreads(Integer.parseInt(parseThreads));
+			}
 			String wnLocation = args.get(PARAM_WORDNET_LOCATION);
 			if(wnLocation != null) {
 				new WordNet(new File(wnLocation));
@@ -78,6 +93,16 @@ public class TratzParserAnnotator implements Annotator {
 			if(enableVchTransformParam != null) {
 				mVchTransform = Boolean.parseBoolean(enableVchTransformParam);
 			}
+			String parseCacheSize = args.get(PARAM_PARSE_CACHE_SIZE);
+			String parseCacheFile = args.get(PARAM_PARSE_CACHE_FILE);
+			if(parseCacheSize != null || parseCacheFile != null) {
+				int maxEntries = parseCacheSize == null ? ParseCache.DEFAULT_MAX_ENTRIES : Integer.parseInt(parseCacheSize);
+				File cacheFile = parseCacheFile == null ? null : new File(parseCacheFile);
+				String modelId = ParseCache.createModelId(new File(modelFile));
+				// one cache per backing file, since only one may append to it
+				mParseCacheKey = cacheFile == null ? modelId + "|" + maxEntries : cacheFile.getAbsolutePath();
+				mParseCache = getParseCache(mParseCacheKey, modelId, maxEntries, cacheFile);
+			}
 		}
 		catch(ClassNotFoundException cnfe) {
 			throw new InitializationException(cnfe);
@@ -87,12 +112,67 @@ public class TratzParserAnnotator implements Annotator {
 		}
 	}
 	
+	private static ParseCache getParseCache(String key, String modelId, int maxEntries, File cacheFile) throws IOException {
+		synchronized(sParseCaches) {
+			for(Iterator<WeakReference<ParseCache>> it = sParseCaches.values().iterator(); it.hasNext();) {
+				if(it.next().get() == null) {
+					it.remove();
+				}
+			}
+			WeakReference<ParseCache> ref = sParseCaches.get(key);
+			ParseCache cache = ref == null ? null : ref.get();
+			if(cache == null) {
+				cache = cacheFile == null ? new ParseCache(maxEntries) : new ParseCache(maxEntries, cacheFile, modelId);
+				sParseCaches.put(key, new WeakReference<ParseCache>(cache));
+				sNumCacheUsers.remove(key);
+			}
+			else if(cacheFile != null && !modelId.equals(cache.getModelId())) {
+				throw new IOException("Parse cache file " + cacheFile + " is already in use with model " + cache.getModelId());
+			}
+			Integer numUsers = sNumCacheUsers.get(key);
+			sNumCacheUsers.put(key, numUsers == null ? 1 : numUsers+1);
+			return cache;
+		}
+	}
+	
+	/**
+	 * Writes the parses cached so far to the parse cache file, if any
+	 */
+	public void flush() {
+		if(mParseCache != null) {
+			mParseCache.flush();
+		}
+	}
+	
+	/**
+	 * Releases the parse cache, closing its file if no other annotator uses it
+	 */
+	public void close() {
+		if(mParseCache != null) {
+			synchronized(sParseCaches) {
+				Integer numUsers = sNumCacheUsers.get(mParseCacheKey);
+				if(numUsers == null || numUsers <= 1) {
+					sNumCacheUsers.remove(mParseCacheKey);
+					sParseCaches.remove(mParseCacheKey);
+					mParseCache.close();
+				}
+				else {
+					sNumCacheUsers.put(mParseCacheKey, numUsers-1);
+					mParseCache.flush();
+				}
+			}
+			mParseCache = null;
+		}
+	}
+	
 	public void process(TextDocument doc) throws ProcessException {
 		List<Sentence> sentences = (List<Sentence>)doc.getAnnotationList(Sentence.class);
 		List<Token> tokens = (List<Token>)doc.getAnnotationList(Token.class);
 		try {
 			if(sentences != null && tokens != null) {
 				VchTransformer vchTransform = new VchTransformer();
+				List<List<Token>> sentenceTokensList = new ArrayList<List<Token>>(sentences.size());
+				List<tratz.parse.types.Sentence> inputSentences = new ArrayList<tratz.parse.types.Sentence>(sentences.size());
 				for(Sentence sentence : sentences) {
 					List<Token> sentenceTokens = RunpipeUtils.getSublist(sentence, tokens);
 					
@@ -104,8 +184,14 @@ public class TratzParserAnnotator implements Annotator {
 						parseToken.setPos(tok.getPos());
 						parserTokens.add(parseToken);
 					}
-					tratz.parse.types.Sentence inputSentence = new tratz.parse.types.Sentence(parserTokens);
-					tratz.parse.types.Parse parse = mNlParser.parseSentence(inputSentence);
+					sentenceTokensList.add(sentenceTokens);
+					inputSentences.add(new tratz.parse.types.Sentence(parserTokens));
+				}
+				List<tratz.parse.types.Parse> parses = mParseCache == null ? mNlParser.parseSentences(inputSentences) : mParseCache.parseSentences(mNlParser, inputSentences);
+				for(int s = 0; s < parses.size(); s++) {
+					List<Token> sentenceTokens = sentenceTokensList.get(s);
+					List<tratz.parse.types.Token> parserTokens = inputSentences.get(s).getTokens();
+					tratz.parse.types.Parse parse = parses.get(s);
 					if(parse != null) {
 					if(mVchTransform) {
 						vchTransform.performTransformation(parse);
@@ -32,21 +32,28 @@ import tratz.runpipe.DocumentReadException;
 import tratz.runpipe.TextDocument;
 import tratz.runpipe.TextDocumentReader;
 import tratz.runpipe.impl.TextDocumentImpl;
+import tratz.runpipe.util.Shard;
 
 /**
  * Reads in all files under a given directory. 
  * Optionally (default: true) includes subdirectories.
  * Optionally (default: none) can filter filenames against a regular expression.
+ * Optionally (default: none) reads only the files of one shard (see Shard), assigned by file name
+ * or by the part of the file name matched by the first group of the ShardKeyPattern (e.g. the topic).
  */
 public class DirectoryCorpusReader implements CorpusReader {
 	
 	public final static String PARAM_INPUT_DIR = "InputDirectories";
 	public final static String PARAM_RECURSIVE = "IncludeSubdirs";
 	public final static String PARAM_FILTER_PATTERN = "FilterPattern";
+	// index/numShards, e.g. 0/4
+	public final static String PARAM_SHARD = "Shard";
+	public final static String PARAM_SHARD_KEY_PATTERN = "ShardKeyPattern";
 	
 	protected List<File> mFiles = new ArrayList<File>();
 	protected int mCurrentFileIndex;
 	protected TextDocumentReader mDocumentReader;
+	protected Shard mShard;
 	
 	@Override
 	public void initialize(Map<String, String> params) {
@@ -61,10 +68,41 @@ public class DirectoryCorpusReader implements CorpusReader {
 		for(String inputDirectory : inputDirectoriesArray) {
 			addFiles(new File(inputDirectory), mFiles, includeSubdirs, fileNameMatcher);
 		}
+		String shard = params.get(PARAM_SHARD);
+		if(shard != null && shard.length() > 0) {
+			mShard = Shard.parse(shard);
+			String shardKeyPattern = params.get(PARAM_SHARD_KEY_PATTERN);
+			mFiles = getShardFiles(mFiles, mShard, shardKeyPattern == null || shardKeyPattern.length() == 0 ? null : Pattern.compile(shardKeyPattern).matcher(""));
+		}
 		Collections.sort(mFiles);
 		Collections.reverse(mFiles);
 	}
 	
+	/**
+	 * Returns the files belonging to the shard. The key of a file is its name, or the part of its name matched 
+	 * by the first group of the key pattern (the whole match if the pattern has no groups).
+	 */
+	public static List<File> getShardFiles(List<File> files, Shard shard, Matcher keyMatcher) {
+		List<File> shardFiles = new ArrayList<File>();
+		for(File file : files) {
+			String key = file.getName();
+			if(keyMatcher != null && keyMatcher.reset(key).find()) {
+				key = keyMatcher.group(keyMatcher.groupCount() > 0 ? 1 : 0);
+			}
+			if(shard.contains(key)) {
+				shardFiles.add(file);
+			}
+		}
+		return shardFiles;
+	}
+	
+	/**
+	 * Returns the shard being read, or null if the whole corpus is
+	 */
+	public Shard getShard() {
+		return mShard;
+	}
+	
 	private static void addFiles(File directory, List<File> fileList, boolean includeSubdirs, Matcher filter) {
 		File[] files = directory.listFiles();
 		for(File file : files) {
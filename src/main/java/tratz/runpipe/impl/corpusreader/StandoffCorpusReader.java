@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+package tratz.runpipe.impl.corpusreader;
+
+import java.io.File;
+import java.io.IOException;
+
+import tratz.runpipe.DocumentReadException;
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.util.StandoffDocumentCodec;
+
+/**
+ * Reads in all files under a given directory written by StandoffDocumentWriter.
+ * Optionally (default: true) includes subdirectories.
+ * Optionally (default: none) can filter filenames against a regular expression.
+ */
+public class StandoffCorpusReader extends DirectoryCorpusReader {
+	
+	@Override
+	public TextDocument getNext() throws DocumentReadException, IOException {
+		File file = mFiles.get(mCurrentFileIndex++);
+		System.err.println("Reading file: " + mCurrentFileIndex + " of " + mFiles.size() + " total: " + file.getName());
+		return StandoffDocumentCodec.read(file);
+	}
+	
+}
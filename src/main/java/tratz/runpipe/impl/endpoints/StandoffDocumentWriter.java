@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+package tratz.runpipe.impl.endpoints;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import tratz.runpipe.EndPoint;
+import tratz.runpipe.InitializationException;
+import tratz.runpipe.ProcessException;
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.ThreadSafe;
+import tratz.runpipe.util.StandoffDocumentCodec;
+
+/**
+ * Writes each document to the output directory in the binary stand-off format (see StandoffDocumentCodec),
+ * to be read back by StandoffCorpusReader.
+ * Optionally (default: FAST) sets the compression: NONE, FAST or BEST.
+ */
+public class StandoffDocumentWriter implements EndPoint, ThreadSafe {
+	
+	public final static String PARAM_OUTPUT_DIR = "OutputDir";
+	public final static String PARAM_COMPRESSION = "Compression";
+	
+	public final static String FILE_EXTENSION = ".rpd";
+	
+	private File mOutputDir;
+	private StandoffDocumentCodec.Compression mCompression = StandoffDocumentCodec.Compression.FAST;
+	
+	public void initialize(Map<String, String> params) throws InitializationException {
+		mOutputDir = new File(params.get(PARAM_OUTPUT_DIR));
+		mOutputDir.mkdirs();
+		String compression = params.get(PARAM_COMPRESSION);
+		if(compression != null) {
+			try {
+				mCompression = StandoffDocumentCodec.Compression.valueOf(compression.toUpperCase());
+			}
+			catch(IllegalArgumentException iae) {
+				throw new InitializationException(iae);
+			}
+		}
+	}
+	
+	public void process(TextDocument doc) throws ProcessException {
+		String uri = doc.getUri();
+		String docFilename = uri.substring(uri.lastIndexOf(File.separatorChar)+1);
+		try {
+			StandoffDocumentCodec.write(doc, new File(mOutputDir, docFilename + FILE_EXTENSION), mCompression);
+		}
+		catch(IOException ioe) {
+			throw new ProcessException(ioe);
+		}
+	}
+	
+	public void batchFinished() {
+		// Nothing to do
+	}
+	
+}
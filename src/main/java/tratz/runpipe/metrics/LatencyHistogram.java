@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Values are counted in buckets of 8 per power of two, 
+ * so percentiles are accurate to within about 6%.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+	
+	// sub-buckets per power of two
+	private final static int SUB_BUCKET_BITS = 3;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private final static int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final static double NANOS_PER_MILLI = 1e6;
+	
+	private final String mName;
+	private final AtomicLongArray mCounts = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong mCount = new AtomicLong();
+	private final AtomicLong mTotal = new AtomicLong();
+	private final AtomicLong mMax = new AtomicLong();
+	
+	public LatencyHistogram(String name) {
+		mName = name;
+	}
+	
+	public String getName() {
+		return mName;
+	}
+	
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		mCounts.incrementAndGet(getBucket(nanos));
+		mCount.incrementAndGet();
+		mTotal.addAndGet(nanos);
+		long max;
+		while(nanos > (max = mMax.get()) && !mMax.compareAndSet(max, nanos)) {
+			// retry
+		}
+	}
+	
+	private static int getBucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int octave = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	private static long getBucketStart(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int octave = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << (octave - SUB_BUCKET_BITS);
+	}
+	
+	private static long getBucketWidth(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return 1;
+		}
+		int octave = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return 1L << (octave - SUB_BUCKET_BITS);
+	}
+	
+	public long getCount() {
+		return mCount.get();
+	}
+	
+	public long getTotalNanos() {
+		return mTotal.get();
+	}
+	
+	/**
+	 * Returns the (approximate) latency in nanoseconds that the fraction (0-1) of the recorded latencies don't exceed
+	 */
+	public long getPercentileNanos(double fraction) {
+		// the counts may be updated as we go; take the total from the buckets themselves
+		long[] counts = new long[NUM_BUCKETS];
+		long count = 0;
+		for(int b = 0; b < NUM_BUCKETS; b++) {
+			counts[b] = mCounts.get(b);
+			count += counts[b];
+		}
+		if(count == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(fraction * count);
+		long seen = 0;
+		for(int b = 0; b < NUM_BUCKETS; b++) {
+			seen += counts[b];
+			if(seen >= rank && counts[b] > 0) {
+				// middle of the bucket, but never above the maximum
+				return Math.min(getBucketStart(b) + getBucketWidth(b) / 2, mMax.get());
+			}
+		}
+		return mMax.get();
+	}
+	
+	public double getMeanMillis() {
+		long count = mCount.get();
+		return count == 0 ? 0 : mTotal.get() / NANOS_PER_MILLI / count;
+	}
+	
+	public double getMedianMillis() {
+		return getPercentileNanos(0.5) / NANOS_PER_MILLI;
+	}
+	
+	public double get95thPercentileMillis() {
+		return getPercentileNanos(0.95) / NANOS_PER_MILLI;
+	}
+	
+	public double get99thPercentileMillis() {
+		return getPercentileNanos(0.99) / NANOS_PER_MILLI;
+	}
+	
+	public double getMaxMillis() {
+		return mMax.get() / NANOS_PER_MILLI;
+	}
+	
+	public double getTotalSeconds() {
+		return mTotal.get() / (NANOS_PER_MILLI * 1000);
+	}
+	
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.metrics;
+
+/**
+ * JMX view of a LatencyHistogram
+ */
+public interface LatencyHistogramMXBean {
+	
+	public String getName();
+	
+	public long getCount();
+	
+	public double getMeanMillis();
+	
+	public double getMedianMillis();
+	
+	public double get95thPercentileMillis();
+	
+	public double get99thPercentileMillis();
+	
+	public double getMaxMillis();
+	
+	public double getTotalSeconds();
+	
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a PipeMetrics, either as text or as CSV rows of timestamp,pipe,metric,value
+ * (one row per metric, so that the columns don't depend on the pipe). A last report is written when stopped.
+ */
+public class MetricsReporter {
+	
+	public final static String CSV_HEADER = "timestamp,pipe,metric,value";
+	
+	private final PipeMetrics mMetrics;
+	private final PrintWriter mWriter;
+	private final boolean mCsv;
+	private final boolean mCloseWriter;
+	private ScheduledExecutorService mScheduler;
+	
+	/**
+	 * Reports as text to standard error
+	 */
+	public MetricsReporter(PipeMetrics metrics) {
+		mMetrics = metrics;
+		mWriter = new PrintWriter(new OutputStreamWriter(System.err), true);
+		mCsv = false;
+		mCloseWriter = false;
+	}
+	
+	/**
+	 * Appends CSV rows to the file (writing the header if the file is new)
+	 */
+	public MetricsReporter(PipeMetrics metrics, File csvFile) throws IOException {
+		mMetrics = metrics;
+		boolean newFile = !csvFile.exists() || csvFile.length() == 0;
+		mWriter = new PrintWriter(new FileWriter(csvFile, true));
+		mCsv = true;
+		mCloseWriter = true;
+		if(newFile) {
+			mWriter.println(CSV_HEADER);
+			mWriter.flush();
+		}
+	}
+	
+	/**
+	 * Starts reporting every intervalSeconds (if positive) on a daemon thread
+	 */
+	public void start(long intervalSeconds) {
+		if(intervalSeconds > 0) {
+			mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "metrics-" + mMetrics.getName());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			mScheduler.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					report();
+				}
+			}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+	
+	/**
+	 * Stops the periodic reports and writes the final one
+	 */
+	public void stop() {
+		if(mScheduler != null) {
+			mScheduler.shutdownNow();
+			try {
+				mScheduler.awaitTermination(1, TimeUnit.SECONDS);
+			}
+			catch(InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			mScheduler = null;
+		}
+		report();
+		if(mCloseWriter) {
+			mWriter.close();
+		}
+	}
+	
+	public synchronized void report() {
+		if(mCsv) {
+			writeCsv();
+		}
+		else {
+			writeText();
+		}
+		mWriter.flush();
+	}
+	
+	private void writeText() {
+		PipeMetrics m = mMetrics;
+		mWriter.println(String.format("=== %s metrics after %.1f s ===", m.getName(), m.getElapsedSeconds()));
+		mWriter.println(String.format("documents: %d (%.2f/s)  sentences: %d (%.1f/s)  tokens: %d (%.1f/s)", 
+				m.getDocuments(), m.getDocumentsPerSecond(), m.getSentences(), m.getSentencesPerSecond(), m.getTokens(), m.getTokensPerSecond()));
+		mWriter.println(String.format("heap: %d MB used of %d MB", m.getHeapUsedBytes() >> 20, m.getHeapMaxBytes() >> 20));
+		for(Map.Entry<String, Integer> queue : m.getQueueDepths().entrySet()) {
+			mWriter.println("queue " + queue.getKey() + ": " + queue.getValue());
+		}
+		mWriter.println(String.format("%-40s %8s %10s %10s %10s %10s %10s %10s", "component", "count", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "total s"));
+		for(LatencyHistogram latency : m.getLatencies()) {
+			mWriter.println(String.format("%-40s %8d %10.3f %10.3f %10.3f %10.3f %10.3f %10.2f", latency.getName(), latency.getCount(), 
+					latency.getMeanMillis(), latency.getMedianMillis(), latency.get95thPercentileMillis(), latency.get99thPercentileMillis(), 
+					latency.getMaxMillis(), latency.getTotalSeconds()));
+		}
+	}
+	
+	private void writeCsv() {
+		PipeMetrics m = mMetrics;
+		long timestamp = System.currentTimeMillis();
+		writeRow(timestamp, "elapsed_s", m.getElapsedSeconds());
+		writeRow(timestamp, "documents", m.getDocuments());
+		writeRow(timestamp, "sentences", m.getSentences());
+		writeRow(timestamp, "tokens", m.getTokens());
+		writeRow(timestamp, "documents_per_s", m.getDocumentsPerSecond());
+		writeRow(timestamp, "sentences_per_s", m.getSentencesPerSecond());
+		writeRow(timestamp, "tokens_per_s", m.getTokensPerSecond());
+		writeRow(timestamp, "heap_used_bytes", m.getHeapUsedBytes());
+		writeRow(timestamp, "heap_max_bytes", m.getHeapMaxBytes());
+		for(Map.Entry<String, Integer> queue : m.getQueueDepths().entrySet()) {
+			writeRow(timestamp, "queue." + queue.getKey(), queue.getValue());
+		}
+		for(LatencyHistogram latency : m.getLatencies()) {
+			String name = latency.getName();
+			writeRow(timestamp, name + ".count", latency.getCount());
+			writeRow(timestamp, name + ".mean_ms", latency.getMeanMillis());
+			writeRow(timestamp, name + ".p50_ms", latency.getMedianMillis());
+			writeRow(timestamp, name + ".p95_ms", latency.get95thPercentileMillis());
+			writeRow(timestamp, name + ".p99_ms", latency.get99thPercentileMillis());
+			writeRow(timestamp, name + ".max_ms", latency.getMaxMillis());
+			writeRow(timestamp, name + ".total_s", latency.getTotalSeconds());
+		}
+	}
+	
+	private void writeRow(long timestamp, String metric, Object value) {
+		mWriter.println(timestamp + "," + mMetrics.getName() + "," + metric + "," + value);
+	}
+	
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import tratz.runpipe.Annotator;
+import tratz.runpipe.EndPoint;
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.annotations.Sentence;
+import tratz.runpipe.annotations.Token;
+
+/**
+ * Metrics of one run of a Pipe: the latency of each annotator and end point, the documents, sentences and
+ * tokens processed, the depths of the pipe's queues and the heap usage. Published through JMX (under
+ * tratz.runpipe:type=Pipe) while registered, and written out by a MetricsReporter.
+ */
+public class PipeMetrics implements PipeMetricsMXBean {
+	
+	public final static String JMX_DOMAIN = "tratz.runpipe";
+	
+	private final static AtomicInteger sPipeCount = new AtomicInteger();
+	
+	private final String mName;
+	private final long mStartNanos = System.nanoTime();
+	private final List<LatencyHistogram> mAnnotatorLatencies = new ArrayList<LatencyHistogram>();
+	private final Map<EndPoint, LatencyHistogram> mEndPointLatencies = new LinkedHashMap<EndPoint, LatencyHistogram>();
+	private final Map<String, Collection<?>> mQueues = new LinkedHashMap<String, Collection<?>>();
+	private final AtomicLong mDocuments = new AtomicLong();
+	private final AtomicLong mSentences = new AtomicLong();
+	private final AtomicLong mTokens = new AtomicLong();
+	
+	private final List<ObjectName> mRegisteredNames = new ArrayList<ObjectName>();
+	
+	public PipeMetrics(List<Annotator> annotators, List<EndPoint> endPoints) {
+		mName = "pipe" + sPipeCount.incrementAndGet();
+		int index = 1;
+		for(Annotator annotator : annotators) {
+			mAnnotatorLatencies.add(new LatencyHistogram("annotator" + (index++) + "." + annotator.getClass().getSimpleName()));
+		}
+		index = 1;
+		for(EndPoint endPoint : endPoints) {
+			mEndPointLatencies.put(endPoint, new LatencyHistogram("endpoint" + (index++) + "." + endPoint.getClass().getSimpleName()));
+		}
+	}
+	
+	public String getName() {
+		return mName;
+	}
+	
+	/**
+	 * Latencies of the annotator at the index (the pipe's order) and its per-thread copies
+	 */
+	public LatencyHistogram getAnnotatorLatency(int index) {
+		return mAnnotatorLatencies.get(index);
+	}
+	
+	public LatencyHistogram getEndPointLatency(EndPoint endPoint) {
+		return mEndPointLatencies.get(endPoint);
+	}
+	
+	/**
+	 * The annotator latencies followed by the end point latencies
+	 */
+	public List<LatencyHistogram> getLatencies() {
+		List<LatencyHistogram> latencies = new ArrayList<LatencyHistogram>(mAnnotatorLatencies);
+		latencies.addAll(mEndPointLatencies.values());
+		return latencies;
+	}
+	
+	/**
+	 * Counts the document, which has been through the whole pipe
+	 */
+	public void documentFinished(TextDocument doc) {
+		mDocuments.incrementAndGet();
+		List sentences = doc.getAnnotationList(Sentence.class);
+		if(sentences != null) {
+			mSentences.addAndGet(sentences.size());
+		}
+		List tokens = doc.getAnnotationList(Token.class);
+		if(tokens != null) {
+			mTokens.addAndGet(tokens.size());
+		}
+	}
+	
+	/**
+	 * Adds a queue whose size is reported as a queue depth. The queue must be safe to read from other threads.
+	 */
+	public synchronized void registerQueue(String name, Collection<?> queue) {
+		mQueues.put(name, queue);
+	}
+	
+	public synchronized Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> depths = new LinkedHashMap<String, Integer>();
+		for(Map.Entry<String, Collection<?>> entry : mQueues.entrySet()) {
+			depths.put(entry.getKey(), entry.getValue().size());
+		}
+		return depths;
+	}
+	
+	public double getElapsedSeconds() {
+		return (System.nanoTime() - mStartNanos) / 1e9;
+	}
+	
+	public long getDocuments() {
+		return mDocuments.get();
+	}
+	
+	public long getSentences() {
+		return mSentences.get();
+	}
+	
+	public long getTokens() {
+		return mTokens.get();
+	}
+	
+	public double getDocumentsPerSecond() {
+		return perSecond(mDocuments.get());
+	}
+	
+	public double getSentencesPerSecond() {
+		return perSecond(mSentences.get());
+	}
+	
+	public double getTokensPerSecond() {
+		return perSecond(mTokens.get());
+	}
+	
+	private double perSecond(long count) {
+		double seconds = getElapsedSeconds();
+		return seconds > 0 ? count / seconds : 0;
+	}
+	
+	public long getHeapUsedBytes() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	
+	public long getHeapMaxBytes() {
+		MemoryUsage usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		return usage.getMax() < 0 ? usage.getCommitted() : usage.getMax();
+	}
+	
+	/**
+	 * Registers the metrics and the latency histograms with the platform MBean server
+	 */
+	public synchronized void registerMBeans() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pipeName = new ObjectName(JMX_DOMAIN + ":type=Pipe,name=" + mName);
+		server.registerMBean(this, pipeName);
+		mRegisteredNames.add(pipeName);
+		for(LatencyHistogram latency : getLatencies()) {
+			ObjectName latencyName = new ObjectName(JMX_DOMAIN + ":type=Pipe,name=" + mName + ",component=" + ObjectName.quote(latency.getName()));
+			server.registerMBean(latency, latencyName);
+			mRegisteredNames.add(latencyName);
+		}
+	}
+	
+	public synchronized void unregisterMBeans() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for(ObjectName name : mRegisteredNames) {
+			server.unregisterMBean(name);
+		}
+		mRegisteredNames.clear();
+	}
+	
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a running Pipe's PipeMetrics
+ */
+public interface PipeMetricsMXBean {
+	
+	public double getElapsedSeconds();
+	
+	public long getDocuments();
+	
+	public long getSentences();
+	
+	public long getTokens();
+	
+	public double getDocumentsPerSecond();
+	
+	public double getSentencesPerSecond();
+	
+	public double getTokensPerSecond();
+	
+	public long getHeapUsedBytes();
+	
+	public long getHeapMaxBytes();
+	
+	/**
+	 * Number of documents waiting in each of the pipe's queues
+	 */
+	public Map<String, Integer> getQueueDepths();
+	
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tratz.runpipe.TextDocument;
+
+/**
+ * On-disk cache of byte arrays keyed by content hash (see KeyBuilder). Each entry is a file named by its key,
+ * so the cache survives between runs. When the entries exceed the size limit the least recently used
+ * ones are deleted; an entry's last use is its file's modification time. Several processes may share
+ * the directory: entries are written to uniquely named temporary files and renamed into place.
+ */
+public class ContentCache {
+	
+	public final static String ENTRY_EXTENSION = ".entry";
+	private final static String TEMP_EXTENSION = ".tmp";
+	// temporary files older than this were left by an interrupted put (younger ones may be another process's)
+	private final static long STALE_TEMP_MILLIS = 24*60*60*1000L;
+	private final static int BUFFER_SIZE = 1 << 16;
+	
+	private final File mDirectory;
+	private final long mMaxBytes;
+	// entry sizes in order of use, least recently used first
+	private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long mTotalBytes;
+	
+	private long mHits;
+	private long mMisses;
+	
+	/**
+	 * Opens (creating if necessary) the cache in the directory, holding at most maxBytes of entries
+	 */
+	public ContentCache(File directory, long maxBytes) throws IOException {
+		mDirectory = directory;
+		mMaxBytes = maxBytes;
+		if(!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+			throw new IOException("Unable to create cache directory: " + mDirectory);
+		}
+		List<File> entryFiles = new ArrayList<File>();
+		long staleTime = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+		File[] subdirs = mDirectory.listFiles();
+		for(File subdir : subdirs) {
+			File[] files = subdir.listFiles();
+			if(files != null) {
+				for(File file : files) {
+					if(file.getName().endsWith(ENTRY_EXTENSION)) {
+						entryFiles.add(file);
+					}
+					else if(file.getName().endsWith(TEMP_EXTENSION) && file.lastModified() < staleTime) {
+						// left by an interrupted put
+						file.delete();
+					}
+				}
+			}
+		}
+		Collections.sort(entryFiles, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				long m1 = f1.lastModified();
+				long m2 = f2.lastModified();
+				return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+			}
+		});
+		for(File file : entryFiles) {
+			String name = file.getName();
+			long size = file.length();
+			mEntries.put(name.substring(0, name.length()-ENTRY_EXTENSION.length()), size);
+			mTotalBytes += size;
+		}
+		evict();
+	}
+	
+	public File getDirectory() {
+		return mDirectory;
+	}
+	
+	/**
+	 * Returns the entry or null if there is none
+	 */
+	public synchronized byte[] get(String key) {
+		if(mEntries.get(key) == null) {
+			mMisses++;
+			return null;
+		}
+		File file = getFile(key);
+		try {
+			byte[] data = readFully(file);
+			file.setLastModified(System.currentTimeMillis());
+			mHits++;
+			return data;
+		}
+		catch(IOException ioe) {
+			// deleted or damaged behind our back
+			remove(key);
+			mMisses++;
+			return null;
+		}
+	}
+	
+	/**
+	 * Adds (or replaces) the entry, evicting the least recently used entries if the cache is over its limit
+	 */
+	public synchronized void put(String key, byte[] data) throws IOException {
+		File file = getFile(key);
+		File parent = file.getParentFile();
+		if(!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Unable to create cache directory: " + parent);
+		}
+		// write to a temporary file first so that a reader never sees a partial entry
+		File tempFile = File.createTempFile(key, TEMP_EXTENSION, parent);
+		boolean written = false;
+		OutputStream os = new FileOutputStream(tempFile);
+		try {
+			os.write(data);
+			written = true;
+		}
+		finally {
+			os.close();
+			if(!written) {
+				tempFile.delete();
+			}
+		}
+		remove(key);
+		if(!tempFile.renameTo(file)) {
+			tempFile.delete();
+			throw new IOException("Unable to create cache entry: " + file);
+		}
+		mEntries.put(key, (long)data.length);
+		mTotalBytes += data.length;
+		evict();
+	}
+	
+	public synchronized void remove(String key) {
+		Long size = mEntries.remove(key);
+		if(size != null) {
+			mTotalBytes -= size;
+		}
+		getFile(key).delete();
+	}
+	
+	public synchronized long getTotalBytes() {
+		return mTotalBytes;
+	}
+	
+	public synchronized int getNumEntries() {
+		return mEntries.size();
+	}
+	
+	public synchronized long getNumHits() {
+		return mHits;
+	}
+	
+	public synchronized long getNumMisses() {
+		return mMisses;
+	}
+	
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+		while(mTotalBytes > mMaxBytes && it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			it.remove();
+			mTotalBytes -= entry.getValue();
+			getFile(entry.getKey()).delete();
+		}
+	}
+	
+	private File getFile(String key) {
+		return new File(new File(mDirectory, key.substring(0, 2)), key + ENTRY_EXTENSION);
+	}
+	
+	public static byte[] readFully(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int)file.length());
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int numRead = 0;
+			while((numRead = is.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, numRead);
+			}
+			return bytes.toByteArray();
+		}
+		finally {
+			is.close();
+		}
+	}
+	
+	/**
+	 * Builds a cache key (a SHA-1 hex string) from content and from fingerprints of the configuration
+	 */
+	public static class KeyBuilder {
+		
+		private final MessageDigest mDigest;
+		
+		public KeyBuilder() {
+			try {
+				mDigest = MessageDigest.getInstance("SHA-1");
+			}
+			catch(NoSuchAlgorithmException nsae) {
+				// every Java platform has SHA-1
+				throw new RuntimeException(nsae);
+			}
+		}
+		
+		public KeyBuilder add(String s) {
+			if(s == null) {
+				mDigest.update((byte)0);
+			}
+			else {
+				byte[] bytes = s.getBytes(StandoffDocumentCodec.UTF8);
+				addLength(bytes.length);
+				mDigest.update(bytes);
+			}
+			return this;
+		}
+		
+		public KeyBuilder add(byte[] bytes) {
+			addLength(bytes.length);
+			mDigest.update(bytes);
+			return this;
+		}
+		
+		/**
+		 * Adds the contents of the file
+		 */
+		public KeyBuilder addContents(File file) throws IOException {
+			return add(readFully(file));
+		}
+		
+		/**
+		 * Adds the document's text and annotations (in their stand-off encoding). The URI is left out
+		 * so that a document keeps its key when the corpus is moved.
+		 */
+		public KeyBuilder add(TextDocument doc) throws IOException {
+			OutputStream nowhere = new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			};
+			String uri = doc.getUri();
+			doc.setUri("");
+			try {
+				StandoffDocumentCodec.write(doc, new DigestOutputStream(nowhere, mDigest), StandoffDocumentCodec.Compression.NONE);
+			}
+			finally {
+				doc.setUri(uri);
+			}
+			return this;
+		}
+		
+		/**
+		 * Adds the path, length and modification time of the file, or of every file under the directory.
+		 * Cheaper than the contents for large model and data files.
+		 */
+		public KeyBuilder addFingerprint(File file) {
+			add(file.getAbsolutePath());
+			File[] children = file.listFiles();
+			if(children != null) {
+				Arrays.sort(children);
+				for(File child : children) {
+					addFingerprint(child);
+				}
+			}
+			else {
+				addLength(file.length());
+				addLength(file.lastModified());
+			}
+			return this;
+		}
+		
+		/**
+		 * Adds the fingerprint of the jar or class directory the class was loaded from, so that keys change
+		 * when the code does
+		 */
+		public KeyBuilder addCodeFingerprint(Class c) {
+			add(c.getName());
+			try {
+				CodeSource source = c.getProtectionDomain().getCodeSource();
+				if(source != null && source.getLocation() != null && source.getLocation().getProtocol().equals("file")) {
+					addFingerprint(new File(source.getLocation().toURI()));
+				}
+			}
+			catch(URISyntaxException use) {
+				// just the class name then
+			}
+			return this;
+		}
+		
+		private void addLength(long length) {
+			for(int shift = 56; shift >= 0; shift -= 8) {
+				mDigest.update((byte)(length >>> shift));
+			}
+		}
+		
+		public String toKey() {
+			byte[] hash = mDigest.digest();
+			StringBuilder buf = new StringBuilder(hash.length*2);
+			for(byte b : hash) {
+				buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return buf.toString();
+		}
+		
+	}
+	
+}
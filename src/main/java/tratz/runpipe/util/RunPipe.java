@@ -16,6 +16,7 @@
 
 package tratz.runpipe.util;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -28,7 +29,9 @@ import tratz.runpipe.Annotator;
 import tratz.runpipe.CorpusReader;
 import tratz.runpipe.EndPoint;
 import tratz.runpipe.Pipe;
+import tratz.runpipe.StagedPipe;
 import tratz.runpipe.TextDocumentReader;
+import tratz.runpipe.impl.corpusreader.DirectoryCorpusReader;
 
 /**
  * Basic script for running a pipeline
@@ -40,11 +43,48 @@ public class RunPipe {
 	public final static String CORPUS_READER = "-corpusreader";
 	public final static String DOC_READER = "-documentreader";
 	public final static String END_POINT = "-endpoint";
+	// Optional: number of documents processed concurrently (see Pipe.setNumThreads)
+	public final static String THREADS = "-threads";
+	// Optional: whether end points see documents in corpus order when using several threads (true or false)
+	public final static String ORDERED = "-ordered";
+	// Optional: run each annotator as a stage with its own threads, e.g. 1,4,2 (see StagedPipe)
+	public final static String STAGE_THREADS = "-stagethreads";
+	// Optional: capacity of the queue in front of each stage of a staged pipeline
+	public final static String QUEUE_CAPACITY = "-queuecapacity";
+	// Optional: directory of the cache of annotated documents (see Pipe.setDocumentCache), none if empty
+	public final static String CACHE_DIR = "-cachedir";
+	// Optional: size limit of the document cache in megabytes
+	public final static String CACHE_SIZE = "-cachesize";
 	
-	private final static Set<String> KNOWN_ARG_TYPES = new HashSet<String>(Arrays.asList(new String[]{CORPUS_READER, DOC_READER,ANNOTATOR, END_POINT}));
+	// Optional: collect metrics (see Pipe.enableMetrics), reporting them every so many seconds (0 for only at the end)
+	public final static String METRICS = "-metrics";
+	// Optional: CSV file to append the metrics to (implies -metrics); otherwise they are written to standard error
+	public final static String METRICS_FILE = "-metricsfile";
+	
+	// Optional: file to write a manifest of the processed documents to on completion (see ShardManifest), none if empty;
+	// the shard is taken from the corpus reader's Shard parameter
+	public final static String MANIFEST = "-manifest";
+	
+	public final static long DEFAULT_CACHE_SIZE_MB = 1024;
+	
+	private final static Set<String> KNOWN_ARG_TYPES = new HashSet<String>(Arrays.asList(new String[]{CORPUS_READER, DOC_READER,ANNOTATOR, END_POINT, THREADS, ORDERED, STAGE_THREADS, QUEUE_CAPACITY, CACHE_DIR, CACHE_SIZE, METRICS, METRICS_FILE, MANIFEST}));
 	
 	public static void main(String[] args) throws Exception {
-		Pipe pipe = new Pipe();
+		// Run the pipeline
+		Pipe pipe = createPipe(args);
+		try {
+			pipe.go();
+		}
+		finally {
+			pipe.close();
+		}
+	}
+	
+	/**
+	 * Builds (but does not initialize) the pipeline described by the arguments
+	 */
+	public static Pipe createPipe(String[] args) throws Exception {
+		Pipe pipe = Arrays.asList(args).contains(STAGE_THREADS) ? new StagedPipe() : new Pipe();
 		
 		// Names of pipe components
 		String corpusReaderClassName = null;
@@ -58,6 +98,12 @@ public class RunPipe {
 		List<Map<String, String>> annotatorParams = new ArrayList<Map<String,String>>();
 		List<Map<String, String>> endPointParams = new ArrayList<Map<String,String>>();
 		
+		String cacheDir = null;
+		long cacheSizeMB = DEFAULT_CACHE_SIZE_MB;
+		Long metricsInterval = null;
+		File metricsFile = null;
+		File manifestFile = null;
+		
 		// Interpret the arguments
 		for(int argIndex = 0; argIndex < args.length;) {
 			final String arg = args[argIndex];
@@ -78,6 +124,59 @@ public class RunPipe {
 				endPointClassNameList.add(args[++argIndex]);
 				endPointParams.add(params = new HashMap<String, String>());
 			}
+			else if(arg.equals(THREADS)) {
+				pipe.setNumThreads(Integer.parseInt(args[++argIndex]));
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(ORDERED)) {
+				pipe.setOrderedEndPoints(Boolean.parseBoolean(args[++argIndex]));
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(STAGE_THREADS)) {
+				String[] split = args[++argIndex].split(",");
+				int[] stageThreads = new int[split.length];
+				for(int i = 0; i < split.length; i++) {
+					stageThreads[i] = Integer.parseInt(split[i].trim());
+				}
+				((StagedPipe)pipe).setStageThreads(stageThreads);
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(QUEUE_CAPACITY)) {
+				if(!(pipe instanceof StagedPipe)) {
+					throw new IllegalArgumentException(QUEUE_CAPACITY + " requires " + STAGE_THREADS);
+				}
+				((StagedPipe)pipe).setQueueCapacity(Integer.parseInt(args[++argIndex]));
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(CACHE_DIR)) {
+				cacheDir = args[++argIndex];
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(CACHE_SIZE)) {
+				cacheSizeMB = Long.parseLong(args[++argIndex]);
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(METRICS)) {
+				metricsInterval = Long.parseLong(args[++argIndex]);
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(METRICS_FILE)) {
+				metricsFile = new File(args[++argIndex]);
+				argIndex++;
+				continue;
+			}
+			else if(arg.equals(MANIFEST)) {
+				manifestFile = new File(args[++argIndex]);
+				argIndex++;
+				continue;
+			}
 			else {
 				throw new IllegalArgumentException("Unknown arg type: " + args[argIndex]);
 			}
@@ -104,9 +203,19 @@ public class RunPipe {
 			EndPoint epu = (EndPoint)Class.forName(endPointClassNameList.get(i)).newInstance();
 			pipe.addEndProcessingUnit(epu, endPointParams.get(i));
 		}
+		
+		if(cacheDir != null && cacheDir.length() > 0) {
+			pipe.setDocumentCache(new ContentCache(new File(cacheDir), cacheSizeMB << 20));
+		}
+		if(metricsInterval != null || metricsFile != null) {
+			pipe.enableMetrics(metricsInterval == null ? 0 : metricsInterval, metricsFile);
+		}
+		if(manifestFile != null && manifestFile.getPath().length() > 0) {
+			String shard = corpusReaderParams.get(DirectoryCorpusReader.PARAM_SHARD);
+			pipe.setManifest(manifestFile, shard == null || shard.length() == 0 ? null : Shard.parse(shard));
+		}
 
-		// Run the pipeline
-		pipe.go();
+		return pipe;
 	}
 	
 	private static int populateArgumentMap(int currentIndex, String[] args, Map<String, String> paramMap) {
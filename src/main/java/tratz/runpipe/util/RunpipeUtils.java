@@ -19,23 +19,42 @@ package tratz.runpipe.util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.Set;
 
 import tratz.runpipe.Annotation;
 import tratz.runpipe.TextDocument;
+import tratz.runpipe.impl.IndexedAnnotationList;
 
 public class RunpipeUtils {
 	
+	/**
+	 * Returns a new list of the annotations of the (sorted) list lying entirely within the boundary annotation
+	 */
 	public static <T extends Annotation> List<T> getSublist(Annotation boundaryAnnot, List<T> list) {
 		final int start = boundaryAnnot.getStart();
 		final int end = boundaryAnnot.getEnd();
+		if(list instanceof IndexedAnnotationList) {
+			return new ArrayList<T>(((IndexedAnnotationList<T>)list).getCovered(start, end));
+		}
 		
-		int result = Collections.binarySearch(list, boundaryAnnot);
-		result = -(result + 1);
-		result = Math.max(0, result-1);
-		List<T> subList = new ArrayList<T>();
 		final int numAnnots = list.size();
-		for(int i = 0; i < numAnnots; i++) {
+		int from = 0;
+		if(list instanceof RandomAccess) {
+			// first annotation starting at or after the boundary
+			int high = numAnnots;
+			while(from < high) {
+				int mid = (from + high) >>> 1;
+				if(list.get(mid).getStart() < start) {
+					from = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+		}
+		List<T> subList = new ArrayList<T>();
+		for(int i = from; i < numAnnots; i++) {
 			T annot = list.get(i);
 			final int annotStart = annot.getStart();
 			if(annotStart >= start) {
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+
+package tratz.runpipe.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.zip.CRC32;
+
+/**
+ * One of several shards that a corpus (or a list of topics) is divided into so that it can be processed by
+ * separate processes. Items are assigned by a hash of a key, such as the file name or the topic name, that
+ * does not depend on the JVM, the machine or what else is in the corpus, so every process agrees on the assignment.
+ */
+public class Shard {
+	
+	private final int mIndex;
+	private final int mNumShards;
+	
+	/**
+	 * @param index the shard, 0 to numShards-1
+	 */
+	public Shard(int index, int numShards) {
+		if(numShards < 1 || index < 0 || index >= numShards) {
+			throw new IllegalArgumentException("Invalid shard: " + index + "/" + numShards);
+		}
+		mIndex = index;
+		mNumShards = numShards;
+	}
+	
+	/**
+	 * Parses a shard written as index/numShards, e.g. 0/4
+	 */
+	public static Shard parse(String spec) {
+		int slashIndex = spec.indexOf('/');
+		if(slashIndex == -1) {
+			throw new IllegalArgumentException("Shard must be given as index/numShards: " + spec);
+		}
+		return new Shard(Integer.parseInt(spec.substring(0, slashIndex).trim()), Integer.parseInt(spec.substring(slashIndex+1).trim()));
+	}
+	
+	public int getIndex() {
+		return mIndex;
+	}
+	
+	public int getNumShards() {
+		return mNumShards;
+	}
+	
+	/**
+	 * Returns the shard (0 to numShards-1) that the key belongs to
+	 */
+	public static int getShardIndex(String key, int numShards) {
+		CRC32 crc = new CRC32();
+		try {
+			crc.update(key.getBytes("UTF-8"));
+		}
+		catch(UnsupportedEncodingException uee) {
+			throw new RuntimeException(uee);
+		}
+		return (int)(crc.getValue() % numShards);
+	}
+	
+	public boolean contains(String key) {
+		return getShardIndex(key, mNumShards) == mIndex;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof Shard)) {
+			return false;
+		}
+		Shard shard = (Shard)o;
+		return mIndex == shard.mIndex && mNumShards == shard.mNumShards;
+	}
+	
+	@Override
+	public int hashCode() {
+		return mIndex * 31 + mNumShards;
+	}
+	
+	@Override
+	public String toString() {
+		return mIndex + "/" + mNumShards;
+	}
+	
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+
+package tratz.runpipe.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record of what one shard of a sharded run processed. The manifest is written once the shard's work
+ * is complete (to a temporary file that is then renamed), so the presence of a manifest means the shard finished.
+ * The file holds a line "shard<tab>index/numShards" followed by one entry (e.g. a document or file name) per line.
+ */
+public class ShardManifest {
+	
+	public final static String MANIFEST_EXTENSION = ".manifest";
+	private final static String SHARD_PREFIX = "shard\t";
+	
+	private final Shard mShard;
+	private final List<String> mEntries;
+	
+	/**
+	 * @param shard the shard, or null for an unsharded run (recorded as shard 0/1)
+	 */
+	public ShardManifest(Shard shard, Collection<String> entries) {
+		mShard = shard == null ? new Shard(0, 1) : shard;
+		mEntries = new ArrayList<String>(entries);
+		Collections.sort(mEntries);
+	}
+	
+	public Shard getShard() {
+		return mShard;
+	}
+	
+	public List<String> getEntries() {
+		return mEntries;
+	}
+	
+	public void write(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if(!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Unable to create directory: " + parent);
+		}
+		File tempFile = new File(parent, file.getName() + ".tmp");
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+		writer.println(SHARD_PREFIX + mShard);
+		for(String entry : mEntries) {
+			writer.println(entry);
+		}
+		writer.close();
+		if(writer.checkError()) {
+			throw new IOException("Unable to write manifest: " + tempFile);
+		}
+		if(file.exists() && !file.delete()) {
+			throw new IOException("Unable to replace manifest: " + file);
+		}
+		if(!tempFile.renameTo(file)) {
+			throw new IOException("Unable to rename " + tempFile + " to " + file);
+		}
+	}
+	
+	public static ShardManifest read(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line = reader.readLine();
+			if(line == null || !line.startsWith(SHARD_PREFIX)) {
+				throw new IOException("Not a shard manifest: " + file);
+			}
+			Shard shard = Shard.parse(line.substring(SHARD_PREFIX.length()));
+			List<String> entries = new ArrayList<String>();
+			while((line = reader.readLine()) != null) {
+				if(line.length() > 0) {
+					entries.add(line);
+				}
+			}
+			return new ShardManifest(shard, entries);
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Reads the manifests in the given files and directories (taking the files ending in .manifest from a directory)
+	 */
+	public static List<ShardManifest> readAll(List<File> files) throws IOException {
+		List<ShardManifest> manifests = new ArrayList<ShardManifest>();
+		for(File file : files) {
+			if(file.isDirectory()) {
+				File[] dirFiles = file.listFiles();
+				List<File> manifestFiles = new ArrayList<File>();
+				for(File dirFile : dirFiles) {
+					if(dirFile.getName().endsWith(MANIFEST_EXTENSION)) {
+						manifestFiles.add(dirFile);
+					}
+				}
+				Collections.sort(manifestFiles);
+				for(File manifestFile : manifestFiles) {
+					manifests.add(read(manifestFile));
+				}
+			}
+			else {
+				manifests.add(read(file));
+			}
+		}
+		return manifests;
+	}
+	
+	/**
+	 * Checks that the manifests are of every shard of one sharding, each shard exactly once, and that no entry
+	 * appears in more than one manifest. Returns a description of each problem found (empty if there are none).
+	 */
+	public static List<String> verify(List<ShardManifest> manifests) {
+		List<String> problems = new ArrayList<String>();
+		if(manifests.isEmpty()) {
+			problems.add("No manifests");
+			return problems;
+		}
+		final int numShards = manifests.get(0).getShard().getNumShards();
+		ShardManifest[] shardToManifest = new ShardManifest[numShards];
+		Map<String, Shard> entryToShard = new HashMap<String, Shard>();
+		for(ShardManifest manifest : manifests) {
+			Shard shard = manifest.getShard();
+			if(shard.getNumShards() != numShards) {
+				problems.add("Shard " + shard + " is not one of " + numShards + " shards");
+				continue;
+			}
+			if(shardToManifest[shard.getIndex()] != null) {
+				problems.add("More than one manifest for shard " + shard);
+				continue;
+			}
+			shardToManifest[shard.getIndex()] = manifest;
+			for(String entry : manifest.getEntries()) {
+				Shard previous = entryToShard.put(entry, shard);
+				if(previous != null) {
+					problems.add("Entry " + entry + " in shards " + previous + " and " + shard);
+				}
+			}
+		}
+		for(int s = 0; s < numShards; s++) {
+			if(shardToManifest[s] == null) {
+				problems.add("Missing manifest for shard " + s + "/" + numShards);
+			}
+		}
+		return problems;
+	}
+	
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.runpipe.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import tratz.runpipe.Annotation;
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.annotations.Sentence;
+import tratz.runpipe.annotations.Token;
+import tratz.runpipe.impl.TextDocumentImpl;
+
+/**
+ * Reads and writes documents in a versioned binary stand-off format: the text and, for each annotation
+ * type, the start and end offsets as int arrays. Strings (parts of speech, lemmas, dependency labels, ...)
+ * are stored once in a table and referred to by index, and dependency arcs refer to tokens by index,
+ * so files hold no object graph and do not depend on the serialized form of the annotation classes.
+ *
+ * Layout (big-endian): magic, version, compression, then (compressed unless NONE)
+ *   uri, text, numStrings, strings, numTypes, and for each type:
+ *   class name, numAnnotations, int start[], int end[], then
+ *     Sentence: id[], sentenceNum[], parseString[]
+ *     Token:    pos[], lemma[], parentArc[], numDependents[], dependentArcs[], numArcs, arcHead[], arcChild[], arcDependency[]
+ *     StringAttributes: numAttributes[], attributes[]
+ * Strings are written as a length followed by UTF-8 bytes; string references are table indices, -1 for null.
+ *
+ * Annotations of other types are stored as offsets only, and their classes need a (TextDocument, int, int)
+ * or a (TextDocument) constructor.
+ */
+public class StandoffDocumentCodec {
+
+	public final static int MAGIC = 0x52504431; // "RPD1"
+	public final static int VERSION = 1;
+
+	public final static Charset UTF8 = Charset.forName("UTF-8");
+
+	public enum Compression {
+		NONE,
+		// Deflate at its fastest level
+		FAST,
+		// Deflate at its strongest level
+		BEST
+	}
+
+	/**
+	 * For annotation types with String fields besides their offsets
+	 */
+	public interface StringAttributes {
+		public String[] getStringAttributes();
+		public void setStringAttributes(String[] attributes);
+	}
+
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	public static void write(TextDocument doc, File file, Compression compression) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			write(doc, os, compression);
+		}
+		finally {
+			os.close();
+		}
+	}
+
+	public static TextDocument read(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			return read(is);
+		}
+		finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Returns true if the file starts with the stand-off document magic number
+	 */
+	public static boolean isStandoffFile(File file) throws IOException {
+		if(file.length() < 4) {
+			return false;
+		}
+		DataInputStream dis = new DataInputStream(new FileInputStream(file));
+		try {
+			return dis.readInt() == MAGIC;
+		}
+		finally {
+			dis.close();
+		}
+	}
+
+	/**
+	 * Writes the document to the stream, which is flushed but not closed
+	 */
+	public static void write(TextDocument doc, OutputStream os, Compression compression) throws IOException {
+		DataOutputStream header = new DataOutputStream(os);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeByte(compression.ordinal());
+		header.flush();
+
+		Deflater deflater = null;
+		DeflaterOutputStream deflaterStream = null;
+		OutputStream bodyStream = os;
+		if(compression != Compression.NONE) {
+			deflater = new Deflater(compression == Compression.FAST ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION);
+			bodyStream = deflaterStream = new DeflaterOutputStream(os, deflater, BUFFER_SIZE);
+		}
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(bodyStream, BUFFER_SIZE));
+			writeBody(doc, dos);
+			dos.flush();
+			if(deflaterStream != null) {
+				deflaterStream.finish();
+			}
+			os.flush();
+		}
+		finally {
+			if(deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	public static TextDocument read(InputStream is) throws IOException {
+		DataInputStream header = new DataInputStream(is);
+		if(header.readInt() != MAGIC) {
+			throw new IOException("Not a stand-off document");
+		}
+		int version = header.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported stand-off document version: " + version);
+		}
+		int compressionIndex = header.readByte();
+		if(compressionIndex < 0 || compressionIndex >= Compression.values().length) {
+			throw new IOException("Unknown compression: " + compressionIndex);
+		}
+		Compression compression = Compression.values()[compressionIndex];
+
+		Inflater inflater = null;
+		InputStream bodyStream = is;
+		if(compression != Compression.NONE) {
+			inflater = new Inflater();
+			bodyStream = new InflaterInputStream(is, inflater, BUFFER_SIZE);
+		}
+		try {
+			return readBody(new DataInputStream(new BufferedInputStream(bodyStream, BUFFER_SIZE)));
+		}
+		finally {
+			if(inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+
+	private static class StringTable {
+		private Map<String, Integer> mIds = new HashMap<String, Integer>();
+		private List<String> mStrings = new ArrayList<String>();
+		public int getId(String s) {
+			if(s == null) {
+				return -1;
+			}
+			Integer id = mIds.get(s);
+			if(id == null) {
+				mIds.put(s, id = mStrings.size());
+				mStrings.add(s);
+			}
+			return id;
+		}
+	}
+
+	private static void writeBody(TextDocument doc, DataOutputStream dos) throws IOException {
+		StringTable strings = new StringTable();
+
+		// The annotations are written first (to a buffer) to fill the string table
+		List<Class> types = new ArrayList<Class>(doc.getAnnotationTypes());
+		Collections.sort(types, new Comparator<Class>() {
+			public int compare(Class c1, Class c2) {
+				return c1.getName().compareTo(c2.getName());
+			}
+		});
+		ByteArrayOutputStream annotationBytes = new ByteArrayOutputStream();
+		DataOutputStream annotationStream = new DataOutputStream(annotationBytes);
+		int numTypes = 0;
+		for(Class type : types) {
+			List<? extends Annotation> annots = doc.getAnnotationList(type);
+			if(annots != null && annots.size() > 0) {
+				writeAnnotations(type, annots, annotationStream, strings);
+				numTypes++;
+			}
+		}
+		annotationStream.flush();
+
+		writeString(dos, doc.getUri());
+		writeString(dos, doc.getText());
+		dos.writeInt(strings.mStrings.size());
+		for(String s : strings.mStrings) {
+			writeString(dos, s);
+		}
+		dos.writeInt(numTypes);
+		annotationBytes.writeTo(dos);
+	}
+
+	private static void writeAnnotations(Class type, List<? extends Annotation> annots, DataOutputStream dos, StringTable strings) throws IOException {
+		final int numAnnots = annots.size();
+		writeString(dos, type.getName());
+		dos.writeInt(numAnnots);
+		for(Annotation annot : annots) {
+			dos.writeInt(annot.getStart());
+		}
+		for(Annotation annot : annots) {
+			dos.writeInt(annot.getEnd());
+		}
+		if(type == Sentence.class) {
+			for(Annotation annot : annots) {
+				dos.writeInt(strings.getId(((Sentence)annot).getId()));
+			}
+			for(Annotation annot : annots) {
+				dos.writeInt(((Sentence)annot).getSentenceNum());
+			}
+			for(Annotation annot : annots) {
+				dos.writeInt(strings.getId(((Sentence)annot).getParseString()));
+			}
+		}
+		else if(type == Token.class) {
+			writeTokenFields((List<Token>)annots, dos, strings);
+		}
+		else if(StringAttributes.class.isAssignableFrom(type)) {
+			List<String[]> attributeArrays = new ArrayList<String[]>(numAnnots);
+			for(Annotation annot : annots) {
+				String[] attributes = ((StringAttributes)annot).getStringAttributes();
+				attributeArrays.add(attributes);
+				dos.writeInt(attributes == null ? -1 : attributes.length);
+			}
+			for(String[] attributes : attributeArrays) {
+				if(attributes != null) {
+					for(String attribute : attributes) {
+						dos.writeInt(strings.getId(attribute));
+					}
+				}
+			}
+		}
+	}
+
+	private static void writeTokenFields(List<Token> tokens, DataOutputStream dos, StringTable strings) throws IOException {
+		Map<Token, Integer> tokenToIndex = new IdentityHashMap<Token, Integer>();
+		for(Token token : tokens) {
+			tokenToIndex.put(token, tokenToIndex.size());
+		}
+		for(Token token : tokens) {
+			dos.writeInt(strings.getId(token.getPos()));
+		}
+		for(Token token : tokens) {
+			dos.writeInt(strings.getId(token.getLemma()));
+		}
+		// Arcs are numbered as they are first seen so that the parent arc and the head's dependent arc stay one object
+		Map<Token.Arc, Integer> arcToIndex = new IdentityHashMap<Token.Arc, Integer>();
+		List<Token.Arc> arcs = new ArrayList<Token.Arc>();
+		for(Token token : tokens) {
+			dos.writeInt(getArcIndex(token.getParentArc(), arcToIndex, arcs));
+		}
+		for(Token token : tokens) {
+			List<Token.Arc> dependents = token.getDependentArcs();
+			dos.writeInt(dependents == null ? -1 : dependents.size());
+		}
+		for(Token token : tokens) {
+			List<Token.Arc> dependents = token.getDependentArcs();
+			if(dependents != null) {
+				for(Token.Arc arc : dependents) {
+					dos.writeInt(getArcIndex(arc, arcToIndex, arcs));
+				}
+			}
+		}
+		dos.writeInt(arcs.size());
+		for(Token.Arc arc : arcs) {
+			dos.writeInt(getTokenIndex(arc.getHead(), tokenToIndex));
+		}
+		for(Token.Arc arc : arcs) {
+			dos.writeInt(getTokenIndex(arc.getChild(), tokenToIndex));
+		}
+		for(Token.Arc arc : arcs) {
+			dos.writeInt(strings.getId(arc.getDependency()));
+		}
+	}
+
+	private static int getArcIndex(Token.Arc arc, Map<Token.Arc, Integer> arcToIndex, List<Token.Arc> arcs) {
+		if(arc == null) {
+			return -1;
+		}
+		Integer index = arcToIndex.get(arc);
+		if(index == null) {
+			arcToIndex.put(arc, index = arcs.size());
+			arcs.add(arc);
+		}
+		return index;
+	}
+
+	private static int getTokenIndex(Token token, Map<Token, Integer> tokenToIndex) throws IOException {
+		if(token == null) {
+			return -1;
+		}
+		Integer index = tokenToIndex.get(token);
+		if(index == null) {
+			throw new IOException("Arc refers to a token that is not an annotation of the document: " + token.getStart() + "-" + token.getEnd());
+		}
+		return index;
+	}
+
+	private static TextDocument readBody(DataInputStream dis) throws IOException {
+		String uri = readString(dis);
+		TextDocument doc = new TextDocumentImpl(readString(dis));
+		doc.setUri(uri);
+		final int numStrings = dis.readInt();
+		String[] strings = new String[numStrings];
+		for(int i = 0; i < numStrings; i++) {
+			strings[i] = readString(dis);
+		}
+		final int numTypes = dis.readInt();
+		for(int t = 0; t < numTypes; t++) {
+			readAnnotations(doc, dis, strings);
+		}
+		return doc;
+	}
+
+	private static void readAnnotations(TextDocument doc, DataInputStream dis, String[] strings) throws IOException {
+		String className = readString(dis);
+		Class type;
+		try {
+			type = Class.forName(className);
+		}
+		catch(ClassNotFoundException cnfe) {
+			throw new IOException("Unknown annotation class: " + className, cnfe);
+		}
+		final int numAnnots = dis.readInt();
+		int[] starts = readInts(dis, numAnnots);
+		int[] ends = readInts(dis, numAnnots);
+		List<Annotation> annots = new ArrayList<Annotation>(numAnnots);
+		if(type == Sentence.class) {
+			int[] ids = readInts(dis, numAnnots);
+			int[] nums = readInts(dis, numAnnots);
+			int[] parseStrings = readInts(dis, numAnnots);
+			for(int i = 0; i < numAnnots; i++) {
+				Sentence sentence = new Sentence(doc, starts[i], ends[i]);
+				sentence.setId(getString(strings, ids[i]));
+				sentence.setSentenceNum(nums[i]);
+				sentence.setParseString(getString(strings, parseStrings[i]));
+				annots.add(sentence);
+			}
+		}
+		else if(type == Token.class) {
+			Token[] tokens = new Token[numAnnots];
+			for(int i = 0; i < numAnnots; i++) {
+				annots.add(tokens[i] = new Token(doc, starts[i], ends[i]));
+			}
+			readTokenFields(tokens, dis, strings);
+		}
+		else {
+			for(int i = 0; i < numAnnots; i++) {
+				annots.add(createAnnotation(type, doc, starts[i], ends[i]));
+			}
+			if(StringAttributes.class.isAssignableFrom(type)) {
+				int[] numAttributes = readInts(dis, numAnnots);
+				for(int i = 0; i < numAnnots; i++) {
+					if(numAttributes[i] >= 0) {
+						String[] attributes = new String[numAttributes[i]];
+						for(int j = 0; j < attributes.length; j++) {
+							attributes[j] = getString(strings, dis.readInt());
+						}
+						((StringAttributes)annots.get(i)).setStringAttributes(attributes);
+					}
+				}
+			}
+		}
+		for(Annotation annot : annots) {
+			doc.addAnnotation(annot);
+		}
+	}
+
+	private static void readTokenFields(Token[] tokens, DataInputStream dis, String[] strings) throws IOException {
+		final int numTokens = tokens.length;
+		int[] pos = readInts(dis, numTokens);
+		int[] lemmas = readInts(dis, numTokens);
+		int[] parentArcs = readInts(dis, numTokens);
+		int[] numDependents = readInts(dis, numTokens);
+		int[][] dependentArcs = new int[numTokens][];
+		for(int i = 0; i < numTokens; i++) {
+			if(numDependents[i] >= 0) {
+				dependentArcs[i] = readInts(dis, numDependents[i]);
+			}
+		}
+		final int numArcs = dis.readInt();
+		int[] heads = readInts(dis, numArcs);
+		int[] children = readInts(dis, numArcs);
+		int[] dependencies = readInts(dis, numArcs);
+		Token.Arc[] arcs = new Token.Arc[numArcs];
+		for(int i = 0; i < numArcs; i++) {
+			arcs[i] = new Token.Arc(heads[i] == -1 ? null : tokens[heads[i]], children[i] == -1 ? null : tokens[children[i]], getString(strings, dependencies[i]));
+		}
+		for(int i = 0; i < numTokens; i++) {
+			Token token = tokens[i];
+			token.setPos(getString(strings, pos[i]));
+			token.setLemma(getString(strings, lemmas[i]));
+			if(parentArcs[i] != -1) {
+				token.setParentArc(arcs[parentArcs[i]]);
+			}
+			if(dependentArcs[i] != null) {
+				for(int arc : dependentArcs[i]) {
+					token.addDependent(arcs[arc]);
+				}
+			}
+		}
+	}
+
+	private static Annotation createAnnotation(Class type, TextDocument doc, int start, int end) throws IOException {
+		try {
+			try {
+				Constructor constructor = type.getConstructor(TextDocument.class, int.class, int.class);
+				return (Annotation)constructor.newInstance(doc, start, end);
+			}
+			catch(NoSuchMethodException nsme) {
+				Constructor constructor = type.getConstructor(TextDocument.class);
+				Annotation annot = (Annotation)constructor.newInstance(doc);
+				annot.setStart(start);
+				annot.setEnd(end);
+				return annot;
+			}
+		}
+		catch(Exception e) {
+			throw new IOException("Unable to create annotation of class: " + type.getName(), e);
+		}
+	}
+
+	private static String getString(String[] strings, int id) {
+		return id == -1 ? null : strings[id];
+	}
+
+	private static int[] readInts(DataInputStream dis, int length) throws IOException {
+		int[] ints = new int[length];
+		for(int i = 0; i < length; i++) {
+			ints[i] = dis.readInt();
+		}
+		return ints;
+	}
+
+	private static void writeString(DataOutputStream dos, String s) throws IOException {
+		if(s == null) {
+			dos.writeInt(-1);
+		}
+		else {
+			byte[] bytes = s.getBytes(UTF8);
+			dos.writeInt(bytes.length);
+			dos.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream dis) throws IOException {
+		int length = dis.readInt();
+		if(length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		dis.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
@@ -16,14 +16,20 @@
 
 package tratz.semantics;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import tratz.featgen.MultiStepFeatureGenerator;
+import tratz.ml.ArchivedModelMap;
 import tratz.ml.ClassScoreTuple;
 import tratz.ml.LinearClassificationModel;
+import tratz.ml.MappedLinearClassificationModel;
+import tratz.ml.ModelArchive;
 import tratz.parse.types.Parse;
 import tratz.parse.types.Token;
 
@@ -31,6 +37,11 @@ public class ClassificationBundle implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
+	// sections of the model archive
+	public final static String ARCHIVE_BUNDLE_SECTION = "bundle",
+							   ARCHIVE_SINGLE_MODEL = "model",
+							   ARCHIVE_MODEL_PREFIX = "models/";
+	
 	protected MultiStepFeatureGenerator mFeatGen;
 	protected Map<String, LinearClassificationModel> mModelMap;
 	protected LinearClassificationModel mSingleModel;
@@ -67,4 +78,43 @@ public class ClassificationBundle implements Serializable {
 		return retValue;
 	}
 	
+	/**
+	 * Writes the bundle as a <code>ModelArchive</code>. The feature generator and model name lookup are serialized,
+	 * the models are written in the format of <code>MappedLinearClassificationModel</code>.
+	 */
+	public void writeArchive(File file) throws IOException {
+		ModelArchive.Writer writer = new ModelArchive.Writer(file);
+		List<String> modelNames = mModelMap == null ? null : new ArrayList<String>(mModelMap.keySet());
+		writer.writeObject(ARCHIVE_BUNDLE_SECTION, new Object[]{mFeatGen, mModelNameLookup, modelNames});
+		if(mSingleModel != null) {
+			MappedLinearClassificationModel.write(mSingleModel, writer, ARCHIVE_SINGLE_MODEL);
+		}
+		else {
+			for(String modelName : modelNames) {
+				MappedLinearClassificationModel.write(mModelMap.get(modelName), writer, ARCHIVE_MODEL_PREFIX + modelName);
+			}
+		}
+		writer.close();
+	}
+	
+	/**
+	 * Reads a bundle written by <code>writeArchive</code>. The models of a multi-model bundle are loaded when they are first used.
+	 */
+	public static ClassificationBundle readArchive(File file) throws IOException, ClassNotFoundException {
+		ModelArchive archive = new ModelArchive(file);
+		Object[] bundle = (Object[])archive.readObject(ARCHIVE_BUNDLE_SECTION);
+		MultiStepFeatureGenerator featGen = (MultiStepFeatureGenerator)bundle[0];
+		ModelNameLookup modelNameLookup = (ModelNameLookup)bundle[1];
+		List<String> modelNames = (List<String>)bundle[2];
+		if(modelNames == null) {
+			LinearClassificationModel model = new MappedLinearClassificationModel(archive, ARCHIVE_SINGLE_MODEL);
+			archive.close();
+			return new ClassificationBundle(featGen, model);
+		}
+		else {
+			// the archive stays open for loading the models
+			return new ClassificationBundle(featGen, new ArchivedModelMap(archive, ARCHIVE_MODEL_PREFIX, modelNames), modelNameLookup);
+		}
+	}
+	
 }
\ No newline at end of file
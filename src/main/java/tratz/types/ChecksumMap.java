@@ -238,6 +238,45 @@ public class ChecksumMap<K> implements Externalizable {
 		return retValue;
 	}
 
+	/**
+	 * Looks up a key created by <code>createKey</code>. Only meaningful when the map uses the default
+	 * hash and checksum functions (see <code>hasDefaultFunctions</code>).
+	 */
+	public int get(final long key) {
+		return get(getHash(key), getChecksum(key));
+	}
+
+	public boolean hasDefaultFunctions() {
+		return mHashFunction.getClass() == PassthroughHashFunction.class
+			&& mChecksumFunction.getClass() == DefaultChecksumFunction.class;
+	}
+
+	/**
+	 * Packs a hash and a checksum into a single 64-bit key
+	 */
+	public static long createKey(final int hash, final int checksum) {
+		return ((long)hash << 32) | (checksum & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the 64-bit key of a String, as hashed by the default hash and checksum functions
+	 */
+	public static long createKey(final String s) {
+		int checksum = 0;
+		for(int i = s.length() - 1; i >= 0; i--) {
+			checksum = 31 * checksum + s.charAt(i);
+		}
+		return createKey(s.hashCode(), checksum);
+	}
+
+	public static int getHash(final long key) {
+		return (int)(key >>> 32);
+	}
+
+	public static int getChecksum(final long key) {
+		return (int)key;
+	}
+
 	public boolean containsKey(K key) {
 		return get(key) != mNotFoundValue;
 	}
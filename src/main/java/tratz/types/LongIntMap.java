@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.types;
+
+import foal.map.LongIntHashMap;
+
+/**
+ * Open addressing long to int map that, like <code>ChecksumMap</code>, returns a not-found value
+ * for missing keys instead of 0.
+ */
+public class LongIntMap extends LongIntHashMap {
+	
+	public static final long serialVersionUID = 1L;
+	
+	private int mNotFoundValue;
+	
+	public LongIntMap(int initialCapacity, int notFoundValue) {
+		super(initialCapacity);
+		mNotFoundValue = notFoundValue;
+	}
+	
+	@Override
+	public int get(long key) {
+		int i = indexOfKey(key);
+		return i < 0 ? mNotFoundValue : values[i];
+	}
+	
+	public int getNotFoundValue() {
+		return mNotFoundValue;
+	}
+	
+}
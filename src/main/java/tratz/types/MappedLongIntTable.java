@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+package tratz.types;
+
+import java.nio.ByteBuffer;
+
+import foal.function.LongIntProcedure;
+
+/**
+ * Read-only open addressing long to int table kept in a (typically memory-mapped) ByteBuffer
+ * instead of on the heap. The table is filled by <code>write</code>; its capacity is a power of two 
+ * and each slot holds a key, a value and 4 bytes of padding. Lookups don't change the buffer's
+ * position, so one table can be used by several threads.
+ */
+public class MappedLongIntTable {
+	
+	public final static int SLOT_SIZE = 16;
+	
+	private final ByteBuffer mBuffer;
+	private final int mMask;
+	private final int mNotFoundValue;
+	
+	/**
+	 * @param buffer - the table, in the byte order it was written in
+	 * @param notFoundValue - the value the table was written with, returned for missing keys
+	 */
+	public MappedLongIntTable(ByteBuffer buffer, int notFoundValue) {
+		mBuffer = buffer;
+		mMask = buffer.capacity()/SLOT_SIZE-1;
+		mNotFoundValue = notFoundValue;
+	}
+	
+	public int get(long key) {
+		int slot = slotOf(key) & mMask;
+		while(true) {
+			int offset = slot*SLOT_SIZE;
+			int value = mBuffer.getInt(offset+8);
+			if(value == mNotFoundValue || mBuffer.getLong(offset) == key) {
+				return value;
+			}
+			slot = (slot+1) & mMask;
+		}
+	}
+	
+	/**
+	 * Applies the procedure to each key and value of the table, stopping if it returns false
+	 */
+	public void forEachPair(LongIntProcedure procedure) {
+		final int capacity = mMask+1;
+		for(int slot = 0; slot < capacity; slot++) {
+			int offset = slot*SLOT_SIZE;
+			int value = mBuffer.getInt(offset+8);
+			if(value != mNotFoundValue && !procedure.apply(mBuffer.getLong(offset), value)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Number of slots of a table for the given number of keys: the smallest power of two that keeps it at most 3/4 full
+	 */
+	public static int getCapacity(int numKeys) {
+		long capacity = 2;
+		while(capacity*3 < (long)numKeys*4) {
+			capacity <<= 1;
+		}
+		if(capacity*SLOT_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many keys for a mapped table: " + numKeys);
+		}
+		return (int)capacity;
+	}
+	
+	/**
+	 * Fills the buffer, which must be <code>getCapacity(map.size())*SLOT_SIZE</code> bytes long, with the entries of the map.
+	 * The not-found value marks the empty slots, so it must not be one of the map's values.
+	 */
+	public static void write(final ByteBuffer buffer, LongIntMap map, final int notFoundValue) {
+		final int capacity = buffer.capacity()/SLOT_SIZE;
+		if(capacity != getCapacity(map.size())) {
+			throw new IllegalArgumentException("Table of " + capacity + " slots for " + map.size() + " keys");
+		}
+		for(int slot = 0; slot < capacity; slot++) {
+			buffer.putInt(slot*SLOT_SIZE+8, notFoundValue);
+		}
+		final int mask = capacity-1;
+		map.forEachPair(new LongIntProcedure() {
+			public boolean apply(long key, int value) {
+				if(value == notFoundValue) {
+					throw new IllegalArgumentException("Value equals the not-found value: " + value);
+				}
+				int slot = slotOf(key) & mask;
+				while(buffer.getInt(slot*SLOT_SIZE+8) != notFoundValue) {
+					slot = (slot+1) & mask;
+				}
+				buffer.putLong(slot*SLOT_SIZE, key);
+				buffer.putInt(slot*SLOT_SIZE+8, value);
+				return true;
+			}
+		});
+	}
+	
+	private static int slotOf(long key) {
+		int h = (int)(key ^ (key >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+}
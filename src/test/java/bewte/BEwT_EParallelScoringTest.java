@@ -0,0 +1,153 @@
+package bewte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import bewte.scoring.TallyFunction;
+
+/**
+ * Scoring peers with several threads, and streaming the topics, must give exactly the scores of the
+ * sequential evaluation. The BEX files are generated: 5 topics of 3 references and 5 peers each.
+ */
+public class BEwT_EParallelScoringTest {
+	
+	private final static String[] NOUNS = {"company", "companies", "president", "storm", "storms", "people", "city", "official", "report", "attack", "plan", "market", "court", "police", "economy"};
+	private final static String[] VERBS = {"said", "says", "attacked", "announced", "killed", "rose", "built", "reported", "hit", "grew"};
+	private final static char SEP = BEConstants.BE_SEPARATOR_CHAR;
+	
+	private File mDir;
+	private File mBexDir;
+	
+	@Before
+	public void setUp() throws Exception {
+		mDir = File.createTempFile("bewte", "");
+		mDir.delete();
+		mBexDir = new File(mDir, "bex");
+		mBexDir.mkdirs();
+		Random random = new Random(3);
+		for(int t = 0; t < 5; t++) {
+			for(int s = 0; s < 8; s++) {
+				StringBuilder sb = new StringBuilder();
+				int numBEs = 10 + random.nextInt(30);
+				for(int i = 0; i < numBEs; i++) {
+					sb.append(createBE(random)).append('\n');
+					// transformed versions of the BE
+					int numTransformed = random.nextInt(3);
+					for(int j = 0; j < numTransformed; j++) {
+						sb.append('\t').append(createBE(random)).append('\t').append("t" + random.nextInt(4));
+						if(random.nextBoolean()) {
+							sb.append(":t" + random.nextInt(4));
+						}
+						sb.append(":\n");
+					}
+				}
+				write(new File(mBexDir, "D0" + t + "-A.M.100.A." + (s < 3 ? "reference" + s : Integer.toString(s))), sb.toString());
+			}
+		}
+		write(new File(mDir, "rules.txt"), "1\tr1\tNouns\tx\tx\n2\tr11\tNV\tx\tx\n");
+		write(new File(mDir, "transforms.txt"), "@startDefs\nt0\tbewte.transforms.SwapTransform\tRULES=11\nt1\tbewte.transforms.SwapTransform\tRULES=11\nt2\tbewte.transforms.SwapTransform\tRULES=11\nt3\tbewte.transforms.SwapTransform\tRULES=11\n@startPipe\nt0\nt1\nt2\nt3\n");
+		write(new File(mDir, "coeffs.txt"), "@startDefs\nt0\tg0\nt1\tg1\nt2\tg2\nt3\tg2\ng0=0.9\ng1=0.7\ng2=0.5\n");
+		write(new File(mDir, "ender.txt"), "bewte.endanalysis.DoNothingEndAnalyzer\n");
+	}
+	
+	@After
+	public void tearDown() {
+		delete(mDir);
+	}
+	
+	@Test
+	public void testBinaryTally() throws Exception {
+		assertSameScores(TallyFunction.BinaryTallyFunction.class.getName());
+	}
+	
+	@Test
+	public void testRootTally() throws Exception {
+		assertSameScores(TallyFunction.RootTallyFunction.class.getName());
+	}
+	
+	private void assertSameScores(String tallyFunction) throws Exception {
+		String expected = evaluate(tallyFunction, 1, BEwT_E.LOAD_ALL);
+		assertTrue(expected.length() > 0);
+		for(String loading : new String[]{BEwT_E.LOAD_ALL, BEwT_E.LOAD_STREAMING, BEwT_E.LOAD_PREFETCH}) {
+			assertEquals("4 threads, " + loading, expected, evaluate(tallyFunction, 4, loading));
+			if(!loading.equals(BEwT_E.LOAD_ALL)) {
+				assertEquals("1 thread, " + loading, expected, evaluate(tallyFunction, 1, loading));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the system and summary level output
+	 */
+	private String evaluate(String tallyFunction, int numThreads, String loading) throws Exception {
+		File systemLevelFile = new File(mDir, "system.txt");
+		File summaryLevelFile = new File(mDir, "summary.txt");
+		String[] args = {mBexDir.getPath(), 
+						 systemLevelFile.getPath(), 
+						 summaryLevelFile.getPath(), 
+						 tallyFunction, 
+						 "false", 
+						 new File(mDir, "rules.txt").getPath(), 
+						 new File(mDir, "transforms.txt").getPath(), 
+						 new File(mDir, "coeffs.txt").getPath(), 
+						 "reference.*", 
+						 new File(mDir, "ender.txt").getPath(), 
+						 "bewte.names.T2VStyleNameExtractor", 
+						 ".*", 
+						 Integer.toString(numThreads), 
+						 "mincostflow", 
+						 loading};
+		new BEwT_E(new PrintStream(new ByteArrayOutputStream())).evaluate(args);
+		return read(systemLevelFile) + read(summaryLevelFile);
+	}
+	
+	private static String createBE(Random random) {
+		String noun = NOUNS[random.nextInt(NOUNS.length)];
+		if(random.nextBoolean()) {
+			return "r11" + SEP + noun + SEP + "NN" + SEP + VERBS[random.nextInt(VERBS.length)] + SEP + "VBD" + SEP;
+		}
+		return "r1" + SEP + noun + SEP + (noun.endsWith("s") ? "NNS" : "NN") + SEP;
+	}
+	
+	private static void write(File file, String text) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		writer.print(text);
+		writer.close();
+	}
+	
+	private static String read(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		StringBuilder sb = new StringBuilder();
+		String line = null;
+		while((line = reader.readLine()) != null) {
+			sb.append(line).append('\n');
+		}
+		reader.close();
+		return sb.toString();
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+}
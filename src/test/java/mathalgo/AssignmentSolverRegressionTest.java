@@ -0,0 +1,69 @@
+package mathalgo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import foal.map.IntDoubleHashMap;
+import foal.map.IntObjectHashMap;
+import mathalgo.AssignmentSolverRegression.RecordedGraph;
+
+/**
+ * The sparse successive shortest path solver must find matchings of the same total weight as the
+ * min-cost flow solver, on BE matching graphs recorded from an evaluation (recordedGraphs.txt, written
+ * with -Dbewte_record_assignments) and on denser random graphs.
+ */
+public class AssignmentSolverRegressionTest {
+
+	@Test
+	public void testRecordedGraphs() throws Exception {
+		File file = new File(AssignmentSolverRegressionTest.class.getResource("recordedGraphs.txt").toURI());
+		List<RecordedGraph> graphs = AssignmentSolverRegression.readGraphs(file);
+		assertTrue(graphs.size() > 0);
+		assertSameTotals(graphs);
+	}
+
+	@Test
+	public void testRandomGraphs() throws Exception {
+		Random random = new Random(17);
+		List<RecordedGraph> graphs = new ArrayList<RecordedGraph>();
+		for(int g = 0; g < 200; g++) {
+			int part1Size = 1 + random.nextInt(30);
+			int part2Size = 1 + random.nextInt(30);
+			double density = random.nextDouble();
+			IntObjectHashMap<IntDoubleHashMap> costMatrix = new IntObjectHashMap<IntDoubleHashMap>();
+			for(int i = 0; i < part1Size; i++) {
+				for(int j = 0; j < part2Size; j++) {
+					if(random.nextDouble() < density) {
+						IntDoubleHashMap links = costMatrix.get(i);
+						if(links == null) {
+							costMatrix.put(i, links = new IntDoubleHashMap());
+						}
+						// few distinct weights, so that there are many tied matchings
+						links.put(j, (1 + random.nextInt(4)) * 0.25);
+					}
+				}
+			}
+			graphs.add(new RecordedGraph(part1Size, part2Size, costMatrix));
+		}
+		assertSameTotals(graphs);
+	}
+
+	private static void assertSameTotals(List<RecordedGraph> graphs) throws Exception {
+		AssignmentAlgorithm reference = AssignmentAlgorithms.forName(AssignmentAlgorithms.MIN_COST_FLOW);
+		AssignmentAlgorithm sparse = AssignmentAlgorithms.forName(AssignmentAlgorithms.SPARSE_SHORTEST_PATH);
+		for(int g = 0; g < graphs.size(); g++) {
+			RecordedGraph graph = graphs.get(g);
+			double expected = AssignmentSolverRegression.totalWeight(reference.assignment(graph.part1Size, graph.part2Size, graph.costMatrix), graph);
+			double actual = AssignmentSolverRegression.totalWeight(sparse.assignment(graph.part1Size, graph.part2Size, graph.costMatrix), graph);
+			assertEquals("graph " + g, expected, actual, AssignmentSolverRegression.TOLERANCE * Math.max(1.0, Math.abs(expected)));
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+
+package tratz.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import tratz.parse.types.Arc;
+import tratz.parse.types.Parse;
+import tratz.parse.types.Sentence;
+import tratz.parse.types.Token;
+
+/**
+ * ParseCache hits, eviction and reloading of the backing file
+ */
+public class ParseCacheTest {
+	
+	private final static String MODEL_ID = "model:1:1";
+	
+	private File mDir;
+	private File mCacheFile;
+	
+	@Before
+	public void setUp() throws Exception {
+		mDir = File.createTempFile("parsecache", "");
+		mDir.delete();
+		mDir.mkdirs();
+		mCacheFile = new File(mDir, "parses.cache");
+	}
+	
+	@After
+	public void tearDown() {
+		File[] files = mDir.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		mDir.delete();
+	}
+	
+	@Test
+	public void testGet() {
+		ParseCache cache = new ParseCache(10);
+		Sentence sentence = createSentence("The", "DT", "dog", "NN", "barked", "VBD");
+		assertNull(cache.get(sentence));
+		cache.put(sentence, createParse(sentence, new int[]{2, 3, 0}, new String[]{"det", "nsubj", "root"}));
+		
+		Sentence again = createSentence("The", "DT", "dog", "NN", "barked", "VBD");
+		assertSameArcs(createParse(again, new int[]{2, 3, 0}, new String[]{"det", "nsubj", "root"}), cache.get(again));
+		// same text, different parts of speech
+		assertNull(cache.get(createSentence("The", "DT", "dog", "VB", "barked", "VBD")));
+		assertEquals(1, cache.getNumHits());
+		assertEquals(2, cache.getNumMisses());
+	}
+	
+	@Test
+	public void testEviction() {
+		ParseCache cache = new ParseCache(2);
+		Sentence one = createSentence("One", "CD");
+		Sentence two = createSentence("Two", "CD");
+		Sentence three = createSentence("Three", "CD");
+		cache.put(one, createParse(one, new int[]{0}, new String[]{"root"}));
+		cache.put(two, createParse(two, new int[]{0}, new String[]{"root"}));
+		// the least recently used entry goes
+		assertNotNull(cache.get(one));
+		cache.put(three, createParse(three, new int[]{0}, new String[]{"root"}));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(one));
+		assertNull(cache.get(two));
+		assertNotNull(cache.get(three));
+	}
+	
+	@Test
+	public void testReload() throws Exception {
+		ParseCache cache = new ParseCache(10, mCacheFile, MODEL_ID);
+		List<Sentence> sentences = new ArrayList<Sentence>();
+		List<Parse> parses = new ArrayList<Parse>();
+		sentences.add(createSentence("The", "DT", "dog", "NN", "barked", "VBD"));
+		parses.add(createParse(sentences.get(0), new int[]{2, 3, 0}, new String[]{"det", "nsubj", "root"}));
+		sentences.add(createSentence("Stop", "VB", "!", "."));
+		// an arc without a dependency label
+		parses.add(createParse(sentences.get(1), new int[]{0, 1}, new String[]{"root", null}));
+		sentences.add(createSentence("Caf\u00e9", null));
+		parses.add(createParse(sentences.get(2), new int[]{0}, new String[]{"root"}));
+		for(int i = 0; i < sentences.size(); i++) {
+			cache.put(sentences.get(i), parses.get(i));
+		}
+		cache.close();
+		
+		ParseCache reloaded = new ParseCache(10, mCacheFile, MODEL_ID);
+		assertEquals(sentences.size(), reloaded.size());
+		for(int i = 0; i < sentences.size(); i++) {
+			assertSameArcs(parses.get(i), reloaded.get(sentences.get(i)));
+		}
+		// parses added after reloading are appended
+		Sentence added = createSentence("Go", "VB");
+		reloaded.put(added, createParse(added, new int[]{0}, new String[]{"root"}));
+		reloaded.close();
+		ParseCache appended = new ParseCache(10, mCacheFile, MODEL_ID);
+		assertEquals(sentences.size()+1, appended.size());
+		appended.close();
+	}
+	
+	@Test
+	public void testReloadAfterFlush() throws Exception {
+		ParseCache cache = new ParseCache(10, mCacheFile, MODEL_ID);
+		Sentence sentence = createSentence("Go", "VB");
+		cache.put(sentence, createParse(sentence, new int[]{0}, new String[]{"root"}));
+		cache.flush();
+		// read while the first cache still has the file open
+		ParseCache reloaded = new ParseCache(10, mCacheFile, MODEL_ID);
+		assertEquals(1, reloaded.size());
+		reloaded.close();
+		cache.close();
+	}
+	
+	@Test
+	public void testOtherModelDiscardsFile() throws Exception {
+		ParseCache cache = new ParseCache(10, mCacheFile, MODEL_ID);
+		Sentence sentence = createSentence("Go", "VB");
+		cache.put(sentence, createParse(sentence, new int[]{0}, new String[]{"root"}));
+		cache.close();
+		
+		ParseCache other = new ParseCache(10, mCacheFile, "model:2:2");
+		assertEquals(0, other.size());
+		other.close();
+		ParseCache reopened = new ParseCache(10, mCacheFile, MODEL_ID);
+		assertEquals(0, reopened.size());
+		reopened.close();
+	}
+	
+	/**
+	 * Creates a sentence from pairs of token text and part of speech
+	 */
+	private static Sentence createSentence(String... textsAndTags) {
+		List<Token> tokens = new ArrayList<Token>();
+		for(int i = 0; i < textsAndTags.length; i += 2) {
+			tokens.add(new Token(textsAndTags[i], textsAndTags[i+1], i/2+1));
+		}
+		return new Sentence(tokens);
+	}
+	
+	/**
+	 * Creates a parse with one arc per token, from the token to the head index (0 for the root)
+	 */
+	private static Parse createParse(Sentence sentence, int[] heads, String[] dependencies) {
+		Token root = new Token("[ROOT]", 0);
+		List<Token> tokens = sentence.getTokens();
+		List<Arc> arcs = new ArrayList<Arc>();
+		for(int i = 0; i < heads.length; i++) {
+			Token head = heads[i] == 0 ? root : tokens.get(heads[i]-1);
+			arcs.add(new Arc(tokens.get(i), head, dependencies[i], i));
+		}
+		return new Parse(sentence, root, arcs);
+	}
+	
+	private static void assertSameArcs(Parse expected, Parse actual) {
+		assertNotNull(actual);
+		List<Arc> expectedArcs = expected.getArcs();
+		List<Arc> actualArcs = actual.getArcs();
+		assertEquals(expectedArcs.size(), actualArcs.size());
+		List<Token> tokens = actual.getSentence().getTokens();
+		for(int a = 0; a < expectedArcs.size(); a++) {
+			Arc e = expectedArcs.get(a);
+			Arc arc = actualArcs.get(a);
+			assertSame(tokens.get(e.getChild().getIndex()-1), arc.getChild());
+			if(e.getHead().getIndex() == 0) {
+				assertSame(actual.getRoot(), arc.getHead());
+			}
+			else {
+				assertSame(tokens.get(e.getHead().getIndex()-1), arc.getHead());
+			}
+			assertEquals(e.getDependency(), arc.getDependency());
+			assertEquals(e.getCreationNum(), arc.getCreationNum());
+		}
+	}
+	
+}
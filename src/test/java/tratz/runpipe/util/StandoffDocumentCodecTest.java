@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 University of Southern California 
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at 
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0 
+ *      
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ */
+
+
+package tratz.runpipe.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import tratz.runpipe.TextDocument;
+import tratz.runpipe.annotations.PersonAnnotation;
+import tratz.runpipe.annotations.Sentence;
+import tratz.runpipe.annotations.Token;
+import tratz.runpipe.impl.TextDocumentImpl;
+import bewte.annotations.DateAnnotation;
+
+/**
+ * Documents written by StandoffDocumentCodec must read back with the same text, annotations and arcs
+ */
+public class StandoffDocumentCodecTest {
+	
+	private final static String TEXT = "Smith left on May 5 2010 . He returned .";
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		for(StandoffDocumentCodec.Compression compression : StandoffDocumentCodec.Compression.values()) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			StandoffDocumentCodec.write(createDocument(), bytes, compression);
+			assertSameDocument(createDocument(), StandoffDocumentCodec.read(new ByteArrayInputStream(bytes.toByteArray())));
+		}
+	}
+	
+	@Test
+	public void testFileRoundTrip() throws Exception {
+		File file = File.createTempFile("codec", ".rpd");
+		try {
+			StandoffDocumentCodec.write(createDocument(), file, StandoffDocumentCodec.Compression.FAST);
+			assertTrue(StandoffDocumentCodec.isStandoffFile(file));
+			assertSameDocument(createDocument(), StandoffDocumentCodec.read(file));
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testIsStandoffFile() throws Exception {
+		File file = File.createTempFile("codec", ".txt");
+		try {
+			assertFalse(StandoffDocumentCodec.isStandoffFile(file));
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	private static TextDocument createDocument() {
+		TextDocument doc = new TextDocumentImpl(TEXT);
+		doc.setUri("file:/corpus/doc1.txt");
+		int sentenceNum = 0;
+		for(String sentenceText : new String[]{"Smith left on May 5 2010 .", "He returned ."}) {
+			int start = TEXT.indexOf(sentenceText);
+			Sentence sentence = new Sentence(doc, start, start+sentenceText.length());
+			sentence.setId("s" + sentenceNum);
+			sentence.setSentenceNum(sentenceNum++);
+			sentence.setParseString(sentenceNum == 1 ? "(S (NP Smith) (VP left))" : null);
+			doc.addAnnotation(sentence);
+		}
+		Token[] tokens = new Token[TEXT.split(" ").length];
+		int start = 0;
+		int t = 0;
+		for(String tokenText : TEXT.split(" ")) {
+			Token token = new Token(doc, start, start+tokenText.length());
+			token.setPos(tokenText.equals(".") ? "." : "NN");
+			token.setLemma(t % 3 == 0 ? null : tokenText.toLowerCase());
+			doc.addAnnotation(token);
+			tokens[t++] = token;
+			start += tokenText.length()+1;
+		}
+		// left -> Smith, left -> on, left -> ., returned -> He (unlabelled)
+		addArc(tokens[1], tokens[0], "nsubj");
+		addArc(tokens[1], tokens[2], "prep");
+		addArc(tokens[1], tokens[6], "punct");
+		addArc(tokens[8], tokens[7], null);
+		doc.addAnnotation(new PersonAnnotation(doc, 0, 5));
+		doc.addAnnotation(new DateAnnotation(doc, TEXT.indexOf("May"), TEXT.indexOf("2010")+4, "05", "5", "2010"));
+		return doc;
+	}
+	
+	private static void addArc(Token head, Token child, String dependency) {
+		Token.Arc arc = new Token.Arc(head, child, dependency);
+		child.setParentArc(arc);
+		head.addDependent(arc);
+	}
+	
+	private static void assertSameDocument(TextDocument expected, TextDocument actual) {
+		assertEquals(expected.getText(), actual.getText());
+		assertEquals(expected.getUri(), actual.getUri());
+		assertEquals(expected.getAnnotationTypes(), actual.getAnnotationTypes());
+		for(Class type : expected.getAnnotationTypes()) {
+			List<?> expectedList = expected.getAnnotationList(type);
+			List<?> actualList = actual.getAnnotationList(type);
+			assertEquals(type.getName(), expectedList.size(), actualList.size());
+			for(int i = 0; i < expectedList.size(); i++) {
+				tratz.runpipe.Annotation e = (tratz.runpipe.Annotation)expectedList.get(i);
+				tratz.runpipe.Annotation a = (tratz.runpipe.Annotation)actualList.get(i);
+				assertSame(actual, a.getDocument());
+				assertEquals(e.getStart(), a.getStart());
+				assertEquals(e.getEnd(), a.getEnd());
+			}
+		}
+		List<Sentence> expectedSentences = (List<Sentence>)expected.getAnnotationList(Sentence.class);
+		List<Sentence> actualSentences = (List<Sentence>)actual.getAnnotationList(Sentence.class);
+		for(int i = 0; i < expectedSentences.size(); i++) {
+			assertEquals(expectedSentences.get(i).getId(), actualSentences.get(i).getId());
+			assertEquals(expectedSentences.get(i).getSentenceNum(), actualSentences.get(i).getSentenceNum());
+			assertEquals(expectedSentences.get(i).getParseString(), actualSentences.get(i).getParseString());
+		}
+		List<Token> expectedTokens = (List<Token>)expected.getAnnotationList(Token.class);
+		List<Token> actualTokens = (List<Token>)actual.getAnnotationList(Token.class);
+		for(int i = 0; i < expectedTokens.size(); i++) {
+			Token e = expectedTokens.get(i);
+			Token a = actualTokens.get(i);
+			assertEquals(e.getPos(), a.getPos());
+			assertEquals(e.getLemma(), a.getLemma());
+			if(e.getParentArc() == null) {
+				assertNull(a.getParentArc());
+			}
+			else {
+				assertArc(expectedTokens, e.getParentArc(), actualTokens, a.getParentArc());
+			}
+			List<Token.Arc> expectedArcs = e.getDependentArcs();
+			List<Token.Arc> actualArcs = a.getDependentArcs();
+			int numExpected = expectedArcs == null ? 0 : expectedArcs.size();
+			assertEquals(numExpected, actualArcs == null ? 0 : actualArcs.size());
+			for(int d = 0; d < numExpected; d++) {
+				assertArc(expectedTokens, expectedArcs.get(d), actualTokens, actualArcs.get(d));
+			}
+		}
+		DateAnnotation expectedDate = (DateAnnotation)expected.getAnnotationList(DateAnnotation.class).get(0);
+		DateAnnotation actualDate = (DateAnnotation)actual.getAnnotationList(DateAnnotation.class).get(0);
+		assertEquals(expectedDate.getCanonicalString(), actualDate.getCanonicalString());
+	}
+	
+	private static void assertArc(List<Token> expectedTokens, Token.Arc expected, List<Token> actualTokens, Token.Arc actual) {
+		assertEquals(expected.getDependency(), actual.getDependency());
+		assertSame(actualTokens.get(expectedTokens.indexOf(expected.getHead())), actual.getHead());
+		assertSame(actualTokens.get(expectedTokens.indexOf(expected.getChild())), actual.getChild());
+	}
+	
+}